@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.MatrixIO;
+import edu.ucla.sspace.matrix.MatrixIO.Format;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks {@link MatrixIO#readMatrix(File, Format)} for each of the
+ * matrix file formats, using the same random sparse matrix for every format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatrixIOBenchmark {
+
+    @Param({"DENSE_TEXT", "MATLAB_SPARSE", "SVDLIBC_SPARSE_TEXT",
+            "SVDLIBC_DENSE_TEXT", "SVDLIBC_SPARSE_BINARY",
+            "SVDLIBC_DENSE_BINARY", "CLUTO_DENSE", "CLUTO_SPARSE"})
+    public Format format;
+
+    @Param({"2000"})
+    public int rows;
+
+    @Param({"2000"})
+    public int columns;
+
+    @Param({"0.01"})
+    public double density;
+
+    private File matrixFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Matrix m = SyntheticData.randomMatrix(rows, columns, density, 1);
+        matrixFile = File.createTempFile("benchmark", ".mat");
+        matrixFile.deleteOnExit();
+        MatrixIO.writeMatrix(m, matrixFile, format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        matrixFile.delete();
+    }
+
+    @Benchmark
+    public Matrix readMatrix() throws IOException {
+        return MatrixIO.readMatrix(matrixFile, format);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.common.SemanticSpace;
+
+import edu.ucla.sspace.util.NearestNeighborFinder;
+import edu.ucla.sspace.util.SimpleNearestNeighborFinder;
+import edu.ucla.sspace.util.SortedMultiMap;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks {@link SimpleNearestNeighborFinder#getMostSimilar(String, int)}
+ * over a space of random dense vectors.  Each invocation queries the next of
+ * the space's words in turn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearestNeighborFinderBenchmark {
+
+    @Param({"20000"})
+    public int numWords;
+
+    @Param({"300"})
+    public int dimensions;
+
+    @Param({"10"})
+    public int k;
+
+    private NearestNeighborFinder nnf;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SemanticSpace sspace =
+            SyntheticData.randomSpace(numWords, dimensions, 1, false, 1);
+        nnf = new SimpleNearestNeighborFinder(sspace);
+        next = 0;
+    }
+
+    @Benchmark
+    public SortedMultiMap<Double,String> getMostSimilar() {
+        String word = ZipfianCorpusGenerator.word(next);
+        next = (next + 1) % numWords;
+        return nnf.getMostSimilar(word, k);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.common.SemanticSpace;
+
+import edu.ucla.sspace.hal.HyperspaceAnalogueToLanguage;
+
+import edu.ucla.sspace.ri.RandomIndexing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the throughput of {@link SemanticSpace#processDocument
+ * processDocument} for {@link RandomIndexing} and {@link
+ * HyperspaceAnalogueToLanguage} on a synthetic Zipfian corpus.  Each
+ * invocation processes the next document of the corpus, so the vocabulary of
+ * the space grows during warmup and is stable during measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessDocumentBenchmark {
+
+    @Param({"RI", "HAL"})
+    public String algorithm;
+
+    @Param({"500"})
+    public int wordsPerDocument;
+
+    @Param({"50000"})
+    public int vocabularySize;
+
+    /**
+     * The number of distinct documents to cycle through.
+     */
+    private static final int NUM_DOCUMENTS = 1000;
+
+    private List<String> documents;
+
+    private SemanticSpace sspace;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        documents = new ZipfianCorpusGenerator(vocabularySize, 1)
+            .nextDocuments(NUM_DOCUMENTS, wordsPerDocument);
+        if (algorithm.equals("RI"))
+            sspace = new RandomIndexing();
+        else if (algorithm.equals("HAL"))
+            sspace = new HyperspaceAnalogueToLanguage();
+        else
+            throw new IllegalArgumentException(
+                "Unknown algorithm: " + algorithm);
+        next = 0;
+    }
+
+    @Benchmark
+    public SemanticSpace processDocument() throws IOException {
+        String doc = documents.get(next);
+        next = (next + 1) % documents.size();
+        sspace.processDocument(new BufferedReader(new StringReader(doc)));
+        return sspace;
+    }
+}
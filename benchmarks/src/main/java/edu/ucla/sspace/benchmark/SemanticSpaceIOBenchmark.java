@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.common.SemanticSpace;
+import edu.ucla.sspace.common.SemanticSpaceIO;
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks {@link SemanticSpaceIO#load(File)} for each {@link SSpaceFormat}.
+ * The sparse formats are written from a space of sparse vectors and all other
+ * formats from a space of dense vectors.  To make the formats comparable, the
+ * vector of every word is retrieved after loading, which forces the lazily
+ * loaded {@link SSpaceFormat#MAPPED MAPPED} format to read its contents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SemanticSpaceIOBenchmark {
+
+    @Param({"TEXT", "SPARSE_TEXT", "BINARY", "SPARSE_BINARY", "SERIALIZE",
+            "MAPPED", "QUANTIZED"})
+    public SSpaceFormat format;
+
+    @Param({"10000"})
+    public int numWords;
+
+    @Param({"300"})
+    public int dimensions;
+
+    private File sspaceFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        boolean sparse = format.equals(SSpaceFormat.SPARSE_TEXT)
+            || format.equals(SSpaceFormat.SPARSE_BINARY);
+        SemanticSpace sspace = SyntheticData.randomSpace(
+            numWords, dimensions, (sparse) ? 0.05 : 1, sparse, 1);
+        sspaceFile = File.createTempFile("benchmark", ".sspace");
+        sspaceFile.deleteOnExit();
+        SemanticSpaceIO.save(sspace, sspaceFile, format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sspaceFile.delete();
+    }
+
+    @Benchmark
+    public double load() throws IOException {
+        SemanticSpace sspace = SemanticSpaceIO.load(sspaceFile);
+        double sum = 0;
+        for (String word : sspace.getWords())
+            sum += sspace.getVector(word).getValue(0).doubleValue();
+        return sum;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.common.Similarity;
+
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks {@link Similarity#cosineSimilarity(DoubleVector, DoubleVector)}
+ * for every combination of sparse ({@link
+ * edu.ucla.sspace.vector.CompactSparseVector CompactSparseVector}) and dense
+ * ({@link edu.ucla.sspace.vector.DenseVector DenseVector}) arguments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarityBenchmark {
+
+    @Param({"sparse-sparse", "sparse-dense", "dense-sparse", "dense-dense"})
+    public String types;
+
+    @Param({"10000"})
+    public int dimensions;
+
+    @Param({"0.01"})
+    public double density;
+
+    private DoubleVector a;
+
+    private DoubleVector b;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        String[] t = types.split("-");
+        a = SyntheticData.randomVector(
+            dimensions, density, t[0].equals("sparse"), random);
+        b = SyntheticData.randomVector(
+            dimensions, density, t[1].equals("sparse"), random);
+    }
+
+    @Benchmark
+    public double cosineSimilarity() {
+        return Similarity.cosineSimilarity(a, b);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.common.SemanticSpace;
+import edu.ucla.sspace.common.VectorMapSemanticSpace;
+
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.YaleSparseMatrix;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Utility methods for creating the reproducible random vectors, matrices and
+ * semantic spaces used by the benchmarks.
+ */
+final class SyntheticData {
+
+    /**
+     * Uninstantiable
+     */
+    private SyntheticData() { }
+
+    /**
+     * Returns a random vector where each dimension is non-zero with the
+     * specified probability.  Sparse vectors are returned as {@link
+     * CompactSparseVector} instances and dense vectors as {@link DenseVector}
+     * instances.
+     */
+    static DoubleVector randomVector(int length, double density,
+                                     boolean sparse, Random random) {
+        DoubleVector v = (sparse)
+            ? new CompactSparseVector(length)
+            : new DenseVector(length);
+        for (int i = 0; i < length; ++i)
+            if (random.nextDouble() < density)
+                v.set(i, random.nextGaussian());
+        return v;
+    }
+
+    /**
+     * Returns a semantic space containing the {@code numWords} most frequent
+     * words of the {@link ZipfianCorpusGenerator}, each with a random vector.
+     */
+    static SemanticSpace randomSpace(int numWords, int dimensions,
+                                     double density, boolean sparse,
+                                     long seed) {
+        Random random = new Random(seed);
+        Map<String,DoubleVector> vectors = new HashMap<String,DoubleVector>();
+        for (int i = 0; i < numWords; ++i)
+            vectors.put(ZipfianCorpusGenerator.word(i),
+                        randomVector(dimensions, density, sparse, random));
+        return new VectorMapSemanticSpace<DoubleVector>(
+            vectors, "synthetic", dimensions);
+    }
+
+    /**
+     * Returns a random sparse matrix where each cell is non-zero with the
+     * specified probability.
+     */
+    static Matrix randomMatrix(int rows, int columns, double density,
+                               long seed) {
+        Random random = new Random(seed);
+        Matrix m = new YaleSparseMatrix(rows, columns);
+        for (int r = 0; r < rows; ++r)
+            for (int c = 0; c < columns; ++c)
+                if (random.nextDouble() < density)
+                    m.set(r, c, random.nextInt(100) + 1);
+        return m;
+    }
+}
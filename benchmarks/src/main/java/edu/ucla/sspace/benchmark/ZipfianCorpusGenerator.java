@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * A generator of synthetic text corpora whose word frequencies follow a <a
+ * href="http://en.wikipedia.org/wiki/Zipf's_law">Zipfian distribution</a>, as
+ * is the case for natural language.  The word with rank {@code r} occurs with
+ * probability proportional to 1 / r<sup>s</sup>, where {@code s} is the
+ * exponent of the distribution.  Each rank is mapped to a unique lower case
+ * pseudo-word, so the generated text is accepted by the default tokenizer of
+ * {@link edu.ucla.sspace.text.IteratorFactory}.
+ *
+ * <p> The generator is fully determined by its parameters and seed, which
+ * makes the benchmarks that use it reproducible without access to a real
+ * corpus.  This class may also be run from the command line to write a corpus
+ * to a file with one document per line, which is suitable as input for the
+ * {@code --docFile} option of the main classes.
+ */
+public class ZipfianCorpusGenerator {
+
+    /**
+     * The default exponent, which approximates the word frequencies of
+     * English.
+     */
+    public static final double DEFAULT_EXPONENT = 1.07;
+
+    /**
+     * The cumulative probability of each rank, where the probability of
+     * sampling a rank {@code r} is {@code cdf[r] - cdf[r-1]}.
+     */
+    private final double[] cdf;
+
+    /**
+     * The word for each rank.
+     */
+    private final String[] words;
+
+    /**
+     * The source of randomness for sampling words.
+     */
+    private final Random random;
+
+    /**
+     * Creates a new generator with the specified vocabulary size using the
+     * {@link #DEFAULT_EXPONENT default exponent}.
+     */
+    public ZipfianCorpusGenerator(int vocabularySize, long seed) {
+        this(vocabularySize, DEFAULT_EXPONENT, seed);
+    }
+
+    /**
+     * Creates a new generator.
+     *
+     * @param vocabularySize the number of unique words that may be generated
+     * @param exponent the exponent of the Zipfian distribution, where larger
+     *        values concentrate more of the probability on the most frequent
+     *        words
+     * @param seed the seed used to sample words
+     *
+     * @throws IllegalArgumentException if the vocabulary size or exponent is
+     *         not positive
+     */
+    public ZipfianCorpusGenerator(int vocabularySize, double exponent,
+                                  long seed) {
+        if (vocabularySize < 1)
+            throw new IllegalArgumentException(
+                "Vocabulary size must be positive: " + vocabularySize);
+        if (exponent <= 0)
+            throw new IllegalArgumentException(
+                "Exponent must be positive: " + exponent);
+        cdf = new double[vocabularySize];
+        words = new String[vocabularySize];
+        double sum = 0;
+        for (int r = 0; r < vocabularySize; ++r) {
+            sum += 1d / Math.pow(r + 1, exponent);
+            cdf[r] = sum;
+            words[r] = word(r);
+        }
+        for (int r = 0; r < vocabularySize; ++r)
+            cdf[r] /= sum;
+        random = new Random(seed);
+    }
+
+    /**
+     * Returns the pseudo-word for the zero-based rank, which is the rank
+     * written in base 26 using the letters {@code a} through {@code z}.
+     */
+    public static String word(int rank) {
+        StringBuilder sb = new StringBuilder();
+        int r = rank;
+        do {
+            sb.append((char)('a' + (r % 26)));
+            r = r / 26 - 1;
+        } while (r >= 0);
+        return sb.reverse().toString();
+    }
+
+    /**
+     * Returns the number of unique words that may be generated.
+     */
+    public int vocabularySize() {
+        return words.length;
+    }
+
+    /**
+     * Returns the zero-based rank of the next sampled word.
+     */
+    public int nextRank() {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        // A negative value is the encoded insertion point, which is the rank
+        // whose cumulative probability first exceeds the sample
+        return Math.min((i >= 0) ? i : -(i + 1), cdf.length - 1);
+    }
+
+    /**
+     * Returns the next sampled word.
+     */
+    public String nextWord() {
+        return words[nextRank()];
+    }
+
+    /**
+     * Returns a document containing the specified number of sampled words,
+     * separated by spaces.
+     */
+    public String nextDocument(int numWords) {
+        StringBuilder sb = new StringBuilder(numWords * 6);
+        for (int i = 0; i < numWords; ++i) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(nextWord());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a list of documents that each contain the specified number of
+     * sampled words.
+     */
+    public List<String> nextDocuments(int numDocuments, int wordsPerDocument) {
+        List<String> docs = new ArrayList<String>(numDocuments);
+        for (int i = 0; i < numDocuments; ++i)
+            docs.add(nextDocument(wordsPerDocument));
+        return docs;
+    }
+
+    /**
+     * Writes the specified number of documents to the file, one document per
+     * line.
+     */
+    public void writeCorpus(File output, int numDocuments,
+                            int wordsPerDocument) throws IOException {
+        PrintWriter pw = new PrintWriter(output, "UTF-8");
+        for (int i = 0; i < numDocuments; ++i)
+            pw.println(nextDocument(wordsPerDocument));
+        pw.close();
+    }
+
+    /**
+     * Writes a synthetic corpus to a file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println(
+                "usage: java ZipfianCorpusGenerator output-file num-docs " +
+                "words-per-doc vocabulary-size [exponent] [seed]");
+            return;
+        }
+        File output = new File(args[0]);
+        int numDocs = Integer.parseInt(args[1]);
+        int docLength = Integer.parseInt(args[2]);
+        int vocabSize = Integer.parseInt(args[3]);
+        double exponent = (args.length > 4)
+            ? Double.parseDouble(args[4]) : DEFAULT_EXPONENT;
+        long seed = (args.length > 5) ? Long.parseLong(args[5]) : 0;
+        new ZipfianCorpusGenerator(vocabSize, exponent, seed)
+            .writeCorpus(output, numDocs, docLength);
+    }
+}
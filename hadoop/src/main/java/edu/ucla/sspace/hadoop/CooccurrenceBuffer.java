@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import java.io.IOException;
+
+import gnu.trove.iterator.TObjectIntIterator;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+
+/**
+ * A bounded, in-mapper combiner for {@link IntCooccurrenceWritable} counts.
+ * Rather than writing a record for every co-occurrence in a document, a {@code
+ * Mapper} adds each co-occurrence to this buffer, which sums the counts for
+ * identical co-occurrences in memory and writes the sums once the buffer holds
+ * too many distinct co-occurrences, or when {@link #flush(TaskInputOutputContext)
+ * flush} is called from the mapper's {@code cleanup} method.  Because the word
+ * frequencies in a corpus follow a Zipfian distribution, most co-occurrences
+ * are repeated many times within a single map task, which substantially
+ * reduces the amount of data that must be sorted and shuffled to the reducers.
+ *
+ * <p>This class defines the following configurable properties that may be set
+ * using {@link java.util.Properties Properties} constructor to {@link
+ * HadoopJob}.
+ *
+ * <dl style="margin-left: 1em">
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #MAX_ENTRIES_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@value #DEFAULT_MAX_ENTRIES}
+ *
+ * <dd style="padding-top: .5em">This property sets the maximum number of
+ *      distinct co-occurrences that are buffered before the counts are written
+ *      to the context. <p>
+ *
+ * </dl>
+ *
+ * <p> This class is not thread safe.
+ */
+public class CooccurrenceBuffer {
+
+    /**
+     * The property used to set the maximum number of distinct co-occurrences
+     * held in memory.
+     */
+    public static final String MAX_ENTRIES_PROPERTY =
+        "edu.ucla.sspace.hadoop.CooccurrenceBuffer.maxEntries";
+
+    /**
+     * The default maximum number of distinct co-occurrences.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 20;
+
+    /**
+     * The maximum number of distinct co-occurrences before the buffer is
+     * flushed.
+     */
+    private final int maxEntries;
+
+    /**
+     * The count for each buffered co-occurrence.
+     */
+    private final TObjectIntHashMap<IntCooccurrenceWritable> counts;
+
+    /**
+     * A reusable key for looking up whether a co-occurrence is already
+     * buffered.  A copy is only made when a new co-occurrence is added.
+     */
+    private final IntCooccurrenceWritable probe;
+
+    /**
+     * A reusable value for writing the counts.
+     */
+    private final IntWritable count;
+
+    /**
+     * Creates a {@code CooccurrenceBuffer} using the maximum size specified in
+     * the configuration.
+     */
+    public CooccurrenceBuffer(Configuration conf) {
+        this(conf.getInt(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * Creates a {@code CooccurrenceBuffer} that holds at most {@code
+     * maxEntries} distinct co-occurrences.
+     */
+    public CooccurrenceBuffer(int maxEntries) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException(
+                "Buffer must hold at least one entry: " + maxEntries);
+        this.maxEntries = maxEntries;
+        counts = new TObjectIntHashMap<IntCooccurrenceWritable>(
+            Math.min(maxEntries, 1 << 16));
+        probe = new IntCooccurrenceWritable();
+        count = new IntWritable();
+    }
+
+    /**
+     * Records a single co-occurrence of {@code other} at the relative position
+     * to {@code focus}, writing the buffered counts to the context if the
+     * buffer is full.
+     */
+    public void add(int focus, int other, int position,
+                    TaskInputOutputContext<?,?,IntCooccurrenceWritable,
+                                           IntWritable> context)
+            throws IOException, InterruptedException {
+        probe.set(focus, other, position);
+        if (!counts.adjustValue(probe, 1)) {
+            if (counts.size() >= maxEntries)
+                flush(context);
+            counts.put(new IntCooccurrenceWritable(focus, other, position), 1);
+        }
+    }
+
+    /**
+     * Returns the number of distinct co-occurrences currently buffered.
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * Writes all of the buffered co-occurrence counts to the context and
+     * empties the buffer.
+     */
+    public void flush(TaskInputOutputContext<?,?,IntCooccurrenceWritable,
+                                             IntWritable> context)
+            throws IOException, InterruptedException {
+        TObjectIntIterator<IntCooccurrenceWritable> it = counts.iterator();
+        while (it.hasNext()) {
+            it.advance();
+            count.set(it.value());
+            context.write(it.key(), count);
+        }
+        counts.clear();
+    }
+}
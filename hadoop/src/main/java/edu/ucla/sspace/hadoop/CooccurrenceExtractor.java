@@ -38,6 +38,10 @@ import java.util.Properties;
 import java.util.Queue;
 import java.util.Set;
 
+import gnu.trove.list.array.TIntArrayList;
+
+import gnu.trove.map.TObjectIntMap;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.*;
@@ -45,6 +49,8 @@ import org.apache.hadoop.mapreduce.lib.input.*;
 import org.apache.hadoop.mapreduce.lib.output.*;
 import org.apache.hadoop.util.*;
 
+import static edu.ucla.sspace.text.IteratorFactory.ITERATOR_FACTORY_PROPERTIES;
+
 
 /**
  * An common implementation that provides functionality for processing a {@link
@@ -109,6 +115,35 @@ public class CooccurrenceExtractor {
                                  DEFAULT_WINDOW_SIZE);
     }
  
+    /**
+     * Configures the {@link IteratorFactory} of the current task using the
+     * tokenizing properties in the configuration, and with a {@link
+     * HadoopResourceFinder} so that any resources used for tokenizing are
+     * located on the Hadoop file system.
+     */
+    public static void configureIteratorFactory(Configuration conf) {
+        Properties props = new Properties();
+        for (String property : ITERATOR_FACTORY_PROPERTIES) {
+            String propVal = conf.get(property);
+            if (propVal != null)
+                props.setProperty(property, propVal);
+        }
+        
+        // Create the ResourceFinder that the IteratorFactory will use to find
+        // the various files on HDFS
+        ResourceFinder hadoopRf = null;
+        try {
+            hadoopRf = new HadoopResourceFinder(conf);
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+
+        // Set the IteratorFactory to locate the resources and then have it
+        // reconfigure itself based on the user specified properties
+        IteratorFactory.setResourceFinder(hadoopRf);        
+        IteratorFactory.setProperties(props);
+    }
+
     /**
      * Takes the {@code document} and writes a set of tuples mapping a word to
      * the other words it co-occurs with and the relative position of those
@@ -198,4 +233,51 @@ public class CooccurrenceExtractor {
             }
         }    
     }
+
+    /**
+     * Takes the {@code document} and adds each co-occurrence to the buffer,
+     * where words are represented by their identifiers in {@code wordToId}.
+     * Words that are not in the mapping and empty tokens are not counted, but
+     * still occupy a position in the window, as with {@link
+     * #processDocument(Text, Mapper.Context)}.
+     *
+     * @param document the document that will be segmented into tokens and
+     *        mapped to cooccurrences
+     * @param wordToId the mapping from each word to its identifier, which
+     *        returns a negative value for unknown words
+     * @param buffer the buffer that will sum the co-occurrence counts
+     * @param context the context in which this mapper is executing
+     */
+    public void processDocument(Text document, TObjectIntMap<String> wordToId,
+            CooccurrenceBuffer buffer,
+            Mapper<?,?,IntCooccurrenceWritable,IntWritable>.Context context) 
+            throws IOException, InterruptedException {
+
+        // Map the document to the word identifiers, keeping a negative value
+        // in place of the tokens that are not counted so that the relative
+        // positions of the other words are preserved.
+        TIntArrayList ids = new TIntArrayList();
+        Iterator<String> documentTokens = 
+            IteratorFactory.tokenizeOrdered(document.toString());
+        while (documentTokens.hasNext()) {
+            String token = documentTokens.next();
+            ids.add(token.equals(IteratorFactory.EMPTY_TOKEN)
+                    || !wordToId.containsKey(token)
+                    ? -1 : wordToId.get(token));
+        }
+
+        int numTokens = ids.size();
+        for (int i = 0; i < numTokens; ++i) {
+            int focus = ids.getQuick(i);
+            if (focus < 0)
+                continue;
+            int start = Math.max(0, i - windowSize);
+            int end = Math.min(numTokens, i + windowSize + 1);
+            for (int j = start; j < end; ++j) {
+                int other = ids.getQuick(j);
+                if (j != i && other >= 0)
+                    buffer.add(focus, other, j - i, context);
+            }
+        }
+    }
 }
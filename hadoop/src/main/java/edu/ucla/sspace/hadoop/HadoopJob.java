@@ -102,6 +102,18 @@ public class HadoopJob {
      */
     private final Class<? extends Reducer> reducerClass;
 
+    /**
+     * The optional combiner class that will be used to combine the mapper
+     * output before it is sent to the reducers.
+     */
+    private Class<? extends Reducer> combinerClass;
+
+    /**
+     * The optional partitioner class that will be used to assign the mapper
+     * output to the reducers.
+     */
+    private Class<? extends Partitioner> partitionerClass;
+
     private final Class<?> mapperOutputKey;
 
     private final Class<?> mapperOutputValue;
@@ -164,6 +176,24 @@ public class HadoopJob {
         }
     }
 
+    /**
+     * Sets the {@link Reducer} used to combine the mapper output prior to it
+     * being sent to the reducers.  The combiner's input and output types must
+     * both be the mapper's output types.
+     */
+    public void setCombinerClass(Class<? extends Reducer> combinerClass) {
+        this.combinerClass = combinerClass;
+    }
+
+    /**
+     * Sets the {@link Partitioner} used to assign the mapper output to the
+     * reducers.
+     */
+    public void setPartitionerClass(
+            Class<? extends Partitioner> partitionerClass) {
+        this.partitionerClass = partitionerClass;
+    }
+
     /**
      * Exceutes the word co-occurrence counting job on the corpus files in the
      * input directory using the current Hadoop instance, returning an iterator
@@ -194,6 +224,10 @@ public class HadoopJob {
         job.setJarByClass(HadoopJob.class);
         job.setMapperClass(mapperClass);
         job.setReducerClass(reducerClass);
+        if (combinerClass != null)
+            job.setCombinerClass(combinerClass);
+        if (partitionerClass != null)
+            job.setPartitionerClass(partitionerClass);
 	
         job.setMapOutputKeyClass(mapperOutputKey);
         job.setMapOutputValueClass(mapperOutputValue);
@@ -217,7 +251,7 @@ public class HadoopJob {
             paths.add(status.getPath());
         }
         
-        return new HadoopJobResults(fs, paths);
+        return new HadoopJobResults(fs, paths, outputDirPath);
     }
 
     /**
@@ -46,13 +46,30 @@ public class HadoopJobResults {
      */
     private final Collection<Path> results;
 
+    /**
+     * The directory to which the job wrote its output, or {@code null} if it
+     * is not known
+     */
+    private final Path outputDir;
+
     /**
      * Creates a new job result containing all the specified paths that can be
      * accessed by the provided file system
      */
     public HadoopJobResults(FileSystem fs, Collection<Path> results) {
+        this(fs, results, null);
+    }
+
+    /**
+     * Creates a new job result containing all the specified paths, which were
+     * written to {@code outputDir}, that can be accessed by the provided file
+     * system
+     */
+    public HadoopJobResults(FileSystem fs, Collection<Path> results,
+                            Path outputDir) {
         this.fs = fs;
         this.results = results;
+        this.outputDir = outputDir;
     }
 
     /**
@@ -69,4 +86,13 @@ public class HadoopJobResults {
     public Collection<Path> getResults() {
         return results;
     }    
+
+    /**
+     * Returns the directory to which the job wrote its output, or {@code null}
+     * if it is not known.  Deleting this directory removes all of the job's
+     * results.
+     */
+    public Path getOutputDirectory() {
+        return outputDir;
+    }
 }
\ No newline at end of file
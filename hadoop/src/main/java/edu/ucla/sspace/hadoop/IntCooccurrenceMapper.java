@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import java.io.IOException;
+import java.io.IOError;
+
+import gnu.trove.map.TObjectIntMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+
+/**
+ * A {@link Mapper} implementation that maps the text values of a document to
+ * the word co-occurrences, where each word is represented by its identifier in
+ * the {@link Vocabulary} of the corpus.  Co-occurrences are summed in a {@link
+ * CooccurrenceBuffer} before being written, so each map task writes at most
+ * one record per distinct co-occurrence between flushes.  This class is
+ * intended to be used with the {@link
+ * org.apache.hadoop.mapreduce.lib.input.TextInputFormat TextInputFormat}; the
+ * input key values are not interpreted by this mapper, only the text values.
+ *
+ * <p>This class supports the properties of {@link CooccurrenceExtractor} and
+ * {@link CooccurrenceBuffer}, and requires that the {@value
+ * Vocabulary#PATH_PROPERTY} property be set.
+ *
+ * @see IntCooccurrenceReducer
+ */
+public class IntCooccurrenceMapper 
+        extends Mapper<LongWritable,Text,IntCooccurrenceWritable,IntWritable> {
+
+    /**
+     * The object responsible for performing all the tokenization and
+     * co-occurrence extraction from a {@link Text} object.
+     */
+    private CooccurrenceExtractor extractor;
+
+    /**
+     * The in-mapper combiner for the co-occurrence counts.
+     */
+    private CooccurrenceBuffer buffer;
+
+    /**
+     * The mapping from each word to its identifier.
+     */
+    private TObjectIntMap<String> wordToId;
+    
+    public IntCooccurrenceMapper() { }
+
+    /**
+     * Initializes all the properties for this particular mapper and loads the
+     * vocabulary.
+     */
+    protected void setup(Context context) {
+        Configuration conf = context.getConfiguration();
+        extractor = new CooccurrenceExtractor(conf);
+        buffer = new CooccurrenceBuffer(conf);
+        CooccurrenceExtractor.configureIteratorFactory(conf);
+        try {
+            wordToId = Vocabulary.readIndices(conf);
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Adds the co-occurrences in the {@code value} to the buffer.  The key to
+     * this method is ignored.
+     */
+    public void map(LongWritable key, Text value, Context context) 
+            throws IOException, InterruptedException {
+        extractor.processDocument(value, wordToId, buffer, context);
+    }
+
+    /**
+     * Writes any co-occurrence counts remaining in the buffer.
+     */
+    protected void cleanup(Context context)
+            throws IOException, InterruptedException {
+        buffer.flush(context);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import java.io.IOException;
+import java.io.IOError;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+
+/**
+ * A {@link Reducer} that sums the counts of each {@link
+ * IntCooccurrenceWritable} and writes the total using the words of the {@link
+ * Vocabulary}.  The output of this class is identical in format to that of
+ * {@link CooccurrenceReducer}.  Because the counts are summed, this class may
+ * be used with {@link
+ * org.apache.hadoop.mapreduce.lib.reduce.IntSumReducer IntSumReducer} as the
+ * combiner.
+ */
+public class IntCooccurrenceReducer
+    extends Reducer<IntCooccurrenceWritable,IntWritable,
+                    WordCooccurrenceWritable,IntWritable> {
+
+    /**
+     * The word for each identifier.
+     */
+    private Text[] words;
+
+    /**
+     * A reusable value for writing the counts.
+     */
+    private final IntWritable count;
+
+    public IntCooccurrenceReducer() {
+        count = new IntWritable();
+    }
+
+    /**
+     * Loads the vocabulary.
+     */
+    protected void setup(Context context) {
+        String[] vocabulary = null;
+        try {
+            vocabulary = Vocabulary.readWords(context.getConfiguration());
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+        words = new Text[vocabulary.length];
+        for (int i = 0; i < words.length; ++i)
+            words[i] = new Text(vocabulary[i]);
+    }
+
+    public void reduce(IntCooccurrenceWritable cooccurrence,
+                       Iterable<IntWritable> values, Context context)
+        throws IOException, InterruptedException {
+        int sum = 0;
+        for (IntWritable value : values)
+            sum += value.get();
+        count.set(sum);
+        context.write(new WordCooccurrenceWritable(
+                          words[cooccurrence.getFocus()],
+                          words[cooccurrence.getOther()],
+                          cooccurrence.getPosition()),
+                      count);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+
+/**
+ * A compact {@link WritableComparable} that records the co-occurrence of a
+ * focus word with another word at a relative position, where both words are
+ * represented by their integer identifiers in a {@link Vocabulary}.  Each
+ * instance is serialized as three fixed-width {@code int} values, which is
+ * much smaller than serializing the text of both words and allows instances
+ * to be compared without deserializing them, using the registered {@link
+ * Comparator}.
+ *
+ * <p> Instances are mutable so that a single instance may be reused when
+ * writing many co-occurrences.  Instances are ordered by their focus word, then
+ * by the co-occurring word and then by position.  Use {@link FocusPartitioner}
+ * to ensure that all the co-occurrences for a focus word are sent to the same
+ * reducer.
+ */
+public class IntCooccurrenceWritable
+        implements WritableComparable<IntCooccurrenceWritable> {
+
+    /**
+     * The number of bytes in the serialized form of an instance.
+     */
+    static final int SERIALIZED_SIZE = 12;
+
+    static {
+        WritableComparator.define(IntCooccurrenceWritable.class,
+                                  new Comparator());
+    }
+
+    /**
+     * The identifier of the focus word.
+     */
+    int focus;
+
+    /**
+     * The identifier of the co-occurring word.
+     */
+    int other;
+
+    /**
+     * The relative position of the co-occurring word from the focus word.
+     * Note that if this value is negative, the co-occurring word appeared
+     * <i>before</i> the focus word.
+     */
+    int position;
+
+    /**
+     * Creates an empty {@code IntCooccurrenceWritable}.  This constructor is
+     * only intended to be used by the Hadoop code for handling {@link
+     * org.apache.hadoop.io.Writable Writable} instances.
+     */
+    public IntCooccurrenceWritable() { }
+
+    /**
+     * Creates a new {@code IntCooccurrenceWritable} for the co-occurrence.
+     */
+    public IntCooccurrenceWritable(int focus, int other, int position) {
+        set(focus, other, position);
+    }
+
+    /**
+     * Sets the co-occurrence represented by this instance.
+     */
+    public void set(int focus, int other, int position) {
+        this.focus = focus;
+        this.other = other;
+        this.position = position;
+    }
+
+    /**
+     * Returns the identifier of the focus word.
+     */
+    public int getFocus() {
+        return focus;
+    }
+
+    /**
+     * Returns the identifier of the co-occurring word.
+     */
+    public int getOther() {
+        return other;
+    }
+
+    /**
+     * Returns the relative position of the co-occurring word.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Compares the focus words, co-occurring words and then positions of the
+     * two co-occurrences.
+     */
+    public int compareTo(IntCooccurrenceWritable o) {
+        if (focus != o.focus)
+            return (focus < o.focus) ? -1 : 1;
+        if (other != o.other)
+            return (other < o.other) ? -1 : 1;
+        if (position != o.position)
+            return (position < o.position) ? -1 : 1;
+        return 0;
+    }
+
+    public int hashCode() {
+        return (focus * 31 + other) * 31 + position;
+    }
+
+    /**
+     * Returns {@code true} if the object is the same co-occurrence.
+     */
+    public boolean equals(Object o) {
+        if (o instanceof IntCooccurrenceWritable) {
+            IntCooccurrenceWritable c = (IntCooccurrenceWritable)o;
+            return focus == c.focus && other == c.other
+                && position == c.position;
+        }
+        return false;
+    }
+
+    /**
+     * Deserializes the internal data from the provided stream.
+     */
+    public void readFields(DataInput in) throws IOException {
+        focus = in.readInt();
+        other = in.readInt();
+        position = in.readInt();
+    }
+
+    /**
+     * Serializes the internal data to the provided stream.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(focus);
+        out.writeInt(other);
+        out.writeInt(position);
+    }
+
+    /**
+     * Returns the identifiers and position, separated by tab characters.
+     */
+    public String toString() {
+        return focus + "\t" + other + "\t" + position;
+    }
+
+    /**
+     * A raw comparator that orders serialized {@code IntCooccurrenceWritable}
+     * instances without deserializing them.
+     */
+    public static class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(IntCooccurrenceWritable.class);
+        }
+
+        /**
+         * Compares the serialized focus words, co-occurring words and
+         * positions.
+         */
+        public int compare(byte[] b1, int s1, int l1,
+                           byte[] b2, int s2, int l2) {
+            for (int i = 0; i < SERIALIZED_SIZE; i += 4) {
+                int x = readInt(b1, s1 + i);
+                int y = readInt(b2, s2 + i);
+                if (x != y)
+                    return (x < y) ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * A {@link Partitioner} that assigns co-occurrences to reducers by their
+     * focus word only, so that each reducer's output contains all of the
+     * co-occurrences for its focus words.
+     */
+    public static class FocusPartitioner<V>
+            extends Partitioner<IntCooccurrenceWritable,V> {
+
+        public int getPartition(IntCooccurrenceWritable key, V value,
+                                int numPartitions) {
+            return (key.focus & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+}
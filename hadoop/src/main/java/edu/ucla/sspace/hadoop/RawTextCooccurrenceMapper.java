@@ -21,13 +21,7 @@
 
 package edu.ucla.sspace.hadoop;
 
-import edu.ucla.sspace.text.IteratorFactory;
-
-import edu.ucla.sspace.util.HadoopResourceFinder;
-import edu.ucla.sspace.util.ResourceFinder;
-
 import java.io.IOException;
-import java.io.IOError;
 
 import java.util.Properties;
 
@@ -39,8 +33,6 @@ import org.apache.hadoop.mapreduce.lib.input.*;
 import org.apache.hadoop.mapreduce.lib.output.*;
 import org.apache.hadoop.util.*;
 
-import static edu.ucla.sspace.text.IteratorFactory.ITERATOR_FACTORY_PROPERTIES;
-
 
 /**
  * A {@link Mapper} implementation that maps a the text values of a document to
@@ -92,27 +84,7 @@ public class RawTextCooccurrenceMapper
         Configuration conf = context.getConfiguration();
         extractor = new CooccurrenceExtractor(conf);
 
-        // Set up the IteratorFactory properties           
-        Properties props = new Properties();
-        for (String property : ITERATOR_FACTORY_PROPERTIES) {
-            String propVal = conf.get(property);
-            if (propVal != null)
-                props.setProperty(property, propVal);
-        }
-        
-        // Create the ResourceFinder that the IteratorFactory will use to find
-        // the various files on HDFS
-        ResourceFinder hadoopRf = null;
-        try {
-            hadoopRf = new HadoopResourceFinder(conf);
-        } catch (IOException ioe) {
-            throw new IOError(ioe);
-        }
-
-        // Set the IteratorFactory to locate the resources and then have it
-        // reconfigure itself based on the user specified properties
-        IteratorFactory.setResourceFinder(hadoopRf);        
-        IteratorFactory.setProperties(props);
+        CooccurrenceExtractor.configureIteratorFactory(conf);
     }
 
 
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.trove.map.TObjectIntMap;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+
+/**
+ * A utility for storing the mapping from words to their integer identifiers in
+ * the Hadoop file system so that it may be shared by all the {@code Mapper}
+ * and {@code Reducer} instances of a job.  The vocabulary is stored as a text
+ * file with one word per line, where the identifier of each word is its line
+ * number, starting at 0.  The location of the file is passed to each task
+ * using the {@value #PATH_PROPERTY} property.
+ *
+ * @see IntCooccurrenceWritable
+ */
+public class Vocabulary {
+
+    /**
+     * The property that specifies the path of the vocabulary file on the
+     * Hadoop file system.
+     */
+    public static final String PATH_PROPERTY =
+        "edu.ucla.sspace.hadoop.Vocabulary.path";
+
+    /**
+     * Uninstantiable
+     */
+    private Vocabulary() { }
+
+    /**
+     * Writes the words to the provided path, where the identifier of each
+     * word will be its position in the iteration order.
+     */
+    public static void write(FileSystem fs, Path path, Iterable<String> words)
+            throws IOException {
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+            fs.create(path, true), "UTF-8"));
+        for (String word : words)
+            pw.println(word);
+        pw.close();
+        if (pw.checkError())
+            throw new IOException("Unable to write vocabulary to " + path);
+    }
+
+    /**
+     * Returns the words in the vocabulary specified by the {@value
+     * #PATH_PROPERTY} property, where each word's index in the array is its
+     * identifier.
+     *
+     * @throws IllegalStateException if the configuration does not specify a
+     *         vocabulary
+     */
+    public static String[] readWords(Configuration conf) throws IOException {
+        final List<String> words = new ArrayList<String>();
+        read(conf, new WordHandler() {
+                public void handle(String word, int id) {
+                    words.add(word);
+                }
+            });
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * Returns the mapping from each word in the vocabulary specified by the
+     * {@value #PATH_PROPERTY} property to its identifier.  Words that are not
+     * in the vocabulary are mapped to {@code -1}.
+     *
+     * @throws IllegalStateException if the configuration does not specify a
+     *         vocabulary
+     */
+    public static TObjectIntMap<String> readIndices(Configuration conf)
+            throws IOException {
+        final TObjectIntMap<String> wordToId =
+            new TObjectIntHashMap<String>(1 << 16, .5f, -1);
+        read(conf, new WordHandler() {
+                public void handle(String word, int id) {
+                    wordToId.put(word, id);
+                }
+            });
+        return wordToId;
+    }
+
+    /**
+     * Reads each word in the vocabulary file and passes it to the handler.
+     */
+    private static void read(Configuration conf, WordHandler handler)
+            throws IOException {
+        String location = conf.get(PATH_PROPERTY);
+        if (location == null)
+            throw new IllegalStateException(
+                "No vocabulary was specified with " + PATH_PROPERTY);
+        Path path = new Path(location);
+        FileSystem fs = path.getFileSystem(conf);
+        BufferedReader br = new BufferedReader(
+            new InputStreamReader(fs.open(path), "UTF-8"));
+        int id = 0;
+        for (String line = null; (line = br.readLine()) != null; )
+            handler.handle(line, id++);
+        br.close();
+    }
+
+    /**
+     * A callback for each word read from the vocabulary.
+     */
+    private interface WordHandler {
+        void handle(String word, int id);
+    }
+}
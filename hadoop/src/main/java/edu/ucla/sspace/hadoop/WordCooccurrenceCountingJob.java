@@ -47,14 +47,17 @@ import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Properties;
@@ -64,12 +67,15 @@ import java.util.Set;
 
 import java.util.logging.Logger;
 
+import gnu.trove.map.hash.TObjectIntHashMap;
+
 import org.apache.hadoop.fs.*;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.*;
 import org.apache.hadoop.mapreduce.lib.input.*;
 import org.apache.hadoop.mapreduce.lib.output.*;
+import org.apache.hadoop.mapreduce.lib.reduce.IntSumReducer;
 import org.apache.hadoop.util.*;
 
 /**
@@ -78,8 +84,35 @@ import org.apache.hadoop.util.*;
  * underlying co-occurrence counting logic for other semantic space algorithms
  * that use the oc-occurrences to build their final representations.
  *
+ * <p> The co-occurrences are counted using two jobs.  The first job counts
+ * the words in the corpus, which are then assigned integer identifiers in
+ * order of descending frequency and stored as a {@link Vocabulary}.  The
+ * second job counts the co-occurrences as {@link IntCooccurrenceWritable}
+ * instances, which are summed within each mapper by a {@link
+ * CooccurrenceBuffer} and by a combiner, so that far less data is sorted and
+ * shuffled than when the words themselves are used as keys.  The output of
+ * the second job uses the words, so the co-occurrences returned by {@link
+ * #execute(Collection) execute} are unchanged.
+ *
+ * <p>This class defines the following configurable properties that may be set
+ * using {@link Properties} constructor.  In addition, the properties of {@link
+ * CooccurrenceExtractor} and {@link CooccurrenceBuffer} are passed to the
+ * jobs.
+ *
+ * <dl style="margin-left: 1em">
  *
+ * <dt> <i>Property:</i> <code><b>{@value #COMPRESS_INTERMEDIATE_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code false}
  *
+ * <dd style="padding-top: .5em">If {@code true}, the mapper output is
+ *      compressed before being sent to the reducers.  Unless the {@value
+ *      #MAP_OUTPUT_CODEC_PROPERTY} property is set, the {@link
+ *      org.apache.hadoop.io.compress.DefaultCodec DefaultCodec} is used, which
+ *      does not require any native libraries and therefore also works with
+ *      Hadoop's local job runner. <p>
+ *
+ * </dl>
  *
  * <p> This class is not thread safe.
  *
@@ -87,7 +120,35 @@ import org.apache.hadoop.util.*;
  */
 public class WordCooccurrenceCountingJob {
 
-    private final HadoopJob job;
+    /**
+     * The property for specifying whether the intermediate mapper output
+     * should be compressed.
+     */
+    public static final String COMPRESS_INTERMEDIATE_PROPERTY =
+        "edu.ucla.sspace.hadoop.WordCooccurrenceCountingJob.compressIntermediate";
+
+    /**
+     * The Hadoop property for enabling the compression of the mapper output.
+     */
+    static final String COMPRESS_MAP_OUTPUT_PROPERTY =
+        "mapred.compress.map.output";
+
+    /**
+     * The Hadoop property for the codec used to compress the mapper output.
+     */
+    static final String MAP_OUTPUT_CODEC_PROPERTY =
+        "mapred.map.output.compression.codec";
+
+    /**
+     * The Hadoop property for the base directory of temporary files, under
+     * which the vocabulary is written.
+     */
+    static final String TMP_DIR_PROPERTY = "hadoop.tmp.dir";
+
+    /**
+     * The properties passed to both jobs.
+     */
+    private final Properties props;
    
     /**
      * Creates a {@code WordCooccurrenceCountingJob} using the System properties
@@ -102,14 +163,17 @@ public class WordCooccurrenceCountingJob {
      * properties for configuring the parameters.
      */
     public WordCooccurrenceCountingJob(Properties props) {
-        job = new HadoopJob(
-            RawTextCooccurrenceMapper.class, 
-            Text.class,                     // mapper output key class
-            TextIntWritable.class,          // mapper output value class
-            CooccurrenceReducer.class, 
-            WordCooccurrenceWritable.class, // output key class
-            IntWritable.class,              // output value class
-            props);
+        this.props = new Properties();
+        for (String prop : props.stringPropertyNames())
+            this.props.setProperty(prop, props.getProperty(prop));
+
+        if (Boolean.parseBoolean(
+                props.getProperty(COMPRESS_INTERMEDIATE_PROPERTY))) {
+            this.props.setProperty(COMPRESS_MAP_OUTPUT_PROPERTY, "true");
+            if (props.getProperty(MAP_OUTPUT_CODEC_PROPERTY) == null)
+                this.props.setProperty(MAP_OUTPUT_CODEC_PROPERTY,
+                    "org.apache.hadoop.io.compress.DefaultCodec");
+        }
     }
 
     /**
@@ -132,11 +196,92 @@ public class WordCooccurrenceCountingJob {
     public Iterator<WordCooccurrence> execute(Collection<String> inputDirs)
             throws Exception {
 
-        HadoopJobResults results = job.run(inputDirs);
+        // Count the words in order to assign each an integer identifier
+        HadoopJob countJob = new HadoopJob(
+            WordCountMapper.class, 
+            Text.class,                     // mapper output key class
+            IntWritable.class,              // mapper output value class
+            IntSumReducer.class, 
+            Text.class,                     // output key class
+            IntWritable.class,              // output value class
+            props);
+        countJob.setCombinerClass(IntSumReducer.class);
+        HadoopJobResults counts = countJob.run(inputDirs);
+        FileSystem fs = counts.getFileSystem();
+        // The word counts and the vocabulary are only needed while the
+        // co-occurrences are counted, so write the vocabulary with the other
+        // temporary files and remove both once the job finishes
+        Path countsPath = counts.getOutputDirectory();
+        Path vocabularyPath = fs.makeQualified(
+            new Path(fs.getConf().get(TMP_DIR_PROPERTY),
+                     "vocabulary-" + System.currentTimeMillis()));
+        fs.deleteOnExit(countsPath);
+        fs.deleteOnExit(vocabularyPath);
+
+        Properties cooccurrenceProps = new Properties();
+        for (String prop : props.stringPropertyNames())
+            cooccurrenceProps.setProperty(prop, props.getProperty(prop));
+        cooccurrenceProps.setProperty(
+            Vocabulary.PATH_PROPERTY, vocabularyPath.toString());
+
+        HadoopJob cooccurrenceJob = new HadoopJob(
+            IntCooccurrenceMapper.class, 
+            IntCooccurrenceWritable.class,  // mapper output key class
+            IntWritable.class,              // mapper output value class
+            IntCooccurrenceReducer.class, 
+            WordCooccurrenceWritable.class, // output key class
+            IntWritable.class,              // output value class
+            cooccurrenceProps);
+        cooccurrenceJob.setCombinerClass(IntSumReducer.class);
+        // Ensure that all of a word's co-occurrences are written by the same
+        // reducer, which keeps them contiguous in the output
+        cooccurrenceJob.setPartitionerClass(
+            IntCooccurrenceWritable.FocusPartitioner.class);
+
+        HadoopJobResults results;
+        try {
+            Vocabulary.write(fs, vocabularyPath, 
+                             sortByFrequency(fs, counts.getResults()));
+            results = cooccurrenceJob.run(inputDirs);
+        } finally {
+            fs.delete(vocabularyPath, false);
+            fs.delete(countsPath, true);
+        }
         return new WordCooccurrenceIterator(
             results.getFileSystem(), results.getResults().iterator());
     }
 
+    /**
+     * Returns the words in the output files of the word counting job, sorted
+     * in order of descending frequency.
+     */
+    private static List<String> sortByFrequency(FileSystem fs, 
+                                                Collection<Path> files)
+            throws IOException {
+        final TObjectIntHashMap<String> wordCounts =
+            new TObjectIntHashMap<String>();
+        for (Path file : files) {
+            BufferedReader br = new BufferedReader(
+                new InputStreamReader(fs.open(file), "UTF-8"));
+            for (String line = null; (line = br.readLine()) != null; ) {
+                int tab = line.lastIndexOf('\t');
+                wordCounts.put(line.substring(0, tab),
+                               Integer.parseInt(line.substring(tab + 1)));
+            }
+            br.close();
+        }
+        List<String> words = new ArrayList<String>(wordCounts.keySet());
+        Collections.sort(words, new Comparator<String>() {
+                public int compare(String w1, String w2) {
+                    int c1 = wordCounts.get(w1);
+                    int c2 = wordCounts.get(w2);
+                    return (c1 != c2) ? ((c1 > c2) ? -1 : 1) 
+                        : w1.compareTo(w2);
+                }
+            });
+        return words;
+    }
+
     /**
      * An iterator over the output files from the {@link CooccurrenceReducer}
      * that returns the set of {@link WordCooccurrence} instances extracted from
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import edu.ucla.sspace.text.IteratorFactory;
+
+import java.io.IOException;
+
+import java.util.Iterator;
+
+import gnu.trove.iterator.TObjectIntIterator;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+
+/**
+ * A {@link Mapper} that counts the number of times each word occurs in the
+ * documents.  The counts are summed in memory for all the documents processed
+ * by the mapper, and are only written once the number of distinct words
+ * exceeds {@value CooccurrenceBuffer#MAX_ENTRIES_PROPERTY} or the mapper
+ * finishes.  This class is intended to be used with {@link
+ * org.apache.hadoop.mapreduce.lib.reduce.IntSumReducer IntSumReducer} to
+ * produce the vocabulary of a corpus.
+ *
+ * @see WordCooccurrenceCountingJob
+ */
+public class WordCountMapper 
+        extends Mapper<LongWritable,Text,Text,IntWritable> {
+
+    /**
+     * The counts of the words seen since the last time the counts were
+     * written.
+     */
+    private TObjectIntHashMap<String> wordCounts;
+
+    /**
+     * The maximum number of distinct words to buffer.
+     */
+    private int maxEntries;
+
+    public WordCountMapper() { }
+
+    /**
+     * Configures how the input documents will be tokenized.
+     */
+    protected void setup(Context context) {
+        Configuration conf = context.getConfiguration();
+        CooccurrenceExtractor.configureIteratorFactory(conf);
+        maxEntries = conf.getInt(CooccurrenceBuffer.MAX_ENTRIES_PROPERTY,
+                                 CooccurrenceBuffer.DEFAULT_MAX_ENTRIES);
+        wordCounts = new TObjectIntHashMap<String>();
+    }
+
+    /**
+     * Counts the tokens in the {@code value}.  The key to this method is
+     * ignored.
+     */
+    public void map(LongWritable key, Text value, Context context) 
+            throws IOException, InterruptedException {
+        Iterator<String> tokens = 
+            IteratorFactory.tokenizeOrdered(value.toString());
+        while (tokens.hasNext()) {
+            String token = tokens.next();
+            if (token.equals(IteratorFactory.EMPTY_TOKEN))
+                continue;
+            if (!wordCounts.adjustValue(token, 1)) {
+                if (wordCounts.size() >= maxEntries)
+                    flush(context);
+                wordCounts.put(token, 1);
+            }
+        }
+    }
+
+    /**
+     * Writes any remaining word counts.
+     */
+    protected void cleanup(Context context)
+            throws IOException, InterruptedException {
+        flush(context);
+    }
+
+    /**
+     * Writes the buffered word counts to the context.
+     */
+    private void flush(Context context)
+            throws IOException, InterruptedException {
+        Text word = new Text();
+        IntWritable count = new IntWritable();
+        TObjectIntIterator<String> it = wordCounts.iterator();
+        while (it.hasNext()) {
+            it.advance();
+            word.set(it.key());
+            count.set(it.value());
+            context.write(word, count);
+        }
+        wordCounts.clear();
+    }
+}
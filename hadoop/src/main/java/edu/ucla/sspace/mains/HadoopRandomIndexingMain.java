@@ -84,6 +84,10 @@ public class HadoopRandomIndexingMain extends HadoopGenericMain {
         options.addOption('L', "loadVectors", "load word-to-IndexVector mapping"
                           + " before processing", true,
                           "FILE", "Algorithm Options");        
+        options.addOption('t', "threads", "the number of threads used to " +
+                          "build the semantic vectors after the Hadoop job " +
+                          "completes (default: all processors)", true,
+                          "INT", "Program Options");
     }
 
     public static void main(String[] args) {
@@ -152,6 +156,11 @@ public class HadoopRandomIndexingMain extends HadoopGenericMain {
                               argOptions.getStringOption("useSparseSemantics"));
         }
 
+        if (argOptions.hasOption("threads")) {
+            props.setProperty(HadoopRandomIndexing.THREADS_PROPERTY,
+                              argOptions.getStringOption("threads"));
+        }
+
         return props;
     }
 
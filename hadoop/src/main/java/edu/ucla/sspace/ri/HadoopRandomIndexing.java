@@ -37,6 +37,7 @@ import edu.ucla.sspace.index.TernaryPermutationFunction;
 import edu.ucla.sspace.text.IteratorFactory;
 
 import edu.ucla.sspace.util.GeneratorMap;
+import edu.ucla.sspace.util.WorkQueue;
 
 import edu.ucla.sspace.vector.CompactSparseIntegerVector;
 import edu.ucla.sspace.vector.DenseIntVector;
@@ -55,10 +56,12 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Queue;
@@ -67,6 +70,9 @@ import java.util.Set;
 
 import java.util.concurrent.ConcurrentHashMap;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -134,6 +140,15 @@ import org.apache.hadoop.util.*;
  *       in a large saving in memory, while requiring more time to process each
  *       document.<p>
  *
+ * <dt> <i>Property:</i> <code><b>{@value #THREADS_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> the number of available processors
+ *
+ * <dd style="padding-top: .5em">This property specifies the number of threads
+ *       used to build the semantic vectors from the co-occurrences counted by
+ *       Hadoop.  Each word's vector is built by a single thread, so the
+ *       vectors for different words are built concurrently.<p>
+ *
  * </dl> <p>
  *
  * @see RandomIndexing
@@ -185,6 +200,13 @@ public class HadoopRandomIndexing {
     public static final String USE_SPARSE_SEMANTICS_PROPERTY = 
         PROPERTY_PREFIX + ".sparseSemantics";
 
+    /**
+     * The property to specify the number of threads used to build the semantic
+     * vectors.
+     */
+    public static final String THREADS_PROPERTY = 
+        PROPERTY_PREFIX + ".threads";
+
     /**
      * The default number of words to view before and after each word in focus.
      */
@@ -196,6 +218,14 @@ public class HadoopRandomIndexing {
      */
     public static final int DEFAULT_VECTOR_LENGTH = 4000;
 
+    /**
+     * The number of co-occurrences to read before the words they contain are
+     * handed to the threads building the semantic vectors.  At most two
+     * batches are held in memory at once: one being built and the next being
+     * read.
+     */
+    private static final int BATCH_SIZE = 1 << 18;
+
     /**
      * A mapping from each word to its associated index vector
      */
@@ -236,6 +266,11 @@ public class HadoopRandomIndexing {
      */
     private final Set<String> semanticFilter;
 
+    /**
+     * The number of threads used to build the semantic vectors.
+     */
+    private final int numThreads;
+
     /**
      * Creates an instance of {@code HadoopRandomIndexing} using the system
      * properties for setting the configuratons.
@@ -284,6 +319,11 @@ public class HadoopRandomIndexing {
         wordToIndexVector = new GeneratorMap<TernaryVector>(
                 indexVectorGenerator);
         semanticFilter = new HashSet<String>();
+
+        String threadsProp = properties.getProperty(THREADS_PROPERTY);
+        numThreads = (threadsProp != null)
+            ? Integer.parseInt(threadsProp)
+            : Runtime.getRuntime().availableProcessors();
     }
 
 
@@ -340,34 +380,65 @@ public class HadoopRandomIndexing {
             new WordCooccurrenceCountingJob(props);
         Iterator<WordCooccurrence> occurrences = job.execute(inputDirs);
         LOGGER.info("Finished Hadoop corpus processing; calculating sspace");
-        int wordCount =  0;
-        // Local state variables for updating the current word's vector.
-        String curWord = null;
-        IntegerVector semantics = null;
+
+        // The co-occurrences for each word are contiguous, so group them by
+        // word and build each word's vector in parallel.  Reading the next
+        // batch of words overlaps with building the vectors for the prior one.
+        WorkQueue workQueue = WorkQueue.getWorkQueue(numThreads);
+        VectorAssembly assembly = new VectorAssembly(writer);
+        Object pendingBatch = null;
+        List<List<WordCooccurrence>> batch =
+            new ArrayList<List<WordCooccurrence>>();
+        List<WordCooccurrence> wordOccurrences = null;
+        int batchOccurrences = 0;
         while (occurrences.hasNext()) {
             WordCooccurrence occ = occurrences.next();
-            String word = occ.focusWord();
-            // Base case for the first word seen
-            if (curWord == null) {
-                curWord = word;
-                semantics = createSemanticVector();
-            }
-            // If we've seen a new word, write the previous word's vector
-            else if (!curWord.equals(word)) {
-                writer.write(curWord, semantics);
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.fine(String.format(
-                        "processed word #%d: %s%n ", ++wordCount, curWord));
+            if (wordOccurrences == null || !wordOccurrences.get(0).focusWord()
+                    .equals(occ.focusWord())) {
+                // Only start a new batch on word boundaries so that each word's
+                // vector is built by a single task
+                if (batchOccurrences >= BATCH_SIZE) {
+                    pendingBatch = submitBatch(
+                        workQueue, pendingBatch, batch, assembly);
+                    batch = new ArrayList<List<WordCooccurrence>>();
+                    batchOccurrences = 0;
                 }
-                curWord = word;
-                semantics = createSemanticVector();
+                wordOccurrences = new ArrayList<WordCooccurrence>();
+                batch.add(wordOccurrences);
             }
+            wordOccurrences.add(occ);
+            batchOccurrences++;
+        }
+        pendingBatch = submitBatch(workQueue, pendingBatch, batch, assembly);
+        workQueue.await(pendingBatch);
+        assembly.checkError();
+        writer.close();
+    }
 
-            // Check if this is the last word, if yes then write
-            if(!occurrences.hasNext()) {
-                writer.write(curWord, semantics);
-            }
+    /**
+     * Waits for the previously submitted batch to finish and then adds tasks to
+     * build the vectors of the words in {@code batch}, returning the task group
+     * of the new batch.
+     */
+    private Object submitBatch(WorkQueue workQueue, Object pendingBatch,
+                               List<List<WordCooccurrence>> batch,
+                               VectorAssembly assembly)
+            throws IOException {
+        if (pendingBatch != null)
+            workQueue.await(pendingBatch);
+        assembly.checkError();
+        Object taskGroup = workQueue.registerTaskGroup(batch.size());
+        for (List<WordCooccurrence> wordOccurrences : batch)
+            workQueue.add(taskGroup, assembly.new Task(wordOccurrences));
+        return taskGroup;
+    }
 
+    /**
+     * Returns the semantic vector for the co-occurrences of a single word.
+     */
+    private IntegerVector buildVector(List<WordCooccurrence> occurrences) {
+        IntegerVector semantics = createSemanticVector();
+        for (WordCooccurrence occ : occurrences) {
             // NOTE: because we are using a GeneratorMap, this call will create
             // a new index vector for the word if it didn't exist prior.
             TernaryVector indexVector = 
@@ -382,7 +453,7 @@ public class HadoopRandomIndexing {
             VectorMath.addWithScalars(
                 semantics, 1, indexVector, occ.getCount());
         }
-        writer.close();
+        return semantics;
     }
 
     /**
@@ -411,4 +482,70 @@ public class HadoopRandomIndexing {
         wordToIndexVector.clear();
         wordToIndexVector.putAll(m);
     }
-}
\ No newline at end of file
+
+    /**
+     * The shared state of the tasks that build and write the semantic vectors.
+     */
+    private class VectorAssembly {
+
+        /**
+         * The writer of the semantic space, which is thread safe.
+         */
+        private final SemanticSpaceWriter writer;
+
+        /**
+         * The number of words whose vectors have been written.
+         */
+        private final AtomicInteger wordCount;
+
+        /**
+         * The first error raised while writing a vector, if any.
+         */
+        private final AtomicReference<IOException> error;
+
+        public VectorAssembly(SemanticSpaceWriter writer) {
+            this.writer = writer;
+            wordCount = new AtomicInteger();
+            error = new AtomicReference<IOException>();
+        }
+
+        /**
+         * Rethrows the first error raised by any task.
+         */
+        public void checkError() throws IOException {
+            IOException ioe = error.get();
+            if (ioe != null)
+                throw ioe;
+        }
+
+        /**
+         * A task that builds and writes the semantic vector of a single word.
+         */
+        class Task implements Runnable {
+
+            private final List<WordCooccurrence> occurrences;
+
+            public Task(List<WordCooccurrence> occurrences) {
+                this.occurrences = occurrences;
+            }
+
+            public void run() {
+                if (error.get() != null)
+                    return;
+                String word = occurrences.get(0).focusWord();
+                IntegerVector semantics = buildVector(occurrences);
+                try {
+                    writer.write(word, semantics);
+                } catch (IOException ioe) {
+                    error.compareAndSet(null, ioe);
+                    return;
+                }
+                int count = wordCount.incrementAndGet();
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(String.format(
+                        "processed word #%d: %s%n ", count, word));
+                }
+            }
+        }
+    }
+}
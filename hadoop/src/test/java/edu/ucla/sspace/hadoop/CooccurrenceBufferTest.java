@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link CooccurrenceBuffer} class.
+ */
+public class CooccurrenceBufferTest {
+
+    /**
+     * A context that records the counts written to it, summing any counts
+     * written for the same co-occurrence.
+     */
+    static class RecordingContext
+            extends TaskInputOutputContext<Object,Object,
+                                           IntCooccurrenceWritable,
+                                           IntWritable> {
+
+        final Map<IntCooccurrenceWritable,Integer> counts;
+
+        int writes;
+
+        public RecordingContext() {
+            this(new HashMap<IntCooccurrenceWritable,Integer>());
+        }
+
+        private RecordingContext(
+                final Map<IntCooccurrenceWritable,Integer> counts) {
+            super(new Configuration(), new TaskAttemptID(),
+                  new RecordWriter<IntCooccurrenceWritable,IntWritable>() {
+                      public void write(IntCooccurrenceWritable key,
+                                        IntWritable value) {
+                          // Copy the key and value, which may be reused
+                          IntCooccurrenceWritable k =
+                              new IntCooccurrenceWritable(
+                                  key.getFocus(), key.getOther(),
+                                  key.getPosition());
+                          Integer c = counts.get(k);
+                          counts.put(k, (c == null)
+                                     ? value.get() : c + value.get());
+                      }
+                      public void close(TaskAttemptContext context) { }
+                  }, null, null);
+            this.counts = counts;
+        }
+
+        public void write(IntCooccurrenceWritable key, IntWritable value)
+                throws java.io.IOException, InterruptedException {
+            writes++;
+            super.write(key, value);
+        }
+
+        public boolean nextKeyValue() {
+            return false;
+        }
+
+        public Object getCurrentKey() {
+            return null;
+        }
+
+        public Object getCurrentValue() {
+            return null;
+        }
+
+        int count(int focus, int other, int position) {
+            Integer c = counts.get(
+                new IntCooccurrenceWritable(focus, other, position));
+            return (c == null) ? 0 : c;
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new CooccurrenceBuffer(0);
+    }
+
+    @Test public void testConfiguredSize() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setInt(CooccurrenceBuffer.MAX_ENTRIES_PROPERTY, 1);
+        CooccurrenceBuffer buffer = new CooccurrenceBuffer(conf);
+        RecordingContext context = new RecordingContext();
+        buffer.add(0, 1, 1, context);
+        buffer.add(0, 2, 1, context);
+        assertEquals(1, context.writes);
+        assertEquals(1, buffer.size());
+    }
+
+    @Test public void testSumsRepeatedCooccurrences() throws Exception {
+        CooccurrenceBuffer buffer = new CooccurrenceBuffer(10);
+        RecordingContext context = new RecordingContext();
+        for (int i = 0; i < 5; ++i)
+            buffer.add(1, 2, -1, context);
+        buffer.add(1, 2, 1, context);
+        buffer.add(2, 1, -1, context);
+        assertEquals(3, buffer.size());
+        assertEquals(0, context.writes);
+
+        buffer.flush(context);
+        assertEquals(0, buffer.size());
+        assertEquals(3, context.writes);
+        assertEquals(5, context.count(1, 2, -1));
+        assertEquals(1, context.count(1, 2, 1));
+        assertEquals(1, context.count(2, 1, -1));
+    }
+
+    @Test public void testFlushesAtMaximumSize() throws Exception {
+        CooccurrenceBuffer buffer = new CooccurrenceBuffer(2);
+        RecordingContext context = new RecordingContext();
+        buffer.add(0, 1, 1, context);
+        buffer.add(0, 1, 1, context);
+        buffer.add(0, 2, 1, context);
+
+        // Repeated co-occurrences are summed even when the buffer is full
+        buffer.add(0, 2, 1, context);
+        assertEquals(2, buffer.size());
+        assertEquals(0, context.writes);
+
+        // A new co-occurrence causes the full buffer to be written first
+        buffer.add(0, 3, 1, context);
+        assertEquals(2, context.writes);
+        assertEquals(1, buffer.size());
+        assertEquals(2, context.count(0, 1, 1));
+        assertEquals(2, context.count(0, 2, 1));
+        assertEquals(0, context.count(0, 3, 1));
+
+        // Counts for a co-occurrence that has already been written are added
+        // to the counts written before
+        buffer.add(0, 1, 1, context);
+        buffer.flush(context);
+        assertEquals(4, context.writes);
+        assertEquals(3, context.count(0, 1, 1));
+        assertEquals(2, context.count(0, 2, 1));
+        assertEquals(1, context.count(0, 3, 1));
+        assertEquals(0, buffer.size());
+    }
+}
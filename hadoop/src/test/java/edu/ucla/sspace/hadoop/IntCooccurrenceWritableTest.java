@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link IntCooccurrenceWritable} class.
+ */
+public class IntCooccurrenceWritableTest {
+
+    static byte[] serialize(IntCooccurrenceWritable c) throws Exception {
+        DataOutputBuffer out = new DataOutputBuffer();
+        c.write(out);
+        byte[] bytes = new byte[out.getLength()];
+        System.arraycopy(out.getData(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    static int sign(int i) {
+        return (i < 0) ? -1 : (i > 0) ? 1 : 0;
+    }
+
+    @Test public void testSerialization() throws Exception {
+        IntCooccurrenceWritable c = new IntCooccurrenceWritable(5, 7, -3);
+        byte[] bytes = serialize(c);
+        assertEquals(IntCooccurrenceWritable.SERIALIZED_SIZE, bytes.length);
+
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(bytes, bytes.length);
+        IntCooccurrenceWritable read = new IntCooccurrenceWritable();
+        read.readFields(in);
+        assertEquals(c, read);
+        assertEquals(c.hashCode(), read.hashCode());
+        assertEquals(5, read.getFocus());
+        assertEquals(7, read.getOther());
+        assertEquals(-3, read.getPosition());
+    }
+
+    @Test public void testComparatorIsRegistered() {
+        // Ensure the class is initialized, which registers the comparator
+        new IntCooccurrenceWritable();
+        assertTrue(WritableComparator.get(IntCooccurrenceWritable.class)
+                   instanceof IntCooccurrenceWritable.Comparator);
+    }
+
+    @Test public void testRawCompareMatchesCompareTo() throws Exception {
+        List<IntCooccurrenceWritable> cooccurrences =
+            new ArrayList<IntCooccurrenceWritable>();
+        int[] values = { 0, 1, 2, 255, 256, 65536, Integer.MAX_VALUE };
+        int[] positions = { Integer.MIN_VALUE, -256, -2, -1, 1, 2, 256 };
+        for (int focus : values)
+            for (int other : values)
+                for (int position : positions)
+                    cooccurrences.add(
+                        new IntCooccurrenceWritable(focus, other, position));
+        Random rand = new Random(0);
+        for (int i = 0; i < 200; ++i)
+            cooccurrences.add(new IntCooccurrenceWritable(
+                rand.nextInt(Integer.MAX_VALUE), rand.nextInt(1000),
+                rand.nextInt(21) - 10));
+
+        IntCooccurrenceWritable.Comparator comparator =
+            new IntCooccurrenceWritable.Comparator();
+        List<byte[]> serialized = new ArrayList<byte[]>();
+        for (IntCooccurrenceWritable c : cooccurrences)
+            serialized.add(serialize(c));
+
+        // Place the second serialized value at an offset within a larger
+        // array to ensure that the offsets are respected
+        byte[] padded = new byte[IntCooccurrenceWritable.SERIALIZED_SIZE + 3];
+        for (int i = 0; i < cooccurrences.size(); ++i) {
+            byte[] b1 = serialized.get(i);
+            for (int j = 0; j < cooccurrences.size(); j += 7) {
+                byte[] b2 = serialized.get(j);
+                System.arraycopy(b2, 0, padded, 3, b2.length);
+                int expected = sign(
+                    cooccurrences.get(i).compareTo(cooccurrences.get(j)));
+                int raw = comparator.compare(
+                    b1, 0, b1.length, padded, 3, b2.length);
+                assertEquals(cooccurrences.get(i) + " vs. " +
+                             cooccurrences.get(j), expected, sign(raw));
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hadoop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link WordCooccurrenceCountingJob} class, which run the jobs
+ * with Hadoop's local job runner.
+ */
+public class WordCooccurrenceCountingJobTest {
+
+    static final String[] CORPUS = {
+        "the quick brown fox jumps over the lazy dog",
+        "the lazy dog sleeps while the quick fox jumps",
+        "a fox and a dog",
+        "dog",
+    };
+
+    /**
+     * The directory holding the input and temporary files of a test.
+     */
+    private File workDir;
+
+    /**
+     * The job output directories that existed before the test was run.
+     */
+    private Set<File> existingOutput;
+
+    @Before public void setUp() throws Exception {
+        workDir = File.createTempFile("cooccurrence-job-test", "");
+        workDir.delete();
+        workDir.mkdir();
+        existingOutput = outputDirs();
+    }
+
+    @After public void tearDown() throws Exception {
+        // HadoopJob writes its output to the working directory, so remove any
+        // output created by the test
+        for (File dir : outputDirs())
+            if (!existingOutput.contains(dir))
+                FileUtil.fullyDelete(dir);
+        FileUtil.fullyDelete(workDir);
+    }
+
+    static Set<File> outputDirs() {
+        File[] dirs = new File(".").getAbsoluteFile().listFiles(
+            new FileFilter() {
+                public boolean accept(File f) {
+                    return f.isDirectory() && 
+                        f.getName().startsWith("output-");
+                }
+            });
+        Set<File> output = new HashSet<File>();
+        if (dirs != null)
+            Collections.addAll(output, dirs);
+        return output;
+    }
+
+    static String key(String focus, String other, int distance) {
+        return focus + "\t" + other + "\t" + distance;
+    }
+
+    @Test public void testCountsMatchTextKeyedJob() throws Exception {
+        File inputDir = new File(workDir, "input");
+        inputDir.mkdir();
+        PrintWriter pw = new PrintWriter(new File(inputDir, "corpus.txt"));
+        for (String doc : CORPUS)
+            pw.println(doc);
+        pw.close();
+        File tmpDir = new File(workDir, "tmp");
+
+        Properties props = new Properties();
+        props.setProperty("mapred.job.tracker", "local");
+        props.setProperty("fs.default.name", "file:///");
+        props.setProperty(WordCooccurrenceCountingJob.TMP_DIR_PROPERTY,
+                          tmpDir.getAbsolutePath());
+        // Use a small buffer so that the mappers write partial sums
+        props.setProperty(CooccurrenceBuffer.MAX_ENTRIES_PROPERTY, "4");
+        Collection<String> inputs =
+            Collections.singleton(inputDir.getAbsolutePath());
+
+        // Count the co-occurrences with the words as the keys
+        HadoopJob textJob = new HadoopJob(
+            RawTextCooccurrenceMapper.class, 
+            Text.class,
+            TextIntWritable.class,
+            CooccurrenceReducer.class, 
+            WordCooccurrenceWritable.class,
+            IntWritable.class,
+            props);
+        HadoopJobResults textResults = textJob.run(inputs);
+        FileSystem fs = textResults.getFileSystem();
+        Map<String,Integer> expected = new HashMap<String,Integer>();
+        for (Path file : textResults.getResults()) {
+            BufferedReader br = new BufferedReader(
+                new InputStreamReader(fs.open(file), "UTF-8"));
+            for (String line = null; (line = br.readLine()) != null; ) {
+                String[] arr = line.split("\t");
+                expected.put(key(arr[0], arr[1], Integer.parseInt(arr[2])),
+                             Integer.parseInt(arr[3]));
+            }
+            br.close();
+        }
+        assertFalse(expected.isEmpty());
+
+        Map<String,Integer> actual = new HashMap<String,Integer>();
+        Iterator<WordCooccurrence> it =
+            new WordCooccurrenceCountingJob(props).execute(inputs);
+        while (it.hasNext()) {
+            WordCooccurrence c = it.next();
+            String k = key(c.focusWord(), c.relativeWord(), c.getDistance());
+            // Each co-occurrence should only be reported once
+            assertNull(actual.put(k, c.getCount()));
+        }
+        assertEquals(expected, actual);
+
+        // Only the output of the two co-occurrence jobs should remain; the
+        // word counts used to build the vocabulary should have been removed
+        Set<File> created = outputDirs();
+        created.removeAll(existingOutput);
+        assertEquals(2, created.size());
+
+        // The vocabulary should have been removed once the job finished
+        File[] vocabularies = tmpDir.listFiles(new FileFilter() {
+                public boolean accept(File f) {
+                    return f.getName().startsWith("vocabulary-");
+                }
+            });
+        assertTrue(vocabularies == null || vocabularies.length == 0);
+    }
+}
@@ -21,11 +21,16 @@
 
 package edu.ucla.sspace.basis;
 
+import edu.ucla.sspace.util.ConcurrentIndexer;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -38,7 +43,13 @@ import java.util.Set;
  *
  * </p>
  *
- * All access to this {@link BasisMapping} is thread safe.
+ * All access to this {@link BasisMapping} is thread safe.  The mapping is
+ * backed by a {@link ConcurrentIndexer}, so looking up the dimension of a
+ * known key never locks, and new keys are assigned dimensions without a global
+ * lock.  The reverse mapping used by {@link #getDimensionDescription(int)} is
+ * maintained as keys are added and is a constant time lookup.  Mappings
+ * serialized when the mapping was backed by a {@link Map} are converted to the
+ * current form when they are deserialized.
  *
  * @author Keith Stevens
  */
@@ -48,64 +59,40 @@ public abstract class AbstractBasisMapping<T, K> implements BasisMapping<T, K>,
     private static final long serialVersionUID = 1L;
 
     /**
-     * The mapping from keys to dimension indices.
-     */
-    private Map<K, Integer> mapping;
-
-    /**
-     * A cache of the reverse {@code mapping} mapping.  This field is only
-     * updated on calls to {@link #getDimensionDescription(int)} when the
-     * mapping has chanaged since the previous call.
+     * The mapping from keys to dimension indices, which also maintains the
+     * reverse mapping.  This field is only reassigned when deserializing.
      */
-    transient private List<K> indexToKeyCache;
+    private ConcurrentIndexer<K> mapping;
 
     /**
      * Set to {@code true} when the {@link BasisMapping} should not create new
      * dimensions for unseen keys.
      */
-    private boolean readOnly;
+    private volatile boolean readOnly;
 
     /**
      * Creates a new {@link AbstractBasisMapping}.
      */
     public AbstractBasisMapping() {
-        mapping = new HashMap<K, Integer>();
+        mapping = new ConcurrentIndexer<K>();
         readOnly = false;
-        indexToKeyCache = new ArrayList<K>();
     }
 
     /**
      * {@inheritDoc}
      */
     public K getDimensionDescription(int dimension) {
-        if (dimension < 0 || dimension > mapping.size())
+        if (dimension < 0 || dimension > mapping.highestIndex())
             throw new IllegalArgumentException(
                 "invalid dimension: " + dimension);
-
-        // If the basis mapping was de-serialized, the mapping will be null, so
-        // re-set it.
-        if (indexToKeyCache == null)
-            indexToKeyCache = new ArrayList<K>();
-
-        // If the cache is out of date, rebuild the reverse mapping.
-        if (mapping.size() > indexToKeyCache.size()) {
-            // Lock to ensure safe iteration
-            synchronized(this) {
-                indexToKeyCache = new ArrayList<K>(mapping.size());
-                for (int i = 0; i < mapping.size(); ++i)
-                    indexToKeyCache.add(null);
-                for (Map.Entry<K,Integer> e : mapping.entrySet())
-                    indexToKeyCache.set(e.getValue(), e.getKey());
-            }
-        }
-        return indexToKeyCache.get(dimension);
+        return mapping.lookup(dimension);
     }
 
     /**
      * {@inheritDoc}
      */
     public Set<K> keySet() {
-        return mapping.keySet();
+        return mapping.items();
     }
 
     /**
@@ -114,39 +101,46 @@ public abstract class AbstractBasisMapping<T, K> implements BasisMapping<T, K>,
      *  new dimension.
      */
     protected int getDimensionInternal(K key) {
-        Integer index = mapping.get(key);
-        if (readOnly)
-            return (index == null) ? -1: index;
-
-        if (index == null) {     
-            synchronized(this) {
-                // Recheck to see if the key was added while blocking.
-                index = mapping.get(key);
-
-                // If another thread has not already added this key while the
-                // current thread was blocking waiting on the lock, then add it.
-                if (index == null) {
-                    int i = mapping.size();
-                    mapping.put(key, i);
-                    return i; // avoid the auto-boxing to assign i to index
-                }
-            }
-        }
-        return index;
+        return (readOnly) ? mapping.find(key) : mapping.index(key);
     }
 
     /**
-     * Returns the internal mapping from keys to indices.
+     * Returns an unmodifiable view of the internal mapping from keys to
+     * indices.
      */
     protected Map<K, Integer> getMapping() {
-        return mapping;
+        return new AbstractMap<K, Integer>() {
+            public Set<Map.Entry<K, Integer>> entrySet() {
+                return new AbstractSet<Map.Entry<K, Integer>>() {
+                    public Iterator<Map.Entry<K, Integer>> iterator() {
+                        return mapping.iterator();
+                    }
+
+                    public int size() {
+                        return mapping.size();
+                    }
+                };
+            }
+
+            @SuppressWarnings("unchecked")
+            public Integer get(Object key) {
+                int index = mapping.find((K)key);
+                return (index < 0) ? null : index;
+            }
+
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+        };
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc}  While other threads are adding keys, this count includes
+     * every dimension that has been returned by {@link
+     * #getDimensionInternal(Object)}.
      */
     public int numDimensions() {
-        return mapping.size();
+        return mapping.highestIndex() + 1;
     }
 
     /**
@@ -162,4 +156,30 @@ public abstract class AbstractBasisMapping<T, K> implements BasisMapping<T, K>,
     public boolean isReadOnly() {
         return readOnly;
     }
+
+    /**
+     * Reads the mapping, converting the {@code Map<K,Integer>} that earlier
+     * versions of this class serialized into a {@link ConcurrentIndexer} with
+     * the same dimensions.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        readOnly = fields.get("readOnly", false);
+        Object serialized = fields.get("mapping", null);
+        if (serialized instanceof ConcurrentIndexer) {
+            mapping = (ConcurrentIndexer<K>)serialized;
+            return;
+        }
+
+        // Earlier versions assigned each new key the next dimension, so
+        // indexing the keys in the order of their dimensions reproduces the
+        // same mapping.
+        Map<K,Integer> oldMapping = (Map<K,Integer>)serialized;
+        K[] keys = (K[])new Object[oldMapping.size()];
+        for (Map.Entry<K,Integer> e : oldMapping.entrySet())
+            keys[e.getValue()] = e.getKey();
+        mapping = new ConcurrentIndexer<K>(Arrays.asList(keys));
+    }
 }
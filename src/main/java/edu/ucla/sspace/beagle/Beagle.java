@@ -21,6 +21,14 @@
 
 package edu.ucla.sspace.beagle;
 
+import gnu.trove.iterator.TIntObjectIterator;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import gnu.trove.map.TIntObjectMap;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
 import jnt.FFT.ComplexDoubleFFT_Radix2; 
 
 import edu.ucla.sspace.common.SemanticSpace;
@@ -30,22 +38,21 @@ import edu.ucla.sspace.fft.FastFourierTransform;
 
 import edu.ucla.sspace.text.IteratorFactory;
 
+import edu.ucla.sspace.util.ConcurrentIndexer;
+import edu.ucla.sspace.util.IndexedCache;
+import edu.ucla.sspace.util.primitive.IntIterator;
+
 import edu.ucla.sspace.vector.DenseVector;
 import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.VectorMath;
-import edu.ucla.sspace.vector.VectorMath;
 import edu.ucla.sspace.vector.Vectors;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 
-import java.util.ArrayDeque;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Queue;
 import java.util.Set;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -111,6 +118,17 @@ public class Beagle implements SemanticSpace {
      */
     private final ConcurrentMap<String, DoubleVector> termHolographs;
 
+    /**
+     * Identifiers for the words in each document, which let the context and
+     * order passes look up index vectors by position.
+     */
+    private final ConcurrentIndexer<String> tokenIndexer;
+
+    /**
+     * The vectors from {@code vectorMap}, keyed by token identifier.
+     */
+    private final IndexedCache<DoubleVector> indexVectorCache;
+
     /**
      * The size of each index vector, as set when the sspace is created.
      */
@@ -154,6 +172,8 @@ public class Beagle implements SemanticSpace {
         this.indexVectorSize = vectorSize;
         this.vectorMap = vectorMap;
         termHolographs = new ConcurrentHashMap<String, DoubleVector>();
+        tokenIndexer = new ConcurrentIndexer<String>();
+        indexVectorCache = new IndexedCache<DoubleVector>();
         this.semanticType = semanticType;
 
         placeHolder = vectorMap.get("");
@@ -202,60 +222,84 @@ public class Beagle implements SemanticSpace {
      * {@inheritDoc}
      */
     public void processDocument(BufferedReader document) throws IOException {
-        Queue<String> prevWords = new ArrayDeque<String>();
-        Queue<String> nextWords = new ArrayDeque<String>();
+        TIntArrayList prevWords = new TIntArrayList(prevSize + 1);
+        TIntArrayList nextWords = new TIntArrayList(nextSize + 1);
 
-        Iterator<String> it = IteratorFactory.tokenizeOrdered(document);
-        Map<String, DoubleVector> documentVectors =
-            new HashMap<String, DoubleVector>();
+        IntIterator it =
+            IteratorFactory.tokenizeOrderedIds(document, tokenIndexer);
+        TIntObjectMap<DoubleVector> documentVectors =
+            new TIntObjectHashMap<DoubleVector>();
 
         // Fill up the words after the context so that when the real processing
         // starts, the context is fully prepared.
         for (int i = 0 ; i < nextSize && it.hasNext(); ++i)
-            nextWords.offer(it.next().intern());
-        prevWords.offer(IteratorFactory.EMPTY_TOKEN);
+            nextWords.add(it.nextInt());
+        prevWords.add(IteratorFactory.EMPTY_TOKEN_ID);
 
-        String focusWord = null;
         while (!nextWords.isEmpty()) {
-            focusWord = nextWords.remove();
+            int focusId = nextWords.removeAt(0);
 
             if (it.hasNext())
-                nextWords.offer(it.next().intern());
+                nextWords.add(it.nextInt());
 
-            if (!focusWord.equals(IteratorFactory.EMPTY_TOKEN)) {
+            if (focusId != IteratorFactory.EMPTY_TOKEN_ID) {
                 // Incorporate the context into the semantic vector for the
                 // focus word.  If the focus word has no semantic vector yet,
                 // create a new one, as determined by the index builder.
-                DoubleVector meaning = termHolographs.get(focusWord);
+                DoubleVector meaning = termHolographs.get(getToken(focusId));
                 if (meaning == null) {
                     meaning = new DenseVector(indexVectorSize);
-                    documentVectors.put(focusWord, meaning);
+                    documentVectors.put(focusId, meaning);
                 }
                 updateMeaning(meaning, prevWords, nextWords);
             }
 
-            prevWords.offer(focusWord);
+            prevWords.add(focusId);
             if (prevWords.size() > 1)
-                prevWords.remove();
+                prevWords.removeAt(0);
         }
 
         // Add the local cached semantics to the global term semantics.
-        for (Map.Entry<String, DoubleVector> entry :
-                documentVectors.entrySet()) {
-            synchronized (entry.getKey()) {
+        TIntObjectIterator<DoubleVector> iter = documentVectors.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            // The indexer returns the same String instance for an identifier,
+            // so it can serve as the lock for that term.
+            String term = getToken(iter.key());
+            synchronized (term) {
                 // Get the global semantic representation of each word.  If it
                 // does not currently exist, then just put the local copies
                 // representation, otherwise add the local copy to the global
                 // version.
-                DoubleVector existingVector =
-                    termHolographs.get(entry.getKey());
+                DoubleVector existingVector = termHolographs.get(term);
                 if (existingVector == null)
-                    termHolographs.put(entry.getKey(), entry.getValue());
+                    termHolographs.put(term, iter.value());
                 else
-                    VectorMath.add(existingVector, entry.getValue());
+                    VectorMath.add(existingVector, iter.value());
             }
         }
     }
+
+    /**
+     * Returns the token with the provided identifier.
+     */
+    private String getToken(int tokenId) {
+        return tokenIndexer.lookup(tokenId);
+    }
+
+    /**
+     * Returns the index vector for the token with the provided identifier,
+     * caching the vector by identifier so that later requests do not need to
+     * hash the token.
+     */
+    private DoubleVector getIndexVector(int tokenId) {
+        DoubleVector iv = indexVectorCache.get(tokenId);
+        if (iv == null) {
+            iv = vectorMap.get(getToken(tokenId));
+            indexVectorCache.put(tokenId, iv);
+        }
+        return iv;
+    }
     
     /**
      * No processing is performed on the holographs.
@@ -273,8 +317,8 @@ public class Beagle implements SemanticSpace {
      * placeholder in place of {@code focusVector}.
      */
     private void updateMeaning(DoubleVector meaning,
-                               Queue<String> prevWords,
-                               Queue<String> nextWords) {
+                               TIntArrayList prevWords,
+                               TIntArrayList nextWords) {
         // Generate the semantics of the context using summation of index
         // vectors.
         if (semanticType == SemanticType.COMPOSITE ||
@@ -282,17 +326,19 @@ public class Beagle implements SemanticSpace {
             DoubleVector context = new DenseVector(indexVectorSize);
 
             // Sum the words prior to the focus word, skipping filtered tokens.
-            for (String term: prevWords) {
-                if (term.equals(IteratorFactory.EMPTY_TOKEN))
+            for (int i = 0; i < prevWords.size(); ++i) {
+                int termId = prevWords.getQuick(i);
+                if (termId == IteratorFactory.EMPTY_TOKEN_ID)
                     continue;
-                VectorMath.add(context, vectorMap.get(term));
+                VectorMath.add(context, getIndexVector(termId));
             }
 
             // Sum the words after the focus word, skipping filtered tokens.
-            for (String term: nextWords) {
-                if (term.equals(IteratorFactory.EMPTY_TOKEN))
+            for (int i = 0; i < nextWords.size(); ++i) {
+                int termId = nextWords.getQuick(i);
+                if (termId == IteratorFactory.EMPTY_TOKEN_ID)
                     continue;
-                VectorMath.add(context, vectorMap.get(term));
+                VectorMath.add(context, getIndexVector(termId));
             }
 
             // Normalize the context vector and add it to the meaning.
@@ -338,38 +384,42 @@ public class Beagle implements SemanticSpace {
      * 
      * @return The semantic vector generated from the circular convolution.
      */
-    private DoubleVector groupConvolution(Queue<String> prevWords,
-                                          Queue<String> nextWords) {
+    private DoubleVector groupConvolution(TIntArrayList prevWords,
+                                          TIntArrayList nextWords) {
         // Generate an empty DoubleVector to hold the convolution.
         DoubleVector result = new DenseVector(indexVectorSize);
 
         // Do the convolutions starting at index 0.
-        String prevWord = prevWords.peek();
+        int prevWord = prevWords.getQuick(0);
         DoubleVector tempConvolution;
-        if (!prevWord.equals(IteratorFactory.EMPTY_TOKEN)) {
+        if (prevWord != IteratorFactory.EMPTY_TOKEN_ID) {
             tempConvolution =
-                convolute(vectorMap.get(prevWords.peek()), placeHolder);
+                convolute(getIndexVector(prevWord), placeHolder);
             VectorMath.add(result, tempConvolution);
         } else
             tempConvolution = placeHolder;
 
 
-        for (String term : nextWords) {
-            if (term.equals(IteratorFactory.EMPTY_TOKEN))
+        for (int i = 0; i < nextWords.size(); ++i) {
+            int termId = nextWords.getQuick(i);
+            if (termId == IteratorFactory.EMPTY_TOKEN_ID)
                 continue;
 
-            tempConvolution = convolute(tempConvolution, vectorMap.get(term));
+            tempConvolution =
+                convolute(tempConvolution, getIndexVector(termId));
             VectorMath.add(result, tempConvolution);
         }
 
         tempConvolution = placeHolder;
 
         // Do the convolutions starting at index 1.
-        for (String term : nextWords) {
-            if (term.equals(IteratorFactory.EMPTY_TOKEN))
+        for (int i = 0; i < nextWords.size(); ++i) {
+            int termId = nextWords.getQuick(i);
+            if (termId == IteratorFactory.EMPTY_TOKEN_ID)
                 continue;
 
-            tempConvolution = convolute(tempConvolution, vectorMap.get(term));
+            tempConvolution =
+                convolute(tempConvolution, getIndexVector(termId));
             VectorMath.add(result, tempConvolution);
         }
         return result;
@@ -34,6 +34,7 @@ import edu.ucla.sspace.matrix.Matrix;
 import edu.ucla.sspace.matrix.*;
 
 import edu.ucla.sspace.util.ReflectionUtil;
+import edu.ucla.sspace.util.WorkQueue;
 
 import edu.ucla.sspace.vector.*;
 import edu.ucla.sspace.vector.DoubleVector;
@@ -106,6 +107,14 @@ public class DirectClustering implements Clustering {
     public static final String SEED_PROPERTY =
         PROPERTY_PREFIX + ".seed";
 
+    /**
+     * Specifies the value to use in seeding the source of randomness that
+     * orders the data points in each repetition.  If no seed is provided, a
+     * random seed is used.
+     */
+    public static final String RANDOM_SEED_PROPERTY =
+        PROPERTY_PREFIX + ".randomSeed";
+
     /**
      * The default seed algorithm used.
      */
@@ -123,6 +132,12 @@ public class DirectClustering implements Clustering {
      */
     private static final String DEFAULT_REPEATS = "10";
 
+    /**
+     * The work queue on which repetitions are run concurrently.
+     */
+    private static final WorkQueue WORK_QUEUE = 
+        WorkQueue.getWorkQueue(WorkQueue.CLUSTERING_QUEUE);
+
     /**
      * Throws {@link UnsupportedOperationException}.
      */
@@ -149,8 +164,14 @@ public class DirectClustering implements Clustering {
         CriterionFunction criterion = ReflectionUtil.getObjectInstance(
                 properties.getProperty(CRITERIA_PROPERTY, DEFAULT_CRITERION));
 
+        // Create the source of randomness, seeding it if requested.
+        String randomSeed = properties.getProperty(RANDOM_SEED_PROPERTY);
+        Random random = (randomSeed == null)
+            ? new Random()
+            : new Random(Long.parseLong(randomSeed));
+
         return cluster(matrix, numClusters, numRepetitions,
-                       seedType, criterion);
+                       seedType, criterion, random);
     }
 
     /**
@@ -182,27 +203,102 @@ public class DirectClustering implements Clustering {
      * Clusters {@link matrix} using the specified {@link SeedAlgorithm}
      * and the specified {@link CriterionFunction}. The best scoring solution
      * out of {@code numRepetitions} will be returned.
+     *
+     * <p> See {@link #cluster(Matrix,int,int,KMeansSeed,CriterionFunction,
+     * Random)} for how the repetitions are run.
      */
     public static Assignments cluster(Matrix matrix,
                                       int numClusters,
                                       int numRepetitions,
                                       KMeansSeed seedType,
                                       CriterionFunction criterion) {
+        return cluster(matrix, numClusters, numRepetitions,
+                       seedType, criterion, new Random());
+    }
+
+    /**
+     * Clusters {@link matrix} using the specified {@link SeedAlgorithm}
+     * and the specified {@link CriterionFunction}, drawing the order in which
+     * data points are visited from {@code random}. The best scoring solution
+     * out of {@code numRepetitions} will be returned.
+     *
+     * <p> The repetitions are run concurrently, each with its own instance of
+     * the criterion's class and its own {@link Random} drawn from {@code
+     * random}.  Neither {@code matrix} nor {@code seedType} need be
+     * thread-safe: the rows are read once, and the seeds for every repetition
+     * are chosen, before any repetition starts.  Once all have finished,
+     * {@code criterion} is set up with the best scoring assignments, so its
+     * score and centroids describe the returned solution.  If the criterion's
+     * class cannot be instantiated, the repetitions are instead run one after
+     * another using {@code criterion}.
+     */
+    public static Assignments cluster(Matrix matrix,
+                                      int numClusters,
+                                      int numRepetitions,
+                                      KMeansSeed seedType,
+                                      CriterionFunction criterion,
+                                      Random random) {
+        final CriterionFunction[] criteria = 
+            new CriterionFunction[numRepetitions];
         int[] bestAssignment = null;
-        double bestScore = (criterion.isMaximize()) ? 0 : Double.MAX_VALUE;
-        for (int i = 0; i < numRepetitions; ++i) {
-            clusterIteration(matrix, numClusters, seedType, criterion);
-            if (criterion.isMaximize()) {
-                if (criterion.score() > bestScore) {
-                    bestScore = criterion.score();
-                    bestAssignment = criterion.assignments();
-                }
-            } else {
-                if (criterion.score() < bestScore) {
+        if (numRepetitions > 0)
+            criteria[0] = criterion;
+        boolean concurrent = numRepetitions > 1;
+        for (int i = 1; i < numRepetitions && concurrent; ++i) {
+            criteria[i] = newInstance(criterion);
+            concurrent = criteria[i] != null;
+        }
+
+        if (concurrent) {
+            // Read the rows once so that the repetitions share only immutable
+            // state, rather than calling into a matrix that may not support
+            // concurrent reads.
+            List<DoubleVector> rows = new ArrayList<DoubleVector>(
+                matrix.rows());
+            for (int r = 0; r < matrix.rows(); ++r)
+                rows.add(matrix.getRowVector(r));
+            final Matrix m = Matrices.asMatrix(rows);
+            final int k = numClusters;
+            List<Runnable> repetitions = new ArrayList<Runnable>();
+            for (int i = 0; i < numRepetitions; ++i) {
+                final CriterionFunction c = criteria[i];
+                final DoubleVector[] centers = seedType.chooseSeeds(k, m);
+                final Random r = new Random(random.nextLong());
+                repetitions.add(new Runnable() {
+                        public void run() {
+                            clusterIteration(m, k, centers, c, r);
+                        }
+                    });
+            }
+            WORK_QUEUE.run(repetitions);
+
+            // Select the best scoring repetition, preferring the earliest in
+            // case of ties
+            int best = 0;
+            for (int i = 1; i < numRepetitions; ++i) {
+                if (isBetter(criterion, criteria[i].score(), 
+                             criteria[best].score()))
+                    best = i;
+            }
+            bestAssignment = criteria[best].assignments();
+            if (best != 0)
+                criterion.setup(matrix, bestAssignment.clone(), numClusters);
+        } else {
+            double bestScore = 0;
+            int best = 0;
+            for (int i = 0; i < numRepetitions; ++i) {
+                clusterIteration(matrix, numClusters, 
+                                 seedType.chooseSeeds(numClusters, matrix),
+                                 criterion, random);
+                if (i == 0 || isBetter(criterion, criterion.score(), 
+                                       bestScore)) {
                     bestScore = criterion.score();
                     bestAssignment = criterion.assignments();
+                    best = i;
                 }
             }
+            if (best != numRepetitions - 1)
+                criterion.setup(matrix, bestAssignment.clone(), numClusters);
         }
 
         // Convert the array of assignments to an Assignments object.
@@ -214,13 +310,39 @@ public class DirectClustering implements Clustering {
     }
 
     /**
-     * Performs one iteration of Direct Clustering over the data set.
+     * Returns {@code true} if {@code score} is strictly better than {@code
+     * bestScore} for the criterion.
+     */
+    private static boolean isBetter(CriterionFunction criterion,
+                                    double score, double bestScore) {
+        return (criterion.isMaximize()) 
+            ? score > bestScore 
+            : score < bestScore;
+    }
+
+    /**
+     * Returns a new instance of the criterion's class, or {@code null} if the
+     * class cannot be instantiated with its no-argument constructor.
+     */
+    private static CriterionFunction newInstance(CriterionFunction criterion) {
+        try {
+            return criterion.getClass().newInstance();
+        } catch (InstantiationException ie) {
+            return null;
+        } catch (IllegalAccessException iae) {
+            return null;
+        }
+    }
+
+    /**
+     * Performs one iteration of Direct Clustering over the data set, starting
+     * from the provided centers.
      */
     private static void clusterIteration(Matrix matrix,
                                          int numClusters,
-                                         KMeansSeed seedType,
-                                         CriterionFunction criterion) {
-        DoubleVector[] centers = seedType.chooseSeeds(numClusters, matrix);
+                                         DoubleVector[] centers,
+                                         CriterionFunction criterion,
+                                         Random random) {
 
         // Compute the initial set of assignments for each data point based on
         // the initial assignments.
@@ -229,23 +351,8 @@ public class DirectClustering implements Clustering {
         // If there is to be only one cluster, then everything will be auto
         // assigned to the first cluster.  This is just a special case that only
         // comes up when comparing other solutions to the non-solution.
-        if (numClusters != 1) {
-            int nc = 0;
-            for (int i = 0; i < matrix.rows(); ++i) {
-
-                DoubleVector vector = matrix.getRowVector(i);
-                double bestSimilarity = 0;
-                for (int c = 0; c < numClusters; ++c) {
-                    double similarity = Similarity.cosineSimilarity(
-                            centers[c], vector);
-                    nc++;
-                    if (similarity >= bestSimilarity) {
-                        bestSimilarity = similarity;
-                        initialAssignments[i] = c;
-                    }
-                }
-            }
-        }
+        if (numClusters != 1) 
+            assignToCenters(matrix, centers, initialAssignments);
 
         // Setup the criterion function with it's meta data.
         criterion.setup(matrix, initialAssignments, numClusters);
@@ -262,12 +369,78 @@ public class DirectClustering implements Clustering {
         boolean changed = true;
         while (changed) {
             changed = false;
-            Collections.shuffle(indices);
+            Collections.shuffle(indices, random);
             for (int index : indices)
                 changed |= criterion.update(index);
         }
     }
 
+    /**
+     * Assigns each row of the matrix to the center with which it has the
+     * highest cosine similarity, or to the first center if it has a negative
+     * similarity to all of them.  Ties are assigned to the last such center.
+     *
+     * <p> The cosine similarity of two vectors determines the distance between
+     * their normalized forms, {@code sqrt(2 - 2 cos)}, which is a metric.
+     * Following Elkan's use of the triangle inequality, if the distance between
+     * the best center so far and another center is more than twice the
+     * distance between the row and the best center, then the other center must
+     * be farther from the row and need not be compared with it.  The distances
+     * between the centers are computed once, which only pays off when there
+     * are more rows than centers.
+     */
+    private static void assignToCenters(Matrix matrix, DoubleVector[] centers,
+                                        int[] assignments) {
+        int numCenters = centers.length;
+        int rows = matrix.rows();
+        double[] centerDistances = null;
+        if (rows > numCenters) {
+            // Store the distances between the centers as a packed lower
+            // triangular matrix
+            centerDistances = new double[numCenters * (numCenters - 1) / 2];
+            for (int i = 1, index = 0; i < numCenters; ++i) {
+                for (int j = 0; j < i; ++j)
+                    centerDistances[index++] = distance(
+                        Similarity.cosineSimilarity(centers[i], centers[j]));
+            }
+        }
+
+        for (int r = 0; r < rows; ++r) {
+            DoubleVector vector = matrix.getRowVector(r);
+            double bestSimilarity = 0;
+            double bestDistance = 0;
+            int best = -1;
+            for (int c = 0; c < numCenters; ++c) {
+                // Skip the center if the triangle inequality shows that it is
+                // farther from the row than the best center.  The small
+                // tolerance guards against rounding in the distances.
+                if (best >= 0 && centerDistances != null) {
+                    double d = (c > best)
+                        ? centerDistances[c * (c - 1) / 2 + best]
+                        : centerDistances[best * (best - 1) / 2 + c];
+                    if (d > 2 * bestDistance + 1e-9)
+                        continue;
+                }
+                double similarity = Similarity.cosineSimilarity(
+                        centers[c], vector);
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    bestDistance = distance(similarity);
+                    best = c;
+                }
+            }
+            assignments[r] = (best < 0) ? 0 : best;
+        }
+    }
+
+    /**
+     * Returns the distance between two normalized vectors with the provided
+     * cosine similarity.
+     */
+    private static double distance(double cosineSimilarity) {
+        return Math.sqrt(Math.max(0, 2 - 2 * cosineSimilarity));
+    }
+
     public String toString() {
         return "DirectClustering";
     }
@@ -21,18 +21,30 @@
 
 package edu.ucla.sspace.clustering;
 
+import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.Similarity;
 import edu.ucla.sspace.common.Similarity.SimType;
+import edu.ucla.sspace.common.VectorMapSemanticSpace;
 
-import edu.ucla.sspace.matrix.Matrices;
 import edu.ucla.sspace.matrix.Matrix;
 import edu.ucla.sspace.matrix.Matrix.Type;
 import edu.ucla.sspace.matrix.MatrixIO;
 import edu.ucla.sspace.matrix.MatrixIO.Format;
-import edu.ucla.sspace.matrix.OnDiskMatrix;
+import edu.ucla.sspace.matrix.PackedSymmetricMatrix;
 
+import edu.ucla.sspace.util.NearestNeighborFinder;
+import edu.ucla.sspace.util.SimpleNearestNeighborFinder;
+import edu.ucla.sspace.util.SortedMultiMap;
 import edu.ucla.sspace.util.WorkQueue;
 
+import edu.ucla.sspace.vector.DoubleVector;
+
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -42,18 +54,11 @@ import java.io.PrintWriter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
-
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -94,12 +99,27 @@ import java.util.logging.Logger;
  * The resulting {@link edu.ucla.sspace.util.MultiMap} {@code clusterToRows}
  * contains the mapping from each cluster to the rows that are a part of it.
  *
- * <p><i>Implementation Note:</i> The current version runs in O(n<sup>3</sup>)
- * worst case time for the number of rows in the matrix.  While O(n<sup>2</sup>
- * * log(n)) methods exist, these require storing similarity comparisons in a
- * priority queue, which has a substantially higher memory overhead.  Therefore,
- * this implementation has opted for a more expensive running time in order to
- * be able to process larger matrices.
+ * <p><i>Implementation Note:</i> The pair-wise similarities are computed in
+ * parallel and stored as the packed upper triangular of a {@link
+ * PackedSymmetricMatrix}, which is memory mapped when it would not fit in the
+ * heap.  Clusters are merged using a priority queue of each cluster's most
+ * similar neighbor, which typically runs in O(n<sup>2</sup> log(n)) time for
+ * the number of rows in the matrix and only needs O(n) memory beyond the
+ * similarities.  With the exception of {@link ClusterLinkage#MEDIAN_LINKAGE},
+ * the similarity of a merged cluster is updated from the similarities of its
+ * two parts.  The median linkage must compare all of the data points in each
+ * cluster and requires a second copy of the similarities.
+ *
+ * <p> For data sets whose pair-wise similarities would not fit in memory, such
+ * as the words of a vocabulary, the {@link
+ * #buildDendrogram(List,NearestNeighborFinder,int,ClusterLinkage)} methods
+ * instead merge clusters along the edges of a sparse <i>k</i>-nearest neighbor
+ * graph, which only needs O(nk) memory.  In this mode, the similarity of two
+ * clusters is computed from only those pairs of their data points that are
+ * neighbors in the graph, and clusters with no such pairs are only merged once
+ * all other merges have been made.  This mode is also used by the {@link
+ * Clustering} interface when the {@value #NUM_NEIGHBORS_PROPERTY} property is
+ * set.
  *
  * <p> When using the {@link Clustering#cluster(Matrix,Properties)} interface,
  * this class supports the following properties for controlling the clustering.
@@ -142,6 +162,15 @@ import java.util.logging.Logger;
  *      agglomeratively merging clusters.  Both properties cannot be specified
  *      at the same time. </p>
  *
+ * <dt> <i>Property:</i> <code><b>{@value #NUM_NEIGHBORS_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> unset
+ *
+ * <dd style="padding-top: .5em"> This property specifies the number of nearest
+ *      neighbors of each data point to use when building a sparse graph of the
+ *      data points, along whose edges the clusters are merged.  If unset, the
+ *      similarities of all pairs of data points are used. </p>
+ *
  * </dl>
  *
  * @author David Jurgens
@@ -210,6 +239,13 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
     public static final String NUM_CLUSTERS_PROPERTY =
         PROPERTY_PREFIX + ".numClusters";
 
+    /**
+     * The property for specifying the number of nearest neighbors of each data
+     * point in the sparse graph used for merging.
+     */
+    public static final String NUM_NEIGHBORS_PROPERTY =
+        PROPERTY_PREFIX + ".numNeighbors";
+
     /**
      * The default similarity threshold to use.
      */
@@ -234,13 +270,16 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
         Logger.getLogger(HierarchicalAgglomerativeClustering.class.getName());
 
     /**
-     * The work used by all HAC instances to perform multi-threaded operations.
+     * The number of rows compared or updated by each parallel task.
      */
-    private final WorkQueue workQueue;
+    private static final int BLOCK_SIZE = 256;
 
-    public HierarchicalAgglomerativeClustering() {
-        this.workQueue = WorkQueue.getWorkQueue();
-    }
+    /**
+     * The work queue used by all HAC instances to perform multi-threaded
+     * operations.
+     */
+    private static final WorkQueue WORK_QUEUE = 
+        WorkQueue.getWorkQueue(WorkQueue.CLUSTERING_QUEUE);
 
     /**
      * {@inheritDoc}
@@ -273,7 +312,9 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
             try {
                 double clusterSimThresh = Double.parseDouble(minSimProp);
                 return toAssignments(cluster(matrix, clusterSimThresh, 
-                                             linkage, simFunc, -1), matrix, -1);
+                                             linkage, simFunc, -1,
+                                             numNeighbors(props)),
+                                     matrix, -1);
             } catch (NumberFormatException nfe) {
                 throw new IllegalArgumentException(
                     "Cluster similarity threshold was not a valid double: " +
@@ -305,10 +346,32 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
                     SIMILARITY_FUNCTION_PROPERTY,
                     DEFAULT_SIMILARITY_FUNCTION_PROPERTY));
         return toAssignments(cluster(m, clusterSimilarityThreshold, linkage,
-                                     similarityFunction, numClusters),
+                                     similarityFunction, numClusters,
+                                     numNeighbors(props)),
                              m, numClusters);
     }
 
+    /**
+     * Returns the value of the {@value #NUM_NEIGHBORS_PROPERTY} property, or 0
+     * if it was not set.
+     */
+    private static int numNeighbors(Properties props) {
+        String numNeighborsProp = props.getProperty(NUM_NEIGHBORS_PROPERTY);
+        if (numNeighborsProp == null)
+            return 0;
+        try {
+            int numNeighbors = Integer.parseInt(numNeighborsProp);
+            if (numNeighbors < 1)
+                throw new IllegalArgumentException(
+                    "Number of neighbors must be positive: " + numNeighbors);
+            return numNeighbors;
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException(
+                "Number of neighbors was not a valid integer: " +
+                numNeighborsProp);
+        }
+    }
+
     /**
      * Clusters all rows in the matrix using the specified cluster similarity
      * measure for comparison and stopping when the number of clusters is equal
@@ -327,7 +390,7 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
     public static int[] partitionRows(Matrix m, int numClusters,
                                       ClusterLinkage linkage,
                                       SimType similarityFunction) {
-        return cluster(m, -1, linkage, similarityFunction, numClusters);
+        return cluster(m, -1, linkage, similarityFunction, numClusters, 0);
     }
 
     /**
@@ -353,11 +416,13 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
                                     ClusterLinkage linkage,
                                     SimType similarityFunction) {
         return cluster(m, clusterSimilarityThreshold, linkage, 
-                       similarityFunction, -1);
+                       similarityFunction, -1, 0);
     }
 
     /**
-     * 
+     * Clusters the rows of {@code m} by agglomeratively merging the most
+     * similar pair of clusters until either the desired number of clusters is
+     * reached or the most similar pair falls below the similarity threshold.
      *
      * @param m a matrix whose rows are to be clustered
      * @param clusterSimilarityThreshold the optional parameter for specifying
@@ -373,6 +438,9 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
      *        clusters will be merged until the inter-cluster similarity is
      *        below the threshold, otherwise; if the value is positive, clusters
      *        are merged until the desired number of clusters has been reached.
+     * @param numNeighbors the number of nearest neighbors of each row in the
+     *        sparse graph along which clusters are merged, or 0 to compare all
+     *        pairs of rows
      *
      * @return an array where each element corresponds to a row and the value is
      *         the cluster number to which that row was assigned.  Cluster
@@ -381,134 +449,25 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
     private static int[] cluster(Matrix m, double clusterSimilarityThreshold,
                                  ClusterLinkage linkage, 
                                  SimType similarityFunction,
-                                 int maxNumberOfClusters) {
+                                 int maxNumberOfClusters, int numNeighbors) {
         int rows = m.rows();
+        if (numNeighbors > 0) {
+            LOGGER.info("Generating the " + numNeighbors + "-nearest neighbor " +
+                        "graph for " + rows + " data points");
+            List<Merge> merges = agglomerateGraph(
+                buildNeighborGraph(m, numNeighbors, linkage, similarityFunction),
+                linkage, maxNumberOfClusters, clusterSimilarityThreshold);
+            return toAssignArray(merges, rows);
+        }
         LOGGER.info("Generating similarity matrix for " + rows+ " data points");
-        Matrix similarityMatrix = 
+        PackedSymmetricMatrix similarityMatrix = 
             computeSimilarityMatrix(m, similarityFunction);
 
-        // Create the initial set of clusters where each row is originally in
-        // its own cluster
-        Map<Integer,Set<Integer>> clusterAssignment = 
-            generateInitialAssignment(rows);
-
-        LOGGER.info("Calculating initial inter-cluster similarity using " 
-                    + linkage);
-        // Generate the initial set of cluster pairings based on the highest
-        // similarity.  This mapping will be update as the number of clusters
-        // are reduced, where merging a cluster will causes all the pairings
-        // pointing to it constinuents recalculated.
-        Map<Integer,Pairing> clusterSimilarities =
-            new HashMap<Integer,Pairing>();
-        for (Integer clusterId : clusterAssignment.keySet()) {
-            clusterSimilarities.put(clusterId,
-                 findMostSimilar(clusterAssignment, clusterId, 
-                                 linkage, similarityMatrix));
-        }
-
-        LOGGER.info("Assigning clusters");
-
-        // Keep track of which ID is available for the new, merged cluster
-        int nextClusterId = rows;
-
-        // While we still have more clusters than the maximum number loop.  Note
-        // that if the maximum was set to negative, this condition will always
-        // be true and the inner loop check for inter-cluster similarity will
-        // break out of this loop
-        while (clusterAssignment.size() > maxNumberOfClusters) {
-            // Find a row that has yet to be clustered by searching for the pair
-            // that is most similar
-            int cluster1index = 0;
-            int cluster2index = 0;
-            double highestSimilarity = -1;
-
-            // Find the row with the highest similarity to another            
-            for (Map.Entry<Integer,Pairing> e : 
-                     clusterSimilarities.entrySet()) {
-
-                Pairing p = e.getValue();
-                Integer i = e.getKey();
-                Integer j = p.pairedIndex;
-                if (p.similarity > highestSimilarity) {
-                    cluster1index = i;
-                    cluster2index = j;
-                    highestSimilarity = p.similarity;
-                }
-            }            
-            
-            // If the similarity of the two most similar clusters falls below
-            // the threshold, then the final set of clusters has been
-            // determined.
-            if (maxNumberOfClusters < 1 &&
-                highestSimilarity < clusterSimilarityThreshold)
-                break;
-            
-            // Assign the merged cluster a new ID, which lets us track any
-            // pairings to the original clusters that may need to be
-            // recalculated
-            int newClusterId = nextClusterId++;
-
-            Set<Integer> cluster1 = clusterAssignment.get(cluster1index);
-            Set<Integer> cluster2 = clusterAssignment.get(cluster2index);
-
-            LOGGER.log(Level.FINE, "Merged cluster {0} with {1}",
-                       new Object[] { cluster1, cluster2 });
-
-            // Update the cluster assignments, adding in the new cluster and
-            // remove all references to the two merged clusters.
-            cluster1.addAll(cluster2);
-            clusterAssignment.put(newClusterId, cluster1);
-            clusterAssignment.remove(cluster1index);
-            clusterAssignment.remove(cluster2index);
-            clusterSimilarities.remove(cluster1index);
-            clusterSimilarities.remove(cluster2index);
-
-            // Local state variables to use while recalculating the similarities
-            double mostSimilarToMerged = -1;
-            Integer mostSimilarToMergedId = null;
-
-            // Check whether we have just merged the last two clusters, in which
-            // case the similarity recalculation is unnecessary
-            if (clusterSimilarities.isEmpty())
-                break;
-
-            // Recalculate the inter-cluster similarity of a cluster that was
-            // paired with either of these two (i.e. was most similar to one of
-            // them before the merge).  At the same time, calculate the
-            // most-similar to the newly merged cluster
-            for (Map.Entry<Integer,Pairing> e : 
-                     clusterSimilarities.entrySet()) {
-
-                Integer clusterId = e.getKey();
-
-                // First, calculate the similarity between this cluster and the
-                // newly merged cluster
-                double simToNewCluster = 
-                    getSimilarity(similarityMatrix, cluster1,
-                                  clusterAssignment.get(clusterId), linkage);
-                if (simToNewCluster > mostSimilarToMerged) {
-                    mostSimilarToMerged = simToNewCluster;
-                    mostSimilarToMergedId = clusterId;
-                }
-
-                // Second, if the pair was previously paired with one of the
-                // merged clusters, recompute what its most similar is
-                Pairing p = e.getValue();
-                if (p.pairedIndex == cluster1index 
-                        || p.pairedIndex == cluster2index) {
-                    // Reassign with the new most-similar
-                    e.setValue(findMostSimilar(clusterAssignment, clusterId, 
-                                               linkage, similarityMatrix));
-                }
-            }
-            
-            // Update the new most similar to the newly-merged cluster
-            clusterSimilarities.put(newClusterId, 
-                                    new Pairing(mostSimilarToMerged, 
-                                                mostSimilarToMergedId));
-        }
-
-        return toAssignArray(clusterAssignment, rows);
+        LOGGER.info("Assigning clusters using " + linkage);
+        List<Merge> merges = agglomerate(
+            workingCopy(similarityMatrix, linkage, true), similarityMatrix,
+            linkage, maxNumberOfClusters, clusterSimilarityThreshold);
+        return toAssignArray(merges, rows);
     }
 
     /**
@@ -554,9 +513,10 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
 
         int rows = m.rows();
         LOGGER.finer("Generating similarity matrix for " + rows+ " data points");
-        Matrix similarityMatrix = 
+        PackedSymmetricMatrix similarityMatrix = 
             computeSimilarityMatrix(m, similarityFunction);
-        return buildDendrogram(similarityMatrix, linkage);
+        return agglomerate(workingCopy(similarityMatrix, linkage, true), 
+                           similarityMatrix, linkage, 1, -1);
     }
 
 
@@ -568,7 +528,7 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
      * cluster.
      *
      * @param similarityMatrix a square matrix whose (i, j) values denote the
-     *        similarity of row i to row j.
+     *        similarity of row i to row j.  This matrix is not modified.
      *
      * @return a dendrogram corresponding to the merge steps for each cluster,
      *         where each row is initially assigned to its own cluster whose id
@@ -584,503 +544,622 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
             throw new IllegalArgumentException(
                 "Similarity matrix must be square");
 
-        if (!(similarityMatrix instanceof OnDiskMatrix)) {
-            LOGGER.fine("Similarity matrix supports fast multi-threaded " +
-                        "access; switching to multi-threaded clustering");
-            return buildDendogramMultithreaded(similarityMatrix, linkage);
-        }
+        return agglomerate(workingCopy(similarityMatrix, linkage, false),
+                           similarityMatrix, linkage, 1, -1);
+    }
 
-        int rows = similarityMatrix.rows();
-
-        // Create the initial set of clusters where each row is originally in
-        // its own cluster
-        final Map<Integer,Set<Integer>> clusterAssignment = 
-            generateInitialAssignment(rows);
-
-        LOGGER.finer("Calculating initial inter-cluster similarity using " 
-                    + linkage);
-        // Generate the initial set of cluster pairings based on the highest
-        // similarity.  This mapping will be update as the number of clusters
-        // are reduced, where merging a cluster will causes all the pairings
-        // pointing to it constinuents recalculated.
-        final Map<Integer,Pairing> clusterSimilarities =
-            new HashMap<Integer,Pairing>();
-
-        // For each cluster, find the most similar cluster
-        for (Integer clusterId : clusterAssignment.keySet()) {
-            clusterSimilarities.put(clusterId,
-                findMostSimilar(clusterAssignment, clusterId, 
-                                linkage, similarityMatrix));
-        }
+    /**
+     * Builds a dendrogram of the rows of {@code m} by merging clusters along
+     * the edges of a sparse graph that links each row to its {@code
+     * numNeighbors} most similar rows.  Unlike {@link
+     * #buildDendogram(Matrix,ClusterLinkage,SimType) buildDendogram}, this only
+     * needs memory proportional to the number of edges in the graph.  The
+     * similarity of two clusters is computed by the {@code linkage} from the
+     * similarities of the edges between them, and clusters that share no edges
+     * are merged last with a similarity of {@link Double#NEGATIVE_INFINITY}.
+     *
+     * @param m a matrix whose rows are to be compared and agglomeratively
+     *        merged into clusters
+     * @param numNeighbors the number of most similar rows to which each row is
+     *        linked
+     * @param linkage how two clusters should be compared for similarity when
+     *        deciding which clusters to merge together
+     * @param similarityFunction how to compare two rows of a matrix for
+     *        similarity
+     *
+     * @return a dendrogram corresponding to the merge steps for each cluster,
+     *         where each row is initially assigned to its own cluster whose id
+     *         is the same as its row's index
+     */
+    public List<Merge> buildDendrogram(Matrix m, int numNeighbors,
+                                       ClusterLinkage linkage,
+                                       SimType similarityFunction) {
+        if (numNeighbors < 1)
+            throw new IllegalArgumentException(
+                "Number of neighbors must be positive: " + numNeighbors);
+        return agglomerateGraph(
+            buildNeighborGraph(m, numNeighbors, linkage, similarityFunction),
+            linkage, 1, -1);
+    }
 
-        LOGGER.finer("Assigning clusters");
-        List<Merge> merges = new ArrayList<Merge>(rows - 1);       
-
-        // Perform rows-1 merges to merge all elements
-        for (int mergeIter = 0; mergeIter < rows - 1; ++mergeIter) {
-            LOGGER.finer("Computing dendogram merge" 
-                         + mergeIter + "/" + (rows-1));
-
-            // Find the two clusters that have the highest similarity
-            int cluster1index = 0;
-            int cluster2index = 0;
-            double highestSimilarity = -1;
-
-            // For each cluster, look at the cluster with the highest
-            // similarity, and select the two with the global max
-            for (Map.Entry<Integer,Pairing> e : 
-                     clusterSimilarities.entrySet()) {
-
-                Pairing p = e.getValue();
-                Integer i = e.getKey();
-                Integer j = p.pairedIndex;
-                if (p.similarity > highestSimilarity) {
-                    cluster1index = i;
-                    cluster2index = j;
-                    highestSimilarity = p.similarity;
-                }
-            }            
+    /**
+     * Builds a dendrogram of the {@code words} by merging clusters along the
+     * edges of a sparse graph that links each word to the {@code numNeighbors}
+     * most similar words returned by the {@link NearestNeighborFinder}.
+     * Neighbors that are not in {@code words} are ignored.  The similarity of
+     * two clusters is computed by the {@code linkage} from the similarities of
+     * the edges between them, and clusters that share no edges are merged last
+     * with a similarity of {@link Double#NEGATIVE_INFINITY}.
+     *
+     * @param words the words to be clustered
+     * @param finder the source of each word's most similar words
+     * @param numNeighbors the number of most similar words to which each word
+     *        is linked
+     * @param linkage how two clusters should be compared for similarity when
+     *        deciding which clusters to merge together
+     *
+     * @return a dendrogram corresponding to the merge steps for each cluster,
+     *         where each word is initially assigned to its own cluster whose id
+     *         is the same as its index in {@code words}
+     */
+    public List<Merge> buildDendrogram(List<String> words,
+                                       NearestNeighborFinder finder,
+                                       int numNeighbors,
+                                       ClusterLinkage linkage) {
+        if (numNeighbors < 1)
+            throw new IllegalArgumentException(
+                "Number of neighbors must be positive: " + numNeighbors);
+        return agglomerateGraph(
+            buildNeighborGraph(words, finder, numNeighbors, linkage),
+            linkage, 1, -1);
+    }
 
-            // Order the indices so that the smaller index is first
-            if (cluster1index > cluster2index) {
-                int tmp = cluster2index;
-                cluster2index = cluster1index;
-                cluster1index = tmp;
+    /**
+     * Agglomeratively merges the clusters of the similarity matrix and returns
+     * the merges in the order they were made, where each merge keeps the lower
+     * of the two cluster ids.  This is the generic algorithm from the following
+     * paper, which supports any linkage:
+     *
+     *   <li style="font-family:Garamond, Georgia, serif"> Daniel M&uuml;llner,
+     *   "Modern hierarchical, agglomerative clustering algorithms," 
+     *   <i>arXiv:1109.2378</i>, 2011</li>
+     *
+     * Each cluster keeps the most similar cluster with a higher id, which is
+     * kept in a priority queue keyed by similarity.  After a merge, these
+     * neighbors are only updated for clusters whose similarity to the merged
+     * cluster has increased; any other neighbor that was invalidated is found
+     * again when its cluster reaches the top of the queue.  The similarities of
+     * the merged cluster are computed from those of its two parts, which for
+     * all but {@link ClusterLinkage#MEDIAN_LINKAGE} only requires the current
+     * inter-cluster similarities.
+     *
+     * @param working a matrix of the similarities between the data points,
+     *        which is overwritten by the inter-cluster similarities
+     * @param pointSimilarities the similarities between the data points, which
+     *        are only accessed for {@link ClusterLinkage#MEDIAN_LINKAGE} and
+     *        must not be the same instance as {@code working} for that linkage
+     * @param minClusters the number of clusters at which to stop merging, or a
+     *        non-positive value to stop using the threshold instead
+     * @param threshold the similarity below which clusters are not merged when
+     *        {@code minClusters} is non-positive
+     */
+    private static List<Merge> agglomerate(
+            final PackedSymmetricMatrix working, 
+            final Matrix pointSimilarities,
+            final ClusterLinkage linkage,
+            int minClusters, double threshold) {
+
+        final int n = working.rows();
+        final boolean[] active = new boolean[n];
+        Arrays.fill(active, true);
+        int[] sizes = new int[n];
+        Arrays.fill(sizes, 1);
+        final TIntArrayList[] members = 
+            (linkage == ClusterLinkage.MEDIAN_LINKAGE)
+            ? new TIntArrayList[n] : null;
+        if (members != null) {
+            for (int i = 0; i < n; ++i) {
+                members[i] = new TIntArrayList();
+                members[i].add(i);
             }
+        }
 
-            // Track that the two clusters will be merged.  Always use the lower
-            // of the two values as the new cluster assignment.
-            Merge merge = 
-                new Merge(cluster1index, cluster2index, highestSimilarity);
-            merges.add(merge);
+        // Find the initial nearest neighbor of each data point in parallel
+        final int[] neighbors = new int[n];
+        final float[] neighborSims = new float[n];
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int start = 0; start < n; start += BLOCK_SIZE) {
+            final int from = start;
+            final int to = Math.min(n, start + BLOCK_SIZE);
+            tasks.add(new Runnable() {
+                    public void run() {
+                        for (int i = from; i < to; ++i)
+                            findNeighbor(working, active, i, 
+                                         neighbors, neighborSims);
+                    }
+                });
+        }
+        WORK_QUEUE.run(tasks);
+
+        ClusterHeap queue = new ClusterHeap(n);
+        for (int i = 0; i < n; ++i)
+            if (neighbors[i] >= 0)
+                queue.put(i, neighborSims[i]);
+
+        List<Merge> merges = new ArrayList<Merge>(Math.max(0, n - 1));
+        int numClusters = n;
+        while (numClusters > Math.max(1, minClusters) && !queue.isEmpty()) {
+            int c1 = queue.top();
+            int c2 = neighbors[c1];
+
+            // The neighbor similarity is an upper bound on the cluster's
+            // similarity to all others, so if it is no longer exact, find the
+            // current neighbor and check the queue again
+            if (!active[c2] || similarity(working, c1, c2) != neighborSims[c1]){
+                findNeighbor(working, active, c1, neighbors, neighborSims);
+                if (neighbors[c1] < 0)
+                    queue.remove(c1);
+                else
+                    queue.put(c1, neighborSims[c1]);
+                continue;
+            }
 
-            Set<Integer> cluster1 = clusterAssignment.get(cluster1index);
-            Set<Integer> cluster2 = clusterAssignment.get(cluster2index);
+            // If the similarity of the two most similar clusters falls below
+            // the threshold, then the final set of clusters has been
+            // determined.
+            double highestSimilarity = neighborSims[c1];
+            if (minClusters < 1 && highestSimilarity < threshold)
+                break;
 
             LOGGER.log(Level.FINER, 
                        "Merged cluster {0} with {1}, similarity {2}",
-                       new Object[] { cluster1index, cluster2index, 
-                                      highestSimilarity });
-
-            // Update the cluster assignments, adding in elements from the
-            // second cluster and remove all references to the second merged-in
-            // cluster.
-            cluster1.addAll(cluster2);
-            clusterAssignment.remove(cluster2index);
-            clusterSimilarities.remove(cluster2index);
-
-            // When down to just one cluster, stop the iteration
-            if (clusterAssignment.size() == 1)
-                break;
-
-            // Local state variables to use while recalculating the similarities
-            double mostSimilarToMerged = -1;
-            Integer mostSimilarToMergedId = null;            
-
-            // Recalculate the inter-cluster similarity of a cluster in two
-            // cases:
-            // 
-            // 1) a cluster that paired with either of these two (i.e. was most
-            // similar to one of them before the merge).  
-            //
-            // 2) the most similar cluster to the newly merged cluster
-            for (Map.Entry<Integer,Pairing> e :
-                     clusterSimilarities.entrySet()) {                
-
-                Integer clusterId = e.getKey();
+                       new Object[] { c1, c2, highestSimilarity });
+            merges.add(new Merge(c1, c2, highestSimilarity));
+            active[c2] = false;
+            queue.remove(c2);
+            numClusters--;
+
+            updateSimilarities(working, pointSimilarities, linkage, active,
+                               sizes, members, c1, c2);
+            sizes[c1] += sizes[c2];
+            if (members != null) {
+                members[c1].addAll(members[c2]);
+                members[c2] = null;
+            }
 
-                // Skip self comparisons for the merged clustering
-                if (clusterId == cluster1index)
+            // Clusters before the merged cluster that are now more similar to
+            // it than to their neighbor switch neighbors
+            for (int k = 0; k < c1; ++k) {
+                if (!active[k])
                     continue;
-
-                // First, calculate the similarity between this cluster and the
-                // newly merged cluster
-                double simToNewCluster = 
-                    getSimilarity(similarityMatrix, cluster1,
-                                  clusterAssignment.get(clusterId), linkage);
-
-                // If this cluster is now the most similar to the newly-merged
-                // cluster update its mapping
-                if (simToNewCluster > mostSimilarToMerged) {
-                    mostSimilarToMerged = simToNewCluster;
-                    mostSimilarToMergedId = clusterId;
-                }
-
-                // Second, if the pair was previously paired with one of the
-                // merged clusters, recompute what its most similar is
-                Pairing p = e.getValue();
-                if (p.pairedIndex == cluster1index 
-                        || p.pairedIndex == cluster2index) {
-                    // Reassign with the new most-similar
-                    e.setValue(findMostSimilar(clusterAssignment, clusterId, 
-                                               linkage, similarityMatrix));
+                float sim = similarity(working, k, c1);
+                if (sim > neighborSims[k]
+                        || (sim == neighborSims[k] && c1 < neighbors[k])) {
+                    neighbors[k] = c1;
+                    neighborSims[k] = sim;
+                    queue.put(k, sim);
                 }
             }
-            
-            // Update the new most similar to the newly-merged cluster
-            clusterSimilarities.put(cluster1index, 
-                                    new Pairing(mostSimilarToMerged, 
-                                                mostSimilarToMergedId));
-        }
 
+            findNeighbor(working, active, c1, neighbors, neighborSims);
+            if (neighbors[c1] < 0)
+                queue.remove(c1);
+            else
+                queue.put(c1, neighborSims[c1]);
+        }
         return merges;
-
     }
 
-    private List<Merge> buildDendogramMultithreaded(
-            final Matrix similarityMatrix, final ClusterLinkage linkage) {
-
-        int rows = similarityMatrix.rows();
-
-        // Create the initial set of clusters where each row is originally in
-        // its own cluster
-        final Map<Integer,Set<Integer>> clusterAssignment = 
-            generateInitialAssignment(rows);
-
-        LOGGER.finer("Calculating initial inter-cluster similarity using " 
-                    + linkage);
-        // Generate the initial set of cluster pairings based on the highest
-        // similarity.  This mapping will be update as the number of clusters
-        // are reduced, where merging a cluster will causes all the pairings
-        // pointing to it constinuents recalculated.
-        final Map<Integer,Pairing> clusterSimilarities =
-            new ConcurrentHashMap<Integer,Pairing>(clusterAssignment.size());
-
-        // For each cluster, find the most similar cluster.  Use the current
-        // thread as the task key so any other thread executing this method
-        // won't conflict.
-        Object taskKey = 
-            workQueue.registerTaskGroup(clusterAssignment.size());
-        for (Integer clusterId : clusterAssignment.keySet()) {
-            final Integer clustId = clusterId;
-            workQueue.add(taskKey, new Runnable() {
-                    public void run() {
-                          clusterSimilarities.put(clustId,
-                              findMostSimilar(clusterAssignment, clustId, 
-                                              linkage, similarityMatrix));
-                    }
-                });
-        }        
-        workQueue.await(taskKey);
-
-        LOGGER.finer("Assigning clusters");
-        List<Merge> merges = new ArrayList<Merge>(rows - 1);
-        
-
-        // Perform rows-1 merges to merge all elements
-        for (int mergeIter = 0; mergeIter < rows - 1; ++mergeIter) {
-            LOGGER.finer("Computing dendogram merge " + mergeIter);
-            System.out.println("Computing dendogram merge " 
-                               + mergeIter + "/" + (rows-1));
-
-
-            // Find the two clusters that have the highest similarity
-            int cluster1index = 0;
-            int cluster2index = 0;
-            double highestSimilarity = -1;
-
-            // For each cluster, look at the cluster with the highest
-            // similarity, and select the two with the global max
-            for (Map.Entry<Integer,Pairing> e : 
-                     clusterSimilarities.entrySet()) {
-
-                Pairing p = e.getValue();
-                Integer i = e.getKey();
-                Integer j = p.pairedIndex;
-                if (p.similarity > highestSimilarity) {
-                    cluster1index = i;
-                    cluster2index = j;
-                    highestSimilarity = p.similarity;
-                }
-            }            
-
-            // Order the indices so that the smaller index is first
-            if (cluster1index > cluster2index) {
-                int tmp = cluster2index;
-                cluster2index = cluster1index;
-                cluster1index = tmp;
-            }
-
-            // Track that the two clusters will be merged.  Always use the lower
-            // of the two values as the new cluster assignment.
-            Merge merge = 
-                new Merge(cluster1index, cluster2index, highestSimilarity);
-            merges.add(merge);
-
-            final Set<Integer> cluster1 = clusterAssignment.get(cluster1index);
-            Set<Integer> cluster2 = clusterAssignment.get(cluster2index);
-
-            LOGGER.log(Level.FINER, 
-                       "Merged cluster {0} with {1}, similarity {2}",
-                       new Object[] { cluster1index, cluster2index, 
-                                      highestSimilarity });
-
-            // Update the cluster assignments, adding in elements from the
-            // second cluster and remove all references to the second merged-in
-            // cluster.
-            cluster1.addAll(cluster2);
-            clusterAssignment.remove(cluster2index);
-            clusterSimilarities.remove(cluster2index);
-
-            // When down to just one cluster, stop the iteration
-            if (clusterAssignment.size() == 1)
-                break;
-
-            // Recalculate the inter-cluster similarity of a cluster in two
-            // cases:
-            // 
-            // 1) a cluster that paired with either of these two (i.e. was most
-            // similar to one of them before the merge).  
-            //
-            // 2) the most similar cluster to the newly merged cluster
-            final ConcurrentNavigableMap<Double,Integer> mostSimilarMap 
-                = new ConcurrentSkipListMap<Double,Integer>();
-            // Use size()-1 as the number of tasks because we skip adding a task
-            // for computing the new cluster's similarity to itself
-            taskKey = 
-                workQueue.registerTaskGroup(clusterSimilarities.size() - 1);
-
-            for (Map.Entry<Integer,Pairing> entry :
-                     clusterSimilarities.entrySet()) {
-                
-                // Thread-local state variables
-                final Map.Entry<Integer,Pairing> e = entry;
-                final Integer clusterId = e.getKey();
-                final Pairing p = e.getValue();
-                final int c1index = cluster1index;
-                final int c2index = cluster2index;
-
-                // Skip self comparisons for the merged clustering
-                if (clusterId == c1index)
+    /**
+     * Updates the similarities between the newly merged cluster, which keeps
+     * the id {@code c1}, and all other active clusters.
+     */
+    private static void updateSimilarities(
+            final PackedSymmetricMatrix working, 
+            final Matrix pointSimilarities, ClusterLinkage linkage, 
+            final boolean[] active, int[] sizes, 
+            final TIntArrayList[] members, final int c1, final int c2) {
+        int n = working.rows();
+        switch (linkage) {
+        case SINGLE_LINKAGE:
+        case COMPLETE_LINKAGE:
+        case MEAN_LINKAGE: {
+            double size1 = sizes[c1];
+            double size2 = sizes[c2];
+            for (int k = 0; k < n; ++k) {
+                if (!active[k] || k == c1)
                     continue;
-                
-                workQueue.add(taskKey, new Runnable() {
-                        public void run() {                            
-                            // Task-local state variables to use while
-                            // recalculating the similarities
-                            double mostSimilarToMerged = -1;
-                            Integer mostSimilarToMergedId = null;            
-
-                            // First, calculate the similarity between this
-                            // cluster and the newly merged cluster
-                            double simToNewCluster = 
-                                getSimilarity(similarityMatrix, cluster1,
-                                              clusterAssignment.get(clusterId), 
-                                              linkage);
-
-                            // If this cluster is now the most similar to
-                            // the newly-merged cluster update its mapping
-                            if (simToNewCluster > mostSimilarToMerged) {
-                                mostSimilarToMerged = simToNewCluster;
-                                mostSimilarToMergedId = clusterId;
-                            }
+                float s1 = working.getFloat(c1, k);
+                float s2 = working.getFloat(c2, k);
+                float sim;
+                if (linkage == ClusterLinkage.SINGLE_LINKAGE)
+                    sim = Math.max(s1, s2);
+                else if (linkage == ClusterLinkage.COMPLETE_LINKAGE)
+                    sim = Math.min(s1, s2);
+                else
+                    sim = (float)((size1 * s1 + size2 * s2) / (size1 + size2));
+                working.setFloat(c1, k, sim);
+            }
+            break;
+        }
 
-                            // Second, if the pair was previously paired with
-                            // one of the merged clusters, recompute what its
-                            // most similar is
-                            if (p.pairedIndex == c1index 
-                                    || p.pairedIndex == c2index) {
-                                // Reassign with the new most-similar
-                                e.setValue(findMostSimilar(clusterAssignment,
-                                         clusterId, linkage, similarityMatrix));
+        case MEDIAN_LINKAGE: {
+            // The median of the pair-wise similarities cannot be computed from
+            // the prior inter-cluster similarities, so compute each from the
+            // data points in parallel
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            for (int start = 0; start < n; start += BLOCK_SIZE) {
+                final int from = start;
+                final int to = Math.min(n, start + BLOCK_SIZE);
+                tasks.add(new Runnable() {
+                        public void run() {
+                            for (int k = from; k < to; ++k) {
+                                if (!active[k] || k == c1 || k == c2)
+                                    continue;
+                                working.set(c1, k, medianSimilarity(
+                                    pointSimilarities, members[c1], 
+                                    members[c2], members[k]));
                             }
-                      
-                            // Once all of the cluster for this thread has been
-                            // processed, update the similarity map.
-                            mostSimilarMap.put(mostSimilarToMerged,
-                                               mostSimilarToMergedId);
                         }
                     });
             }
-            
-            // Run each thread's comparisons
-            workQueue.await(taskKey);
-
-            // Collect the results from the similarity map.  The highest
-            // similarity should be the largest key in the map, with the
-            // clustering as the value.  Note that if there were ties in the
-            // highest similarity, the cluster is selected by the last thread,
-            // which is still arbitrarily fair.
-            Map.Entry<Double,Integer> highest = mostSimilarMap.lastEntry();
+            WORK_QUEUE.run(tasks);
+            break;
+        }
         
-            // Update the new most similar to the newly-merged cluster
-            clusterSimilarities.put(cluster1index, 
-                                    new Pairing(highest.getKey(), 
-                                                highest.getValue()));
+        default:
+            assert false : "unknown linkage method";
         }
+    }
 
-        return merges;
+    /**
+     * Returns the median similarity between the data points in the union of
+     * {@code cluster1} and {@code cluster2}, and those in {@code other}.
+     */
+    private static double medianSimilarity(Matrix pointSimilarities,
+                                           TIntArrayList cluster1,
+                                           TIntArrayList cluster2,
+                                           TIntArrayList other) {
+        double[] similarities = 
+            new double[(cluster1.size() + cluster2.size()) * other.size()];
+        int index = 0;
+        for (int o = 0; o < other.size(); ++o) {
+            int j = other.get(o);
+            for (int c = 0; c < cluster1.size(); ++c)
+                similarities[index++] = 
+                    pointSimilarities.get(cluster1.get(c), j);
+            for (int c = 0; c < cluster2.size(); ++c)
+                similarities[index++] = 
+                    pointSimilarities.get(cluster2.get(c), j);
+        }
+        Arrays.sort(similarities);
+        return similarities[similarities.length / 2];
     }
 
-    /*
-            // Recalculate the inter-cluster similarity of a cluster in two cases:
-            // 
-            // 1) a cluster that paired with either of these two (i.e. was most
-            // similar to one of them before the merge).  
-            //
-            // 2) the most similar cluster to the newly merged cluster
-            Collection<Runnable> similarityTasks = new ArrayList<Runnable>();
-            
-            // Dump the map's entries into a list so we can partition them among
-            // different processing threads.  Although it's a linear operation,
-            // this avoids two potential issues: (1) Having to create a new
-            // Runnable for each comparison, and (2) Having a large number of
-            // concurrent writes trying to update the most-similar value
-            // (high-write contention).
-            List<Map.Entry<Integer,Pairing>> toPartition = 
-                new ArrayList<Map.Entry<Integer,Pairing>>(
-                    clusterSimilarities.entrySet());
-
-            int numThreads = workQueue.numThreads();
-            int comparisonsPerThread = toPartition.size() / numThreads;
-
-            final ConcurrentNavigableMap<Double,Integer> mostSimilarMap 
-                = new ConcurrentSkipListMap<Double,Integer>();
-
-            final int c1index = cluster1index;
-            final int c2index = cluster2index;
-
-            for (int th = 0; th < numThreads; ++th) {
-                int start = th * comparisonsPerThread;
-                int end = Math.min((th + 1) * comparisonsPerThread, 
-                                   toPartition.size());
-                final List<Map.Entry<Integer,Pairing>> clustersToUpdate =
-                    toPartition.subList(start, end);                               
-                
-                similarityTasks.add(new Runnable() {
-                        public void run() {
-                            
-                            // Thread-local state variables to use while
-                            // recalculating the similarities
-                            double mostSimilarToMerged = -1;
-                            Integer mostSimilarToMergedId = null;            
+    /**
+     * Sets the neighbor of cluster {@code i} to the most similar active cluster
+     * with a higher id, with ties going to the lowest id, or to -1 if there is
+     * no such cluster.
+     */
+    private static void findNeighbor(PackedSymmetricMatrix working,
+                                     boolean[] active, int i,
+                                     int[] neighbors, float[] neighborSims) {
+        int best = -1;
+        float bestSim = Float.NEGATIVE_INFINITY;
+        for (int j = i + 1; j < active.length; ++j) {
+            if (!active[j])
+                continue;
+            float sim = similarity(working, i, j);
+            if (sim > bestSim || best < 0) {
+                best = j;
+                bestSim = sim;
+            }
+        }
+        neighbors[i] = best;
+        neighborSims[i] = bestSim;
+    }
 
-                            for (Map.Entry<Integer,Pairing> e :
-                                     clustersToUpdate) {
+    /**
+     * Returns the similarity of two clusters, treating undefined similarities
+     * as the lowest possible similarity.
+     */
+    private static float similarity(PackedSymmetricMatrix working, 
+                                    int i, int j) {
+        float sim = working.getFloat(i, j);
+        return (Float.isNaN(sim)) ? Float.NEGATIVE_INFINITY : sim;
+    }
 
-                                Integer clusterId = e.getKey();
-                                Pairing p = e.getValue();
+    /**
+     * Returns the matrix of inter-cluster similarities to be updated while
+     * merging, which is {@code similarityMatrix} itself if it is owned by the
+     * caller and is not needed to compute the {@code linkage}, or a copy
+     * otherwise.
+     */
+    private static PackedSymmetricMatrix workingCopy(Matrix similarityMatrix,
+                                                     ClusterLinkage linkage,
+                                                     boolean owned) {
+        if (owned && linkage != ClusterLinkage.MEDIAN_LINKAGE
+                && similarityMatrix instanceof PackedSymmetricMatrix)
+            return (PackedSymmetricMatrix)similarityMatrix;
+        int n = similarityMatrix.rows();
+        PackedSymmetricMatrix copy = createSimilarityMatrix(n);
+        for (int i = 0; i < n; ++i)
+            for (int j = i + 1; j < n; ++j)
+                copy.set(i, j, similarityMatrix.get(i, j));
+        return copy;
+    }
 
-                                // Skip self comparisons for the merged
-                                // clustering
-                                if (clusterId == c1index)
-                                    continue;
+    /**
+     * Agglomeratively merges clusters along the links of a sparse graph and
+     * returns the merges in the order they were made, where each merge keeps
+     * the lower of the two cluster ids.  As in {@link #agglomerate
+     * agglomerate}, each cluster keeps its most similar linked cluster in a
+     * priority queue, and invalidated neighbors are only found again once the
+     * cluster reaches the top of the queue.  When two clusters are merged, the
+     * links of the cluster with fewer links are moved into those of the other,
+     * so each slot of {@code links} may hold any cluster, whose id is the
+     * lowest id of its data points.
+     *
+     * @param links the links of each data point to its neighbors, with each
+     *        link shared by both of its data points.  These are overwritten by
+     *        the links between clusters.
+     * @param minClusters the number of clusters at which to stop merging, or a
+     *        non-positive value to stop using the threshold instead
+     * @param threshold the similarity below which clusters are not merged when
+     *        {@code minClusters} is non-positive
+     */
+    private static List<Merge> agglomerateGraph(
+            TIntObjectHashMap<Link>[] links, ClusterLinkage linkage,
+            int minClusters, double threshold) {
+        int n = links.length;
+        boolean[] active = new boolean[n];
+        Arrays.fill(active, true);
+        int[] ids = new int[n];
+        for (int i = 0; i < n; ++i)
+            ids[i] = i;
+
+        int[] neighbors = new int[n];
+        float[] neighborSims = new float[n];
+        ClusterHeap queue = new ClusterHeap(n);
+        for (int i = 0; i < n; ++i) {
+            findLinkedNeighbor(links, i, neighbors, neighborSims);
+            if (neighbors[i] >= 0)
+                queue.put(i, neighborSims[i]);
+        }
 
-                                // First, calculate the similarity between this
-                                // cluster and the newly merged cluster
-                                double simToNewCluster = 
-                                    getSimilarity(similarityMatrix, cluster1,
-                                              clusterAssignment.get(clusterId), 
-                                              linkage);
-
-                                // If this cluster is now the most similar to
-                                // the newly-merged cluster update its mapping
-                                if (simToNewCluster > mostSimilarToMerged) {
-                                    mostSimilarToMerged = simToNewCluster;
-                                    mostSimilarToMergedId = clusterId;
-                                }
+        List<Merge> merges = new ArrayList<Merge>(Math.max(0, n - 1));
+        int numClusters = n;
+        while (numClusters > Math.max(1, minClusters) && !queue.isEmpty()) {
+            int c1 = queue.top();
+            int c2 = neighbors[c1];
+            Link link = (active[c2]) ? links[c1].get(c2) : null;
+
+            // The neighbor similarity is an upper bound on the cluster's
+            // similarity to all others, so if it is no longer exact, find the
+            // current neighbor and check the queue again
+            if (link == null || link.sim != neighborSims[c1]) {
+                findLinkedNeighbor(links, c1, neighbors, neighborSims);
+                if (neighbors[c1] < 0)
+                    queue.remove(c1);
+                else
+                    queue.put(c1, neighborSims[c1]);
+                continue;
+            }
 
-                                // Second, if the pair was previously paired with
-                                // one of the merged clusters, recompute what its
-                                // most similar is
-                                if (p.pairedIndex == c1index 
-                                        || p.pairedIndex == c2index) {
-                                    // Reassign with the new most-similar
-                                    e.setValue(findMostSimilar(
-                                                  clusterAssignment,
-                                                  clusterId, linkage, 
-                                                  similarityMatrix));
-                                }
-                            }
+            double highestSimilarity = link.sim;
+            if (minClusters < 1 && highestSimilarity < threshold)
+                break;
 
-                            // Once all of the clusters for this thread have
-                            // been processed, update the similarit map.  We do
-                            // this last to minimize the contention on the map
-                            mostSimilarMap.put(mostSimilarToMerged,
-                                               mostSimilarToMergedId);
-                        }
-                    });
+            int remaining = Math.min(ids[c1], ids[c2]);
+            int merged = Math.max(ids[c1], ids[c2]);
+            LOGGER.log(Level.FINER, 
+                       "Merged cluster {0} with {1}, similarity {2}",
+                       new Object[] { remaining, merged, highestSimilarity });
+            merges.add(new Merge(remaining, merged, highestSimilarity));
+
+            int kept = (links[c2].size() > links[c1].size()) ? c2 : c1;
+            int removed = (kept == c1) ? c2 : c1;
+            ids[kept] = remaining;
+            active[removed] = false;
+            queue.remove(removed);
+            numClusters--;
+
+            // Move the links of the removed cluster to the kept one, combining
+            // the two links to any cluster that was linked to both
+            TIntObjectHashMap<Link> keptLinks = links[kept];
+            keptLinks.remove(removed);
+            TIntObjectIterator<Link> iter = links[removed].iterator();
+            while (iter.hasNext()) {
+                iter.advance();
+                int k = iter.key();
+                if (k == kept)
+                    continue;
+                Link moved = iter.value();
+                links[k].remove(removed);
+                Link combined = keptLinks.get(k);
+                if (combined == null) {
+                    combined = moved;
+                    keptLinks.put(k, moved);
+                    links[k].put(kept, moved);
+                }
+                else
+                    combined.add(moved, linkage);
+
+                if (neighbors[k] == removed)
+                    neighbors[k] = kept;
+                if (combined.sim > neighborSims[k]) {
+                    neighbors[k] = kept;
+                    neighborSims[k] = combined.sim;
+                    queue.put(k, combined.sim);
+                }
             }
-            
-            // Run each thread's comparisons
-            workQueue.run(similarityTasks);
-
-            // Collect the results from the similarity map.  The highest
-            // similarity should be the largest key in the map, with the
-            // clustering as the value.  Note that if there were ties in the
-            // highest similarity, the cluster is selected by the last thread,
-            // which is still arbitrarily fair.
-            Map.Entry<Double,Integer> highest = mostSimilarMap.lastEntry();
-        
-            // Update the new most similar to the newly-merged cluster
-            clusterSimilarities.put(cluster1index, 
-                                    new Pairing(highest.getKey(), 
-                                                highest.getValue()));
+            links[removed] = null;
+
+            findLinkedNeighbor(links, kept, neighbors, neighborSims);
+            if (neighbors[kept] < 0)
+                queue.remove(kept);
+            else
+                queue.put(kept, neighborSims[kept]);
         }
 
+        // Clusters that share no links have an undefined similarity, which is
+        // merged in the same way as an undefined similarity in the full matrix
+        if (minClusters > 0 && numClusters > minClusters) {
+            int[] remainingIds = new int[numClusters];
+            int r = 0;
+            for (int i = 0; i < n; ++i)
+                if (active[i])
+                    remainingIds[r++] = ids[i];
+            Arrays.sort(remainingIds);
+            for (int i = 1; numClusters > minClusters; ++i, --numClusters)
+                merges.add(new Merge(remainingIds[0], remainingIds[i],
+                                     Double.NEGATIVE_INFINITY));
+        }
         return merges;
     }
 
+    /**
+     * Sets the neighbor of cluster {@code i} to its most similar linked
+     * cluster, with ties going to the lowest slot, or to -1 if it has no links.
      */
+    private static void findLinkedNeighbor(TIntObjectHashMap<Link>[] links,
+                                           int i, int[] neighbors,
+                                           float[] neighborSims) {
+        int best = -1;
+        float bestSim = Float.NEGATIVE_INFINITY;
+        TIntObjectIterator<Link> iter = links[i].iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            float sim = iter.value().sim;
+            int j = iter.key();
+            if (best < 0 || sim > bestSim || (sim == bestSim && j < best)) {
+                best = j;
+                bestSim = sim;
+            }
+        }
+        neighbors[i] = best;
+        neighborSims[i] = bestSim;
+    }
 
+    /**
+     * Returns the links of the sparse graph that connects each row of {@code
+     * m} to its {@code numNeighbors} most similar rows.
+     */
+    private static TIntObjectHashMap<Link>[] buildNeighborGraph(
+            Matrix m, int numNeighbors, ClusterLinkage linkage,
+            SimType similarityFunction) {
+        int rows = m.rows();
+        List<String> rowNames = new ArrayList<String>(rows);
+        Map<String,DoubleVector> rowVectors =
+            new HashMap<String,DoubleVector>(rows * 2);
+        for (int i = 0; i < rows; ++i) {
+            String name = String.valueOf(i);
+            rowNames.add(name);
+            rowVectors.put(name, m.getRowVector(i));
+        }
+        SemanticSpace sspace = new VectorMapSemanticSpace<DoubleVector>(
+            rowVectors, "rows", Math.max(1, m.columns()));
+        NearestNeighborFinder finder = new SimpleNearestNeighborFinder(
+            sspace, Similarity.getSimilarityFunction(similarityFunction));
+        return buildNeighborGraph(rowNames, finder, numNeighbors, linkage);
+    }
 
     /**
-     * For the current cluster, finds the most similar cluster using the
-     * provided linkage method and returns the pairing for it.
+     * Returns the links of the sparse graph that connects each of the {@code
+     * words} to its {@code numNeighbors} most similar words according to the
+     * {@code finder}.  Each link is shared by both of its words.  The neighbors
+     * of each word are found in parallel.
      */
-    private static Pairing findMostSimilar(
-            Map<Integer,Set<Integer>> curAssignment, int curCluster, 
-            ClusterLinkage linkage,  Matrix similarityMatrix) {
-        // Start with with the most similar being set to the newly merged
-        // cluster, as this value has already been computed
-        double mostSimilar = -1;
-        Integer paired = -1;
-        for (Map.Entry<Integer,Set<Integer>> otherIdAndCluster 
-                 : curAssignment.entrySet()) {
-            Integer otherId = otherIdAndCluster.getKey();
-            if (otherId.equals(curCluster))
-                continue;
-            double similarity = getSimilarity(
-                similarityMatrix, curAssignment.get(curCluster),
-                otherIdAndCluster.getValue(), linkage);
-            if (similarity > mostSimilar) {
-                mostSimilar = similarity;
-                paired = otherId;
+    @SuppressWarnings("unchecked")
+    private static TIntObjectHashMap<Link>[] buildNeighborGraph(
+            final List<String> words, final NearestNeighborFinder finder,
+            final int numNeighbors, ClusterLinkage linkage) {
+        int n = words.size();
+        final TObjectIntHashMap<String> indices =
+            new TObjectIntHashMap<String>(n * 2, 0.5f, -1);
+        for (int i = 0; i < n; ++i)
+            indices.put(words.get(i), i);
+
+        final int[][] neighborIds = new int[n][];
+        final float[][] neighborSims = new float[n][];
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int start = 0; start < n; start += BLOCK_SIZE) {
+            final int from = start;
+            final int to = Math.min(n, start + BLOCK_SIZE);
+            tasks.add(new Runnable() {
+                    public void run() {
+                        for (int i = from; i < to; ++i) {
+                            SortedMultiMap<Double,String> mostSimilar = 
+                                finder.getMostSimilar(words.get(i), 
+                                                      numNeighbors);
+                            if (mostSimilar == null) {
+                                neighborIds[i] = new int[0];
+                                neighborSims[i] = new float[0];
+                                continue;
+                            }
+                            TIntArrayList ids = new TIntArrayList();
+                            TFloatArrayList sims = new TFloatArrayList();
+                            for (Map.Entry<Double,String> e 
+                                     : mostSimilar.entrySet()) {
+                                int j = indices.get(e.getValue());
+                                if (j >= 0 && j != i) {
+                                    ids.add(j);
+                                    sims.add(e.getKey().floatValue());
+                                }
+                            }
+                            neighborIds[i] = ids.toArray();
+                            neighborSims[i] = sims.toArray();
+                        }
+                    }
+                });
+        }
+        WORK_QUEUE.run(tasks);
+
+        TIntObjectHashMap<Link>[] links = new TIntObjectHashMap[n];
+        for (int i = 0; i < n; ++i)
+            links[i] = new TIntObjectHashMap<Link>(numNeighbors);
+        for (int i = 0; i < n; ++i) {
+            for (int e = 0; e < neighborIds[i].length; ++e) {
+                int j = neighborIds[i][e];
+                if (links[i].containsKey(j))
+                    continue;
+                Link link = new Link(neighborSims[i][e], linkage);
+                links[i].put(j, link);
+                links[j].put(i, link);
             }
+            // Release the neighbors once they are part of the graph
+            neighborIds[i] = null;
+            neighborSims[i] = null;
         }
-        return new Pairing(mostSimilar, paired);
+        return links;
     }
 
     /**
      * Returns the final mapping of data points as an array where each row is
-     * assigned to a single cluster value from 0 to <i>n</u>, the number of
-     * clusters.
-     *
-     * @param assignment a mapping from cluster number to the data points (rows)
-     *        that are contained in it
-     * @param p the number of initial data points
-     *
-     * @return the cluster assignment
+     * assigned to a single cluster value from 0 to <i>n</i>, the number of
+     * clusters, after applying the {@code merges} to the data points.
      */
-    private static int[] toAssignArray(Map<Integer,Set<Integer>> assignment, 
-                                       int numDataPoints) {
-        int[] clusters = new int[numDataPoints];
+    private static int[] toAssignArray(List<Merge> merges, int numDataPoints) {
+        // Each merge keeps the lower id, so following the merges from the
+        // last to the first maps each merged cluster to its final cluster
+        int[] parents = new int[numDataPoints];
         for (int i = 0; i < numDataPoints; ++i)
-            clusters[i] = -1;
+            parents[i] = i;
+        for (int m = merges.size() - 1; m >= 0; --m) {
+            Merge merge = merges.get(m);
+            parents[merge.mergedCluster()] = 
+                parents[merge.remainingCluster()];
+        }
+
+        int[] clusters = new int[numDataPoints];
+        int[] clusterIndices = new int[numDataPoints];
+        Arrays.fill(clusterIndices, -1);
         int clusterIndex = 0;
-        for (Set<Integer> cluster : assignment.values()) {
-            // Decide whether this cluster has already been assigned by picking
-            // out the first element in the cluster and seeing if it has the
-            // dummy cluster value (-1)
-            int r = cluster.iterator().next();
-            if (clusters[r] != -1)
-                continue;
-            // Otherwise the row this cluster needs to be assigned a cluster
-            // index
-            for (int row : cluster) 
-                clusters[row] = clusterIndex;
-            // Increment the cluster index for the next cluster
-            clusterIndex++;
+        for (int i = 0; i < numDataPoints; ++i) {
+            int root = parents[i];
+            if (clusterIndices[root] == -1)
+                clusterIndices[root] = clusterIndex++;
+            clusters[i] = clusterIndices[root];
         }
         LOGGER.info("total number of clusters: " + clusterIndex);
         return clusters;
@@ -1104,150 +1183,258 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
     }
 
     /**
-     *
-     * @param numDataPoints the number of initial data points
+     * Returns a {@link PackedSymmetricMatrix} for the similarities of {@code
+     * size} data points, which is memory mapped if it would take up more than
+     * half of the available heap.
      */
-    private static Map<Integer,Set<Integer>> generateInitialAssignment(
-        int numDataPoints) {
-        Map<Integer,Set<Integer>> clusterAssignment = 
-            new HashMap<Integer,Set<Integer>>(numDataPoints);
-        for (int i = 0; i < numDataPoints; ++i) {
-            HashSet<Integer> cluster=  new HashSet<Integer>();
-            cluster.add(i);
-            clusterAssignment.put(i, cluster);
-        }
-        return clusterAssignment;
+    private static PackedSymmetricMatrix createSimilarityMatrix(int size) {
+        Runtime r = Runtime.getRuntime();
+        long available = r.maxMemory() - (r.totalMemory() - r.freeMemory());
+        boolean onDisk = PackedSymmetricMatrix.numValues(size) * 4 > available / 2;
+        if (onDisk)
+            LOGGER.fine("Storing the similarity matrix on disk");
+        return new PackedSymmetricMatrix(size, onDisk);
     }
 
     /**
      * Computes and returns the similarity matrix for {@code m} using the
-     * specified similarity function
+     * specified similarity function.  The matrix is filled in parallel, with
+     * each task computing a block of rows.
      */
-    private static Matrix computeSimilarityMatrix(Matrix m, 
-                                                  SimType similarityFunction) {
-        Matrix similarityMatrix = 
-            Matrices.create(m.rows(), m.rows(), Matrix.Type.DENSE_ON_DISK);
-        for (int i = 0; i < m.rows(); ++i) {
-            for (int j = i + 1; j < m.rows(); ++j) {
-                double similarity = 
-                    Similarity.getSimilarity(similarityFunction,
-                                             m.getRowVector(i),
-                                             m.getRowVector(j));
-                similarityMatrix.set(i, j, similarity);
-                similarityMatrix.set(j, i, similarity);
-            }
+    private static PackedSymmetricMatrix computeSimilarityMatrix(
+            Matrix m, final SimType similarityFunction) {
+        final int rows = m.rows();
+        final PackedSymmetricMatrix similarityMatrix = 
+            createSimilarityMatrix(rows);
+
+        // Access each row once, rather than once for every comparison
+        final DoubleVector[] vectors = new DoubleVector[rows];
+        for (int i = 0; i < rows; ++i)
+            vectors[i] = m.getRowVector(i);
+
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int start = 0; start < rows; start += BLOCK_SIZE) {
+            final int from = start;
+            final int to = Math.min(rows, start + BLOCK_SIZE);
+            tasks.add(new Runnable() {
+                    public void run() {
+                        // Compare the rows of the block against a block of
+                        // later rows at a time so that both stay in cache
+                        for (int j0 = from; j0 < rows; j0 += BLOCK_SIZE) {
+                            int j1 = Math.min(rows, j0 + BLOCK_SIZE);
+                            for (int i = from; i < to; ++i) {
+                                for (int j = Math.max(i + 1, j0); j < j1; ++j) {
+                                    similarityMatrix.set(i, j, 
+                                        Similarity.getSimilarity(
+                                            similarityFunction, 
+                                            vectors[i], vectors[j]));
+                                }
+                            }
+                        }
+                    }
+                });
         }
+        WORK_QUEUE.run(tasks);
         return similarityMatrix;
     }
 
     /**
-     * Returns the similarity of two clusters according the specified linkage
-     * function.
-     * 
-     * @param similarityMatrix a matrix containing pair-wise similarity of each
-     *        data point in the entire set
-     * @param cluster the first cluster to be considered
-     * @param toAdd the second cluster to be considered
-     * @param linkage the method by which the similarity of the two clusters
-     *        should be computed
-     *
-     * @return the similarity of the two clusters
+     * The similarity of two linked clusters in the sparse neighbor graph, which
+     * is computed from the similarities of the edges between their data points.
      */
-    private static double getSimilarity(Matrix similarityMatrix,
-                                        Set<Integer> cluster, 
-                                        Set<Integer> toAdd,
-                                        ClusterLinkage linkage) {
-        double similarity = -1;
-        switch (linkage) {
-        case SINGLE_LINKAGE: {
-            double highestSimilarity = -1;
-            for (int i : cluster) {
-                for (int j : toAdd) {
-                    double s = similarityMatrix.get(i, j);
-                    if (s > highestSimilarity)
-                        highestSimilarity = s;
-                }
-            }
-            similarity = highestSimilarity;
-            break;
-        }
+    private static class Link {
 
-        case COMPLETE_LINKAGE: {
-            double lowestSimilarity = 1;
-            for (int i : cluster) {
-                for (int j : toAdd) {
-                    double s = similarityMatrix.get(i, j);
-                    if (s < lowestSimilarity)
-                        lowestSimilarity = s;
-                }
-            }
-            similarity = lowestSimilarity;
-            break;
-        }
+        /**
+         * The similarity of the two clusters according to the linkage.
+         */
+        float sim;
 
-        case MEAN_LINKAGE: {
-            double similaritySum = 0;
-            for (int i : cluster) {
-                for (int j : toAdd) {
-                    similaritySum += similarityMatrix.get(i, j);
-                }
-            }
-            similarity = similaritySum / (cluster.size() * toAdd.size());
-            break;
+        /**
+         * The total similarity of the edges, for {@link
+         * ClusterLinkage#MEAN_LINKAGE}.
+         */
+        double total;
+
+        /**
+         * The number of edges between the two clusters.
+         */
+        int count;
+
+        /**
+         * The sorted similarities of the edges, for {@link
+         * ClusterLinkage#MEDIAN_LINKAGE}.
+         */
+        float[] sims;
+
+        public Link(float sim, ClusterLinkage linkage) {
+            this.sim = sim;
+            total = sim;
+            count = 1;
+            if (linkage == ClusterLinkage.MEDIAN_LINKAGE)
+                sims = new float[] { sim };
         }
 
-        case MEDIAN_LINKAGE: {
-            double[] similarities = new double[cluster.size() * toAdd.size()];
-            int index = 0;
-            for (int i : cluster) {
-                for (int j : toAdd) {
-                    similarities[index++] = similarityMatrix.get(i, j);
-                }
+        /**
+         * Adds the edges of the other link to this link and updates the
+         * similarity.
+         */
+        public void add(Link other, ClusterLinkage linkage) {
+            total += other.total;
+            count += other.count;
+            switch (linkage) {
+            case SINGLE_LINKAGE:
+                sim = Math.max(sim, other.sim);
+                break;
+            case COMPLETE_LINKAGE:
+                sim = Math.min(sim, other.sim);
+                break;
+            case MEAN_LINKAGE:
+                sim = (float)(total / count);
+                break;
+            case MEDIAN_LINKAGE: {
+                float[] merged = new float[sims.length + other.sims.length];
+                int i = 0, j = 0, k = 0;
+                while (i < sims.length && j < other.sims.length)
+                    merged[k++] = (sims[i] <= other.sims[j]) 
+                        ? sims[i++] : other.sims[j++];
+                while (i < sims.length)
+                    merged[k++] = sims[i++];
+                while (j < other.sims.length)
+                    merged[k++] = other.sims[j++];
+                sims = merged;
+                sim = sims[sims.length / 2];
+                break;
+            }
+            default:
+                assert false : "unknown linkage method";
             }
-            Arrays.sort(similarities);
-            similarity = similarities[similarities.length / 2];
-            break;
-        }
-        
-        default:
-            assert false : "unknown linkage method";
         }
-        return similarity;
     }
 
     /**
-     * A utility structure for holding the assignment of a cluster to another
-     * cluster by means of a high similarity.
+     * An indexed binary heap of cluster ids ordered by the similarity of each
+     * cluster to its neighbor, with the most similar cluster at the top and
+     * ties going to the lowest id.
      */
-    private static class Pairing implements Comparable<Pairing> {
-        
+    private static class ClusterHeap {
+
         /**
-         * The similarity of the other cluster to the cluster indicated by
-         * {@code pairedIndex}
+         * The cluster ids in heap order.
          */
-        public final double similarity;
+        private final int[] heap;
 
         /**
-         * The index of the cluster that is paired
+         * The position of each cluster id in {@code heap}, or -1 if it is not
+         * in the heap.
          */
-        public final int pairedIndex;
+        private final int[] positions;
 
-        public Pairing(double similarity, int pairedIndex) {
-            this.similarity = similarity;
-            this.pairedIndex = pairedIndex;
+        /**
+         * The similarity of each cluster id in the heap.
+         */
+        private final float[] keys;
+
+        /**
+         * The number of cluster ids in the heap.
+         */
+        private int size;
+
+        public ClusterHeap(int capacity) {
+            heap = new int[capacity];
+            positions = new int[capacity];
+            keys = new float[capacity];
+            Arrays.fill(positions, -1);
         }
 
-        public int compareTo(Pairing p) {
-            return (int)((p.similarity - similarity) * Integer.MAX_VALUE);
+        public boolean isEmpty() {
+            return size == 0;
         }
 
-        public boolean equals(Object o) {
-            return (o instanceof Pairing)
-                && ((Pairing)o).pairedIndex == pairedIndex;
+        /**
+         * Returns the cluster id with the highest similarity.
+         */
+        public int top() {
+            return heap[0];
+        }
+
+        /**
+         * Adds the cluster id with the specified similarity, or updates its
+         * similarity if it is already in the heap.
+         */
+        public void put(int id, float key) {
+            int pos = positions[id];
+            if (pos < 0) {
+                pos = size++;
+                heap[pos] = id;
+                positions[id] = pos;
+                keys[id] = key;
+                siftUp(pos);
+            }
+            else {
+                float old = keys[id];
+                keys[id] = key;
+                if (key > old)
+                    siftUp(pos);
+                else
+                    siftDown(pos);
+            }
+        }
+
+        /**
+         * Removes the cluster id from the heap if it is present.
+         */
+        public void remove(int id) {
+            int pos = positions[id];
+            if (pos < 0)
+                return;
+            positions[id] = -1;
+            int last = heap[--size];
+            if (pos == size)
+                return;
+            heap[pos] = last;
+            positions[last] = pos;
+            siftUp(pos);
+            siftDown(positions[last]);
+        }
+
+        /**
+         * Returns {@code true} if cluster {@code a} belongs above cluster
+         * {@code b}.
+         */
+        private boolean before(int a, int b) {
+            return keys[a] > keys[b] || (keys[a] == keys[b] && a < b);
+        }
+
+        private void siftUp(int pos) {
+            int id = heap[pos];
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (!before(id, heap[parent]))
+                    break;
+                heap[pos] = heap[parent];
+                positions[heap[pos]] = pos;
+                pos = parent;
+            }
+            heap[pos] = id;
+            positions[id] = pos;
+        }
+
+        private void siftDown(int pos) {
+            int id = heap[pos];
+            while (true) {
+                int child = 2 * pos + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && before(heap[child + 1], heap[child]))
+                    child++;
+                if (!before(heap[child], id))
+                    break;
+                heap[pos] = heap[child];
+                positions[heap[pos]] = pos;
+                pos = child;
+            }
+            heap[pos] = id;
+            positions[id] = pos;
         }
-        
-        public int hashCode() {
-            return pairedIndex;
-        }        
     }
 }
@@ -158,7 +158,7 @@ public class LinkClustering implements Clustering, java.io.Serializable {
         mergeOrder = null;
         edgeList = null;
         numRows = 0;
-        workQueue = WorkQueue.getWorkQueue();
+        workQueue = WorkQueue.getWorkQueue(WorkQueue.CLUSTERING_QUEUE);
     }
 
     /**
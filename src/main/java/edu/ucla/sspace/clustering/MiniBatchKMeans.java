@@ -0,0 +1,627 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.ucla.sspace.clustering;
+
+import edu.ucla.sspace.clustering.seeding.KMeansSeed;
+
+import edu.ucla.sspace.matrix.Matrices;
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.MatrixFile;
+
+import edu.ucla.sspace.util.ReflectionUtil;
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseVector;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A mini-batch implementation of K-Means that streams the data points rather
+ * than requiring them all to be in memory.  The rows are read in order, in
+ * batches of a fixed size, from either a {@link Matrix}, such as a memory
+ * mapped {@link edu.ucla.sspace.matrix.OnDiskMatrix OnDiskMatrix}, or from a
+ * {@link MatrixFile} of any {@link edu.ucla.sspace.matrix.MatrixIO.Format
+ * MatrixIO.Format}.  The algorithm is based on the following paper:
+ *
+ *   <li style="font-family:Garamond, Georgia, serif"> D. Sculley, "Web-Scale
+ *   K-Means Clustering," in <i>Proceedings of the 19th International Conference
+ *   on World Wide Web</i>, 2010</li>
+ *
+ * <p>
+ *
+ * Each batch of data points is assigned to the nearest centroid, by Euclidean
+ * distance, in parallel.  Each centroid is then moved towards the mean of its
+ * newly assigned points with a per-center learning rate of one over the number
+ * of points the center has been assigned so far, which keeps each centroid
+ * equal to the running mean of its points.  The initial centroids are selected
+ * with a {@link KMeansSeed} from a uniform sample of one batch of data points.
+ * Clustering stops after a maximum number of passes over the data or once a
+ * pass moves the centroids less than a relative tolerance.  A final pass
+ * assigns every data point to its nearest centroid.  The inertia and centroid
+ * movement of each pass are logged and are available from {@link
+ * #getConvergence()} after clustering.
+ *
+ * <p>
+ *
+ * This class supports the following properties:
+ *
+ * <dl style="margin-left: 1em">
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #BATCH_SIZE_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@value #DEFAULT_BATCH_SIZE}
+ *
+ * <dd style="padding-top: .5em">The number of data points in each batch.  At
+ *      most this many data points are held in memory at once.<p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #MAX_PASSES_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@value #DEFAULT_MAX_PASSES}
+ *
+ * <dd style="padding-top: .5em">The maximum number of passes over the data
+ *      points used to update the centroids.<p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #TOLERANCE_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@value #DEFAULT_TOLERANCE}
+ *
+ * <dd style="padding-top: .5em">The distance the centroids must move in a
+ *      pass, relative to their magnitude, for clustering to continue.<p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #SEED_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@value #DEFAULT_SEED}
+ *
+ * <dd style="padding-top: .5em">The {@link KMeansSeed} used to select the
+ *      initial centroids.<p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #RANDOM_SEED_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> the current time
+ *
+ * <dd style="padding-top: .5em">The value used to seed the uniform sample of
+ *      data points from which the initial centroids are selected.  Setting
+ *      this property makes the sample reproducible.<p>
+ *
+ * </dl>
+ *
+ * This class is thread-safe, although {@link #getConvergence()} only reports
+ * the most recently completed clustering.
+ *
+ * @author David Jurgens
+ */
+public class MiniBatchKMeans implements Clustering {
+
+    /**
+     * A property prefix for specifiying options when using {@link
+     * MiniBatchKMeans}.
+     */
+    public static final String PROPERTY_PREFIX =
+        "edu.ucla.sspace.clustering.MiniBatchKMeans";
+
+    /**
+     * The property to set the number of data points in each batch.
+     */
+    public static final String BATCH_SIZE_PROPERTY =
+        PROPERTY_PREFIX + ".batchSize";
+
+    /**
+     * The property to set the maximum number of passes over the data.
+     */
+    public static final String MAX_PASSES_PROPERTY =
+        PROPERTY_PREFIX + ".maxPasses";
+
+    /**
+     * The property to set the relative centroid movement below which the
+     * clustering is considered converged.
+     */
+    public static final String TOLERANCE_PROPERTY =
+        PROPERTY_PREFIX + ".tolerance";
+
+    /**
+     * A property for setting the {@link KMeansSeed} algorithm to use.
+     */
+    public static final String SEED_PROPERTY =
+        PROPERTY_PREFIX + ".seed";
+
+    /**
+     * Specifies the value to use in seeding the source of randomness for
+     * sampling the data points.  If no seed is provided, a random seed is used.
+     */
+    public static final String RANDOM_SEED_PROPERTY =
+        PROPERTY_PREFIX + ".randomSeed";
+
+    /**
+     * The default batch size.
+     */
+    public static final String DEFAULT_BATCH_SIZE = "1000";
+
+    /**
+     * The default maximum number of passes.
+     */
+    public static final String DEFAULT_MAX_PASSES = "10";
+
+    /**
+     * The default convergence tolerance.
+     */
+    public static final String DEFAULT_TOLERANCE = "1e-4";
+
+    /**
+     * The default seed algorithm used.
+     */
+    public static final String DEFAULT_SEED =
+        "edu.ucla.sspace.clustering.seeding.KMeansPlusPlusSeed";
+
+    /**
+     * The logger to which clustering status updates will be written.
+     */
+    private static final Logger LOGGER =
+        Logger.getLogger(MiniBatchKMeans.class.getName());
+
+    /**
+     * The work queue on which each batch is assigned in parallel.
+     */
+    private static final WorkQueue WORK_QUEUE =
+        WorkQueue.getWorkQueue(WorkQueue.CLUSTERING_QUEUE);
+
+    /**
+     * The convergence of the most recently completed clustering.
+     */
+    private volatile Convergence convergence;
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     */
+    public Assignments cluster(Matrix matrix, Properties properties) {
+        throw new UnsupportedOperationException(
+            "MiniBatchKMeans requires the number of clusters to be set.");
+    }
+
+    /**
+     * {@inheritDoc}  The rows of {@code matrix} are accessed in order and only
+     * a single batch of rows is referenced at a time.
+     */
+    public Assignments cluster(final Matrix matrix,
+                               int numClusters,
+                               Properties properties) {
+        Iterable<DoubleVector> rows = new Iterable<DoubleVector>() {
+            public Iterator<DoubleVector> iterator() {
+                return new Iterator<DoubleVector>() {
+                    int row = 0;
+                    public boolean hasNext() {
+                        return row < matrix.rows();
+                    }
+                    public DoubleVector next() {
+                        return matrix.getRowVector(row++);
+                    }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        int[] assignments = cluster(rows, numClusters, properties);
+        return toAssignments(assignments, numClusters, matrix);
+    }
+
+    /**
+     * Clusters the rows of {@code matrixFile} into the specified number of
+     * clusters, streaming the rows from disk.  The returned {@link Assignments}
+     * have no access to the data points.
+     *
+     * @param matrixFile the matrix whose row data points are to be clustered
+     * @param numClusters the number of clusters to generate
+     * @param properties the properties to use for any parameters of the
+     *        algorithm
+     *
+     * @return the cluster assignment of each row in the matrix
+     */
+    public Assignments cluster(MatrixFile matrixFile,
+                               int numClusters,
+                               Properties properties) {
+        int[] assignments = 
+            cluster(matrixFile.rows(), numClusters, properties);
+        return toAssignments(assignments, numClusters, null);
+    }
+
+    /**
+     * Returns the convergence of the most recently completed clustering, or
+     * {@code null} if no clustering has completed.
+     */
+    public Convergence getConvergence() {
+        return convergence;
+    }
+
+    /**
+     * Clusters the data points, which are read in order from {@code rows} once
+     * for each pass, and returns the cluster of each point.
+     */
+    private int[] cluster(Iterable<DoubleVector> rows, int numClusters,
+                          Properties properties) {
+        int batchSize = Integer.parseInt(properties.getProperty(
+            BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+        int maxPasses = Integer.parseInt(properties.getProperty(
+            MAX_PASSES_PROPERTY, DEFAULT_MAX_PASSES));
+        double tolerance = Double.parseDouble(properties.getProperty(
+            TOLERANCE_PROPERTY, DEFAULT_TOLERANCE));
+        KMeansSeed seedType = ReflectionUtil.getObjectInstance(
+            properties.getProperty(SEED_PROPERTY, DEFAULT_SEED));
+        String randomSeed = properties.getProperty(RANDOM_SEED_PROPERTY);
+        Random random = (randomSeed == null)
+            ? new Random()
+            : new Random(Long.parseLong(randomSeed));
+        if (batchSize < numClusters)
+            throw new IllegalArgumentException(
+                "The batch size must be at least the number of clusters");
+
+        // Select the initial centroids from a uniform sample of the data
+        // points, which avoids biasing the seeds towards the start of files
+        // whose rows are grouped in some order.
+        List<DoubleVector> sample = sample(rows, batchSize, random);
+        if (sample.size() < numClusters)
+            throw new IllegalArgumentException(
+                "Cannot cluster " + sample.size() + " data points into " +
+                numClusters + " clusters");
+        DoubleVector[] seeds = seedType.chooseSeeds(
+            numClusters, Matrices.asMatrix(sample));
+        sample = null; // for explicit GC
+
+        int columns = seeds[0].length();
+        double[][] centroids = new double[numClusters][columns];
+        double[] magnitudes = new double[numClusters];
+        for (int c = 0; c < numClusters; ++c) {
+            for (int j = 0; j < columns; ++j)
+                centroids[c][j] = seeds[c].get(j);
+            magnitudes[c] = squaredMagnitude(centroids[c]);
+        }
+        long[] counts = new long[numClusters];
+
+        Convergence conv = new Convergence();
+        for (int pass = 0; pass < maxPasses; ++pass) {
+            double[][] start = new double[numClusters][];
+            for (int c = 0; c < numClusters; ++c)
+                start[c] = centroids[c].clone();
+
+            double inertia = 0;
+            long points = 0;
+            List<DoubleVector> batch = new ArrayList<DoubleVector>(batchSize);
+            Iterator<DoubleVector> it = rows.iterator();
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() == batchSize || !it.hasNext()) {
+                    inertia += updateBatch(
+                        batch, centroids, magnitudes, counts);
+                    points += batch.size();
+                    batch.clear();
+                }
+            }
+
+            double shift = 0;
+            double norm = 0;
+            for (int c = 0; c < numClusters; ++c) {
+                for (int j = 0; j < columns; ++j) {
+                    double d = centroids[c][j] - start[c][j];
+                    shift += d * d;
+                }
+                norm += magnitudes[c];
+            }
+            double relativeShift = (norm == 0) 
+                ? Math.sqrt(shift) 
+                : Math.sqrt(shift / norm);
+            conv.add(inertia / points, relativeShift);
+            if (LOGGER.isLoggable(Level.FINE))
+                LOGGER.fine(String.format(
+                    "pass %d: mean inertia %f, relative centroid shift %g",
+                    pass, inertia / points, relativeShift));
+            if (relativeShift <= tolerance) {
+                conv.converged = true;
+                break;
+            }
+        }
+        LOGGER.info("Mini-batch k-means finished after " + conv.passes() +
+                    " passes" + ((conv.converged) ? "" : " without converging"));
+
+        // Assign every data point to its final centroid
+        TIntArrayList assignments = new TIntArrayList();
+        List<DoubleVector> batch = new ArrayList<DoubleVector>(batchSize);
+        Iterator<DoubleVector> it = rows.iterator();
+        while (it.hasNext()) {
+            batch.add(it.next());
+            if (batch.size() == batchSize || !it.hasNext()) {
+                int[] nearest = new int[batch.size()];
+                assignBatch(batch, centroids, magnitudes, nearest);
+                assignments.add(nearest);
+                batch.clear();
+            }
+        }
+        convergence = conv;
+        return assignments.toArray();
+    }
+
+    /**
+     * Returns a uniform sample of at most {@code size} data points from {@code
+     * rows}, using {@code random} to select which points are kept.
+     */
+    private static List<DoubleVector> sample(Iterable<DoubleVector> rows,
+                                             int size, Random random) {
+        List<DoubleVector> sample = new ArrayList<DoubleVector>(size);
+        int seen = 0;
+        for (DoubleVector row : rows) {
+            if (sample.size() < size)
+                sample.add(row);
+            else {
+                int i = random.nextInt(seen + 1);
+                if (i < size)
+                    sample.set(i, row);
+            }
+            seen++;
+        }
+        return sample;
+    }
+
+    /**
+     * Assigns each data point in the batch to its nearest centroid and then
+     * moves each centroid to the running mean of the points assigned to it,
+     * returning the sum of the squared distances between the points and their
+     * nearest centroid prior to the update.
+     */
+    private static double updateBatch(List<DoubleVector> batch,
+                                      double[][] centroids,
+                                      double[] magnitudes,
+                                      long[] counts) {
+        int[] nearest = new int[batch.size()];
+        double inertia = assignBatch(batch, centroids, magnitudes, nearest);
+
+        // Sum the points assigned to each centroid.  Summing the batch first
+        // and then moving each centroid once is equivalent to moving the
+        // centroid after each point with a learning rate of 1 / count, but only
+        // touches each centroid once per batch.
+        int columns = centroids[0].length;
+        double[][] sums = new double[centroids.length][];
+        int[] batchCounts = new int[centroids.length];
+        for (int i = 0; i < nearest.length; ++i) {
+            int c = nearest[i];
+            if (sums[c] == null)
+                sums[c] = new double[columns];
+            add(sums[c], batch.get(i));
+            batchCounts[c]++;
+        }
+
+        for (int c = 0; c < centroids.length; ++c) {
+            if (batchCounts[c] == 0)
+                continue;
+            long total = counts[c] + batchCounts[c];
+            double retained = counts[c] / (double)total;
+            double[] centroid = centroids[c];
+            double[] sum = sums[c];
+            for (int j = 0; j < columns; ++j)
+                centroid[j] = centroid[j] * retained + sum[j] / total;
+            counts[c] = total;
+            magnitudes[c] = squaredMagnitude(centroid);
+        }
+        return inertia;
+    }
+
+    /**
+     * Assigns each point in {@code batch} to its nearest centroid, in
+     * parallel, storing the centroid indices in {@code nearest} and returning
+     * the sum of the squared distances to the nearest centroids.
+     */
+    private static double assignBatch(final List<DoubleVector> batch,
+                                      final double[][] centroids,
+                                      final double[] magnitudes,
+                                      final int[] nearest) {
+        final double[] distances = new double[batch.size()];
+        int numTasks = Math.min(batch.size(), WORK_QUEUE.availableThreads());
+        if (numTasks <= 1) {
+            for (int i = 0; i < batch.size(); ++i)
+                nearest[i] = nearest(
+                    batch.get(i), centroids, magnitudes, distances, i);
+        }
+        else {
+            List<Runnable> tasks = new ArrayList<Runnable>(numTasks);
+            int perTask = (batch.size() + numTasks - 1) / numTasks;
+            for (int t = 0; t < numTasks; ++t) {
+                final int from = t * perTask;
+                final int to = Math.min(batch.size(), from + perTask);
+                tasks.add(new Runnable() {
+                    public void run() {
+                        for (int i = from; i < to; ++i)
+                            nearest[i] = nearest(batch.get(i), centroids,
+                                                 magnitudes, distances, i);
+                    }
+                });
+            }
+            WORK_QUEUE.run(tasks);
+        }
+        double sum = 0;
+        for (double d : distances)
+            sum += d;
+        return sum;
+    }
+
+    /**
+     * Returns the index of the centroid nearest to {@code v} by Euclidean
+     * distance, with ties going to the lowest index, and stores the squared
+     * distance in {@code distances[index]}.
+     */
+    private static int nearest(DoubleVector v, double[][] centroids,
+                               double[] magnitudes, double[] distances,
+                               int index) {
+        int[] nonZeros = (v instanceof SparseVector)
+            ? ((SparseVector)v).getNonZeroIndices()
+            : null;
+        double vMagnitude = 0;
+        if (nonZeros != null) {
+            for (int j : nonZeros) {
+                double d = v.get(j);
+                vMagnitude += d * d;
+            }
+        }
+        else {
+            for (int j = 0; j < v.length(); ++j) {
+                double d = v.get(j);
+                vMagnitude += d * d;
+            }
+        }
+
+        int best = 0;
+        double bestDistance = Double.MAX_VALUE;
+        for (int c = 0; c < centroids.length; ++c) {
+            double[] centroid = centroids[c];
+            double dot = 0;
+            if (nonZeros != null) {
+                for (int j : nonZeros)
+                    dot += v.get(j) * centroid[j];
+            }
+            else {
+                for (int j = 0; j < centroid.length; ++j)
+                    dot += v.get(j) * centroid[j];
+            }
+            // Clamp rounding errors for points that equal the centroid
+            double distance = Math.max(0, vMagnitude - 2 * dot + magnitudes[c]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        distances[index] = bestDistance;
+        return best;
+    }
+
+    /**
+     * Adds the values of {@code v} to {@code sum}.
+     */
+    private static void add(double[] sum, DoubleVector v) {
+        if (v instanceof SparseVector) {
+            for (int j : ((SparseVector)v).getNonZeroIndices())
+                sum[j] += v.get(j);
+        }
+        else {
+            for (int j = 0; j < sum.length; ++j)
+                sum[j] += v.get(j);
+        }
+    }
+
+    /**
+     * Returns the squared magnitude of {@code v}.
+     */
+    private static double squaredMagnitude(double[] v) {
+        double m = 0;
+        for (double d : v)
+            m += d * d;
+        return m;
+    }
+
+    /**
+     * Returns the {@link Assignments} for the cluster index of each data point.
+     */
+    private static Assignments toAssignments(int[] assignments,
+                                             int numClusters,
+                                             Matrix matrix) {
+        Assignment[] a = new Assignment[assignments.length];
+        for (int i = 0; i < assignments.length; ++i)
+            a[i] = new HardAssignment(assignments[i]);
+        return new Assignments(numClusters, a, matrix);
+    }
+
+    /**
+     * The convergence of a single run of {@link MiniBatchKMeans}, reported for
+     * each pass over the data points.
+     */
+    public static class Convergence {
+
+        /**
+         * The mean squared distance between each data point and its nearest
+         * centroid in each pass.
+         */
+        private final TDoubleArrayList inertias;
+
+        /**
+         * The movement of the centroids in each pass, relative to their
+         * magnitude.
+         */
+        private final TDoubleArrayList shifts;
+
+        /**
+         * Whether the centroids moved less than the tolerance in the last pass.
+         */
+        private boolean converged;
+
+        Convergence() {
+            inertias = new TDoubleArrayList();
+            shifts = new TDoubleArrayList();
+        }
+
+        void add(double inertia, double shift) {
+            inertias.add(inertia);
+            shifts.add(shift);
+        }
+
+        /**
+         * Returns {@code true} if clustering stopped because the centroids
+         * moved less than the tolerance, rather than after the maximum number
+         * of passes.
+         */
+        public boolean converged() {
+            return converged;
+        }
+
+        /**
+         * Returns the number of passes made over the data points, not including
+         * the final assignment.
+         */
+        public int passes() {
+            return inertias.size();
+        }
+
+        /**
+         * Returns the mean squared Euclidean distance between each data point
+         * and the centroid it was assigned to during the specified pass.
+         */
+        public double inertia(int pass) {
+            return inertias.get(pass);
+        }
+
+        /**
+         * Returns the Euclidean distance the centroids moved during the
+         * specified pass, relative to the magnitude of the centroids at its
+         * end.
+         */
+        public double centroidShift(int pass) {
+            return shifts.get(pass);
+        }
+    }
+}
@@ -60,7 +60,17 @@ import java.util.List;
  * DoubleVector) modifiedMagnitude}.  For both functions, the first method is
  * cosidered to be the cluster centroid that is being modified and the second
  * vector is the data point that is being added to the centroid, without
- * actually affecting the cluster.
+ * actually affecting the cluster.  Both are computed from the cached magnitude
+ * of the centroid and a single dot product with the data point.
+ *
+ * </p>
+ *
+ * Sub classes may also implement {@link #getNewCentroidScoreBound(int,
+ * double) getNewCentroidScoreBound}, which bounds the score of an alternate
+ * cluster using only the magnitudes of its centroid and of the data point.
+ * {@link #update(int) update} uses these bounds to skip the clusters that
+ * cannot improve on the best move found so far, which avoids most of the dot
+ * products when there are many clusters.
  *
  * @author Keith Stevens
  */
@@ -92,6 +102,24 @@ public abstract class BaseFunction implements CriterionFunction {
      */
     protected double[] costs;
 
+    /**
+     * The magnitude of each centroid, which is maintained as data points are
+     * moved between clusters.  This is only set by {@link #setup(Matrix, int[],
+     * int) setup}.
+     */
+    protected double[] centroidMagnitudes;
+
+    /**
+     * The magnitude of each data point.
+     */
+    private double[] magnitudes;
+
+    /**
+     * The bounded change in score for moving the current data point to each
+     * cluster, which is reused by each call to {@link #update(int) update}.
+     */
+    private double[] boundDeltas;
+
     /**
      * Constructs a new {@link BaseFunction}.
      */
@@ -152,9 +180,16 @@ public abstract class BaseFunction implements CriterionFunction {
         }
 
         // Compute the cost of each centroid.
-        for (int c = 0; c < numClusters; ++c)
+        centroidMagnitudes = new double[numClusters];
+        for (int c = 0; c < numClusters; ++c) {
             centroids[c] = new DenseDynamicMagnitudeVector(
                     centroids[c].toArray());
+            centroidMagnitudes[c] = centroids[c].magnitude();
+        }
+        magnitudes = new double[matrix.size()];
+        for (int i = 0; i < magnitudes.length; ++i)
+            magnitudes[i] = matrix.get(i).magnitude();
+        boundDeltas = new double[numClusters];
 
         subSetup(m);
 
@@ -193,11 +228,47 @@ public abstract class BaseFunction implements CriterionFunction {
                                   clusterSizes[currentClusterIndex] - 1);
         deltaBase -= costs[currentClusterIndex];
 
+        // Bound the cost delta for moving the data point to each of the other
+        // clusters, and find the cluster with the most promising bound.
+        // Evaluating that cluster first makes it more likely that the bounds
+        // of the remaining clusters will show that they cannot improve on it.
+        double magnitude = magnitudes[currentVectorIndex];
+        int mostPromising = -1;
+        for (int i = 0; i < centroids.length; ++i) {
+            if (currentClusterIndex == i)
+                continue;
+            double bound = getNewCentroidScoreBound(i, magnitude);
+            // Loosen the bound slightly so that rounding in the exact score
+            // can never exceed it
+            bound += (isMaximize() ? 1e-9 : -1e-9) * Math.abs(bound);
+            boundDeltas[i] = bound - costs[i] + deltaBase;
+            if (!Double.isNaN(boundDeltas[i]) && (mostPromising < 0 || 
+                    isBetter(boundDeltas[i], i, 
+                             boundDeltas[mostPromising], mostPromising)))
+                mostPromising = i;
+        }
+
+        if (mostPromising >= 0) {
+            double delta = getNewCentroidScore(mostPromising, vector) 
+                - costs[mostPromising] + deltaBase;
+            if (isBetter(delta, mostPromising, bestDelta, bestDeltaIndex)) {
+                bestDelta = delta;
+                bestDeltaIndex = mostPromising;
+            }
+        }
+
         // Compute the cost delta for moving that data point to each of the
         // other possible clusters.
         for (int i = 0; i < centroids.length; ++i) {
-            // Skip the cluster the data point is already assigned to.
-            if (currentClusterIndex == i)
+            // Skip the cluster the data point is already assigned to, along
+            // with the cluster that has already been evaluated.
+            if (currentClusterIndex == i || mostPromising == i)
+                continue;
+
+            // Skip any cluster whose bound shows that it cannot improve on
+            // the best move.
+            if (!Double.isNaN(boundDeltas[i]) && 
+                    !isBetter(boundDeltas[i], i, bestDelta, bestDeltaIndex))
                 continue;
 
             // Compute the cost of adding the data point to the current
@@ -208,20 +279,9 @@ public abstract class BaseFunction implements CriterionFunction {
             // data points original cluster.
             double delta = newCost - costs[i] + deltaBase;
 
-            if (isMaximize()) {
-                // Remember this move if it's positive and the best seen so far.
-                // Negative detlas can be safely ignored since we only want to
-                // maximize the cost.
-                if (delta > 0 && delta > bestDelta) {
-                    bestDelta = delta;
-                    bestDeltaIndex = i;
-                }
-            } else {
-                // Remember this move if it's the best seen so far.
-                if (delta < bestDelta) {
-                    bestDelta = delta;
-                    bestDeltaIndex = i;
-                }
+            if (isBetter(delta, i, bestDelta, bestDeltaIndex)) {
+                bestDelta = delta;
+                bestDeltaIndex = i;
             }
         }
 
@@ -237,11 +297,15 @@ public abstract class BaseFunction implements CriterionFunction {
             clusterSizes[currentClusterIndex]--;
             clusterSizes[bestDeltaIndex]++;
 
-            // Update the centroids.
+            // Update the centroids, along with their magnitudes.
             centroids[currentClusterIndex] = subtract(
                 centroids[currentClusterIndex], vector);
             centroids[bestDeltaIndex] = VectorMath.add(
                 centroids[bestDeltaIndex], vector);
+            centroidMagnitudes[currentClusterIndex] = 
+                centroids[currentClusterIndex].magnitude();
+            centroidMagnitudes[bestDeltaIndex] = 
+                centroids[bestDeltaIndex].magnitude();
 
             // Update the assignment.
             assignments[currentVectorIndex] = bestDeltaIndex;
@@ -276,6 +340,37 @@ public abstract class BaseFunction implements CriterionFunction {
     protected abstract double getNewCentroidScore(int newCentroidIndex,
                                                   DoubleVector dataPoint);
 
+    /**
+     * Returns a bound on the score that {@link #getNewCentroidScore(int,
+     * DoubleVector) getNewCentroidScore} would return for the cluster, which
+     * is computed from {@link #centroidMagnitudes} and the magnitude of the
+     * data point.  The bound must be at least as large as the score if this
+     * function is maximized, and at most as large if it is minimized.  The
+     * default implementation returns {@code NaN}, which indicates that the
+     * cluster has no bound and must always be evaluated.
+     *
+     * @param newCentroidIndex The index of the current alternate centroid
+     * @param dataPointMagnitude The magnitude of the data point that is being
+     *        reassigned
+     */
+    protected double getNewCentroidScoreBound(int newCentroidIndex,
+                                              double dataPointMagnitude) {
+        return Double.NaN;
+    }
+
+    /**
+     * Returns {@code true} if moving the data point to the cluster at {@code
+     * index} with the change in score {@code delta} is a better move than the
+     * current best move.  Ties are broken in favor of the lower index, which
+     * selects the same move as evaluating the clusters in order.
+     */
+    private boolean isBetter(double delta, int index,
+                             double bestDelta, int bestIndex) {
+        if (delta == bestDelta)
+            return bestIndex >= 0 && index < bestIndex;
+        return (isMaximize()) ? delta > bestDelta : delta < bestDelta;
+    }
+
     protected void updateScores(int newCentroidIndex,
                                 int oldCentroidIndex,
                                 DoubleVector vector) {
@@ -312,6 +407,25 @@ public abstract class BaseFunction implements CriterionFunction {
         return newCentroid;
     }
 
+    /**
+     * Returns the dot product of the centroid {@code c} and the data point
+     * {@code v}, visiting only the non-zero values of {@code v} if it is
+     * sparse.
+     */
+    private static double dotProduct(DoubleVector c, DoubleVector v) {
+        double dot = 0;
+        if (v instanceof SparseDoubleVector) {
+            SparseDoubleVector sv = (SparseDoubleVector) v;
+            for (int i : sv.getNonZeroIndices())
+                dot += c.get(i) * sv.get(i);
+        } else {
+            int length = v.length();
+            for (int i = 0; i < length; ++i)
+                dot += c.get(i) * v.get(i);
+        }
+        return dot;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -347,27 +461,16 @@ public abstract class BaseFunction implements CriterionFunction {
      * Returns the magnitude squared of {@code c} as if {@code v} was added to
      * the vector.  We do this because it would be more costly, garbage
      * collection wise, to create a new vector for each alternate cluster and
-     * then throw away all but one of them.
+     * then throw away all but one of them.  Since {@code |c + v|^2 = |c|^2 +
+     * 2 c . v + |v|^2}, only the dot product needs to be computed when both
+     * vectors cache their magnitudes.
      */
     protected static double modifiedMagnitudeSqrd(DoubleVector c,
                                                   DoubleVector v) {
-        if (v instanceof SparseDoubleVector) {
-            SparseDoubleVector sv = (SparseDoubleVector) v;
-            int[] nonZeros = sv.getNonZeroIndices();
-
-            double magnitude = Math.pow(c.magnitude(), 2);
-            for (int i : nonZeros) {
-                double value = c.get(i);
-                magnitude -= Math.pow(value, 2);
-                magnitude += Math.pow(value + v.get(i), 2);
-            }
-            return magnitude;
-        } else {
-            double magnitude = 0;
-            for (int i = 0; i < c.length(); ++i)
-                magnitude += Math.pow(c.get(i) + v.get(i), 2);
-            return magnitude;
-        }
+        double cMagnitude = c.magnitude();
+        double vMagnitude = v.magnitude();
+        return Math.max(0, cMagnitude * cMagnitude + 2 * dotProduct(c, v) +
+                           vMagnitude * vMagnitude);
     }
 
     /**
@@ -380,30 +483,19 @@ public abstract class BaseFunction implements CriterionFunction {
     }
 
     /**
-     * Returns the magnitude squared of {@code c} as if {@code v} was added to
-     * the vector.  We do this because it would be more costly, garbage
-     * collection wise, to create a new vector for each alternate cluster and
-     * then throw away all but one of them.
+     * Returns the magnitude squared of {@code c} as if {@code v} was
+     * subtracted from the vector.  We do this because it would be more costly,
+     * garbage collection wise, to create a new vector for each alternate
+     * cluster and then throw away all but one of them.
      */
     protected static double subtractedMagnitudeSqrd(DoubleVector c,
                                                    DoubleVector v) {
-        if (v instanceof SparseDoubleVector) {
-            SparseDoubleVector sv = (SparseDoubleVector) v;
-            int[] nonZeros = sv.getNonZeroIndices();
-
-            double magnitude = Math.pow(c.magnitude(), 2);
-            for (int i : nonZeros) {
-                double value = c.get(i);
-                magnitude -= Math.pow(value, 2);
-                magnitude += Math.pow(value - v.get(i), 2);
-            }
-            return magnitude;
-        } else {
-            double magnitude = 0;
-            for (int i = 0; i < c.length(); ++i)
-                magnitude += Math.pow(c.get(i) - v.get(i), 2);
-            return magnitude;
-        }
+        double cMagnitude = c.magnitude();
+        double vMagnitude = v.magnitude();
+        // Clamp the result, as rounding may leave a small negative value when
+        // v is nearly all of c
+        return Math.max(0, cMagnitude * cMagnitude - 2 * dotProduct(c, v) +
+                           vMagnitude * vMagnitude);
     }
 
     /**
@@ -134,6 +134,8 @@ public abstract class HybridBaseFunction implements CriterionFunction {
         simToComplete = new double[numClusters];
         e1Costs = new double[numClusters];
         i1Costs = new double[numClusters];
+        e1Cost = 0;
+        i1Cost = 0;
 
         // Initialize the clusters.
         for (int c = 0; c < numClusters; ++c)
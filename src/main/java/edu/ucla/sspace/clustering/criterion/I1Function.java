@@ -85,6 +85,20 @@ public class I1Function extends BaseFunction {
                (clusterSizes[newCentroidIndex]+1);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The dot product of the centroid and the data point is at most the
+     * product of their magnitudes, so the squared magnitude of their sum is at
+     * most the square of the sum of their magnitudes.
+     */
+    protected double getNewCentroidScoreBound(int newCentroidIndex,
+                                              double dataPointMagnitude) {
+        double magnitude = centroidMagnitudes[newCentroidIndex] +
+                           dataPointMagnitude;
+        return magnitude * magnitude / (clusterSizes[newCentroidIndex]+1);
+    }
+
     /**
      * {@inheritDoc}
      */
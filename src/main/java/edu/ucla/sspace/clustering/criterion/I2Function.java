@@ -83,6 +83,17 @@ public class I2Function extends BaseFunction {
         return modifiedMagnitude(centroids[newCentroidIndex], dataPoint);
     }
     
+    /**
+     * {@inheritDoc}
+     *
+     * By the triangle inequality, the magnitude of the centroid with the data
+     * point added is at most the sum of their magnitudes.
+     */
+    protected double getNewCentroidScoreBound(int newCentroidIndex,
+                                              double dataPointMagnitude) {
+        return centroidMagnitudes[newCentroidIndex] + dataPointMagnitude;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -22,11 +22,20 @@
 package edu.ucla.sspace.coals;
 
 
+import gnu.trove.iterator.TIntIntIterator;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import gnu.trove.map.TIntIntMap;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
 import edu.ucla.sspace.common.SemanticSpace;
 
 import edu.ucla.sspace.matrix.CellMaskedSparseMatrix;
 import edu.ucla.sspace.matrix.ArrayMatrix;
 import edu.ucla.sspace.matrix.AtomicGrowingSparseMatrix;
+import edu.ucla.sspace.matrix.CompactingMatrixAccumulator;
 import edu.ucla.sspace.matrix.MatlabSparseMatrixBuilder;
 import edu.ucla.sspace.matrix.Matrices;
 import edu.ucla.sspace.matrix.Matrix;
@@ -39,31 +48,27 @@ import edu.ucla.sspace.matrix.Normalize;
 import edu.ucla.sspace.matrix.SparseMatrix;
 import edu.ucla.sspace.matrix.Transform;
 
-import edu.ucla.sspace.vector.CompactSparseVector;
-import edu.ucla.sspace.vector.SparseDoubleVector;
-import edu.ucla.sspace.vector.SparseHashDoubleVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.Vectors;
-import edu.ucla.sspace.vector.VectorMath;
 
 import edu.ucla.sspace.text.IteratorFactory;
 
+import edu.ucla.sspace.util.ConcurrentIndexer;
+
+import edu.ucla.sspace.util.primitive.IntIterator;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOError;
 import java.io.IOException;
 
-import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Properties;
-import java.util.Queue;
 import java.util.Set;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -167,12 +172,20 @@ public class Coals implements SemanticSpace {
         Logger.getLogger(Coals.class.getName());
 
     /**
-     * A mapping from each word to the vector the represents its semantics
+     * The co-occurrence counts of each word, whose rows and columns are the
+     * indices of the words.
      */
-    private Map<String, SparseDoubleVector> wordToSemantics;
+    private CompactingMatrixAccumulator cooccurrences;
 
     /**
-     * A mapping from word to index number.
+     * The row and column of each token in {@code cooccurrences}, assigned as
+     * the token is first seen.
+     */
+    private final ConcurrentIndexer<String> tokenIndexer;
+
+    /**
+     * A mapping from word to its row in the final matrix, which is {@code
+     * null} until {@link #processSpace(Properties) processSpace} is called.
      */
     private Map<String, Integer> termToIndex;
 
@@ -203,11 +216,6 @@ public class Coals implements SemanticSpace {
      */
     private final int maxDimensions;
 
-    /**
-     * A counter for keeping track of the index values of words.
-     */
-    private int wordIndexCounter;
-
     /**
      * The {@link MatrixFactorization} algorithm that will decompose the word by
      * document feature space into two smaller feature spaces: a word by class
@@ -234,9 +242,10 @@ public class Coals implements SemanticSpace {
                  int reducedDimensions,
                  int maxWords,
                  int maxDimensions) {
-        termToIndex = new HashMap<String, Integer>();
+        tokenIndexer = new ConcurrentIndexer<String>();
+        termToIndex = null;
         totalWordFreq = new ConcurrentHashMap<String, AtomicInteger>();
-        wordToSemantics = new HashMap<String, SparseDoubleVector>(1024, 4f);
+        cooccurrences = new CompactingMatrixAccumulator();
         finalCorrelation = null;
         this.transform = transform;
         this.reducer = reducer;
@@ -255,13 +264,17 @@ public class Coals implements SemanticSpace {
      * {@inheritDoc}
      */
     public Set<String> getWords() {
-        return termToIndex.keySet();
+        return (termToIndex == null)
+            ? Collections.unmodifiableSet(tokenIndexer.items())
+            : termToIndex.keySet();
     }
 
     /**
      * {@inheritDoc}
      */
     public Vector getVector(String term) {
+        if (termToIndex == null)
+            return null;
         Integer index = termToIndex.get(term);
         if (index == null) 
             return null;
@@ -284,19 +297,18 @@ public class Coals implements SemanticSpace {
      * {@inheritDoc}
      */
     public void processDocument(BufferedReader document) throws IOException {
-        Map<String, Integer> wordFreq = new HashMap<String, Integer>();
-        Map<String, SparseDoubleVector> wordDocSemantics =
-            new HashMap<String, SparseDoubleVector>();
+        TIntIntMap wordFreq = new TIntIntHashMap();
 
-        // Setup queues to track the set of previous and next words in a
+        // Setup lists to track the set of previous and next words in a
         // context.
-        Queue<String> prevWords = new ArrayDeque<String>();
-        Queue<String> nextWords = new ArrayDeque<String>();
+        TIntArrayList prevWords = new TIntArrayList(5);
+        TIntArrayList nextWords = new TIntArrayList(5);
 
-        Iterator<String> it = IteratorFactory.tokenizeOrdered(document);
+        IntIterator it =
+            IteratorFactory.tokenizeOrderedIds(document, tokenIndexer);
 
         for (int i = 0; i < 4 && it.hasNext(); ++i)
-            nextWords.offer(it.next());
+            nextWords.add(it.nextInt());
 
         // Compute the co-occurrance statistics of each focus word in the
         // document.
@@ -304,129 +316,55 @@ public class Coals implements SemanticSpace {
 
             // Slide over the context by one word.
             if (it.hasNext())
-                nextWords.offer(it.next());
+                nextWords.add(it.nextInt());
 
             // Get the focus word
-            String focusWord = nextWords.remove();
-            if (!focusWord.equals(IteratorFactory.EMPTY_TOKEN)) {
-                getIndexFor(focusWord);
-
+            int focusIndex = nextWords.removeAt(0);
+            if (focusIndex != IteratorFactory.EMPTY_TOKEN_ID) {
                 // Update the frequency count of the focus word.
-                Integer focusFreq = wordFreq.get(focusWord);
-                wordFreq.put(focusWord, (focusFreq == null)
-                        ? 1
-                        : 1 + focusFreq.intValue());
-
-                // Get the temprorary semantics for the focus word, create a new
-                // vector for them if needed.
-                SparseDoubleVector focusSemantics = wordDocSemantics.get(
-                        focusWord);
-                if (focusSemantics == null) {
-                    focusSemantics = new SparseHashDoubleVector(
-                            Integer.MAX_VALUE);
-                    wordDocSemantics.put(focusWord, focusSemantics);
-                }
+                wordFreq.adjustOrPutValue(focusIndex, 1, 1);
+
+                // The co-occurrences are summed in a buffer for this thread,
+                // which is periodically merged into the shared counts.
 
                 // Process the previous words.
                 int offset = 4 - prevWords.size();
-                for (String word : prevWords) {
+                for (int i = 0; i < prevWords.size(); ++i) {
                     offset++;
-                    if (word.equals(IteratorFactory.EMPTY_TOKEN))
+                    int index = prevWords.getQuick(i);
+                    if (index == IteratorFactory.EMPTY_TOKEN_ID)
                         continue;
-                    int index = getIndexFor(word);
-                    focusSemantics.add(index, offset);
+                    cooccurrences.add(focusIndex, index, offset);
                 }
 
                 // Process the next words.
                 offset = 5;
-                for (String word : nextWords) {
+                for (int i = 0; i < nextWords.size(); ++i) {
                     offset--;
-                    if (word.equals(IteratorFactory.EMPTY_TOKEN))
+                    int index = nextWords.getQuick(i);
+                    if (index == IteratorFactory.EMPTY_TOKEN_ID)
                         continue;
-                    int index = getIndexFor(word);
-                    focusSemantics.add(index, offset);
+                    cooccurrences.add(focusIndex, index, offset);
                 }
             }
 
-            prevWords.offer(focusWord);
+            prevWords.add(focusIndex);
             if (prevWords.size() > 4)
-                prevWords.remove();
-        }
-
-        // Add the temporary vectors for each word in this document to the 
-        // actual semantic fectors.
-        for (Map.Entry<String, SparseDoubleVector> e :
-                wordDocSemantics.entrySet()) {
-            SparseDoubleVector focusSemantics = getSemanticVector(
-                    e.getKey());
-            // Get the non zero indices before hand so that they are cached
-            // during the synchronized section.
-            focusSemantics.getNonZeroIndices();
-            synchronized (focusSemantics) {
-                VectorMath.add(focusSemantics, e.getValue());
-            }
+                prevWords.removeAt(0);
         }
 
         // Store the total frequency counts of the words seen in this document
         // so far.
-        for (Map.Entry<String, Integer> entry : wordFreq.entrySet()) {
-            int count = entry.getValue().intValue();
+        TIntIntIterator iter = wordFreq.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            int count = iter.value();
             AtomicInteger freq = totalWordFreq.putIfAbsent(
-                    entry.getKey(), new AtomicInteger(count));
+                    tokenIndexer.lookup(iter.key()), new AtomicInteger(count));
             if (freq != null)
                 freq.addAndGet(count);
         }
     }
-
-    /**
-     * Returns the current semantic vector for the provided word, or if the word
-     * is not currently in the semantic space, a vector is added for it and
-     * returned.
-     *
-     * @param word a word
-     *
-     * @return the {@code SemanticVector} for the provide word.
-     */
-    private SparseDoubleVector getSemanticVector(String word) {
-        SparseDoubleVector v = wordToSemantics.get(word);
-        if (v == null) {
-            // lock on the word in case multiple threads attempt to add it at
-            // once
-            synchronized(this) {
-                // recheck in case another thread added it while we were waiting
-                // for the lock
-                v = wordToSemantics.get(word);
-                if (v == null) {
-                    v = new CompactSparseVector();
-                    wordToSemantics.put(word, v);
-                }
-            }
-        }
-        return v;
-    }
-
-    /**
-     * Returns the index in the co-occurence matrix for this word.  If the word
-     * was not previously assigned an index, this method adds one for it and
-     * returns that index.
-     */
-    private int getIndexFor(String word) {
-        Integer index = termToIndex.get(word);
-        if (index == null) {     
-            synchronized(this) {
-                // recheck to see if the term was added while blocking
-                index = termToIndex.get(word);
-                // if another thread has not already added this word while the
-                // current thread was blocking waiting on the lock, then add it.
-                if (index == null) {
-                    int i = wordIndexCounter++;
-                    termToIndex.put(word, i);
-                    return i; // avoid the auto-boxing to assign i to index
-                }
-            }
-        }
-        return index;
-    }
                 
     /**
      * {@inheritDoc}
@@ -482,18 +420,20 @@ public class Coals implements SemanticSpace {
      * is modified to account for these changed.
      */
     private Matrix buildMatrix(int maxWords, int maxDimensions) {
-        // Convert the vectors in the semantic map to a matrix.
-        SparseDoubleVector[] vectorList =
-            new SparseDoubleVector[wordToSemantics.size()];
-        for (Map.Entry<String, SparseDoubleVector> e :
-                wordToSemantics.entrySet())
-            vectorList[getIndexFor(e.getKey())] = e.getValue();
-        SparseMatrix matrix = Matrices.asSparseMatrix(
-                Arrays.asList(vectorList));
+        // The rows of the matrix are the merged co-occurrence counts, which
+        // are used without being copied.
+        int numWords = tokenIndexer.size();
+        SparseMatrix matrix = 
+            cooccurrences.toSparseMatrix(numWords, numWords);
+        cooccurrences = null;
+
+        termToIndex = new HashMap<String, Integer>(numWords * 2);
+        for (Map.Entry<String, Integer> entry : tokenIndexer)
+            termToIndex.put(entry.getKey(), entry.getValue());
 
         // If maxwords was set to 0, save all words.
-        if (maxWords == 0 || maxWords > wordToSemantics.size())
-            maxWords = wordToSemantics.size();
+        if (maxWords == 0 || maxWords > numWords)
+            maxWords = numWords;
 
         COALS_LOGGER.info("Forming the inverse mapping from terms to indices.");
         // Calculate an inverse mapping from index to word since the binary file
@@ -522,11 +462,6 @@ public class Coals implements SemanticSpace {
         int[] rowMask = new int[maxWords];
         int[] colMask = new int[wordCount];
 
-        // Create a new vector list to store the word semantics that will be
-        // retained.  When this method exits, it will throw away all the other
-        // vectors.
-        SparseDoubleVector[] newVectorList = new SparseDoubleVector[maxWords];
-
         // For each of the terms that we have a mapping, add row and column
         // maskings for the indices of the first maxWords terms.  For all other
         // terms, remove the term to index mapping.
@@ -543,11 +478,9 @@ public class Coals implements SemanticSpace {
             if (termCount < maxWords) {
                 if (termCount <  wordCount)
                     colMask[termCount] = oldIndex;
-                // Add the vector for this reserved word to the new vector list.
-                newVectorList[termCount] = vectorList[oldIndex];
-                
+                rowMask[termCount] = oldIndex;
+
                 // Record the new dimension for this term.
-                rowMask[termCount] = termCount;
                 termToIndex.put(entry.getKey(), termCount);
                 termCount++;
             }
@@ -556,8 +489,6 @@ public class Coals implements SemanticSpace {
                 termToIndex.remove(entry.getKey());
         }
 
-        wordToSemantics = null;
-        matrix = Matrices.asSparseMatrix(Arrays.asList(newVectorList));
         // Return a masked version of the original matrix.
         return new CellMaskedSparseMatrix(matrix, rowMask, colMask);
     }
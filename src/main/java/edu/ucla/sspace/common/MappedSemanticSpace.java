@@ -0,0 +1,794 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.common;
+
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import edu.ucla.sspace.vector.AbstractDoubleVector;
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.SparseVector;
+import edu.ucla.sspace.vector.Vector;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.Charset;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A read-only {@link SemanticSpace} whose data is memory-mapped from a file in
+ * the {@link SSpaceFormat#MAPPED MAPPED} format.  Opening a space only maps
+ * the file and reads its fixed-size header, so the time to open a space and
+ * the amount of heap it uses are both independent of the number of words.  All
+ * vector data, as well as the mapping from words to their vectors, stays in
+ * the file and is paged in by the operating system as it is accessed.
+ *
+ * <p> The vectors returned by this class are views of the mapped data; no
+ * vector values are copied when a vector is returned.  Because the views only
+ * use absolute reads from the mapped buffers, this class never takes a lock
+ * and any number of threads may access vectors concurrently.  Callers that
+ * need to modify a vector should first copy it.
+ *
+ * <p> A {@code MAPPED} file stores its vectors using one of two layouts.  The
+ * dense layout stores each vector as a fixed-stride row of {@code float} or
+ * {@code double} values, so the location of any vector is computed directly
+ * from its row number.  The sparse layout stores the vectors in a compressed
+ * sparse row (CSR) form, where each row lists the indices of its non-zero
+ * values followed by the values themselves.  In both layouts, words are found
+ * using an open-addressed hash table stored in the file itself.  All values are
+ * aligned to their size so that no value ever spans two mapped regions.
+ *
+ * <p> The {@code MAPPED} file format consists of the following sections, each
+ * of which begins at an 8-byte aligned offset:
+ * <ol>
+ *   <li> the 4-byte format header, followed by the layout ({@code 0} for
+ *        dense, {@code 1} for sparse), the number of bytes per value ({@code
+ *        4} or {@code 8}), the number of words, the number of dimensions and
+ *        the size of the word hash table as {@code int}s, followed by the
+ *        {@code long} offsets of the row offset, word, word offset and hash
+ *        table sections.
+ *   <li> the vector data.
+ *   <li> for the sparse layout only, {@code long} offsets of each row.
+ *   <li> the UTF-8 bytes of every word, in row order.
+ *   <li> {@code long} offsets into the word section for every word, with a
+ *        final offset marking the end of the section.
+ *   <li> the word hash table, which contains the row of the word hashed to
+ *        each slot, or {@code -1} if the slot is empty.
+ * </ol>
+ *
+ * <p> Spaces in this format are written using {@link SemanticSpaceIO#save(
+ * SemanticSpace,File,SSpaceFormat) SemanticSpaceIO.save}, or {@link
+ * SemanticSpaceIO#saveMapped(SemanticSpace,File,boolean,boolean)
+ * SemanticSpaceIO.saveMapped} to control the layout and precision.
+ *
+ * @see SemanticSpaceIO
+ * @see OnDiskSemanticSpace
+ */
+public class MappedSemanticSpace implements SemanticSpace {
+
+    private static final Logger LOGGER =
+        Logger.getLogger(MappedSemanticSpace.class.getName());
+
+    /**
+     * The layout code for vectors stored as fixed-stride dense rows.
+     */
+    static final int DENSE_LAYOUT = 0;
+
+    /**
+     * The layout code for vectors stored in compressed sparse row form.
+     */
+    static final int SPARSE_LAYOUT = 1;
+
+    /**
+     * The number of bytes in the header, which is where the vector data
+     * begins.
+     */
+    static final int HEADER_SIZE = 56;
+
+    /**
+     * The number of bits used to address a position within a single mapped
+     * region of the file.
+     */
+    private static final int REGION_BITS = 30;
+
+    /**
+     * The mask used to find the position of a byte within its mapped region.
+     */
+    private static final long REGION_MASK = (1L << REGION_BITS) - 1;
+
+    /**
+     * The encoding used for the words in the file.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The mapped regions of the file, each of which is {@code 2^30} bytes,
+     * except possibly the last.
+     */
+    private final MappedByteBuffer[] regions;
+
+    /**
+     * The name of this semantic space.
+     */
+    private final String spaceName;
+
+    /**
+     * Whether the vectors are stored in the sparse layout.
+     */
+    private final boolean isSparse;
+
+    /**
+     * The number of bytes used to store each vector value; either {@code 4} for
+     * {@code float} values or {@code 8} for {@code double} values.
+     */
+    private final int valueBytes;
+
+    /**
+     * The number of words in this space.
+     */
+    private final int numWords;
+
+    /**
+     * The number of dimensions in each vector.
+     */
+    private final int dimensions;
+
+    /**
+     * The number of slots in the word hash table.  This is always a power of
+     * two.
+     */
+    private final int tableSize;
+
+    /**
+     * The file offset of the row offsets section, which is only used by the
+     * sparse layout.
+     */
+    private final long rowOffsetsStart;
+
+    /**
+     * The file offset of the word section.
+     */
+    private final long wordsStart;
+
+    /**
+     * The file offset of the word offsets section.
+     */
+    private final long wordOffsetsStart;
+
+    /**
+     * The file offset of the word hash table.
+     */
+    private final long tableStart;
+
+    /**
+     * The unmodifiable set of words in this space.
+     */
+    private final Set<String> words;
+
+    /**
+     * Creates a {@link MappedSemanticSpace} from the file with the provided
+     * name.
+     *
+     * @param filename the name of a file in the {@link SSpaceFormat#MAPPED
+     *        MAPPED} format
+     *
+     * @throws IOException if any I/O exception occurs when mapping the file
+     * @throws IllegalArgumentException if the file is not in the {@code
+     *         MAPPED} format
+     */
+    public MappedSemanticSpace(String filename) throws IOException {
+        this(new File(filename));
+    }
+
+    /**
+     * Creates a {@link MappedSemanticSpace} from the provided file.
+     *
+     * @param file a file in the {@link SSpaceFormat#MAPPED MAPPED} format
+     *
+     * @throws IOException if any I/O exception occurs when mapping the file
+     * @throws IllegalArgumentException if the file is not in the {@code
+     *         MAPPED} format
+     */
+    public MappedSemanticSpace(File file) throws IOException {
+        if (SemanticSpaceIO.getFormat(file) != SSpaceFormat.MAPPED)
+            throw new IllegalArgumentException(
+                file.getName() + " is not in the MAPPED format");
+        long start = System.currentTimeMillis();
+        spaceName = file.getName();
+
+        // Map the file in fixed-size regions, since a single mapping is
+        // limited to 2^31 - 1 bytes.  The mappings remain valid after the
+        // channel has been closed.
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel fc = raf.getChannel();
+            long length = fc.size();
+            int numRegions = (int)((length + REGION_MASK) >>> REGION_BITS);
+            regions = new MappedByteBuffer[numRegions];
+            for (int i = 0; i < numRegions; ++i) {
+                long regionStart = ((long)i) << REGION_BITS;
+                long regionLength = Math.min(REGION_MASK + 1,
+                                             length - regionStart);
+                regions[i] = fc.map(FileChannel.MapMode.READ_ONLY,
+                                    regionStart, regionLength);
+            }
+        } finally {
+            raf.close();
+        }
+
+        isSparse = getInt(4) == SPARSE_LAYOUT;
+        valueBytes = getInt(8);
+        numWords = getInt(12);
+        dimensions = getInt(16);
+        tableSize = getInt(20);
+        rowOffsetsStart = getLong(24);
+        wordsStart = getLong(32);
+        wordOffsetsStart = getLong(40);
+        tableStart = getLong(48);
+        if (valueBytes != 4 && valueBytes != 8)
+            throw new IllegalArgumentException(
+                "Unsupported value size in " + file.getName() + ": " +
+                valueBytes);
+        words = new WordSet();
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("mapped " + numWords + " " +
+                        (isSparse ? "sparse" : "dense") + " vectors from " +
+                        file.getName() + " in " +
+                        (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Returns the byte at the specified position in the file.
+     */
+    private byte getByte(long pos) {
+        return regions[(int)(pos >>> REGION_BITS)].get((int)(pos & REGION_MASK));
+    }
+
+    /**
+     * Returns the {@code int} at the specified 4-byte aligned position in the
+     * file.
+     */
+    private int getInt(long pos) {
+        return regions[(int)(pos >>> REGION_BITS)]
+            .getInt((int)(pos & REGION_MASK));
+    }
+
+    /**
+     * Returns the {@code long} at the specified 8-byte aligned position in the
+     * file.
+     */
+    private long getLong(long pos) {
+        return regions[(int)(pos >>> REGION_BITS)]
+            .getLong((int)(pos & REGION_MASK));
+    }
+
+    /**
+     * Returns the vector value at the specified position in the file, which
+     * is aligned to the size of the value.
+     */
+    private double readValue(long pos) {
+        MappedByteBuffer region = regions[(int)(pos >>> REGION_BITS)];
+        int offset = (int)(pos & REGION_MASK);
+        return (valueBytes == 4)
+            ? region.getFloat(offset)
+            : region.getDouble(offset);
+    }
+
+    /**
+     * Returns the row of the word in the file, or {@code -1} if the word is not
+     * in this space.
+     */
+    private int getRow(String word) {
+        byte[] bytes = word.getBytes(UTF8);
+        int mask = tableSize - 1;
+        for (int slot = hash(word) & mask; true; slot = (slot + 1) & mask) {
+            int row = getInt(tableStart + 4L * slot);
+            if (row < 0)
+                return -1;
+            long wordStart = getLong(wordOffsetsStart + 8L * row);
+            long wordEnd = getLong(wordOffsetsStart + 8L * (row + 1));
+            if (wordEnd - wordStart != bytes.length)
+                continue;
+            int i = 0;
+            for (long pos = wordsStart + wordStart; i < bytes.length; ++i, ++pos)
+                if (getByte(pos) != bytes[i])
+                    break;
+            if (i == bytes.length)
+                return row;
+        }
+    }
+
+    /**
+     * Returns the word stored at the specified row of the file.
+     */
+    private String getWord(int row) {
+        long wordStart = getLong(wordOffsetsStart + 8L * row);
+        long wordEnd = getLong(wordOffsetsStart + 8L * (row + 1));
+        byte[] bytes = new byte[(int)(wordEnd - wordStart)];
+        long pos = wordsStart + wordStart;
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = getByte(pos++);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Returns the slot in the word hash table at which the search for the word
+     * begins, prior to masking by the table size.
+     */
+    static int hash(String word) {
+        int h = word.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * {@inheritDoc}  The returned set is unmodifiable and iterates over the
+     * words in the order in which their vectors are stored in the file.
+     */
+    public Set<String> getWords() {
+        return words;
+    }
+
+    /**
+     * Returns a read-only view of the vector for the word, which is a {@link
+     * SparseDoubleVector} if the space uses the sparse layout, or {@code null}
+     * if the word is not in this space.
+     */
+    public DoubleVector getVector(String word) {
+        int row = getRow(word);
+        if (row < 0)
+            return null;
+        return (isSparse) ? new SparseRowVector(row) : new DenseRowVector(row);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getSpaceName() {
+        return spaceName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getVectorLength() {
+        return dimensions;
+    }
+
+    /**
+     * Not supported; throws an {@link UnsupportedOperationException} if called.
+     */
+    public void processDocument(BufferedReader document) {
+        throw new UnsupportedOperationException(
+            "MappedSemanticSpace instances cannot be updated");
+    }
+
+    /**
+     * Not supported; throws an {@link UnsupportedOperationException} if called.
+     */
+    public void processSpace(Properties props) {
+        throw new UnsupportedOperationException(
+            "MappedSemanticSpace instances cannot be updated");
+    }
+
+    /**
+     * Writes the semantic space to the file using the {@link
+     * SSpaceFormat#MAPPED MAPPED} format.
+     *
+     * @param sspace the semantic space to be written
+     * @param output the file into which the space will be written
+     * @param sparse {@code true} if the vectors should be written using the
+     *        sparse layout
+     * @param useFloats {@code true} if the vector values should be stored as
+     *        {@code float} values instead of {@code double} values
+     *
+     * @throws IOException if any I/O exception occurs when writing the file
+     */
+    static void write(SemanticSpace sspace, File output, boolean sparse,
+                      boolean useFloats) throws IOException {
+        SemanticSpaceWriter writer = new SemanticSpaceWriter(
+            output, sparse, useFloats, 
+            Runtime.getRuntime().availableProcessors());
+        int dimensions = sspace.getVectorLength();
+        for (String word : sspace.getWords()) {
+            Vector v = sspace.getVector(word);
+            if (v.length() != dimensions)
+                throw new IllegalArgumentException(
+                    "Vector for \"" + word + "\" has " + v.length() +
+                    " dimensions instead of " + dimensions);
+            writer.write(word, v);
+        }
+        writer.close();
+    }
+
+    /**
+     * Writes the sections that follow the vector data and then fills in the
+     * header, which completes a file in the {@link SSpaceFormat#MAPPED MAPPED}
+     * format whose vector data has already been written.
+     *
+     * @param channel the channel of the output file
+     * @param dataEnd the position in the file at which the vector data ends
+     * @param sparse {@code true} if the vectors were written using the sparse
+     *        layout
+     * @param valueBytes the number of bytes used for each vector value
+     * @param dimensions the number of dimensions of each vector
+     * @param words the words in the order their vectors were written
+     * @param rowOffsets for the sparse layout, the position of each row in the
+     *        file; ignored for the dense layout
+     *
+     * @throws IOException if any I/O exception occurs when writing the file
+     */
+    static void writeIndex(FileChannel channel, long dataEnd, boolean sparse,
+                           int valueBytes, int dimensions, List<String> words,
+                           long[] rowOffsets) throws IOException {
+        int numWords = words.size();
+        channel.position(dataEnd);
+        PositionedOutputStream out = new PositionedOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(channel)), 
+            dataEnd);
+
+        // Write the row offsets for the sparse layout
+        out.align();
+        long rowOffsetsStart = 0;
+        if (sparse) {
+            rowOffsetsStart = out.position();
+            for (int row = 0; row < numWords; ++row)
+                out.writeLong(rowOffsets[row]);
+            // The final offset marks the end of the last row
+            out.writeLong(dataEnd);
+        }
+
+        // Write the words and their offsets
+        long wordsStart = out.position();
+        long[] wordOffsets = new long[numWords + 1];
+        for (int row = 0; row < numWords; ++row) {
+            wordOffsets[row] = out.position() - wordsStart;
+            out.write(words.get(row).getBytes(UTF8));
+        }
+        wordOffsets[numWords] = out.position() - wordsStart;
+        out.align();
+        long wordOffsetsStart = out.position();
+        for (long offset : wordOffsets)
+            out.writeLong(offset);
+
+        // Write the hash table for finding the row of each word
+        int tableSize = 2;
+        while (tableSize < 2L * numWords)
+            tableSize <<= 1;
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+        int mask = tableSize - 1;
+        for (int row = 0; row < numWords; ++row) {
+            int slot = hash(words.get(row)) & mask;
+            while (table[slot] >= 0)
+                slot = (slot + 1) & mask;
+            table[slot] = row;
+        }
+        long tableStart = out.position();
+        for (int row : table)
+            out.writeInt(row);
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putChar('s');
+        header.putChar((char)('0' + SSpaceFormat.MAPPED.ordinal()));
+        header.putInt((sparse) ? SPARSE_LAYOUT : DENSE_LAYOUT);
+        header.putInt(valueBytes);
+        header.putInt(numWords);
+        header.putInt(dimensions);
+        header.putInt(tableSize);
+        header.putLong(rowOffsetsStart);
+        header.putLong(wordsStart);
+        header.putLong(wordOffsetsStart);
+        header.putLong(tableStart);
+        header.flip();
+        long pos = 0;
+        while (header.hasRemaining())
+            pos += channel.write(header, pos);
+    }
+
+    /**
+     * Writes the values of the vector as a single row in the dense layout.
+     */
+    static void writeDenseRow(PositionedOutputStream out, Vector v,
+                              boolean useFloats) throws IOException {
+        int length = v.length();
+        if (v instanceof DoubleVector) {
+            DoubleVector dv = (DoubleVector)v;
+            for (int i = 0; i < length; ++i)
+                out.writeValue(dv.get(i), useFloats);
+        }
+        else {
+            for (int i = 0; i < length; ++i)
+                out.writeValue(v.getValue(i).doubleValue(), useFloats);
+        }
+    }
+
+    /**
+     * Writes the non-zero indices and values of the vector as a single row in
+     * the sparse layout, which is the number of non-zero values, their indices
+     * and then, starting at the next 8-byte aligned offset, their values.
+     */
+    static void writeSparseRow(PositionedOutputStream out, Vector v,
+                               boolean useFloats) throws IOException {
+        int[] nz = null;
+        if (v instanceof SparseVector)
+            nz = ((SparseVector)v).getNonZeroIndices();
+        else {
+            int nonZero = 0;
+            for (int i = 0; i < v.length(); ++i)
+                if (v.getValue(i).doubleValue() != 0d)
+                    nonZero++;
+            nz = new int[nonZero];
+            for (int i = 0, j = 0; i < v.length(); ++i)
+                if (v.getValue(i).doubleValue() != 0d)
+                    nz[j++] = i;
+        }
+        // The CSR views use binary search over the indices, which requires
+        // them to be sorted
+        Arrays.sort(nz);
+        out.writeInt(nz.length);
+        for (int i : nz)
+            out.writeInt(i);
+        out.align();
+        if (v instanceof DoubleVector) {
+            DoubleVector dv = (DoubleVector)v;
+            for (int i : nz)
+                out.writeValue(dv.get(i), useFloats);
+        }
+        else {
+            for (int i : nz)
+                out.writeValue(v.getValue(i).doubleValue(), useFloats);
+        }
+        out.align();
+    }
+
+    /**
+     * A {@link DataOutputStream} that keeps track of its position using a
+     * {@code long}, which allows it to write files larger than 2GB, and can pad
+     * its output to 8-byte aligned offsets.
+     */
+    static class PositionedOutputStream extends DataOutputStream {
+
+        public PositionedOutputStream(OutputStream out) {
+            this(out, 0);
+        }
+
+        /**
+         * Creates a stream whose first byte is written at the specified
+         * position.
+         */
+        public PositionedOutputStream(OutputStream out, long start) {
+            super(new CountingOutputStream(out, start));
+        }
+
+        /**
+         * Pads the output with zeros until its position is a multiple of 8.
+         */
+        public void align() throws IOException {
+            while ((position() & 7) != 0)
+                write(0);
+        }
+
+        public long position() {
+            return ((CountingOutputStream)out).count;
+        }
+
+        /**
+         * Writes the value as either a {@code float} or a {@code double}.
+         */
+        public void writeValue(double d, boolean asFloat) throws IOException {
+            if (asFloat)
+                writeFloat((float)d);
+            else
+                writeDouble(d);
+        }
+    }
+
+    /**
+     * An {@link OutputStream} that counts the number of bytes written to it.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        public CountingOutputStream(OutputStream out, long start) {
+            super(out);
+            count = start;
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * An unmodifiable view of the words in the space, in row order.
+     */
+    private class WordSet extends AbstractSet<String> {
+
+        public boolean contains(Object o) {
+            return (o instanceof String) && getRow((String)o) >= 0;
+        }
+
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                int row = 0;
+
+                public boolean hasNext() {
+                    return row < numWords;
+                }
+
+                public String next() {
+                    if (row >= numWords)
+                        throw new NoSuchElementException();
+                    return getWord(row++);
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        public int size() {
+            return numWords;
+        }
+    }
+
+    /**
+     * A read-only view of a vector stored in the dense layout.
+     */
+    private class DenseRowVector extends AbstractDoubleVector {
+
+        /**
+         * The file offset of the first value in this vector.
+         */
+        private final long start;
+
+        public DenseRowVector(int row) {
+            start = HEADER_SIZE + (long)row * dimensions * valueBytes;
+        }
+
+        public double get(int index) {
+            if (index < 0 || index >= dimensions)
+                throw new IndexOutOfBoundsException("Invalid index: " + index);
+            return readValue(start + (long)index * valueBytes);
+        }
+
+        public int length() {
+            return dimensions;
+        }
+    }
+
+    /**
+     * A read-only view of a vector stored in the sparse layout.
+     */
+    private class SparseRowVector extends AbstractDoubleVector
+            implements SparseDoubleVector {
+
+        /**
+         * The file offset of the first non-zero index.
+         */
+        private final long indicesStart;
+
+        /**
+         * The file offset of the first non-zero value.
+         */
+        private final long valuesStart;
+
+        /**
+         * The number of non-zero values in this vector.
+         */
+        private final int nonZero;
+
+        public SparseRowVector(int row) {
+            long start = getLong(rowOffsetsStart + 8L * row);
+            nonZero = getInt(start);
+            indicesStart = start + 4;
+            valuesStart = (indicesStart + 4L * nonZero + 7) & ~7L;
+        }
+
+        public double get(int index) {
+            if (index < 0 || index >= dimensions)
+                throw new IndexOutOfBoundsException("Invalid index: " + index);
+            // Binary search the sorted indices for the requested index
+            int lo = 0;
+            int hi = nonZero - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int i = getInt(indicesStart + 4L * mid);
+                if (i < index)
+                    lo = mid + 1;
+                else if (i > index)
+                    hi = mid - 1;
+                else
+                    return readValue(valuesStart + (long)mid * valueBytes);
+            }
+            return 0;
+        }
+
+        public int[] getNonZeroIndices() {
+            int[] nz = new int[nonZero];
+            for (int i = 0; i < nonZero; ++i)
+                nz[i] = getInt(indicesStart + 4L * i);
+            return nz;
+        }
+
+        public SparseDoubleVector instanceCopy() {
+            return new CompactSparseVector(dimensions);
+        }
+
+        public int length() {
+            return dimensions;
+        }
+
+        public double magnitude() {
+            double m = 0;
+            for (int i = 0; i < nonZero; ++i) {
+                double d = readValue(valuesStart + (long)i * valueBytes);
+                m += d * d;
+            }
+            return Math.sqrt(m);
+        }
+
+        public double[] toArray() {
+            double[] arr = new double[dimensions];
+            for (int i = 0; i < nonZero; ++i)
+                arr[getInt(indicesStart + 4L * i)] =
+                    readValue(valuesStart + (long)i * valueBytes);
+            return arr;
+        }
+    }
+}
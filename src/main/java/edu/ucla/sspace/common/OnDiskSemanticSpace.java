@@ -28,6 +28,7 @@ import edu.ucla.sspace.matrix.Matrix;
 
 import edu.ucla.sspace.vector.CompactSparseVector;
 import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.QuantizedVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.Vectors;
 
@@ -219,6 +220,14 @@ public class OnDiskSemanticSpace implements SemanticSpace {
                 raf = new RandomAccessFile(file, "r");
                 dims = loadSparseBinaryOffsets(raf);
                 break;
+            case QUANTIZED:
+                raf = new RandomAccessFile(file, "r");
+                dims = loadQuantizedOffsets(raf);
+                break;
+            case MAPPED:
+                throw new IllegalArgumentException(
+                    "MAPPED-formatted files should be opened using a " +
+                    "MappedSemanticSpace");
             default:
             assert false : format;
         }
@@ -473,6 +482,52 @@ public class OnDiskSemanticSpace implements SemanticSpace {
         return vector;
     }
 
+    /**
+     * Loads the {@link SemanticSpace} from the quantized file, adding its
+     * words to {@link #termToOffset} and returning the number of dimensions.
+     *
+     * @param sspaceFile a file in {@link SSpaceFormat#QUANTIZED quantized}
+     *        format
+     */
+    private int loadQuantizedOffsets(RandomAccessFile binarySSpace) 
+            throws IOException {
+        // Read off the 4-byte header if it exists
+        if (containsHeader)
+            binarySSpace.readInt();
+    
+        int rows = binarySSpace.readInt();
+        int cols = binarySSpace.readInt();
+
+        for (int row = 0; row < rows; ++row) {
+            String word = binarySSpace.readUTF();
+            long offset = binarySSpace.getFilePointer();
+            termToOffset.put(word, offset);
+            // skip the scale and the values of the vector
+            binarySSpace.seek(offset + 4 + cols);
+        }
+        return cols;
+    }
+
+    /**
+     * Loads a vector from the backing semantic space file in {@code QUANTIZED}
+     * format using the predetermined offet for the word.
+     *
+     * @param word a word in the semantic space
+     * @return the vector for the word or {@code null} if the word does not
+     *         exist in the semantic space
+     */
+    private Vector loadQuantizedVector(String word) throws IOException {
+        Long byteOffset = termToOffset.get(word);
+        if (byteOffset == null)
+            return null;
+
+        binarySSpace.seek(byteOffset);
+        float scale = binarySSpace.readFloat();
+        byte[] values = new byte[dimensions];
+        binarySSpace.readFully(values);
+        return new QuantizedVector(values, 0, dimensions, scale);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -497,6 +552,8 @@ public class OnDiskSemanticSpace implements SemanticSpace {
                 return new CompactSparseVector(loadSparseTextVector(word));
             case SPARSE_BINARY:
                 return new CompactSparseVector(loadSparseBinaryVector(word));
+            case QUANTIZED:
+                return loadQuantizedVector(word);
             }
         } catch (IOException ioe) {
             // rethrow as something catastrophic must have happened to the
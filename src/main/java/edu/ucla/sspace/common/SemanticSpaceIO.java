@@ -23,34 +23,17 @@ package edu.ucla.sspace.common;
 
 import edu.ucla.sspace.util.SerializableUtil;
 
-import edu.ucla.sspace.vector.DoubleVector;
-import edu.ucla.sspace.vector.IntegerVector;
-import edu.ucla.sspace.vector.SparseDoubleVector;
-import edu.ucla.sspace.vector.SparseVector;
-import edu.ucla.sspace.vector.Vector;
-import edu.ucla.sspace.vector.VectorIO;
-
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
-import java.io.IOError;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryUsage;
 
-import java.util.Set;
-
 import java.util.logging.Logger;
 
 
@@ -75,6 +58,7 @@ import java.util.logging.Logger;
  * @see SemanticSpace
  * @see StaticSemanticSpace
  * @see OnDiskSemanticSpace
+ * @see MappedSemanticSpace
  */
 public class SemanticSpaceIO {
 
@@ -85,10 +69,52 @@ public class SemanticSpaceIO {
      * The type of formatting to use when writing a semantic space to a file.
      * See <a
      * href="http://code.google.com/p/airhead-research/wiki/FileFormats">here</a>
-     * for file format specifications.
+     * for file format specifications.  The {@link #MAPPED} format is described
+     * in {@link MappedSemanticSpace}.
+     *
+     * <p> The {@link #QUANTIZED} format is a dense binary format that stores
+     * each value as a single signed byte.  After the format header, it
+     * contains the number of vectors and the number of dimensions as {@code
+     * int}s, and then for each vector its word (written with {@link
+     * java.io.DataOutput#writeUTF(String) writeUTF}), a {@code float} scale and
+     * one byte per dimension.  A value is recovered by multiplying its byte by
+     * the scale of its vector.  See {@link
+     * edu.ucla.sspace.vector.QuantizedVector} for how values are quantized.
      */
     public enum SSpaceFormat 
-        { TEXT, BINARY, SPARSE_TEXT, SPARSE_BINARY, SERIALIZE }
+        { TEXT, BINARY, SPARSE_TEXT, SPARSE_BINARY, SERIALIZE, MAPPED,
+          QUANTIZED }
+
+    /**
+     * The precision at which the values of dense semantic spaces are stored
+     * when loaded into memory.  Reducing the precision reduces the memory of
+     * the loaded space, and the vectors of spaces loaded at {@link #FLOAT} or
+     * {@link #INT8} precision are compared directly on their compact values by
+     * {@link Similarity}.  The vectors of sparse formats are always stored at
+     * {@code double} precision.
+     */
+    public enum VectorPrecision {
+
+        /**
+         * Values are stored as {@code double}s
+         */
+        DOUBLE, 
+
+        /**
+         * Values are stored as {@code float}s
+         *
+         * @see edu.ucla.sspace.matrix.FloatMatrix
+         */
+        FLOAT,
+
+        /**
+         * Values are scalar quantized to signed bytes with a scale for each
+         * vector
+         *
+         * @see edu.ucla.sspace.matrix.QuantizedMatrix
+         */
+        INT8 
+    }
 
     /**
      * Uninstantiable
@@ -120,7 +146,7 @@ public class SemanticSpaceIO {
         char encodedFormatCode = dis.readChar();
         int formatCode = encodedFormatCode - '0';
         dis.close();
-        return (formatCode < 0 || formatCode > SSpaceFormat.values().length)
+        return (formatCode < 0 || formatCode >= SSpaceFormat.values().length)
             ? SSpaceFormat.SERIALIZE
             : SSpaceFormat.values()[formatCode];                
     }
@@ -152,6 +178,8 @@ public class SemanticSpaceIO {
         case BINARY: // fallthrough
         case SPARSE_BINARY:
         case SERIALIZE:
+        case MAPPED:
+        case QUANTIZED:
             inMemory = sspaceFileSize < available;
             break;
         case TEXT:
@@ -170,6 +198,31 @@ public class SemanticSpaceIO {
         return inMemory;
     }
 
+    /**
+     * Returns the size that a semantic space file would have if its dense
+     * vectors were stored at the provided precision, which approximates the
+     * change in memory needed to load it.
+     */
+    private static long loadedSize(long sspaceFileSize, SSpaceFormat format,
+                                   VectorPrecision precision) {
+        // Sparse vectors are always loaded at double precision
+        if (precision == null || !(format == SSpaceFormat.TEXT
+                                   || format == SSpaceFormat.BINARY
+                                   || format == SSpaceFormat.QUANTIZED))
+            return sspaceFileSize;
+        int fileBytes = (format == SSpaceFormat.QUANTIZED) ? 1 : 8;
+        int loadedBytes = 8;
+        switch (precision) {
+        case FLOAT:
+            loadedBytes = 4;
+            break;
+        case INT8:
+            loadedBytes = 1;
+            break;
+        }
+        return sspaceFileSize / fileBytes * loadedBytes;
+    }
+
     /**
      * Loads and returns the {@link SemanticSpace} from the file with the
      * specified name.
@@ -222,7 +275,59 @@ public class SemanticSpaceIO {
             throw new IllegalArgumentException(
                 "The file " + sspaceFile.getName() + " does not contain any " +
                 "internal format specification.");
-        return loadInternal(sspaceFile, format, false);
+        return loadInternal(sspaceFile, format, false, null);
+    }
+
+    /**
+     * Loads and returns the {@link SemanticSpace} stored in the file with the
+     * specified name, storing the vectors of dense formats at the provided
+     * precision if the space is loaded into memory.
+     *
+     * @param sspaceFileName the name of a file containing a {@link
+     *        SemanticSpace} that has been written to disk
+     * @param precision the precision at which the values of a dense space are
+     *        stored
+     *
+     * @throws IllegalArgumentException if the file does not contain an internal
+     *         format specification
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     */
+    public static SemanticSpace load(String sspaceFileName, 
+                                     VectorPrecision precision) 
+            throws IOException {
+        return load(new File(sspaceFileName), precision);
+    }
+
+    /**
+     * Loads and returns the {@link SemanticSpace} stored in the specified file,
+     * storing the vectors of dense formats at the provided precision if the
+     * space is loaded into memory.  The reduced size of the vectors is taken
+     * into account when deciding whether the space fits in memory.  Spaces
+     * that are serialized, mapped or kept on disk are unaffected by the
+     * precision.
+     *
+     * @param sspaceFile a file containing a {@link SemanticSpace} that has
+     *        been written to disk
+     * @param precision the precision at which the values of a dense space are
+     *        stored
+     *
+     * @throws IllegalArgumentException if the file does not contain an internal
+     *         format specification
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     */
+    public static SemanticSpace load(File sspaceFile, 
+                                     VectorPrecision precision) 
+            throws IOException {
+        if (precision == null)
+            throw new NullPointerException("precision cannot be null");
+        SSpaceFormat format = getFormat(sspaceFile);
+        if (format == null)
+            throw new IllegalArgumentException(
+                "The file " + sspaceFile.getName() + " does not contain any " +
+                "internal format specification.");
+        return loadInternal(sspaceFile, format, false, precision);
     }
     
     /**
@@ -239,7 +344,7 @@ public class SemanticSpaceIO {
     @Deprecated public static SemanticSpace load(File sspaceFile, 
                                                  SSpaceFormat format) 
             throws IOException {
-        return loadInternal(sspaceFile, format, true);
+        return loadInternal(sspaceFile, format, true, null);
     }
 
     /**
@@ -255,6 +360,9 @@ public class SemanticSpaceIO {
      * @param manuallySpecifiedFormat {@true} if the format of the file was
      *        manually specified by the caller and the file contains no
      *        formatting information
+     * @param precision the precision at which a dense space is stored if it is
+     *        loaded into memory, or {@code null} to use the precision of its
+     *        format
      *
      * @return the semantic space in the file 
      *
@@ -263,18 +371,26 @@ public class SemanticSpaceIO {
      */
     private static SemanticSpace loadInternal(File sspaceFile, 
                                               SSpaceFormat format,
-                                              boolean manuallySpecifiedFormat) 
+                                              boolean manuallySpecifiedFormat,
+                                              VectorPrecision precision) 
             throws IOException {
 
         if (format.equals(SemanticSpaceIO.SSpaceFormat.SERIALIZE)) {
             LOGGER.fine("Loading serialized SemanticSpace from " + sspaceFile);
             return SerializableUtil.load(sspaceFile);
         }
+        // Mapped semantic spaces never load their data into memory, so there
+        // is no need to check whether they will fit
+        else if (format.equals(SemanticSpaceIO.SSpaceFormat.MAPPED)) {
+            LOGGER.fine("Mapping SemanticSpace from " + sspaceFile);
+            return new MappedSemanticSpace(sspaceFile);
+        }
         // For SemanticSpace instances that have not been serialized, decide
         // whether they fit into memory before determing how to represent their
         // data
         else {
-            if (fitsInMemory(sspaceFile.length(), format)) {
+            if (fitsInMemory(loadedSize(sspaceFile.length(), format, 
+                                        precision), format)) {
                 LOGGER.fine(format + "-formatted .sspace file will fit into "
                             + "memory; creating StaticSemanticSpace");
                 if (manuallySpecifiedFormat) {
@@ -284,7 +400,7 @@ public class SemanticSpaceIO {
                     return s;
                 }
                 else
-                    return new StaticSemanticSpace(sspaceFile);
+                    return new StaticSemanticSpace(sspaceFile, precision);
             }
             else {
                 LOGGER.fine(format + "-formatted .sspace file will not fit into"
@@ -337,292 +453,37 @@ public class SemanticSpaceIO {
      */
     public static void save(SemanticSpace sspace, File output, 
                             SSpaceFormat format) throws IOException {
-        switch (format) {
-        case TEXT:
-            writeText(sspace, output);
-            break;
-        case BINARY:
-            writeBinary(sspace, output);
-            break;
-        case SPARSE_TEXT:
-            writeSparseText(sspace, output);
-            break;
-        case SPARSE_BINARY:
-            writeSparseBinary(sspace, output);
-            break;
-        case SERIALIZE: 
+        if (format == SSpaceFormat.SERIALIZE) {
             LOGGER.fine("Saving " + sspace + " to disk as serialized object");
             SerializableUtil.save(sspace, output);
-            break;
-        default:
-            assert false : format;
+            return;
         }
+        // All other formats are encoded in parallel by the writer
+        SemanticSpaceWriter writer = new SemanticSpaceWriter(output, format);
+        for (String word : sspace.getWords()) 
+            writer.write(word, sspace.getVector(word));
+        writer.close();
     }
 
     /**
-     * Writes the .sspace format header to the output stream, indicating which
-     * format the data will be saved in.  The header constists of a two byte
-     * character for '{@code s}' and then a two byte character denoting the
-     * specific format code.
-     *
-     * @param os the output stream into which a semantic space is to be saved
-     * @param format the format of the data that will be written after the
-     *        header
-     *
-     * @throws IOException if any I/O exception occurs when reading the semantic
-     *         space data from the file
-     */
-    static void writeHeader(OutputStream os, SSpaceFormat format) 
-            throws IOException {
-        DataOutputStream dos = new DataOutputStream(os);
-        dos.writeChar('s');
-        dos.writeChar('0' + format.ordinal());
-    }
-
-    /**
-     * Writes the semantic space to the file using the {@code TEXT} format.
-     *
-     * @param sspace the semantic space to be written
-     * @param output the file into which the space will be written
-     *
-     * @throws IOException if any I/O exception occurs when reading the semantic
-     *         space data from the file
-     */
-    private static void writeText(SemanticSpace sspace, File output) 
-            throws IOException {
-        
-        OutputStream os = new FileOutputStream(output);
-        PrintWriter pw = new PrintWriter(os);
-        Set<String> words = sspace.getWords();
-        // determine how many dimensions are used by the vectors
-        int dimensions = 0;
-        if (words.size() > 0) {
-            dimensions = sspace.getVectorLength();
-        }
-        writeHeader(os, SSpaceFormat.TEXT);
-        // write out how many vectors there are and the number of dimensions
-        pw.println(words.size() + " " + dimensions);
-        LOGGER.fine("saving text S-Space with " + words.size() + 
-                    " words with " + dimensions + "-dimensional vectors");
-
-
-        // For each word, write out the word itself, followed by the '|'
-        // character and then a list of space-separated values.
-        for (String word : words) {
-            StringBuilder sb = new StringBuilder(word);
-            sb.append('|');
-            Vector vector = sspace.getVector(word);            
-            int length = vector.length();
-            // Special case for the types just to make writing go a bit faster
-            if (vector instanceof DoubleVector) {
-                DoubleVector dv = (DoubleVector)vector;
-                for (int i = 0; i < length - 1; ++i)
-                    sb.append(dv.get(i)).append(" ");
-                sb.append(dv.get(length - 1));
-            }
-            else if (vector instanceof IntegerVector) {
-                IntegerVector iv = (IntegerVector)vector;
-                for (int i = 0; i < length - 1; ++i)
-                    sb.append(iv.get(i)).append(" ");
-                sb.append(iv.get(length - 1));
-            }
-            else {
-                for (int i = 0; i < length - 1; ++i)
-                    sb.append(vector.getValue(i).doubleValue()).append(" ");
-                sb.append(vector.getValue(length - 1).doubleValue());
-            }
-            pw.println(sb);
-        }
-        pw.close();
-    }
-
-    /**
-     * Writes the semantic space to the file using the {@code BINARY} format.
-     *
-     * @param sspace the semantic space to be written
-     * @param output the file into which the space will be written
-     *
-     * @throws IOException if any I/O exception occurs when reading the semantic
-     *         space data from the file
-     */
-    private static void writeBinary(SemanticSpace sspace, File output) 
-            throws IOException {
-
-        DataOutputStream dos = new DataOutputStream(
-            new BufferedOutputStream(new FileOutputStream(output)));
-        Set<String> words = sspace.getWords();
-        // determine how many dimensions are used by the vectors
-        int dimensions = 0;
-        if (words.size() > 0) {
-            dimensions = sspace.getVectorLength();
-        }
-        writeHeader(dos, SSpaceFormat.BINARY);
-        // write out how many vectors there are and the number of dimensions
-        dos.writeInt(words.size());
-        dos.writeInt(dimensions);
-        LOGGER.fine("saving binary S-Space with " + words.size() + 
-                    " words with " + dimensions + "-dimensional vectors");
-
-        for (String word : words) {
-            dos.writeUTF(word);
-        Vector v = sspace.getVector(word);
-        for (int i = 0; i < v.length(); ++i) {
-            dos.writeDouble(v.getValue(i).doubleValue());
-            }
-        }
-        dos.close();
-    }
-
-    /**
-     * Writes the semantic space to the file using the {@code SPARSE_TEXT}
-     * format.
-     *
-     * @param sspace the semantic space to be written
-     * @param output the file into which the space will be written
-     *
-     * @throws IOException if any I/O exception occurs when reading the semantic
-     *         space data from the file
-     */
-    private static void writeSparseText(SemanticSpace sspace, File output) 
-            throws IOException {
-        OutputStream os = new FileOutputStream(output);
-        PrintWriter pw = new PrintWriter(os);
-        Set<String> words = sspace.getWords();
-        // determine how many dimensions are used by the vectors
-        int dimensions = 0;
-        if (words.size() > 0) {
-            dimensions = sspace.getVectorLength();
-        }
-
-        writeHeader(os, SSpaceFormat.SPARSE_TEXT);
-        // print out how many vectors there are and the number of dimensions
-        pw.println(words.size() + " " + dimensions);
-
-        LOGGER.fine("saving sparse-text S-Space with " + words.size() + 
-                    " words with " + dimensions + "-dimensional vectors");
-
-        for (String word : words) {
-            pw.print(word + "|");
-            // for each vector, write all the non-zero elements and their
-            // indices
-            Vector vector = sspace.getVector(word);
-            StringBuilder sb = null;
-            if (vector instanceof SparseVector) {
-                if (vector instanceof DoubleVector) {
-                    SparseDoubleVector sdv = (SparseDoubleVector)vector;
-                    int[] nz = sdv.getNonZeroIndices();
-                    sb = new StringBuilder(nz.length * 4);
-                    // special case the first
-                    sb.append(nz[0]).append(",").append(sdv.get(nz[0]));
-                    for (int i = 1; i < nz.length; ++i)
-                        sb.append(",").append(nz[i]).append(",").
-                            append(sdv.getValue(nz[i]).doubleValue());
-                }
-                else {
-                    SparseVector sv = (SparseVector)vector;
-                    int[] nz = sv.getNonZeroIndices();                    
-                    sb = new StringBuilder(nz.length * 4);
-                    // special case the first
-                    sb.append(nz[0]).append(",")
-                        .append(sv.getValue(nz[0]).doubleValue());
-                    for (int i = 1; i < nz.length; ++i)
-                        sb.append(",").append(nz[i]).append(",").
-                            append(sv.getValue(nz[i]).doubleValue());
-                }
-            }
-            
-            else {
-                boolean first = true;
-                sb = new StringBuilder(dimensions / 2);
-                for (int i = 0; i < vector.length(); ++i) {
-                    double d = vector.getValue(i).doubleValue();
-                    if (d != 0d) {
-                        if (first) {
-                            sb.append(i).append(",").append(d);
-                            first = false;
-                        }
-                        else {
-                            sb.append(",").append(i).append(",").append(d);
-                        }
-                    }
-                }
-            }
-            pw.println(sb.toString());
-        }
-        pw.flush();
-        pw.close();
-    }
-
-    /**
-     * Writes the semantic space to the file using the {@code SPARSE_BINARY}
-     * format.
+     * Writes the data contained in the {@link SemanticSpace} to the provided
+     * file using the {@link SSpaceFormat#MAPPED} format, with the specified
+     * layout and precision for the vector data.
      *
      * @param sspace the semantic space to be written
      * @param output the file into which the space will be written
+     * @param sparse {@code true} if the vectors should be stored in a
+     *        compressed sparse row layout, or {@code false} if they should be
+     *        stored as fixed-length dense rows
+     * @param useFloats {@code true} if the vector values should be stored with
+     *        single precision, which halves the size of the file
      *
-     * @throws IOException if any I/O exception occurs when reading the semantic
-     *         space data from the file
+     * @throws IOException if any I/O exception occurs when writing the semantic
+     *         space data to the file
      */
-    private static void writeSparseBinary(SemanticSpace sspace, File output) 
+    public static void saveMapped(SemanticSpace sspace, File output,
+                                  boolean sparse, boolean useFloats)
             throws IOException {
-
-        DataOutputStream dos = new DataOutputStream(
-            new BufferedOutputStream(new FileOutputStream(output)));
-        Set<String> words = sspace.getWords();
-        // determine how many dimensions are used by the vectors
-        int dimensions = 0;
-        if (words.size() > 0) {
-            dimensions = sspace.getVectorLength();
-        }
-
-        writeHeader(dos, SSpaceFormat.SPARSE_BINARY);
-        // print out how many vectors there are and the number of dimensions
-        dos.writeInt(words.size());
-        dos.writeInt(dimensions);
-
-        LOGGER.fine("saving sparse-binary S-Space with " + words.size() + 
-                    " words with " + dimensions + "-dimensional vectors");
-
-        for (String word : words) {
-            dos.writeUTF(word);
-            Vector vector = sspace.getVector(word);
-            if (vector instanceof SparseVector) {
-                if (vector instanceof DoubleVector) {
-                    SparseDoubleVector sdv = (SparseDoubleVector)vector;
-                    int[] nz = sdv.getNonZeroIndices();
-                    dos.writeInt(nz.length);
-                    for (int i : nz) {
-                        dos.writeInt(i);
-                        dos.writeDouble(sdv.get(i));
-                    }
-                }
-                else {
-                    SparseVector sv = (SparseVector)vector;
-                    int[] nz = sv.getNonZeroIndices();
-                    dos.writeInt(nz.length);
-                    for (int i : nz) {
-                        dos.writeInt(i);
-                        dos.writeDouble(sv.getValue(i).doubleValue());
-                    }
-                }
-            }
-            else {
-                // count how many are non-zero
-                int nonZero = 0;
-                for (int i = 0; i < vector.length(); ++i) {
-                    if (vector.getValue(i).doubleValue() != 0d)
-                        nonZero++;
-                }
-                dos.writeInt(nonZero);
-                for (int i = 0; i < vector.length(); ++i) {
-                    double d = vector.getValue(i).doubleValue();
-                    if (d != 0d) {
-                        dos.writeInt(i);
-                        dos.writeDouble(d);
-                    }
-                }
-            }
-        }
-        dos.close();
+        MappedSemanticSpace.write(sspace, output, sparse, useFloats);
     }
 }
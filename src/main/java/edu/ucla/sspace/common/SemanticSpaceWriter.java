@@ -21,39 +21,60 @@
 
 package edu.ucla.sspace.common;
 
+import edu.ucla.sspace.common.MappedSemanticSpace.PositionedOutputStream;
 import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
 
+import edu.ucla.sspace.util.WorkQueue;
+
 import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.QuantizedVector;
 import edu.ucla.sspace.vector.SparseDoubleVector;
 import edu.ucla.sspace.vector.SparseVector;
 import edu.ucla.sspace.vector.Vector;
-import edu.ucla.sspace.vector.VectorIO;
+import edu.ucla.sspace.vector.Vectors;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.IOException;
 import java.io.IOError;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.Charset;
+
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Set;
+import java.util.List;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 import java.util.logging.Logger;
 
+import gnu.trove.list.array.TLongArrayList;
+
 
 /**
  * An output utility to write a {@link SemanticSpace} incrementally, one vector
  * at a time.  This class is designed for algorithms that need to write {@code
  * SemanticSpace} instances that are too large to fit into memory but can still
- * be computed.
+ * be computed.  All formats other than {@link SSpaceFormat#SERIALIZE} are
+ * supported, which requires a complete {@code SemanticSpace} instance.
+ *
+ * <p> Vectors are collected into batches, which are encoded in parallel into
+ * byte buffers.  A single background thread then writes the encoded batches to
+ * the file in the order their vectors were written, so the output is identical
+ * to writing each vector in turn.  Because encoding happens asynchronously, a
+ * vector <i>must not</i> be modified after it has been passed to {@link
+ * #write(String,Vector) write}.  This class is thread safe.
  *
  * <p> Upon writing the last vector, users of this class <i>must</i> call {@code
  * #close() close} to ensure that the file header is correctly written.
@@ -62,6 +83,31 @@ import java.util.logging.Logger;
  */
 public class SemanticSpaceWriter {
 
+    private static final Logger LOGGER =
+        Logger.getLogger(SemanticSpaceWriter.class.getName());
+
+    /**
+     * The number of vectors encoded together as a single task.
+     */
+    private static final int BATCH_SIZE = 128;
+
+    /**
+     * The number of characters reserved in the header of text formats for the
+     * number of vectors and dimensions.
+     */
+    private static final int TEXT_HEADER_LENGTH = 128;
+
+    /**
+     * The character set used for the text formats, which matches the readers
+     * of those formats.
+     */
+    private static final Charset TEXT_CHARSET = Charset.defaultCharset();
+
+    /**
+     * A sentinel batch that signals the writing thread to stop.
+     */
+    private final Batch endOfOutput = new Batch();
+
     /**
      * The file to which the semantic space will be written
      */
@@ -73,9 +119,71 @@ public class SemanticSpaceWriter {
     private final SSpaceFormat format;
 
     /**
-     * The data writer for output the space.
+     * The file to which the encoded vectors are written.
+     */
+    private final RandomAccessFile raf;
+
+    /**
+     * The channel through which the encoded vectors are written.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The queue on which the batches are encoded.
+     */
+    private final WorkQueue workQueue;
+
+    /**
+     * The batches that have been submitted for encoding, in the order in which
+     * they are to be written.  The bounded capacity keeps writers from getting
+     * too far ahead of the disk.
+     */
+    private final BlockingQueue<Batch> pending;
+
+    /**
+     * The thread that writes encoded batches to the file.
+     */
+    private final Thread writerThread;
+
+    /**
+     * The first error raised while encoding or writing a batch, if any.
+     */
+    private final AtomicReference<Throwable> error;
+
+    /**
+     * For the {@code MAPPED} format, whether the vectors use the sparse
+     * layout, or {@code null} if this will be decided by the first vector.
+     */
+    private Boolean mappedSparse;
+
+    /**
+     * For the {@code MAPPED} format, whether values are written as {@code
+     * float}s.
+     */
+    private final boolean useFloats;
+
+    /**
+     * For the {@code MAPPED} format, the words in the order their vectors were
+     * written.
+     */
+    private final List<String> words;
+
+    /**
+     * For the sparse {@code MAPPED} layout, the position of each row in the
+     * file.  This is only accessed by the writing thread until it finishes.
+     */
+    private final TLongArrayList rowOffsets;
+
+    /**
+     * The position at which the next batch will be written.  This is only
+     * accessed by the writing thread until it finishes.
      */
-    private final DataOutputStream writer;
+    private long position;
+
+    /**
+     * The batch that is accumulating vectors.
+     */
+    private Batch current;
 
     /**
      * The number of vector seen so far.
@@ -86,24 +194,105 @@ public class SemanticSpaceWriter {
      * The length of the vectors in the semantic space output
      */
     private int vectorLength;
+
+    /**
+     * Whether {@link #close()} has been called.
+     */
+    private boolean closed;
     
     /**
      * Creates a {@code SemanticSpaceWriter} that will write a {@link
-     * SemanticSpace} to the provided file in the specified format.
+     * SemanticSpace} to the provided file in the specified format, using as
+     * many threads as there are processors to encode the vectors.  {@link
+     * SSpaceFormat#MAPPED MAPPED} spaces are written with double precision,
+     * using the sparse layout if the first vector is a {@link SparseVector}.
      *
      * @param sspaceFile the file to which the {@code SemanticSpace} will be
      *        written
      * @param format the format of the semantic space
+     *
+     * @throws IllegalArgumentException if {@code format} is {@link
+     *         SSpaceFormat#SERIALIZE}
      */
     public SemanticSpaceWriter(File sspaceFile, SSpaceFormat format) {
+        this(sspaceFile, format, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a {@code SemanticSpaceWriter} that will write a {@link
+     * SemanticSpace} to the provided file in the specified format, using the
+     * specified number of threads to encode the vectors.  {@link
+     * SSpaceFormat#MAPPED MAPPED} spaces are written with double precision,
+     * using the sparse layout if the first vector is a {@link SparseVector}.
+     *
+     * @param sspaceFile the file to which the {@code SemanticSpace} will be
+     *        written
+     * @param format the format of the semantic space
+     * @param numThreads the number of threads used to encode vectors
+     *
+     * @throws IllegalArgumentException if {@code format} is {@link
+     *         SSpaceFormat#SERIALIZE}
+     */
+    public SemanticSpaceWriter(File sspaceFile, SSpaceFormat format, 
+                               int numThreads) {
+        this(sspaceFile, format, null, false, numThreads);
+    }
+
+    /**
+     * Creates a {@code SemanticSpaceWriter} that will write a {@link
+     * SemanticSpace} to the provided file in the {@link SSpaceFormat#MAPPED
+     * MAPPED} format with the specified layout and precision.
+     *
+     * @param sspaceFile the file to which the {@code SemanticSpace} will be
+     *        written
+     * @param sparse {@code true} if the vectors should be stored in a
+     *        compressed sparse row layout, or {@code false} if they should be
+     *        stored as fixed-length dense rows
+     * @param useFloats {@code true} if the vector values should be stored with
+     *        single precision
+     * @param numThreads the number of threads used to encode vectors
+     */
+    public SemanticSpaceWriter(File sspaceFile, boolean sparse, 
+                               boolean useFloats, int numThreads) {
+        this(sspaceFile, SSpaceFormat.MAPPED, sparse, useFloats, numThreads);
+    }
+
+    private SemanticSpaceWriter(File sspaceFile, SSpaceFormat format,
+                                Boolean mappedSparse, boolean useFloats,
+                                int numThreads) {
+        if (format == SSpaceFormat.SERIALIZE)
+            throw new IllegalArgumentException(
+                "SERIALIZE-formatted spaces must be written using " +
+                "SemanticSpaceIO.save");
+        if (numThreads < 1)
+            throw new IllegalArgumentException(
+                "Must use at least one thread: " + numThreads);
         this.outputFile = sspaceFile;
         this.format = format;
+        this.mappedSparse = mappedSparse;
+        this.useFloats = useFloats;
+        boolean isMapped = format == SSpaceFormat.MAPPED;
+        words = (isMapped) ? new ArrayList<String>() : null;
+        rowOffsets = (isMapped) ? new TLongArrayList() : null;
+        error = new AtomicReference<Throwable>();
+        current = new Batch();
         try {
-            this.writer = new DataOutputStream(new FileOutputStream(sspaceFile));
+            raf = new RandomAccessFile(sspaceFile, "rw");
+            raf.setLength(0);
+            channel = raf.getChannel();
             writeEmptyHeader();
         } catch (IOException ioe) {
             throw new IOError(ioe);
         }
+
+        // Encoding uses its own queue so that callers running on another
+        // queue's threads never wait on tasks queued behind themselves
+        workQueue = WorkQueue.getWorkQueue(WorkQueue.IO_QUEUE, numThreads);
+        pending = new ArrayBlockingQueue<Batch>(2 * numThreads);
+        writerThread = new Thread(new BatchWriter(), 
+            "SemanticSpaceWriter: " + sspaceFile.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
     }
 
     /**
@@ -111,176 +300,440 @@ public class SemanticSpaceWriter {
      * meta data.  Once this method has been called, the backing file is valid
      * to read using {@link SemanticSpaceIO}.
      */
-    public void close() throws IOException {
-        writer.close();
-        //FileOutputStream fos = new FileOutputStream(outputFile);
-        RandomAccessFile raf = new RandomAccessFile(outputFile, "rw");
-        raf.seek(4); // skip over the header;
-        // Then fill in the sspace information 
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (current.size > 0)
+                submit(current);
+            put(endOfOutput);
+            try {
+                writerThread.join();
+            } catch (InterruptedException ie) {
+                throw new InterruptedIOException(
+                    "Interrupted while waiting for vectors to be written");
+            }
+            checkError();
+
+            // Then fill in the sspace information 
+            switch (format) {
+            case TEXT:
+            case SPARSE_TEXT: {
+                byte[] counts = (vectorsSeen + " " + vectorLength)
+                    .getBytes(TEXT_CHARSET);
+                writeFully(ByteBuffer.wrap(counts), 4);
+                break;
+            }
+            case BINARY: 
+            case SPARSE_BINARY:
+            case QUANTIZED: {
+                ByteBuffer counts = ByteBuffer.allocate(8);
+                counts.putInt(vectorsSeen); // # of vectors
+                counts.putInt(vectorLength); // # of dimensions
+                counts.flip();
+                writeFully(counts, 4);
+                break;
+            }
+            case MAPPED:
+                MappedSemanticSpace.writeIndex(
+                    channel, position, Boolean.TRUE.equals(mappedSparse),
+                    (useFloats) ? 4 : 8, vectorLength, words, 
+                    rowOffsets.toArray());
+                break;
+            default:
+                assert false : "unhandled s-space format";
+            }
+        } finally {
+            raf.close();
+        }
+        LOGGER.fine("wrote " + format + " S-Space with " + vectorsSeen + 
+                    " words with " + vectorLength + "-dimensional vectors");
+    }
+
+    /**
+     * Returns the file containing the {@code SemanticSpace}
+     */
+    public File getFile() {
+        return outputFile;
+    }
+
+    /**
+     * Writes the provided word and vector to the {@code SemanticSpace} on disk.
+     * The vector is encoded asynchronously, so it must not be modified after
+     * this call.
+     *
+     * @throws IllegalArgumentException if the space is in the {@link
+     *         SSpaceFormat#MAPPED MAPPED} format and the vector's length
+     *         differs from that of the first vector
+     * @throws IOException if an error occurred while writing a previous vector
+     */
+    public synchronized void write(String word, Vector vector) 
+            throws IOException {
+        if (closed)
+            throw new IllegalStateException("Writer has been closed");
+        checkError();
+        if (format == SSpaceFormat.MAPPED) {
+            if (vectorsSeen == 0) {
+                if (mappedSparse == null)
+                    mappedSparse = vector instanceof SparseVector;
+            }
+            else if (vector.length() != vectorLength)
+                throw new IllegalArgumentException(
+                    "Vector for \"" + word + "\" has " + vector.length() +
+                    " dimensions instead of " + vectorLength);
+            words.add(word);
+        }
+        vectorLength = vector.length();
+        vectorsSeen++;
+        current.add(word, vector);
+        if (current.size == BATCH_SIZE) {
+            submit(current);
+            current = new Batch();
+        }
+    }
+
+    /**
+     * Rethrows the first error raised while encoding or writing vectors.
+     */
+    private void checkError() throws IOException {
+        Throwable t = error.get();
+        if (t == null)
+            return;
+        if (t instanceof IOException)
+            throw (IOException)t;
+        if (t instanceof RuntimeException)
+            throw (RuntimeException)t;
+        if (t instanceof Error)
+            throw (Error)t;
+        throw new IOException(t);
+    }
+
+    /**
+     * Queues the batch to be encoded and then written.
+     */
+    private void submit(Batch batch) throws IOException {
+        batch.taskGroup = workQueue.registerTaskGroup(1);
+        // Add the batch to the write order before encoding it so that the
+        // writing thread waits for it
+        put(batch);
+        workQueue.add(batch.taskGroup, batch);
+    }
+
+    /**
+     * Adds the batch to the queue of pending batches, waiting for space if
+     * necessary.
+     */
+    private void put(Batch batch) throws IOException {
+        try {
+            pending.put(batch);
+        } catch (InterruptedException ie) {
+            throw new InterruptedIOException(
+                "Interrupted while waiting to write vectors");
+        }
+    }
+
+    /**
+     * Writes all of the buffer's bytes to the channel at the specified
+     * position.
+     */
+    private void writeFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining())
+            pos += channel.write(buf, pos);
+    }
+
+    /**
+     * Writes an empty {@code SemanticSpace} header to the output file.
+     */
+    private void writeEmptyHeader() throws IOException {
+        ByteBuffer header = null;
+        // Write the extra space for the number of vectors and dimensions;
         switch (format) {
         case TEXT:
         case SPARSE_TEXT:
-            //PrintWriter pw = new PrintWriter(fos);
-            raf.writeChars(vectorsSeen + " " + vectorLength);
+            header = ByteBuffer.allocate(4 + TEXT_HEADER_LENGTH + 1);
+            header.putChar('s');
+            header.putChar((char)('0' + format.ordinal()));
+            byte[] blanks = new byte[TEXT_HEADER_LENGTH];
+            Arrays.fill(blanks, (byte)' ');
+            header.put(blanks);
+            header.put((byte)'\n');
             break;
         case BINARY: 
         case SPARSE_BINARY:
-            raf.writeInt(vectorsSeen); // # of vectors
-            raf.writeInt(vectorLength); // # of dimensions
+        case QUANTIZED:
+            header = ByteBuffer.allocate(12);
+            header.putChar('s');
+            header.putChar((char)('0' + format.ordinal()));
+            header.putInt(0); // # of vectors
+            header.putInt(0); // # of dimensions
+            break;
+        case MAPPED:
+            // The header is written once the offsets of all the sections are
+            // known
+            header = ByteBuffer.allocate(MappedSemanticSpace.HEADER_SIZE);
+            header.position(header.limit());
             break;
         default:
             assert false : "unhandled s-space format";
         }
-        raf.close();
+        header.flip();
+        writeFully(header, 0);
+        position = header.limit();
     }
 
     /**
-     * Returns the file containing the {@code SemanticSpace}
+     * Appends the text representation of the value to the builder, writing
+     * integral values without a fractional part.
      */
-    public File getFile() {
-        return outputFile;
+    private static void appendValue(StringBuilder sb, Vector vector, int i) {
+        if (vector instanceof DoubleVector)
+            sb.append(((DoubleVector)vector).get(i));
+        else if (vector instanceof IntegerVector)
+            sb.append(((IntegerVector)vector).get(i));
+        else
+            sb.append(vector.getValue(i).doubleValue());
     }
 
     /**
-     * Writes the provided word and vector to the {@code SemanticSpace} on disk.
+     * Returns the non-zero indices of the vector.
      */
-    public void write(String word, Vector vector) throws IOException {
-        vectorLength = vector.length();
-        vectorsSeen++;
-        switch (format) {
+    private static int[] nonZeroIndices(Vector vector) {
+        if (vector instanceof SparseVector)
+            return ((SparseVector)vector).getNonZeroIndices();
+        int length = vector.length();
+        int nonZero = 0;
+        for (int i = 0; i < length; ++i) {
+            if (vector.getValue(i).doubleValue() != 0d)
+                nonZero++;
+        }
+        int[] nz = new int[nonZero];
+        for (int i = 0, j = 0; i < length; ++i) {
+            if (vector.getValue(i).doubleValue() != 0d)
+                nz[j++] = i;
+        }
+        return nz;
+    }
 
-        case SPARSE_TEXT: {
-            PrintWriter pw = new PrintWriter(writer);
-            pw.print(word + "|");
-            // For each vector, write all the non-zero elements and their indices
-            StringBuilder sb = null;
-            if (vector instanceof SparseVector) {
-                if (vector instanceof DoubleVector) {
-                    SparseDoubleVector sdv = (SparseDoubleVector)vector;
-                    int[] nz = sdv.getNonZeroIndices();
-                    sb = new StringBuilder(nz.length * 4);
-                    // special case the first
-                    sb.append(0).append(",").append(sdv.get(0));
-                    for (int i = 1; i < nz.length; ++i)
-                        sb.append(",").append(i).append(",").append(sdv.get(i));
-                }
-                else {
-                    SparseVector sv = (SparseVector)vector;
-                    int[] nz = sv.getNonZeroIndices();                    
-                    sb = new StringBuilder(nz.length * 4);
-                    // special case the first
-                    sb.append(0).append(",")
-                        .append(sv.getValue(0).doubleValue());
-                    for (int i = 1; i < nz.length; ++i)
-                        sb.append(",").append(i).append(",").
-                            append(sv.getValue(i).doubleValue());
-                }
-            }
-            
-            else {
-                boolean first = true;
-                sb = new StringBuilder(vectorLength / 2);
-                for (int i = 0; i < vector.length(); ++i) {
-                    double d = vector.getValue(i).doubleValue();
-                    if (d != 0d) {
-                        if (first) {
-                            sb.append(i).append(",").append(d);
-                            first = false;
-                        }
-                        else {
-                            sb.append(",").append(i).append(",").append(d);
-                        }
-                    }
-                }
-            }
-            pw.println(sb.toString());
-            pw.flush();
-            break;
+    /**
+     * Returns the value at the index as a {@code double}.
+     */
+    private static double get(Vector vector, int i) {
+        return (vector instanceof DoubleVector)
+            ? ((DoubleVector)vector).get(i)
+            : vector.getValue(i).doubleValue();
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} whose contents may be wrapped without
+     * copying.
+     */
+    private static class ExposedByteArrayOutputStream 
+            extends ByteArrayOutputStream {
+
+        public ExposedByteArrayOutputStream(int size) {
+            super(size);
         }
-            
 
+        public ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
 
-        case TEXT: {
-            PrintWriter pw = new PrintWriter(writer);
-            pw.println(word + "|" + VectorIO.toString(vector));
-            pw.flush();
-            break;
+    /**
+     * A sequence of vectors that are encoded together.
+     */
+    private class Batch implements Runnable {
+
+        final String[] words;
+
+        final Vector[] vectors;
+
+        int size;
+
+        /**
+         * The task group in which this batch is encoded.
+         */
+        Object taskGroup;
+
+        /**
+         * The encoded vectors.
+         */
+        ByteBuffer encoded;
+
+        /**
+         * For the sparse {@code MAPPED} layout, the offset of each row from
+         * the start of the batch.
+         */
+        long[] rowStarts;
+
+        public Batch() {
+            words = new String[BATCH_SIZE];
+            vectors = new Vector[BATCH_SIZE];
         }
 
-        case BINARY: {
-            writer.writeUTF(word);
-            for (int i = 0; i < vector.length(); ++i) {
-                writer.writeDouble(vector.getValue(i).doubleValue());
-            }            
-            break;
+        public void add(String word, Vector vector) {
+            words[size] = word;
+            vectors[size++] = vector;
         }
 
-        case SPARSE_BINARY: {
-            writer.writeUTF(word);
-            if (vector instanceof SparseVector) {
-                if (vector instanceof DoubleVector) {
-                    SparseDoubleVector sdv = (SparseDoubleVector)vector;
-                    int[] nz = sdv.getNonZeroIndices();
-                    writer.writeInt(nz.length);
-                    for (int i : nz) {
-                        writer.writeInt(i);
-                        writer.writeDouble(sdv.get(i));
-                    }
+        public void run() {
+            try {
+                encoded = encode();
+            } catch (Throwable t) {
+                error.compareAndSet(null, t);
+            }
+            // Release the vectors now that they are no longer needed
+            Arrays.fill(vectors, null);
+        }
+
+        private ByteBuffer encode() throws IOException {
+            switch (format) {
+            case TEXT:
+            case SPARSE_TEXT: {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < size; ++i) {
+                    sb.append(words[i]).append('|');
+                    if (format == SSpaceFormat.TEXT)
+                        appendDense(sb, vectors[i]);
+                    else
+                        appendSparse(sb, vectors[i]);
+                    sb.append('\n');
                 }
-                else {
-                    SparseVector sv = (SparseVector)vector;
-                    int[] nz = sv.getNonZeroIndices();
-                    writer.writeInt(nz.length);
-                    for (int i : nz) {
-                        writer.writeInt(i);
-                        writer.writeDouble(sv.getValue(i).doubleValue());
+                return ByteBuffer.wrap(sb.toString().getBytes(TEXT_CHARSET));
+            }
+            case BINARY:
+            case SPARSE_BINARY: {
+                ExposedByteArrayOutputStream bytes = 
+                    new ExposedByteArrayOutputStream(8192);
+                DataOutputStream dos = new DataOutputStream(bytes);
+                for (int i = 0; i < size; ++i) {
+                    dos.writeUTF(words[i]);
+                    Vector vector = vectors[i];
+                    if (format == SSpaceFormat.BINARY) {
+                        int length = vector.length();
+                        for (int j = 0; j < length; ++j) 
+                            dos.writeDouble(get(vector, j));
+                    }
+                    else {
+                        int[] nz = nonZeroIndices(vector);
+                        dos.writeInt(nz.length);
+                        for (int j : nz) {
+                            dos.writeInt(j);
+                            dos.writeDouble(get(vector, j));
+                        }
                     }
                 }
+                return bytes.toByteBuffer();
             }
-            else {
-                // count how many are non-zero
-                int nonZero = 0;
-                for (int i = 0; i < vector.length(); ++i) {
-                    if (vector.getValue(i).doubleValue() != 0d)
-                        nonZero++;
+            case QUANTIZED: {
+                ExposedByteArrayOutputStream bytes = 
+                    new ExposedByteArrayOutputStream(8192);
+                DataOutputStream dos = new DataOutputStream(bytes);
+                byte[] quantized = new byte[0];
+                for (int i = 0; i < size; ++i) {
+                    dos.writeUTF(words[i]);
+                    DoubleVector vector = Vectors.asDouble(vectors[i]);
+                    int length = vector.length();
+                    if (quantized.length != length)
+                        quantized = new byte[length];
+                    dos.writeFloat(
+                        QuantizedVector.quantize(vector, quantized, 0));
+                    dos.write(quantized);
                 }
-                writer.writeInt(nonZero);
-                for (int i = 0; i < vector.length(); ++i) {
-                    double d = vector.getValue(i).doubleValue();
-                    if (d != 0d) {
-                        writer.writeInt(i);
-                        writer.writeDouble(d);
+                return bytes.toByteBuffer();
+            }
+            case MAPPED: {
+                ExposedByteArrayOutputStream bytes = 
+                    new ExposedByteArrayOutputStream(8192);
+                // Each batch starts at an aligned position, so aligning
+                // relative to the batch is the same as aligning in the file
+                PositionedOutputStream out = new PositionedOutputStream(bytes);
+                boolean sparse = Boolean.TRUE.equals(mappedSparse);
+                if (sparse)
+                    rowStarts = new long[size];
+                for (int i = 0; i < size; ++i) {
+                    if (sparse) {
+                        rowStarts[i] = out.position();
+                        MappedSemanticSpace.writeSparseRow(
+                            out, vectors[i], useFloats);
                     }
+                    else
+                        MappedSemanticSpace.writeDenseRow(
+                            out, vectors[i], useFloats);
                 }
+                out.flush();
+                return bytes.toByteBuffer();
+            }
+            default:
+                throw new IllegalStateException(
+                    "unhandled s-space format: " + format);
             }
+        }
 
-            break;
-        }}
-     }
+        /**
+         * Appends all of the vector's values, separated by spaces.
+         */
+        private void appendDense(StringBuilder sb, Vector vector) {
+            int length = vector.length();
+            for (int i = 0; i < length; ++i) {
+                if (i > 0)
+                    sb.append(' ');
+                appendValue(sb, vector, i);
+            }
+        }
+
+        /**
+         * Appends the index and value of each of the vector's non-zero values,
+         * separated by commas.
+         */
+        private void appendSparse(StringBuilder sb, Vector vector) {
+            int[] nz = nonZeroIndices(vector);
+            for (int i = 0; i < nz.length; ++i) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append(nz[i]).append(',');
+                appendValue(sb, vector, nz[i]);
+            }
+        }
+    }
 
     /**
-     * Writes an empty {@code SemanticSpace} header to the output file.
+     * Writes the encoded batches to the file in the order in which they were
+     * submitted.  Once an error occurs, the remaining batches are discarded so
+     * that callers waiting to submit batches are not blocked.
      */
-    private void writeEmptyHeader() throws IOException {
-        SemanticSpaceIO.writeHeader(writer, format);
-        // Write the extra space for the number of vectors and dimensions;
-        switch (format) {
-        case TEXT:
-        case SPARSE_TEXT:
-            char[] blanks = new char[128];
-            Arrays.fill(blanks, ' ');
-            String blankStr = new String(blanks);
-            PrintWriter pw = new PrintWriter(writer);
-            pw.println(blankStr);
-            pw.flush();
-            break;
-        case BINARY: 
-        case SPARSE_BINARY:
-            writer.writeInt(0); // # of vectors
-            writer.writeInt(0); // # of dimensions
-            break;
-        default:
-            assert false : "unhandled s-space format";
+    private class BatchWriter implements Runnable {
+
+        public void run() {
+            while (true) {
+                Batch batch = null;
+                try {
+                    batch = pending.take();
+                } catch (InterruptedException ie) {
+                    error.compareAndSet(null, new InterruptedIOException(
+                        "Interrupted while writing vectors"));
+                    return;
+                }
+                if (batch == endOfOutput)
+                    return;
+                workQueue.await(batch.taskGroup);
+                if (error.get() != null)
+                    continue;
+                try {
+                    ByteBuffer encoded = batch.encoded;
+                    if (batch.rowStarts != null) {
+                        for (long start : batch.rowStarts)
+                            rowOffsets.add(position + start);
+                    }
+                    long length = encoded.remaining();
+                    while (encoded.hasRemaining())
+                        channel.write(encoded, position + encoded.position());
+                    position += length;
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -37,9 +37,12 @@ import edu.ucla.sspace.util.DoubleEntry;
 import edu.ucla.sspace.util.IntegerEntry;
 
 import edu.ucla.sspace.vector.CompactSparseIntegerVector;
+import edu.ucla.sspace.vector.CompactSparseVector;
 import edu.ucla.sspace.vector.DenseVector;
 import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.FloatArrayAsVector;
 import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.QuantizedVector;
 import edu.ucla.sspace.vector.SparseVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.VectorMath;
@@ -59,8 +62,10 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import gnu.trove.set.TDoubleSet;
 import gnu.trove.set.TIntSet;
 
+import gnu.trove.set.hash.TDoubleHashSet;
 import gnu.trove.set.hash.TIntHashSet;
 
 
@@ -377,6 +382,18 @@ public class Similarity {
         double aMagnitude = a.magnitude();
         double bMagnitude = b.magnitude();
 
+        // Compare vectors stored at reduced precision on their compact values
+        if (hasCompactKernel(a, b)) {
+            return (aMagnitude == 0 || bMagnitude == 0)
+                ? 0 : compactDotProduct(a, b) / (aMagnitude * bMagnitude);
+        }
+
+        // Use a specialized kernel if both vectors expose their values
+        if (a.length() == b.length() && hasKernel(a) && hasKernel(b)) {
+            return (aMagnitude == 0 || bMagnitude == 0)
+                ? 0 : dotProduct(a, b) / (aMagnitude * bMagnitude);
+        }
+
         // Check whether both vectors support fast iteration over their non-zero
         // values.  If so, use only the non-zero indices to speed up the
         // computation by avoiding zero multiplications
@@ -647,7 +664,8 @@ public class Similarity {
     public static double correlation(DoubleVector arr1, DoubleVector arr2) {
         check(arr1, arr2);
 
-        check(arr1, arr2);
+        if (hasKernel(arr1) && hasKernel(arr2))
+            return correlationKernel(arr1, arr2);
 
         // REMINDER: this could be made more effecient by not looping
         double xSum = 0;
@@ -751,6 +769,11 @@ public class Similarity {
      */
     public static double euclideanDistance(DoubleVector a, DoubleVector b) {
         check(a, b);
+
+        if (hasCompactKernel(a, b))
+            return Math.sqrt(compactSquaredDistance(a, b));
+        if (hasKernel(a) && hasKernel(b))
+            return Math.sqrt(squaredDistance(a, b));
         
         if (a instanceof SparseVector && b instanceof SparseVector) {
             SparseVector svA = (SparseVector)a;
@@ -955,22 +978,15 @@ public class Similarity {
      * as sets of samples.
      */
     public static double jaccardIndex(DoubleVector a, DoubleVector b) {
-        Set<Double> intersection = new HashSet<Double>();
-        Set<Double> union = new HashSet<Double>();
-        for (int i = 0; i < a.length(); ++i) {
-            double d = a.get(i);
-            intersection.add(d);
-            union.add(d);
-        }
-        Set<Double> tmp = new HashSet<Double>();
-        for (int i = 0; i < b.length(); ++i) {
-            double d = b.get(i);
-            tmp.add(d);
-            union.add(d);
+        TDoubleSet aValues = distinctValues(a);
+        TDoubleSet bValues = distinctValues(b);
+        int intersection = 0;
+        for (double d : aValues.toArray()) {
+            if (bValues.contains(d))
+                intersection++;
         }
-
-        intersection.retainAll(tmp);
-        return ((double)(intersection.size())) / union.size();
+        int union = aValues.size() + bValues.size() - intersection;
+        return ((double)intersection) / union;
     }
 
     /**
@@ -1788,6 +1804,11 @@ public class Similarity {
     public static double klDivergence(DoubleVector a, DoubleVector b) {
         check(a, b);
 
+        // Zero values of b are ignored for sparse vectors, which is consistent
+        // with the general case below
+        if (hasKernel(a) && hasKernel(b))
+            return klDivergenceKernel(a, b, a instanceof SparseVector);
+
         double divergence = 0;
 
         // Iterate over just the non zero values of a if it is a sparse vector.
@@ -1907,6 +1928,10 @@ public class Similarity {
     public static double klDivergence(Vector a, Vector b) {
         check(a, b);
 
+        if (a instanceof DoubleVector && b instanceof DoubleVector
+                && hasKernel((DoubleVector)a) && hasKernel((DoubleVector)b))
+            return klDivergenceKernel((DoubleVector)a, (DoubleVector)b, false);
+
         double divergence = 0;
 
         // Iterate over just the non zero values of a if it is a sparse vector.
@@ -2370,4 +2395,350 @@ public class Similarity {
 
         return dotProduct / (aMagSq + bMagSq - dotProduct);
     }
+
+    /*
+     * Specialized kernels for the DoubleVector comparisons.  Rather than
+     * iterating over the entries of one vector and probing the other with
+     * get(), which allocates an entry per value and performs a binary search
+     * for each sparse lookup, these operate directly on the arrays backing
+     * dense vectors and on the sorted index and value arrays of sparse
+     * vectors.  Sparse vectors are joined by merging their sorted indices, and
+     * the dense loops are unrolled so that the JIT can pipeline them.  Each
+     * kernel dispatches on the pair of representations once per call.
+     */
+
+    /**
+     * Returns {@code true} if the vector's values may be accessed directly by
+     * the specialized kernels.
+     */
+    private static boolean hasKernel(DoubleVector v) {
+        return v instanceof CompactSparseVector
+            || Vectors.backingArray(v) != null;
+    }
+
+    /**
+     * Returns {@code true} if both vectors store their values in the same
+     * reduced-precision representation, whose values may be compared without
+     * first converting them to {@code double} vectors.
+     */
+    private static boolean hasCompactKernel(DoubleVector a, DoubleVector b) {
+        return (a instanceof QuantizedVector && b instanceof QuantizedVector)
+            || (a instanceof FloatArrayAsVector 
+                && b instanceof FloatArrayAsVector);
+    }
+
+    /**
+     * Returns the dot product of two vectors that have compact kernels.
+     */
+    private static double compactDotProduct(DoubleVector a, DoubleVector b) {
+        return (a instanceof QuantizedVector)
+            ? QuantizedVector.dotProduct((QuantizedVector)a, 
+                                         (QuantizedVector)b)
+            : FloatArrayAsVector.dotProduct((FloatArrayAsVector)a,
+                                            (FloatArrayAsVector)b);
+    }
+
+    /**
+     * Returns the squared Euclidean distance between two vectors that have
+     * compact kernels.
+     */
+    private static double compactSquaredDistance(DoubleVector a, 
+                                                 DoubleVector b) {
+        return (a instanceof QuantizedVector)
+            ? QuantizedVector.squaredDistance((QuantizedVector)a, 
+                                              (QuantizedVector)b)
+            : FloatArrayAsVector.squaredDistance((FloatArrayAsVector)a,
+                                                 (FloatArrayAsVector)b);
+    }
+
+    /**
+     * Returns the dot product of two vectors of the same length, which both
+     * have kernels.
+     */
+    private static double dotProduct(DoubleVector a, DoubleVector b) {
+        double[] aArr = Vectors.backingArray(a);
+        double[] bArr = Vectors.backingArray(b);
+        if (aArr != null && bArr != null)
+            return dotProduct(aArr, bArr);
+        if (aArr != null) {
+            CompactSparseVector sb = (CompactSparseVector)b;
+            return dotProduct(sb.getNonZeroIndices(), sb.getNonZeroValues(),
+                              aArr);
+        }
+        CompactSparseVector sa = (CompactSparseVector)a;
+        if (bArr != null)
+            return dotProduct(sa.getNonZeroIndices(), sa.getNonZeroValues(),
+                              bArr);
+        CompactSparseVector sb = (CompactSparseVector)b;
+        return dotProduct(sa.getNonZeroIndices(), sa.getNonZeroValues(),
+                          sb.getNonZeroIndices(), sb.getNonZeroValues());
+    }
+
+    /**
+     * Returns the dot product of two dense arrays of the same length.
+     */
+    private static double dotProduct(double[] a, double[] b) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int end = a.length - 3; i < end; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i+1] * b[i+1];
+            s2 += a[i+2] * b[i+2];
+            s3 += a[i+3] * b[i+3];
+        }
+        for (; i < a.length; ++i)
+            s0 += a[i] * b[i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns the dot product of a sparse vector, represented by its indices
+     * and values, and a dense array.
+     */
+    private static double dotProduct(int[] indices, double[] values,
+                                     double[] dense) {
+        double sum = 0;
+        for (int i = 0; i < indices.length; ++i)
+            sum += values[i] * dense[indices[i]];
+        return sum;
+    }
+
+    /**
+     * Returns the dot product of two sparse vectors, represented by their
+     * sorted indices and values.
+     */
+    private static double dotProduct(int[] aIndices, double[] aValues,
+                                     int[] bIndices, double[] bValues) {
+        double sum = 0;
+        int i = 0, j = 0;
+        while (i < aIndices.length && j < bIndices.length) {
+            int ai = aIndices[i];
+            int bj = bIndices[j];
+            if (ai == bj)
+                sum += aValues[i++] * bValues[j++];
+            else if (ai < bj)
+                i++;
+            else
+                j++;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the values of a sparse or dense array.
+     */
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double v : values)
+            sum += v;
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the squares of the values of a sparse or dense array.
+     */
+    private static double sumOfSquares(double[] values) {
+        double s0 = 0, s1 = 0;
+        int i = 0;
+        for (int end = values.length - 1; i < end; i += 2) {
+            s0 += values[i] * values[i];
+            s1 += values[i+1] * values[i+1];
+        }
+        if (i < values.length)
+            s0 += values[i] * values[i];
+        return s0 + s1;
+    }
+
+    /**
+     * Returns the squared Euclidean distance between two vectors of the same
+     * length, which both have kernels.
+     */
+    private static double squaredDistance(DoubleVector a, DoubleVector b) {
+        double[] aArr = Vectors.backingArray(a);
+        double[] bArr = Vectors.backingArray(b);
+        if (aArr != null && bArr != null) {
+            double s0 = 0, s1 = 0;
+            int i = 0;
+            for (int end = aArr.length - 1; i < end; i += 2) {
+                double d0 = aArr[i] - bArr[i];
+                double d1 = aArr[i+1] - bArr[i+1];
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+            }
+            if (i < aArr.length) {
+                double d = aArr[i] - bArr[i];
+                s0 += d * d;
+            }
+            return s0 + s1;
+        }
+        if (aArr == null && bArr == null) {
+            CompactSparseVector sa = (CompactSparseVector)a;
+            CompactSparseVector sb = (CompactSparseVector)b;
+            int[] aIndices = sa.getNonZeroIndices();
+            double[] aValues = sa.getNonZeroValues();
+            int[] bIndices = sb.getNonZeroIndices();
+            double[] bValues = sb.getNonZeroValues();
+            double sum = 0;
+            int i = 0, j = 0;
+            while (i < aIndices.length || j < bIndices.length) {
+                int ai = (i < aIndices.length) ? aIndices[i] : Integer.MAX_VALUE;
+                int bj = (j < bIndices.length) ? bIndices[j] : Integer.MAX_VALUE;
+                double diff;
+                if (ai == bj)
+                    diff = aValues[i++] - bValues[j++];
+                else if (ai < bj)
+                    diff = aValues[i++];
+                else
+                    diff = bValues[j++];
+                sum += diff * diff;
+            }
+            return sum;
+        }
+
+        // One vector is sparse and the other is dense.  Start with the squared
+        // magnitude of the dense vector, which accounts for every index where
+        // the sparse vector is zero, and then correct it at the sparse
+        // vector's non-zero indices.
+        CompactSparseVector sparse = (CompactSparseVector)
+            ((aArr == null) ? a : b);
+        double[] dense = (aArr == null) ? bArr : aArr;
+        int[] indices = sparse.getNonZeroIndices();
+        double[] values = sparse.getNonZeroValues();
+        double sum = sumOfSquares(dense);
+        for (int i = 0; i < indices.length; ++i) {
+            double d = dense[indices[i]];
+            double diff = values[i] - d;
+            sum += diff * diff - d * d;
+        }
+        return (sum < 0d) ? 0 : sum;
+    }
+
+    /**
+     * Returns the Pearson product-moment correlation coefficient of two vectors
+     * of the same length, which both have kernels.
+     */
+    private static double correlationKernel(DoubleVector a, DoubleVector b) {
+        double[] aArr = Vectors.backingArray(a);
+        double[] bArr = Vectors.backingArray(b);
+        int n = a.length();
+
+        // For two dense vectors, center the values around their means, which
+        // is more numerically stable
+        if (aArr != null && bArr != null) {
+            double xMean = sum(aArr) / n;
+            double yMean = sum(bArr) / n;
+            double numerator = 0, xSqSum = 0, ySqSum = 0;
+            for (int i = 0; i < n; ++i) {
+                double x = aArr[i] - xMean;
+                double y = bArr[i] - yMean;
+                numerator += x * y;
+                xSqSum += x * x;
+                ySqSum += y * y;
+            }
+            return numerator / Math.sqrt(xSqSum * ySqSum);
+        }
+
+        // Otherwise, compute the correlation from the sums over the non-zero
+        // values, since the zero values contribute nothing to them
+        double[] aValues = (aArr != null)
+            ? aArr : ((CompactSparseVector)a).getNonZeroValues();
+        double[] bValues = (bArr != null)
+            ? bArr : ((CompactSparseVector)b).getNonZeroValues();
+        double xSum = sum(aValues);
+        double ySum = sum(bValues);
+        double numerator = dotProduct(a, b) - xSum * ySum / n;
+        double xSqSum = Math.max(0, sumOfSquares(aValues) - xSum * xSum / n);
+        double ySqSum = Math.max(0, sumOfSquares(bValues) - ySum * ySum / n);
+        return numerator / Math.sqrt(xSqSum * ySqSum);
+    }
+
+    /**
+     * Returns the distinct values in the vector, including zero if any value
+     * is zero.
+     */
+    private static TDoubleSet distinctValues(DoubleVector v) {
+        double[] arr = Vectors.backingArray(v);
+        if (arr != null)
+            return new TDoubleHashSet(arr);
+        if (v instanceof CompactSparseVector) {
+            double[] values = ((CompactSparseVector)v).getNonZeroValues();
+            TDoubleSet set = new TDoubleHashSet(values);
+            if (values.length < v.length())
+                set.add(0);
+            return set;
+        }
+        TDoubleSet set = new TDoubleHashSet();
+        for (int i = 0; i < v.length(); ++i)
+            set.add(v.get(i));
+        return set;
+    }
+
+    /**
+     * Returns the K-L Divergence of two vectors of the same length, which both
+     * have kernels.
+     *
+     * @param ignoreZeros whether indices where {@code a} is non-zero and {@code
+     *        b} is zero are ignored, rather than causing an exception
+     */
+    private static double klDivergenceKernel(DoubleVector a, DoubleVector b,
+                                             boolean ignoreZeros) {
+        double[] aArr = Vectors.backingArray(a);
+        double[] bArr = Vectors.backingArray(b);
+        double divergence = 0;
+
+        // If a is dense, every value of b must be non-zero, so b must be dense
+        // too or have no zero values
+        if (aArr != null) {
+            if (bArr == null) {
+                CompactSparseVector sb = (CompactSparseVector)b;
+                if (sb.getNonZeroIndices().length < sb.length())
+                    throw new IllegalArgumentException(
+                        "The KL-divergence is not defined when a[i] > 0 and " +
+                        "b[i] == 0.");
+                bArr = sb.getNonZeroValues();
+            }
+            for (int i = 0; i < aArr.length; ++i) {
+                double aValue = aArr[i];
+                double bValue = bArr[i];
+                if (bValue == 0)
+                    throw new IllegalArgumentException(
+                        "The KL-divergence is not defined when a[i] > 0 and " +
+                        "b[i] == 0.");
+                else if (aValue != 0d)
+                    divergence += aValue * Math.log(aValue / bValue);
+            }
+            return divergence;
+        }
+
+        CompactSparseVector sa = (CompactSparseVector)a;
+        int[] aIndices = sa.getNonZeroIndices();
+        double[] aValues = sa.getNonZeroValues();
+        int[] bIndices = (bArr == null)
+            ? ((CompactSparseVector)b).getNonZeroIndices() : null;
+        double[] bValues = (bArr == null)
+            ? ((CompactSparseVector)b).getNonZeroValues() : bArr;
+        int j = 0;
+        for (int i = 0; i < aIndices.length; ++i) {
+            double aValue = aValues[i];
+            double bValue = 0;
+            if (bIndices == null)
+                bValue = bValues[aIndices[i]];
+            else {
+                while (j < bIndices.length && bIndices[j] < aIndices[i])
+                    j++;
+                if (j < bIndices.length && bIndices[j] == aIndices[i])
+                    bValue = bValues[j];
+            }
+
+            if (bValue == 0) {
+                if (!ignoreZeros)
+                    throw new IllegalArgumentException(
+                        "The KL-divergence is not defined when a[i] > 0 and " +
+                        "b[i] == 0.");
+            }
+            else if (aValue != 0d)
+                divergence += aValue * Math.log(aValue / bValue);
+        }
+        return divergence;
+    }
 }
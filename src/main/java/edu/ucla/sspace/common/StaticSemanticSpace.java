@@ -22,10 +22,13 @@
 package edu.ucla.sspace.common;
 
 import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+import edu.ucla.sspace.common.SemanticSpaceIO.VectorPrecision;
 
 import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.FloatMatrix;
 import edu.ucla.sspace.matrix.Matrices;
 import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.QuantizedMatrix;
 import edu.ucla.sspace.matrix.SparseMatrix;
 
 import edu.ucla.sspace.vector.CompactSparseVector;
@@ -67,6 +70,13 @@ import java.util.logging.Logger;
  * SemanticSpaceUtils.loadSemanticSpace(File)} rather than create an instance of
  * this class directly.<p>
  *
+ * The vectors of dense formats may be stored at a reduced {@link
+ * VectorPrecision precision}, which is specified when the space is loaded.  By
+ * default, vectors are stored at the precision of their format: {@code double}
+ * for all formats except {@link SSpaceFormat#QUANTIZED}, whose vectors remain
+ * quantized.  Vectors of sparse formats are always stored as {@code
+ * double}s.<p>
+ *
  * This class is thread-safe
  *
  * @see OnDiskSemanticSpace
@@ -117,6 +127,23 @@ public class StaticSemanticSpace implements SemanticSpace {
      *         space data from the file
      */
     public StaticSemanticSpace(File file) throws IOException {
+        this(file, (VectorPrecision)null);
+    }
+
+    /**
+     * Creates the {@link StaticSemanticSpace} from the provided file, storing
+     * the vectors of a dense format at the specified precision.
+     *
+     * @param file a file containing the data of a {@link
+     *        edu.ucla.sspace.common.SemanticSpace}.
+     * @param precision the precision at which the values of a dense space are
+     *        stored, or {@code null} to use the precision of the file's format
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     */
+    public StaticSemanticSpace(File file, VectorPrecision precision) 
+            throws IOException {
         spaceName = file.getName();
         SSpaceFormat format = SemanticSpaceIO.getFormat(file);
         if (format == null)
@@ -128,7 +155,7 @@ public class StaticSemanticSpace implements SemanticSpace {
         // do not see the data.  This is necessary to support older formats that
         // did not include the header.
         dis.readInt();
-        loadFromFormat(dis, format);
+        loadFromFormat(dis, format, precision);
     }
 
     /**
@@ -147,7 +174,7 @@ public class StaticSemanticSpace implements SemanticSpace {
     @Deprecated public StaticSemanticSpace(File file, SSpaceFormat format) 
             throws IOException {
         loadFromFormat(new BufferedInputStream(
-                           new FileInputStream(file)), format);
+                           new FileInputStream(file)), format, null);
         spaceName = file.getName();
     }
 
@@ -157,8 +184,11 @@ public class StaticSemanticSpace implements SemanticSpace {
      *
      * @param is the input stream from which the semantic space will be read
      * @param format the internal data formatting of the semantic space
+     * @param precision the precision at which dense vectors are stored, or
+     *        {@code null} to use the precision of the format
      */
-    private void loadFromFormat(InputStream is, SSpaceFormat format)
+    private void loadFromFormat(InputStream is, SSpaceFormat format,
+                                VectorPrecision precision)
             throws IOException {
         // NOTE: Use a LinkedHashMap here because this will ensure that the
         // words are returned in the same row-order as the matrix.  This
@@ -170,10 +200,13 @@ public class StaticSemanticSpace implements SemanticSpace {
 
             switch (format) {
             case TEXT:
-                m = Matrices.synchronizedMatrix(loadText(is));
+                m = synchronizeIfMutable(loadText(is, precision));
                 break;
             case BINARY:
-                m = Matrices.synchronizedMatrix(loadBinary(is));
+                m = synchronizeIfMutable(loadBinary(is, precision));
+                break;
+            case QUANTIZED:
+                m = synchronizeIfMutable(loadQuantized(is, precision));
                 break;
             
             // REMINDER: we don't use synchronized here because the current
@@ -186,6 +219,10 @@ public class StaticSemanticSpace implements SemanticSpace {
             case SPARSE_BINARY:
                 m = loadSparseBinary(is);
                 break;
+            case MAPPED:
+                throw new IllegalArgumentException(
+                    "MAPPED-formatted files should be opened using a " +
+                    "MappedSemanticSpace");
         }
                     
         if (LOGGER.isLoggable(Level.FINE)) {
@@ -195,6 +232,29 @@ public class StaticSemanticSpace implements SemanticSpace {
         wordSpace = m;
     }
 
+    /**
+     * Returns a dense matrix that stores its values at the specified
+     * precision.
+     */
+    private static Matrix createDenseMatrix(int rows, int columns, 
+                                            VectorPrecision precision) {
+        if (precision == VectorPrecision.FLOAT)
+            return new FloatMatrix(rows, columns);
+        else if (precision == VectorPrecision.INT8)
+            return new QuantizedMatrix(rows, columns);
+        return new ArrayMatrix(rows, columns);
+    }
+
+    /**
+     * Returns a synchronized view of the matrix if its row vectors may be
+     * modified.  The row vectors of matrices with reduced precision are
+     * unmodifiable, so they may be read concurrently without synchronizing.
+     */
+    private static Matrix synchronizeIfMutable(Matrix m) {
+        return (m instanceof FloatMatrix || m instanceof QuantizedMatrix)
+            ? m : Matrices.synchronizedMatrix(m);
+    }
+
     /**
      * Loads the {@link SemanticSpace} from the text formatted file, adding its
      * words to {@link #termToIndex} and returning the {@code Matrix} containing
@@ -202,7 +262,8 @@ public class StaticSemanticSpace implements SemanticSpace {
      *
      * @param sspaceFile a file in {@link SSpaceFormat#TEXT text} format
      */
-    private Matrix loadText(InputStream fileStream) throws IOException {
+    private Matrix loadText(InputStream fileStream, VectorPrecision precision)
+            throws IOException {
         Matrix matrix = null;
 
         BufferedReader br = 
@@ -219,7 +280,7 @@ public class StaticSemanticSpace implements SemanticSpace {
         // reusable array for writing rows into the matrix
         double[] row = new double[columns];
         
-        matrix = new ArrayMatrix(rows, columns);
+        matrix = createDenseMatrix(rows, columns, precision);
 
         while ((line = br.readLine()) != null) {
             if (index >= rows)
@@ -292,13 +353,14 @@ public class StaticSemanticSpace implements SemanticSpace {
      *
      * @param sspaceFile a file in {@link SSpaceFormat#BINARY binary} format
      */
-    private Matrix loadBinary(InputStream fileStream) throws IOException {
+    private Matrix loadBinary(InputStream fileStream, 
+                              VectorPrecision precision) throws IOException {
         DataInputStream dis = new DataInputStream(fileStream);
         int rows = dis.readInt();
         int cols = dis.readInt();
 
         // create a dense matrix
-        Matrix m = new ArrayMatrix(rows, cols);
+        Matrix m = createDenseMatrix(rows, cols, precision);
         double[] d = new double[cols];
         for (int row = 0; row < rows; ++row) {
             String word = dis.readUTF();
@@ -312,6 +374,50 @@ public class StaticSemanticSpace implements SemanticSpace {
         return m;
     }
 
+    /**
+     * Loads the {@link SemanticSpace} from the quantized file, adding its words
+     * to {@link #termToIndex} and returning the {@code Matrix} containing the
+     * space's vectors.  Unless another precision is specified, the quantized
+     * values are stored as they are in the file.
+     *
+     * @param sspaceFile a file in {@link SSpaceFormat#QUANTIZED quantized}
+     *        format
+     */
+    private Matrix loadQuantized(InputStream fileStream, 
+                                 VectorPrecision precision) 
+            throws IOException {
+        DataInputStream dis = new DataInputStream(fileStream);
+        int rows = dis.readInt();
+        int cols = dis.readInt();
+        if ((long)rows * cols > Integer.MAX_VALUE)
+            throw new IOException(
+                "Semantic space is too large to load: " + rows + " x " + cols);
+
+        if (precision == null || precision == VectorPrecision.INT8) {
+            byte[] values = new byte[rows * cols];
+            float[] scales = new float[rows];
+            for (int row = 0; row < rows; ++row) {
+                termToIndex.put(dis.readUTF(), row);
+                scales[row] = dis.readFloat();
+                dis.readFully(values, row * cols, cols);
+            }
+            return new QuantizedMatrix(rows, cols, values, scales);
+        }
+
+        Matrix m = createDenseMatrix(rows, cols, precision);
+        byte[] q = new byte[cols];
+        double[] d = new double[cols];
+        for (int row = 0; row < rows; ++row) {
+            termToIndex.put(dis.readUTF(), row);
+            float scale = dis.readFloat();
+            dis.readFully(q);
+            for (int col = 0; col < cols; ++col)
+                d[col] = q[col] * (double)scale;
+            m.setRow(row, d);
+        }
+        return m;
+    }
+
     /**
      * Loads the {@link SemanticSpace} from the binary formatted file, adding
      * its words to {@link #termToIndex} and returning the {@code Matrix}
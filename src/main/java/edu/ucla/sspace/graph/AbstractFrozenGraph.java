@@ -0,0 +1,660 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import edu.ucla.sspace.util.primitive.AbstractIntSet;
+import edu.ucla.sspace.util.primitive.IntIterator;
+import edu.ucla.sspace.util.primitive.IntSet;
+
+import java.io.Serializable;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * A base class for immutable, undirected graphs whose adjacency lists are
+ * stored in the <a
+ * href="http://en.wikipedia.org/wiki/Sparse_matrix#Compressed_sparse_row_.28CSR_or_CRS.29">compressed
+ * sparse row</a> (CSR) format.  The neighbors of all vertices are stored in a
+ * single {@code int} array, where the neighbors of each vertex occupy a
+ * contiguous range in sorted order.  Compared with the {@link EdgeSet}-based
+ * graphs, this representation needs only a few bytes per edge, has good
+ * memory locality, and does not create any {@link Edge} instances unless they
+ * are requested through the {@link Graph} API.
+ *
+ * <p> Algorithms that only need the structure of the graph should use the
+ * primitive accessors: the neighbors of vertex {@code v} are {@link
+ * #neighborAt(int) neighborAt(i)} for each {@code i} from {@link
+ * #neighborStart(int) neighborStart(v)}, inclusive, to {@link
+ * #neighborEnd(int) neighborEnd(v)}, exclusive.  For example:
+ *
+ * <pre>
+ *   for (int i = g.neighborStart(v); i &lt; g.neighborEnd(v); ++i) {
+ *       int neighbor = g.neighborAt(i);
+ *       ...
+ *   }
+ * </pre>
+ *
+ * <p> All methods that would modify the graph throw an {@link
+ * UnsupportedOperationException}.  Instances are thread safe.
+ *
+ * @see Graphs#freeze(Graph)
+ */
+public abstract class AbstractFrozenGraph<E extends Edge> 
+        implements Graph<E>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The vertices of this graph in sorted order.
+     */
+    private final int[] vertices;
+
+    /**
+     * {@code true} if the vertices are the contiguous range from 0 to {@code
+     * order() - 1}, in which case a vertex is its own index.
+     */
+    private final boolean isContiguous;
+
+    /**
+     * The index into {@code neighbors} where each vertex's neighbors begin.
+     * The final value is the total length of {@code neighbors}.
+     */
+    private final int[] offsets;
+
+    /**
+     * The sorted neighbors of each vertex, stored contiguously.
+     */
+    private final int[] neighbors;
+
+    /**
+     * The number of edges in this graph.
+     */
+    private final int numEdges;
+
+    /**
+     * Creates a graph from the provided compressed sparse row arrays.
+     *
+     * @param vertices the vertices in sorted order
+     * @param offsets the index into {@code neighbors} where the neighbors of
+     *        each vertex begin, with one additional value for the end of the
+     *        array
+     * @param neighbors the neighbors of each vertex, where the neighbors of a
+     *        single vertex are in sorted order
+     */
+    AbstractFrozenGraph(int[] vertices, int[] offsets, int[] neighbors) {
+        this.vertices = vertices;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        int n = vertices.length;
+        isContiguous = n == 0 || (vertices[0] == 0 && vertices[n - 1] == n - 1);
+
+        // Each edge is stored in the adjacency of both of its vertices, except
+        // self-loops, which are stored once
+        int selfLoops = 0;
+        for (int i = 0; i < n; ++i) {
+            if (Arrays.binarySearch(
+                    neighbors, offsets[i], offsets[i + 1], vertices[i]) >= 0)
+                selfLoops++;
+        }
+        numEdges = (neighbors.length + selfLoops) / 2;
+    }
+
+    /**
+     * Returns the vertices of the graph in sorted order, throwing an {@link
+     * IllegalArgumentException} if the graph cannot be represented as an
+     * undirected graph with at most one edge between any two vertices.
+     */
+    static int[] sortedVertices(Graph<?> g) {
+        if (g instanceof DirectedGraph || g instanceof Multigraph)
+            throw new IllegalArgumentException(
+                "Only undirected graphs without parallel edges can be frozen");
+        int[] verts = g.vertices().toPrimitiveArray();
+        Arrays.sort(verts);
+        return verts;
+    }
+
+    /**
+     * Returns the edge for the neighbor stored at the provided position.
+     */
+    abstract E edge(int vertex, int position);
+
+    /**
+     * Returns {@code true} if {@code e} is equal to the edge stored at the
+     * provided position in the adjacency of {@code e.from()}.  The default
+     * implementation returns {@code true}, which is suitable for graphs whose
+     * edges only consist of their vertices.
+     */
+    boolean matches(Edge e, int position) {
+        return true;
+    }
+
+    /**
+     * Returns the index of the vertex in {@code offsets} or a negative value
+     * if the vertex is not in this graph.
+     */
+    private int index(int vertex) {
+        if (isContiguous)
+            return (vertex >= 0 && vertex < vertices.length) ? vertex : -1;
+        int i = Arrays.binarySearch(vertices, vertex);
+        return (i < 0) ? -1 : i;
+    }
+
+    /**
+     * Returns the position of {@code to} in the neighbors of {@code from}, or
+     * a negative value if the vertices are not connected.
+     */
+    final int find(int from, int to) {
+        int i = index(from);
+        if (i < 0)
+            return -1;
+        int pos = Arrays.binarySearch(neighbors, offsets[i], offsets[i+1], to);
+        return (pos < 0) ? -1 : pos;
+    }
+
+    /**
+     * Returns the position of the first neighbor of the vertex, or {@code 0}
+     * if the vertex is not in this graph.
+     */
+    public final int neighborStart(int vertex) {
+        int i = index(vertex);
+        return (i < 0) ? 0 : offsets[i];
+    }
+
+    /**
+     * Returns the position after the last neighbor of the vertex, or {@code 0}
+     * if the vertex is not in this graph.
+     */
+    public final int neighborEnd(int vertex) {
+        int i = index(vertex);
+        return (i < 0) ? 0 : offsets[i + 1];
+    }
+
+    /**
+     * Returns the backing array of neighbor offsets, indexed by vertex
+     * position, without copying.  Callers must not modify the array.
+     */
+    final int[] offsetArray() {
+        return offsets;
+    }
+
+    /**
+     * Returns the backing array of neighbors without copying.  Callers must
+     * not modify the array.
+     */
+    final int[] neighborArray() {
+        return neighbors;
+    }
+
+    /**
+     * Returns the neighbor at the provided position.
+     *
+     * @see #neighborStart(int)
+     * @see #neighborEnd(int)
+     */
+    public final int neighborAt(int position) {
+        return neighbors[position];
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException} if called.
+     */
+    public boolean add(int i) {
+        throw new UnsupportedOperationException("Cannot modify a frozen graph");
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException} if called.
+     */
+    public boolean add(E edge) {
+        throw new UnsupportedOperationException("Cannot modify a frozen graph");
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException} if called.
+     */
+    public void clear() {
+        throw new UnsupportedOperationException("Cannot modify a frozen graph");
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException} if called.
+     */
+    public void clearEdges() {
+        throw new UnsupportedOperationException("Cannot modify a frozen graph");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(int vertex) {
+        return index(vertex) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(int from, int to) {
+        return find(from, to) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(Edge e) {
+        int pos = find(e.from(), e.to());
+        return pos >= 0 && matches(e, pos);
+    }
+
+    /**
+     * Copies the specified vertices and the edges between them to the
+     * provided graph.
+     *
+     * @throws IllegalArgumentException if one of the vertices is not in this
+     *         graph
+     */
+    <G extends Graph<E>> G copyInto(G g, Set<Integer> vertexSubset) {
+        for (int v : vertexSubset) {
+            if (!contains(v))
+                throw new IllegalArgumentException(
+                    "Requested copy with non-existant vertex: " + v);
+            g.add(v);
+        }
+        for (int v : vertexSubset) {
+            int i = index(v);
+            for (int pos = offsets[i]; pos < offsets[i + 1]; ++pos) {
+                int n = neighbors[pos];
+                if (n >= v && vertexSubset.contains(n))
+                    g.add(edge(v, pos));
+            }
+        }
+        return g;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int degree(int vertex) {
+        int i = index(vertex);
+        return (i < 0) ? 0 : offsets[i + 1] - offsets[i];
+    }
+
+    /**
+     * Returns an unmodifiable view of the edges in this graph.
+     */
+    public Set<E> edges() {
+        return new EdgeView();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean equals(Object o) {
+        if (o instanceof Graph) {
+            Graph<?> g = (Graph<?>)o;
+            return g.order() == order()
+                && g.size() == size()
+                && g.vertices().equals(vertices())
+                && g.edges().equals(edges());                    
+        }
+        return false;
+    }
+
+    /**
+     * Returns an unmodifiable view of the edges connected to the vertex.
+     */
+    public Set<E> getAdjacencyList(int vertex) {
+        int i = index(vertex);
+        return (i < 0) 
+            ? Collections.<E>emptySet()
+            : new AdjacencyListView(vertex, offsets[i], offsets[i + 1]);
+    }
+
+    /**
+     * Returns an unmodifiable view of the vertices connected to the vertex.
+     */
+    public IntSet getNeighbors(int vertex) {
+        int i = index(vertex);
+        return (i < 0) 
+            ? new NeighborView(0, 0)
+            : new NeighborView(offsets[i], offsets[i + 1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<E> getEdges(int vertex1, int vertex2) {
+        int pos = find(vertex1, vertex2);
+        return (pos < 0) 
+            ? Collections.<E>emptySet()
+            : Collections.singleton(edge(vertex1, pos));
+    }
+
+    /**
+     * Returns {@code true} if this graph contains a cycle, which is determined
+     * using a union-find over the edges.
+     */
+    public boolean hasCycles() {
+        int[] parents = new int[vertices.length];
+        for (int i = 0; i < parents.length; ++i)
+            parents[i] = i;
+        for (int i = 0; i < vertices.length; ++i) {
+            for (int pos = offsets[i]; pos < offsets[i + 1]; ++pos) {
+                int n = neighbors[pos];
+                // Only consider each edge once
+                if (n < vertices[i])
+                    continue;
+                int r1 = root(parents, i);
+                int r2 = root(parents, index(n));
+                if (r1 == r2)
+                    return true;
+                parents[r1] = r2;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the root of the vertex's set, compressing the path along the
+     * way.
+     */
+    private static int root(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return vertices().hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int order() {
+        return vertices.length;
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException} if called.
+     */
+    public boolean remove(E e) {
+        throw new UnsupportedOperationException("Cannot modify a frozen graph");
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException} if called.
+     */
+    public boolean remove(int vertex) {
+        throw new UnsupportedOperationException("Cannot modify a frozen graph");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        return numEdges;
+    }
+
+    /**
+     * Returns a description of the graph as the sequence of its edges.
+     */
+    public String toString() {
+        return "{ vertices: " + vertices() + ", edges: " + edges() + "}";
+    }
+
+    /**
+     * Returns an unmodifiable view of the vertices in this graph.
+     */
+    public IntSet vertices() {
+        return new VertexView();
+    }
+
+    /**
+     * An {@link IntIterator} over a range of an {@code int} array.
+     */
+    private static class ArrayRangeIterator implements IntIterator {
+
+        private final int[] array;
+
+        private final int end;
+
+        private int next;
+
+        public ArrayRangeIterator(int[] array, int start, int end) {
+            this.array = array;
+            this.next = start;
+            this.end = end;
+        }
+
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        public Integer next() {
+            return nextInt();
+        }
+
+        public int nextInt() {
+            if (next >= end)
+                throw new NoSuchElementException();
+            return array[next++];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException(
+                "Cannot modify a frozen graph");
+        }
+    }
+
+    /**
+     * A view of a sorted range of an {@code int} array as a set.
+     */
+    private static class SortedRangeSet extends AbstractIntSet {
+
+        private final int[] array;
+
+        private final int start;
+
+        private final int end;
+
+        public SortedRangeSet(int[] array, int start, int end) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+        }
+
+        public boolean contains(int i) {
+            return Arrays.binarySearch(array, start, end, i) >= 0;
+        }
+
+        public boolean contains(Object o) {
+            return (o instanceof Integer) && contains(((Integer)o).intValue());
+        }
+
+        public IntIterator iterator() {
+            return new ArrayRangeIterator(array, start, end);
+        }
+
+        public int size() {
+            return end - start;
+        }
+
+        public int[] toPrimitiveArray() {
+            return Arrays.copyOfRange(array, start, end);
+        }
+    }
+
+    /**
+     * A view of the neighbors of a vertex.
+     */
+    private class NeighborView extends SortedRangeSet {
+        public NeighborView(int start, int end) {
+            super(neighbors, start, end);
+        }
+    }
+
+    /**
+     * A view of the vertices of this graph.
+     */
+    private class VertexView extends SortedRangeSet {
+        public VertexView() {
+            super(vertices, 0, vertices.length);
+        }
+    }
+
+    /**
+     * A view of the edges connected to a single vertex.
+     */
+    private class AdjacencyListView extends AbstractSet<E> {
+
+        private final int vertex;
+
+        private final int start;
+
+        private final int end;
+
+        public AdjacencyListView(int vertex, int start, int end) {
+            this.vertex = vertex;
+            this.start = start;
+            this.end = end;
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Edge))
+                return false;
+            Edge e = (Edge)o;
+            return (e.from() == vertex || e.to() == vertex)
+                && AbstractFrozenGraph.this.contains(e);
+        }
+
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                int next = start;
+
+                public boolean hasNext() {
+                    return next < end;
+                }
+
+                public E next() {
+                    if (next >= end)
+                        throw new NoSuchElementException();
+                    return edge(vertex, next++);
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException(
+                        "Cannot modify a frozen graph");
+                }
+            };
+        }
+
+        public int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * A view of all the edges in this graph, where each edge is returned from
+     * the adjacency of its lower-numbered vertex.
+     */
+    private class EdgeView extends AbstractSet<E> {
+
+        public boolean contains(Object o) {
+            return (o instanceof Edge) 
+                && AbstractFrozenGraph.this.contains((Edge)o);
+        }
+
+        public Iterator<E> iterator() {
+            return new EdgeIterator();
+        }
+
+        public int size() {
+            return numEdges;
+        }
+    }
+
+    /**
+     * An iterator over each edge in the graph.
+     */
+    private class EdgeIterator implements Iterator<E> {
+
+        /**
+         * The index of the vertex whose neighbors are being returned.
+         */
+        private int vertex;
+
+        /**
+         * The position of the next neighbor to return, or {@code
+         * neighbors.length} if there are no further edges.
+         */
+        private int next;
+
+        public EdgeIterator() {
+            vertex = 0;
+            next = -1;
+            advance();
+        }
+
+        /**
+         * Moves to the next neighbor that is not less than its vertex.
+         */
+        private void advance() {
+            next++;
+            while (vertex < vertices.length) {
+                for (; next < offsets[vertex + 1]; ++next) {
+                    if (neighbors[next] >= vertices[vertex])
+                        return;
+                }
+                vertex++;
+            }
+            next = neighbors.length;
+        }
+
+        public boolean hasNext() {
+            return next < neighbors.length;
+        }
+
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            E e = edge(vertices[vertex], next);
+            advance();
+            return e;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException(
+                "Cannot modify a frozen graph");
+        }
+    }
+}
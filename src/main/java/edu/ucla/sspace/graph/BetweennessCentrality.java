@@ -21,14 +21,14 @@
 
 package edu.ucla.sspace.graph;
 
-import java.util.ArrayDeque;
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.util.primitive.IntIterator;
+
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Deque;
 import java.util.List;
-import java.util.Queue;
-
-import edu.ucla.sspace.util.primitive.IntIterator;
+import java.util.Random;
 
 
 /**
@@ -38,86 +38,543 @@ import edu.ucla.sspace.util.primitive.IntIterator;
  * computing the <a
  * href="http://en.wikipedia.org/wiki/Betweenness_Centrality">betweenness
  * centrality</a> for all the vertices in a graph.
+ *
+ * <p> The single-source computations are divided among multiple threads, with
+ * each thread accumulating the dependencies of its sources into its own array
+ * before the arrays are summed.  Shortest paths in a {@link WeightedGraph} are
+ * found using Dijkstra's algorithm, where edge weights are treated as
+ * distances; all other graphs use breadth-first search.
+ *
+ * <p> For large graphs, the centrality may be approximated by only computing
+ * the dependencies from a random sample of pivot vertices, following Brandes
+ * and Pich (2007) "Centrality Estimation in Large Networks."  The
+ * dependencies of each pivot are scaled by {@code n / k}, where {@code n} is
+ * the number of vertices and {@code k} is the number of pivots.
+ *
+ * <p> Graphs that have been {@link Graphs#freeze(Graph) frozen} are traversed
+ * directly; all other graphs are first copied into a compact array-based
+ * representation.
  */
 public class BetweennessCentrality implements java.io.Serializable {
     
     private static final long serialVersionUID = 1L;
 
     /**
-     * Creates a new instance of a {@code BetweennessCentrality}
+     * The number of threads to use when computing the centrality.
+     */
+    private final int numThreads;
+
+    /**
+     * The source of randomness for selecting pivots.
+     */
+    private final Random random;
+
+    /**
+     * Creates a new instance of a {@code BetweennessCentrality} that uses all
+     * available processors.
+     */
+    public BetweennessCentrality() { 
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance of a {@code BetweennessCentrality} that uses the
+     * specified number of threads.
      */
-    public BetweennessCentrality() { }
+    public BetweennessCentrality(int numThreads) { 
+        this(numThreads, new Random());
+    }
+
+    /**
+     * Creates a new instance of a {@code BetweennessCentrality} that uses the
+     * specified number of threads and selects pivots using the provided source
+     * of randomness.
+     */
+    public BetweennessCentrality(int numThreads, Random random) { 
+        if (numThreads < 1)
+            throw new IllegalArgumentException(
+                "Must use at least one thread: " + numThreads);
+        if (random == null)
+            throw new NullPointerException();
+        this.numThreads = numThreads;
+        this.random = random;
+    }
 
     /**
      * Returns a mapping from each vertex to its betweenness centrality measure.
+     *
+     * @throws IllegalArgumentException if the vertices of {@code g} are not a
+     *         contiguous range starting at 0, or if {@code g} is weighted and
+     *         has a negative edge weight
      */
     public <E extends Edge> double[] compute(Graph<E> g) {
+        Adjacency adj = toAdjacency(g);
+        int[] sources = new int[adj.order()];
+        for (int i = 0; i < sources.length; ++i)
+            sources[i] = i;
+        return compute(adj, sources, 1);
+    }
+
+    /**
+     * Returns an estimate of the betweenness centrality of each vertex using
+     * the dependencies from only {@code numPivots} randomly selected source
+     * vertices.  If the number of pivots is at least the number of vertices,
+     * the exact centrality is returned.
+     *
+     * @throws IllegalArgumentException if {@code numPivots} is not positive,
+     *         the vertices of {@code g} are not a contiguous range starting at
+     *         0, or if {@code g} is weighted and has a negative edge weight
+     */
+    public <E extends Edge> double[] compute(Graph<E> g, int numPivots) {
+        if (numPivots < 1)
+            throw new IllegalArgumentException(
+                "Must use at least one pivot: " + numPivots);
+        Adjacency adj = toAdjacency(g);
+        int order = adj.order();
+        int[] vertices = new int[order];
+        for (int i = 0; i < order; ++i)
+            vertices[i] = i;
+        if (numPivots >= order)
+            return compute(adj, vertices, 1);
+
+        // Select the pivots using a partial Fisher-Yates shuffle
+        for (int i = 0; i < numPivots; ++i) {
+            int j = i + random.nextInt(order - i);
+            int tmp = vertices[i];
+            vertices[i] = vertices[j];
+            vertices[j] = tmp;
+        }
+        return compute(adj, Arrays.copyOf(vertices, numPivots), 
+                       (double)order / numPivots);
+    }
+
+    /**
+     * Returns an estimate of the betweenness centrality of each vertex where,
+     * with probability at least {@code 1 - delta}, the estimate of every
+     * vertex is within {@code epsilon * n * (n - 2)} of its exact value for a
+     * graph with {@code n} vertices.  The number of pivots is determined by
+     * {@link #pivotsFor(int,double,double)}.
+     */
+    public <E extends Edge> double[] compute(Graph<E> g, double epsilon,
+                                             double delta) {
+        return compute(g, pivotsFor(g.order(), epsilon, delta));
+    }
+
+    /**
+     * Returns the number of pivots needed to estimate the centrality of all
+     * {@code numVertices} vertices within {@code epsilon * n * (n - 2)} with
+     * probability at least {@code 1 - delta}.  Because the dependency of each
+     * vertex on a single source is at most {@code n - 2}, Hoeffding's
+     * inequality and a union bound over the vertices give {@code k = ln(2n /
+     * delta) / (2 epsilon^2)} pivots.
+     */
+    public static int pivotsFor(int numVertices, double epsilon, double delta) {
+        if (epsilon <= 0)
+            throw new IllegalArgumentException(
+                "epsilon must be positive: " + epsilon);
+        if (delta <= 0 || delta >= 1)
+            throw new IllegalArgumentException(
+                "delta must be in (0, 1): " + delta);
+        double k = Math.log(2 * Math.max(numVertices, 1) / delta) 
+            / (2 * epsilon * epsilon);
+        return (int)Math.min(Math.max(1, Math.ceil(k)), 
+                             Math.max(numVertices, 1));
+    }
+
+    /**
+     * Computes the dependencies of all vertices on the sources, scaling the
+     * final sums by {@code scale}.
+     */
+    private double[] compute(final Adjacency adj, final int[] sources, 
+                             double scale) {
+        int order = adj.order();
+        int tasks = Math.max(1, Math.min(numThreads, sources.length));
+        final double[][] partials = new double[tasks][];
+        List<Runnable> workers = new ArrayList<Runnable>(tasks);
+        for (int t = 0; t < tasks; ++t) {
+            final int task = t;
+            final int numTasks = tasks;
+            workers.add(new Runnable() {
+                    public void run() {
+                        SourceDependencies sd = (adj.weights == null)
+                            ? new UnweightedDependencies(adj)
+                            : new WeightedDependencies(adj);
+                        // Interleave the sources so that each thread sees a
+                        // similar mix of sparse and dense regions
+                        for (int i = task; i < sources.length; i += numTasks)
+                            sd.accumulate(sources[i]);
+                        partials[task] = sd.centralities;
+                    }
+                });
+        }
+        if (tasks == 1)
+            workers.get(0).run();
+        else
+            WorkQueue.getWorkQueue(WorkQueue.GRAPH_QUEUE, numThreads)
+                .run(workers);
+
+        double[] centralities = partials[0];
+        for (int t = 1; t < tasks; ++t) {
+            double[] partial = partials[t];
+            for (int v = 0; v < order; ++v)
+                centralities[v] += partial[v];
+        }
+        if (scale != 1) {
+            for (int v = 0; v < order; ++v)
+                centralities[v] *= scale;
+        }
+        return centralities;
+    }
+
+    /**
+     * Returns the adjacency of {@code g}, sharing the arrays of frozen graphs.
+     */
+    private static Adjacency toAdjacency(Graph<?> g) {
         // Perform a quick test for whether the vertices of g are a contiguous
         // sequence starting at 0, which makes the vertex mapping trivial
         if (!hasContiguousVertices(g))
             throw new IllegalArgumentException(
                 "Vertices must be in continugous order");
-        
-        double[] centralities = new double[g.order()];
-        IntIterator vertexIter = g.vertices().iterator();
-        while (vertexIter.hasNext()) {
-            int s = vertexIter.nextInt();
-            Deque<Integer> S = new ArrayDeque<Integer>();
-
-            // Initialize P to an empty list for each vertex
-            List<List<Integer>> P = new ArrayList<List<Integer>>(g.order());
-            for (int i = 0; i < g.order(); ++i)
-                P.add(new ArrayList<Integer>());
-
-            double[] sigma = new double[g.order()];
-            sigma[s] = 1;
 
-            double[] d = new double[g.order()];
+        if (g instanceof FrozenWeightedGraph) {
+            FrozenWeightedGraph f = (FrozenWeightedGraph)g;
+            return new Adjacency(f.offsetArray(), f.neighborArray(),
+                                 checkWeights(f.weightArray()));
+        }
+        if (g instanceof AbstractFrozenGraph) {
+            AbstractFrozenGraph<?> f = (AbstractFrozenGraph<?>)g;
+            return new Adjacency(f.offsetArray(), f.neighborArray(), null);
+        }
+
+        int order = g.order();
+        int[] offsets = new int[order + 1];
+        if (g instanceof WeightedGraph) {
+            @SuppressWarnings("unchecked")
+            WeightedGraph<? extends WeightedEdge> wg = 
+                (WeightedGraph<? extends WeightedEdge>)g;
+            for (int v = 0; v < order; ++v) 
+                offsets[v + 1] = offsets[v] + wg.getAdjacencyList(v).size();
+            int[] neighbors = new int[offsets[order]];
+            double[] weights = new double[offsets[order]];
+            for (int v = 0; v < order; ++v) {
+                int i = offsets[v];
+                for (WeightedEdge e : wg.getAdjacencyList(v)) {
+                    neighbors[i] = (e.from() == v) ? e.to() : e.from();
+                    weights[i++] = e.weight();
+                }
+            }
+            return new Adjacency(offsets, neighbors, checkWeights(weights));
+        }
+
+        for (int v = 0; v < order; ++v) 
+            offsets[v + 1] = offsets[v] + g.getNeighbors(v).size();
+        int[] neighbors = new int[offsets[order]];
+        for (int v = 0; v < order; ++v) {
+            int i = offsets[v];
+            IntIterator iter = g.getNeighbors(v).iterator();
+            while (iter.hasNext())
+                neighbors[i++] = iter.nextInt();
+        }
+        return new Adjacency(offsets, neighbors, null);
+    }
+
+    /**
+     * Throws an {@link IllegalArgumentException} if any weight is negative,
+     * returning the weights otherwise.
+     */
+    private static double[] checkWeights(double[] weights) {
+        for (double w : weights) {
+            if (w < 0)
+                throw new IllegalArgumentException(
+                    "Cannot compute shortest paths with negative weight: " + w);
+        }
+        return weights;
+    }
+
+    private static boolean hasContiguousVertices(Graph<?> g) {
+        int order = g.order();
+        for (int v : g.vertices()) {
+            if (v >= order)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The neighbors of each vertex in compressed sparse row format, where the
+     * neighbors of vertex {@code v} are stored from {@code offsets[v]} to
+     * {@code offsets[v+1]}.
+     */
+    private static class Adjacency {
+
+        final int[] offsets;
+
+        final int[] neighbors;
+
+        /**
+         * The weight of each edge in {@code neighbors}, or {@code null} if the
+         * graph is unweighted.
+         */
+        final double[] weights;
+
+        public Adjacency(int[] offsets, int[] neighbors, double[] weights) {
+            this.offsets = offsets;
+            this.neighbors = neighbors;
+            this.weights = weights;
+        }
+
+        public int order() {
+            return offsets.length - 1;
+        }
+    }
+
+    /**
+     * The state for computing the single-source dependencies of vertices,
+     * which is reused across all the sources processed by one thread.
+     */
+    private static abstract class SourceDependencies {
+
+        final Adjacency adj;
+
+        /**
+         * The sum of the dependencies on all the sources processed so far.
+         */
+        final double[] centralities;
+
+        /**
+         * The number of shortest paths from the source to each vertex.
+         */
+        final double[] sigma;
+
+        /**
+         * The dependency of the source on each vertex.
+         */
+        final double[] delta;
+
+        /**
+         * The vertices in the order in which they were finalized, which is
+         * non-decreasing distance from the source.
+         */
+        final int[] order;
+
+        public SourceDependencies(Adjacency adj) {
+            this.adj = adj;
+            int n = adj.order();
+            centralities = new double[n];
+            sigma = new double[n];
+            delta = new double[n];
+            order = new int[n];
+        }
+
+        /**
+         * Adds the dependencies of all vertices on the source to {@code
+         * centralities}.
+         */
+        public abstract void accumulate(int s);
+    }
+
+    /**
+     * Computes the dependencies using breadth-first search.  Rather than
+     * storing the list of predecessors for each vertex, the predecessors are
+     * found by rescanning the neighbors of the vertex for those one step
+     * closer to the source.
+     */
+    private static class UnweightedDependencies extends SourceDependencies {
+
+        private final int[] d;
+
+        public UnweightedDependencies(Adjacency adj) {
+            super(adj);
+            d = new int[adj.order()];
+        }
+
+        public void accumulate(int s) {
+            int[] offsets = adj.offsets;
+            int[] neighbors = adj.neighbors;
+            Arrays.fill(sigma, 0);
             Arrays.fill(d, -1);
+            Arrays.fill(delta, 0);
+            sigma[s] = 1;
             d[s] = 0;
-            
-            Queue<Integer> Q = new ArrayDeque<Integer>();
-            Q.add(s);
-            while (!Q.isEmpty()) {
-                int v = Q.poll();
-                S.offer(v);
-                IntIterator neighborIter = g.getNeighbors(v).iterator();
-                while (neighborIter.hasNext()) { 
-                    int w = neighborIter.nextInt();
-                    // Check whether this is the first time we've seen vertex w
+            // The queue of vertices to visit, which is also the stack of
+            // visited vertices 
+            int head = 0;
+            int tail = 0;
+            order[tail++] = s;
+            while (head < tail) {
+                int v = order[head++];
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                    int w = neighbors[i];
                     if (d[w] < 0) {
-                        Q.offer(w);
+                        order[tail++] = w;
                         d[w] = d[v] + 1;
                     }
-                    // Check whether the shortest path to w is through v
-                    if (d[w] == d[v] + 1) {
+                    if (d[w] == d[v] + 1)
+                        sigma[w] += sigma[v];
+                }
+            }
+            // Walk the visited vertices in order of non-increasing distance
+            while (tail > 0) {
+                int w = order[--tail];
+                for (int i = offsets[w]; i < offsets[w + 1]; ++i) {
+                    int v = neighbors[i];
+                    if (d[v] == d[w] - 1)
+                        delta[v] += (sigma[v] / sigma[w]) * (1 + delta[w]);
+                }
+                if (w != s)
+                    centralities[w] += delta[w];
+            }
+        }
+    }
+
+    /**
+     * Computes the dependencies using Dijkstra's algorithm with an indexed
+     * binary heap of primitive values.  The predecessors of each vertex are
+     * kept as linked lists in a pool with one entry per edge, since each edge
+     * is relaxed at most once per source.
+     */
+    private static class WeightedDependencies extends SourceDependencies {
+
+        private final double[] dist;
+
+        /**
+         * The vertices in the heap, ordered by their distance.
+         */
+        private final int[] heap;
+
+        /**
+         * The position of each vertex in the heap, or -1 if the vertex has
+         * not been reached, or -2 if its distance is final.
+         */
+        private final int[] heapPos;
+
+        private int heapSize;
+
+        /**
+         * The first entry in the predecessor pool for each vertex, or -1.
+         */
+        private final int[] predHead;
+
+        private final int[] predNext;
+
+        private final int[] predVertex;
+
+        public WeightedDependencies(Adjacency adj) {
+            super(adj);
+            int n = adj.order();
+            dist = new double[n];
+            heap = new int[n];
+            heapPos = new int[n];
+            predHead = new int[n];
+            predNext = new int[adj.neighbors.length];
+            predVertex = new int[adj.neighbors.length];
+        }
+
+        public void accumulate(int s) {
+            int[] offsets = adj.offsets;
+            int[] neighbors = adj.neighbors;
+            double[] weights = adj.weights;
+            Arrays.fill(sigma, 0);
+            Arrays.fill(delta, 0);
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            Arrays.fill(heapPos, -1);
+            Arrays.fill(predHead, -1);
+            int poolSize = 0;
+            int settled = 0;
+
+            sigma[s] = 1;
+            dist[s] = 0;
+            heapSize = 0;
+            insert(s);
+            while (heapSize > 0) {
+                int v = removeMin();
+                order[settled++] = v;
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                    int w = neighbors[i];
+                    if (heapPos[w] == -2)
+                        continue;
+                    double alt = dist[v] + weights[i];
+                    if (alt < dist[w]) {
+                        dist[w] = alt;
+                        sigma[w] = 0;
+                        predHead[w] = -1;
+                        if (heapPos[w] == -1)
+                            insert(w);
+                        else
+                            siftUp(heapPos[w]);
+                    }
+                    if (alt == dist[w]) {
                         sigma[w] += sigma[v];
-                        P.get(w).add(v);
+                        predVertex[poolSize] = v;
+                        predNext[poolSize] = predHead[w];
+                        predHead[w] = poolSize++;
                     }
                 }
             }
-            double[] delta = new double[g.order()];
-            // S as a stack returns vertices in order of their non-increasing
-            // distance from vertex s
-            while (!S.isEmpty()) {
-                int w = S.pollLast(); // get the top of the stack
-                for (int v : P.get(w)) {
+
+            while (settled > 0) {
+                int w = order[--settled];
+                for (int p = predHead[w]; p >= 0; p = predNext[p]) {
+                    int v = predVertex[p];
                     delta[v] += (sigma[v] / sigma[w]) * (1 + delta[w]);
                 }
-                if (w != s) {
+                if (w != s)
                     centralities[w] += delta[w];
-                }            
             }
         }
-        return centralities;
-    }
 
-    private static boolean hasContiguousVertices(Graph<?> g) {
-        int order = g.order();
-        for (int v : g.vertices()) {
-            if (v >= order)
-                return false;
+        private void insert(int v) {
+            heap[heapSize] = v;
+            heapPos[v] = heapSize;
+            siftUp(heapSize++);
+        }
+
+        private int removeMin() {
+            int min = heap[0];
+            heapPos[min] = -2;
+            int last = heap[--heapSize];
+            if (heapSize > 0) {
+                heap[0] = last;
+                heapPos[last] = 0;
+                siftDown(0);
+            }
+            return min;
+        }
+
+        private void siftUp(int i) {
+            int v = heap[i];
+            double d = dist[v];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                int p = heap[parent];
+                if (dist[p] <= d)
+                    break;
+                heap[i] = p;
+                heapPos[p] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            heapPos[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            double d = dist[v];
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < heapSize && dist[heap[right]] < dist[heap[child]])
+                    child = right;
+                int c = heap[child];
+                if (d <= dist[c])
+                    break;
+                heap[i] = c;
+                heapPos[c] = i;
+                i = child;
+            }
+            heap[i] = v;
+            heapPos[v] = i;
         }
-        return true;
     }
-}
\ No newline at end of file
+}
@@ -55,8 +55,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.iterator.TIntIntIterator;
 import gnu.trove.map.TIntDoubleMap;
+import gnu.trove.map.TIntIntMap;
 import gnu.trove.map.hash.TIntDoubleHashMap;
+import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
@@ -149,10 +152,19 @@ public class ChineseWhispersClustering implements java.io.Serializable {
                 else {
                     // Get the neighbors of the current vertex and identify
                     // which class label is the maximum from the neighbors
-                    int maxClass = (graph instanceof WeightedGraph) 
-                        ? getMaxClassWeighted(vertex, vertexAssignments,
-                            (WeightedGraph<? extends WeightedEdge>)graph)
-                        : getMaxClass(vertex, vertexAssignments, graph);
+                    int maxClass;
+                    if (graph instanceof FrozenWeightedGraph)
+                        maxClass = getMaxClassWeighted(vertex, 
+                            vertexAssignments, (FrozenWeightedGraph)graph);
+                    else if (graph instanceof WeightedGraph)
+                        maxClass = getMaxClassWeighted(vertex, 
+                            vertexAssignments, 
+                            (WeightedGraph<? extends WeightedEdge>)graph);
+                    else if (graph instanceof AbstractFrozenGraph)
+                        maxClass = getMaxClass(vertex, vertexAssignments,
+                            (AbstractFrozenGraph<?>)graph);
+                    else
+                        maxClass = getMaxClass(vertex, vertexAssignments, graph);
                     int oldClass = vertexAssignments[vertex];
                     if (oldClass != maxClass) {
                         vertexAssignments[vertex] = maxClass;
@@ -203,6 +215,74 @@ public class ChineseWhispersClustering implements java.io.Serializable {
             : options[RANDOM.nextInt(options.length)];
     }
 
+    /**
+     * Returns the most frequent class among the vertex and its neighbors,
+     * counting the classes without boxing by reading the neighbors directly
+     * from the frozen graph.
+     */
+    static int getMaxClass(int v, int[] vertexAssignments, 
+                           AbstractFrozenGraph<?> g) {
+        TIntIntMap classes = new TIntIntHashMap();
+        classes.put(vertexAssignments[v], 1);
+        int end = g.neighborEnd(v);
+        for (int i = g.neighborStart(v); i < end; ++i) 
+            classes.adjustOrPutValue(vertexAssignments[g.neighborAt(i)], 1, 1);
+
+        TIntSet ties = new TIntHashSet();
+        int max = 0;
+        TIntIntIterator iter = classes.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            int count = iter.value();
+            if (count > max) {
+                ties.clear();
+                max = count;
+            }
+            if (count == max)
+                ties.add(iter.key());
+        }
+
+        int[] options = ties.toArray();
+        return (options.length == 1)
+            ? options[0]
+            : options[RANDOM.nextInt(options.length)];
+    }
+
+    /**
+     * Returns the class with the highest total edge weight among the
+     * neighbors of the vertex, reading the neighbors and weights directly from
+     * the frozen graph.
+     */
+    static int getMaxClassWeighted(int v, int[] vertexAssignments, 
+                                   FrozenWeightedGraph g) {
+        TIntDoubleMap classSums = new TIntDoubleHashMap();
+        int end = g.neighborEnd(v);
+        for (int i = g.neighborStart(v); i < end; ++i) {
+            double weight = g.weightAt(i);
+            classSums.adjustOrPutValue(
+                vertexAssignments[g.neighborAt(i)], weight, weight);
+        }
+
+        double maxSum = -1d;
+        TIntSet ties = new TIntHashSet();
+        TIntDoubleIterator iter = classSums.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            double weight = iter.value();
+            if (weight > maxSum) {
+                maxSum = weight;
+                ties.clear();
+            }
+            if (weight == maxSum)
+                ties.add(iter.key());
+        }
+        
+        int[] options = ties.toArray();
+        return (options.length == 1)
+            ? options[0]
+            : options[RANDOM.nextInt(options.length)];
+    }
+
     static <E extends WeightedEdge> int 
                       getMaxClassWeighted(int v, int[] vertexAssignments, 
                                           WeightedGraph<E> g) {
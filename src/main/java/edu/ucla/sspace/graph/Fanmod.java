@@ -88,7 +88,8 @@ public class Fanmod {
     /**
      * The internal queue for multithreading the null-model counting
      */
-    private static final WorkQueue q = WorkQueue.getWorkQueue();
+    private static final WorkQueue q =
+        WorkQueue.getWorkQueue(WorkQueue.GRAPH_QUEUE);
 
     /**
      * Creates a new Fanmod instance
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import java.util.Arrays;
+import java.util.Set;
+
+
+/**
+ * An immutable, undirected graph stored in the compressed sparse row format.
+ * This class is intended for algorithms that repeatedly traverse a large graph
+ * whose structure does not change, such as the computation of {@link
+ * BetweennessCentrality}.  See {@link AbstractFrozenGraph} for details on the
+ * representation and the primitive neighbor accessors.
+ *
+ * @see Graphs#freeze(Graph)
+ */
+public class FrozenGraph extends AbstractFrozenGraph<Edge> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an immutable copy of the provided graph.
+     *
+     * @throws IllegalArgumentException if {@code g} is a {@link DirectedGraph}
+     *         or a {@link Multigraph}
+     */
+    public FrozenGraph(Graph<? extends Edge> g) {
+        this(sortedVertices(g), g);
+    }
+
+    private FrozenGraph(int[] vertices, Graph<? extends Edge> g) {
+        this(vertices, offsets(vertices, g), g);
+    }
+
+    private FrozenGraph(int[] vertices, int[] offsets, 
+                        Graph<? extends Edge> g) {
+        super(vertices, offsets, neighbors(vertices, offsets, g));
+    }
+
+    /**
+     * Returns the offsets of each vertex's neighbors.
+     */
+    private static int[] offsets(int[] vertices, Graph<? extends Edge> g) {
+        int[] offsets = new int[vertices.length + 1];
+        for (int i = 0; i < vertices.length; ++i)
+            offsets[i + 1] = offsets[i] + g.getNeighbors(vertices[i]).size();
+        return offsets;
+    }
+
+    /**
+     * Returns the sorted neighbors of each vertex.
+     */
+    private static int[] neighbors(int[] vertices, int[] offsets,
+                                   Graph<? extends Edge> g) {
+        int[] neighbors = new int[offsets[vertices.length]];
+        for (int i = 0; i < vertices.length; ++i) {
+            int[] adjacent = g.getNeighbors(vertices[i]).toPrimitiveArray();
+            Arrays.sort(adjacent);
+            System.arraycopy(adjacent, 0, neighbors, offsets[i], 
+                             adjacent.length);
+        }
+        return neighbors;
+    }
+
+    /**
+     * Returns a mutable copy of the specified vertices and the edges between
+     * them.
+     */
+    public SparseUndirectedGraph copy(Set<Integer> vertices) {
+        return copyInto(new SparseUndirectedGraph(), vertices);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    Edge edge(int vertex, int position) {
+        return new SimpleEdge(vertex, neighborAt(position));
+    }
+
+    /**
+     * Returns an immutable graph containing the specified vertices and the
+     * edges between them.
+     */
+    public FrozenGraph subgraph(Set<Integer> vertices) {
+        return new FrozenGraph(copy(vertices));
+    }
+}
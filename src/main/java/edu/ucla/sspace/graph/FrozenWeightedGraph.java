@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import java.util.Arrays;
+import java.util.Set;
+
+
+/**
+ * An immutable, undirected, weighted graph stored in the compressed sparse row
+ * format.  The weight of each edge is stored in a {@code double} array that is
+ * parallel to the neighbors, so the weight of the edge to {@link
+ * #neighborAt(int) neighborAt(i)} is {@link #weightAt(int) weightAt(i)}.
+ *
+ * @see Graphs#freeze(WeightedGraph)
+ */
+public class FrozenWeightedGraph extends AbstractFrozenGraph<WeightedEdge>
+        implements WeightedGraph<WeightedEdge> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The weights of each edge, in the same order as the neighbors.
+     */
+    private final double[] weights;
+
+    /**
+     * Creates an immutable copy of the provided graph.
+     *
+     * @throws IllegalArgumentException if {@code g} is a {@link DirectedGraph}
+     *         or a {@link Multigraph}
+     */
+    public FrozenWeightedGraph(WeightedGraph<? extends WeightedEdge> g) {
+        this(sortedVertices(g), g);
+    }
+
+    private FrozenWeightedGraph(int[] vertices,
+                                WeightedGraph<? extends WeightedEdge> g) {
+        this(vertices, offsets(vertices, g), g);
+    }
+
+    private FrozenWeightedGraph(int[] vertices, int[] offsets,
+                                WeightedGraph<? extends WeightedEdge> g) {
+        this(vertices, offsets, new int[offsets[vertices.length]],
+             new double[offsets[vertices.length]], g);
+    }
+
+    private FrozenWeightedGraph(int[] vertices, int[] offsets, 
+                                int[] neighbors, double[] weights,
+                                WeightedGraph<? extends WeightedEdge> g) {
+        super(vertices, offsets, fill(vertices, offsets, neighbors, weights, g));
+        this.weights = weights;
+    }
+
+    /**
+     * Returns the offsets of each vertex's neighbors.
+     */
+    private static int[] offsets(int[] vertices, Graph<? extends Edge> g) {
+        int[] offsets = new int[vertices.length + 1];
+        for (int i = 0; i < vertices.length; ++i)
+            offsets[i + 1] = offsets[i] + g.getNeighbors(vertices[i]).size();
+        return offsets;
+    }
+
+    /**
+     * Fills the neighbor and weight arrays from the adjacency lists of {@code
+     * g}, returning the neighbor array.
+     */
+    private static int[] fill(int[] vertices, int[] offsets, int[] neighbors,
+                              double[] weights, 
+                              WeightedGraph<? extends WeightedEdge> g) {
+        for (int i = 0; i < vertices.length; ++i) {
+            int v = vertices[i];
+            Set<? extends WeightedEdge> adjacent = g.getAdjacencyList(v);
+            double[] rowWeights = new double[adjacent.size()];
+            // Sort the neighbors by packing each one with the index of its
+            // weight
+            long[] keys = new long[adjacent.size()];
+            int j = 0;
+            for (WeightedEdge e : adjacent) {
+                int other = (e.from() == v) ? e.to() : e.from();
+                rowWeights[j] = e.weight();
+                keys[j] = ((long)other << 32) | j;
+                j++;
+            }
+            Arrays.sort(keys);
+            int start = offsets[i];
+            for (j = 0; j < keys.length; ++j) {
+                neighbors[start + j] = (int)(keys[j] >> 32);
+                weights[start + j] = rowWeights[(int)keys[j]];
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Returns a mutable copy of the specified vertices and the edges between
+     * them.
+     */
+    public WeightedGraph<WeightedEdge> copy(Set<Integer> vertices) {
+        return copyInto(new SparseWeightedGraph(), vertices);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    WeightedEdge edge(int vertex, int position) {
+        return new SimpleWeightedEdge(
+            vertex, neighborAt(position), weights[position]);
+    }
+
+    /**
+     * Returns {@code true} if {@code e} is a {@link WeightedEdge} with the same
+     * weight as the edge at the position.
+     */
+    @Override boolean matches(Edge e, int position) {
+        return (e instanceof WeightedEdge)
+            && ((WeightedEdge)e).weight() == weights[position];
+    }
+
+    /**
+     * Returns the sum of the weights of the edges connected to the vertex.
+     */
+    public double strength(int vertex) {
+        double sum = 0;
+        int end = neighborEnd(vertex);
+        for (int i = neighborStart(vertex); i < end; ++i)
+            sum += weights[i];
+        return sum;
+    }
+
+    /**
+     * Returns an immutable graph containing the specified vertices and the
+     * edges between them.
+     */
+    public FrozenWeightedGraph subgraph(Set<Integer> vertices) {
+        return new FrozenWeightedGraph(copy(vertices));
+    }
+
+    /**
+     * Returns the backing array of weights without copying.  Callers must not
+     * modify the array.
+     */
+    double[] weightArray() {
+        return weights;
+    }
+
+    /**
+     * Returns the weight of the edge to the neighbor at the provided position.
+     *
+     * @see #neighborStart(int)
+     * @see #neighborEnd(int)
+     */
+    public double weightAt(int position) {
+        return weights[position];
+    }
+}
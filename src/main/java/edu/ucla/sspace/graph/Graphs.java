@@ -82,6 +82,41 @@ public final class Graphs {
             return new MultigraphAdaptor<T,E>(g);
     }
 
+    /**
+     * Returns an immutable copy of the graph that is stored in the compressed
+     * sparse row format.  Frozen graphs use much less memory than the mutable
+     * graph implementations and offer primitive access to the neighbors of
+     * each vertex, which algorithms such as {@link BetweennessCentrality} use
+     * to avoid boxing.  If the graph is already frozen, it is returned as is.
+     *
+     * @throws IllegalArgumentException if {@code g} is a {@link DirectedGraph}
+     *         or a {@link Multigraph}
+     */
+    public static FrozenGraph freeze(Graph<? extends Edge> g) {
+        if (g == null)
+            throw new NullPointerException();
+        return (g instanceof FrozenGraph)
+            ? (FrozenGraph)g
+            : new FrozenGraph(g);
+    }
+
+    /**
+     * Returns an immutable copy of the weighted graph that is stored in the
+     * compressed sparse row format, with the edge weights stored in a parallel
+     * array.  If the graph is already frozen, it is returned as is.
+     *
+     * @throws IllegalArgumentException if {@code g} is a {@link DirectedGraph}
+     *         or a {@link Multigraph}
+     */
+    public static FrozenWeightedGraph freeze(
+            WeightedGraph<? extends WeightedEdge> g) {
+        if (g == null)
+            throw new NullPointerException();
+        return (g instanceof FrozenWeightedGraph)
+            ? (FrozenWeightedGraph)g
+            : new FrozenWeightedGraph(g);
+    }
+
     /**
      * Creates a copy of the provided graph where all vertices are remapped to a
      * contiguous range from 0 to {@code g.order()}-1.  If the graph's vertices
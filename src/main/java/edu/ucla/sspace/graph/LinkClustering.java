@@ -122,7 +122,8 @@ public class LinkClustering implements java.io.Serializable {
      * The work used by all {@code LinkClustering} instances to perform
      * multi-threaded operations.
      */
-    private static final WorkQueue WORK_QUEUE = WorkQueue.getWorkQueue();    
+    private static final WorkQueue WORK_QUEUE =
+        WorkQueue.getWorkQueue(WorkQueue.GRAPH_QUEUE);
 
     /**
      * Instantiates a new {@code LinkClustering} instance.
@@ -1005,6 +1006,9 @@ public class LinkClustering implements java.io.Serializable {
      */
     protected <E extends Edge> double getConnectionSimilarity(
             Graph<E> graph, int keystone, int impost1, int impost2) {
+        if (graph instanceof AbstractFrozenGraph)
+            return getConnectionSimilarity(
+                (AbstractFrozenGraph<?>)graph, impost1, impost2);
         
         IntSet n1 = graph.getNeighbors(impost1);
         IntSet n2 = graph.getNeighbors(impost2);
@@ -1039,6 +1043,41 @@ public class LinkClustering implements java.io.Serializable {
         return (double)inCommon / (n1size + n2size + 2 - inCommon);
     }
 
+    /**
+     * Computes the connection similarity for the two edges of a frozen graph
+     * by merging the sorted neighbors of the two impost vertices.
+     */
+    private static double getConnectionSimilarity(
+            AbstractFrozenGraph<?> graph, int impost1, int impost2) {
+        int i = graph.neighborStart(impost1);
+        int iEnd = graph.neighborEnd(impost1);
+        int j = graph.neighborStart(impost2);
+        int jEnd = graph.neighborEnd(impost2);
+        int n1size = iEnd - i;
+        int n2size = jEnd - j;
+
+        int inCommon = 0;
+        while (i < iEnd && j < jEnd) {
+            int v1 = graph.neighborAt(i);
+            int v2 = graph.neighborAt(j);
+            if (v1 < v2)
+                i++;
+            else if (v1 > v2)
+                j++;
+            else {
+                inCommon++;
+                i++;
+                j++;
+            }
+        }
+
+        // Each impost is in the neighborhood of the other if they are
+        // connected
+        if (graph.contains(impost1, impost2))
+            inCommon += 2;
+        return (double)inCommon / (n1size + n2size + 2 - inCommon);
+    }
+
 
     /**
      * A structure for holding the indices of two {@link Edge} instances and
@@ -125,6 +125,8 @@ public class WeightedLinkClustering extends LinkClustering
 
     private <E extends WeightedEdge> SparseDoubleVector computeWeightVector(
             WeightedGraph<E> g, int vertex) {
+        if (g instanceof FrozenWeightedGraph)
+            return computeWeightVector((FrozenWeightedGraph)g, vertex);
 
         SparseDoubleVector weightVec = new CompactSparseVector();//  g.order());
         Set<E> adjacent = g.getAdjacencyList(vertex);
@@ -147,4 +149,21 @@ public class WeightedLinkClustering extends LinkClustering
         weightVec.set(vertex, normalizer);
         return weightVec;
     }
+
+    /**
+     * Computes the weight vector by reading the neighbors and weights directly
+     * from the frozen graph.  Since the neighbors are sorted, the vector is
+     * filled in order.
+     */
+    private SparseDoubleVector computeWeightVector(FrozenWeightedGraph g, 
+                                                   int vertex) {
+        SparseDoubleVector weightVec = new CompactSparseVector();
+        int start = g.neighborStart(vertex);
+        int end = g.neighborEnd(vertex);
+        double normalizer = 1d / (end - start);
+        for (int i = start; i < end; ++i) 
+            weightVec.set(g.neighborAt(i), normalizer * g.weightAt(i));
+        weightVec.set(vertex, normalizer);
+        return weightVec;
+    }
 }
\ No newline at end of file
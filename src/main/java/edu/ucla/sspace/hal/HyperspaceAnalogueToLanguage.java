@@ -27,10 +27,14 @@ import edu.ucla.sspace.basis.StringBasisMapping;
 import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.Statistics;
 
-import edu.ucla.sspace.matrix.AtomicGrowingSparseHashMatrix;
+import edu.ucla.sspace.matrix.AtomicGrowingOpenHashMatrix;
 import edu.ucla.sspace.matrix.MatrixEntropy;
 import edu.ucla.sspace.matrix.MatrixEntropy.EntropyStats;
+import edu.ucla.sspace.matrix.MatrixEntry;
+import edu.ucla.sspace.matrix.MatrixFile;
 import edu.ucla.sspace.matrix.SparseMatrix;
+import edu.ucla.sspace.matrix.SpillingMatrixAccumulator;
+import edu.ucla.sspace.matrix.SvdlibcSparseBinaryMatrixBuilder;
 import edu.ucla.sspace.matrix.YaleSparseMatrix;
 
 import edu.ucla.sspace.text.IteratorFactory;
@@ -39,15 +43,20 @@ import edu.ucla.sspace.util.BoundedSortedMultiMap;
 import edu.ucla.sspace.util.MultiMap;
 import edu.ucla.sspace.util.Pair;
 
+import edu.ucla.sspace.util.primitive.IntIterator;
+
 import edu.ucla.sspace.vector.CompactSparseVector;
 import edu.ucla.sspace.vector.SparseHashDoubleVector;
 import edu.ucla.sspace.vector.SparseDoubleVector;
 import edu.ucla.sspace.vector.Vector;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
@@ -148,7 +157,15 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * For models that require a non-symmetric window, a special {@link
  * WeightingFunction} can be used which assigns a weight of {@code 0} to
- * co-occurrences that match the non-symmetric window size.
+ * co-occurrences that match the non-symmetric window size.<p>
+ *
+ * For very large corpora, the co-occurrence counts may be accumulated with a
+ * {@link SpillingMatrixAccumulator}, which sums the counts for each document in
+ * bounded, per-thread buffers and spills them to disk rather than updating a
+ * shared in-memory matrix.  When {@link #processSpace(Properties)
+ * processSpace} is called, the spilled counts are merged directly into a matrix
+ * file on disk, from which the entropies of the columns and the final vectors
+ * are computed without the co-occurrence matrix ever being held in memory.
  *
  * @author Alex Nau
  * @author David Jurgens
@@ -209,13 +226,21 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
      * The matrix used for storing weight co-occurrence statistics of those
      * words that occur both before and after.
      */
-    private AtomicGrowingSparseHashMatrix cooccurrenceMatrix;
+    private AtomicGrowingOpenHashMatrix cooccurrenceMatrix;
 
     /**
-     * The reduced matrix, if columns are to be dropped.
+     * The reduced matrix, if columns are to be dropped or the co-occurrence
+     * counts were summed out of memory.
      */
     private SparseMatrix reduced;
 
+    /**
+     * The accumulator for co-occurrence counts if they are to be summed out of
+     * memory, or {@code null} if counts are added directly to {@link
+     * #cooccurrenceMatrix}.
+     */
+    private final SpillingMatrixAccumulator accumulator;
+
     /**
      * Constructs a new instance using the default parameters used in the
      * original publication.
@@ -261,7 +286,30 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
                                         WeightingFunction weightFunction,
                                         double columnThreshold,
                                         int retainColumns) {
-        this.cooccurrenceMatrix = new AtomicGrowingSparseHashMatrix();
+        this(basis, windowSize, weightFunction, columnThreshold,
+             retainColumns, null);
+    }
+
+    /**
+     * Constructs a {@link HyperspaceAnalogueToLanguage} instance using the
+     * provided parameters, which sums the co-occurrence counts using the
+     * provided accumulator until {@link #processSpace(Properties)
+     * processSpace} is called.  The remaining parameters are as described in
+     * {@link #HyperspaceAnalogueToLanguage(BasisMapping, int,
+     * WeightingFunction, double, int)}.
+     *
+     * @param accumulator the accumulator in which co-occurrence counts are
+     *        summed, or {@code null} to sum counts in memory.  The accumulator
+     *        must merge its entries in column-major order.
+     */
+    public HyperspaceAnalogueToLanguage(BasisMapping<String, String> basis,
+                                        int windowSize,
+                                        WeightingFunction weightFunction,
+                                        double columnThreshold,
+                                        int retainColumns,
+                                        SpillingMatrixAccumulator accumulator) {
+        this.accumulator = accumulator;
+        this.cooccurrenceMatrix = new AtomicGrowingOpenHashMatrix();
         this.termToIndex = basis;
         this.windowSize = windowSize;
         this.weighting = weightFunction;
@@ -287,19 +335,23 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
                     "columnThreshold and retainColumns cannot both be active.\n" +
                     "columnThreshold: " + columnThreshold + "\n" +
                     "retainColumns: " + retainColumns+ "\n");
+        if (accumulator != null && !accumulator.isColumnMajor())
+            throw new IllegalArgumentException(
+                    "The accumulator must merge its entries in column-major " +
+                    "order");
     }
 
     /**
      * {@inheritDoc}
      */
     public void  processDocument(BufferedReader document) throws IOException {
-        Queue<String> nextWords = new ArrayDeque<String>();
-        Queue<String> prevWords = new ArrayDeque<String>();
-
-        Iterator<String> documentTokens =
-            IteratorFactory.tokenizeOrdered(document);
+        // The windows hold the dimension of each token, which is found once as
+        // the token is read, rather than for every window it appears in.
+        TIntArrayList nextWords = new TIntArrayList(windowSize + 1);
+        TIntArrayList prevWords = new TIntArrayList(windowSize + 1);
 
-        String focus = null;
+        IntIterator documentTokens =
+            IteratorFactory.tokenizeOrderedIds(document, termToIndex);
 
         // Rather than updating the matrix every time an occurrence is seen,
         // keep a thread-local count of what needs to be modified in the matrix
@@ -310,42 +362,41 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
 
         //Load the first windowSize words into the Queue
         for(int i = 0;  i < windowSize && documentTokens.hasNext(); i++)
-            nextWords.offer(documentTokens.next());
+            nextWords.add(documentTokens.nextInt());
 
         while(!nextWords.isEmpty()) {
 
             // Load the top of the nextWords Queue into the focus word
-            focus = nextWords.remove();
+            int focusIndex = nextWords.removeAt(0);
 
             // Add the next word to nextWords queue (if possible)
             if (documentTokens.hasNext())
-                nextWords.offer(documentTokens.next());
-
-            // If the filter does not accept this word, skip the semantic
-            // processing, continue with the next word
-            if (!focus.equals(IteratorFactory.EMPTY_TOKEN)) {
-                int focusIndex = termToIndex.getDimension(focus);
-                // Only process co-occurrences with words with non-negative
-                // dimensions.
-                if (focusIndex >= 0) {
-                    // in front of the focus word
-                    int wordDistance = -windowSize + (windowSize - prevWords.size());
-                    addTokens(prevWords, focusIndex, wordDistance, matrixEntryToCount);
-                }
+                nextWords.add(documentTokens.nextInt());
+
+            // Only process co-occurrences with words with non-negative
+            // dimensions, which excludes any words that were filtered out or
+            // are not part of the basis.
+            if (focusIndex >= 0) {
+                // in front of the focus word
+                int wordDistance = -windowSize + (windowSize - prevWords.size());
+                addTokens(prevWords, focusIndex, wordDistance, matrixEntryToCount);
             }
 
             // last, put this focus word in the prev words and shift off the
             // front if it is larger than the window
-            prevWords.offer(focus);
+            prevWords.add(focusIndex);
             if (prevWords.size() > windowSize)
-                prevWords.remove();
+                prevWords.removeAt(0);
         }
 
         // Once the document has been processed, update the co-occurrence matrix
         // accordingly.
         for (Map.Entry<Pair<Integer>,Double> e : matrixEntryToCount.entrySet()){
             Pair<Integer> p = e.getKey();
-            cooccurrenceMatrix.addAndGet(p.x, p.y, e.getValue());
+            if (accumulator == null)
+                cooccurrenceMatrix.addAndGet(p.x, p.y, e.getValue());
+            else
+                accumulator.add(p.x, p.y, e.getValue());
         }
     }
 
@@ -355,25 +406,23 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
      * at {@code distance} tokens away from the focus word.  All Counts will be
      * added into {@code matrixEntryToCount}.
      */
-    private void addTokens(Queue<String> words,
+    private void addTokens(TIntArrayList words,
                            int focusIndex,
                            int distance,
                            Map<Pair<Integer>, Double> matrixEntryToCount) {
-        for (String word : words) {
+        for (int i = 0; i < words.size(); ++i) {
+            int index = words.getQuick(i);
             // skip adding co-occurence values for words that are not
-            // accepted by the filter
-            if (!word.equals(IteratorFactory.EMPTY_TOKEN)) {
-                int index = termToIndex.getDimension(word);
-                if (index >= 0) {
-                    // Get the current number of times that the focus word has
-                    // co-occurred with this word before after it.  Weight the
-                    // word appropriately baed on distance
-                    Pair<Integer> p = new Pair<Integer>(index, focusIndex);
-                    double value = weighting.weight(distance, windowSize);
-                    Double curCount = matrixEntryToCount.get(p);
-                    matrixEntryToCount.put(p, (curCount == null)
-                                           ? value : value + curCount);
-                }
+            // accepted by the filter or are not in the basis
+            if (index >= 0) {
+                // Get the current number of times that the focus word has
+                // co-occurred with this word before after it.  Weight the
+                // word appropriately baed on distance
+                Pair<Integer> p = new Pair<Integer>(index, focusIndex);
+                double value = weighting.weight(distance, windowSize);
+                Double curCount = matrixEntryToCount.get(p);
+                matrixEntryToCount.put(p, (curCount == null)
+                                       ? value : value + curCount);
             }
             distance++;
         }
@@ -429,6 +478,13 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
      * {@inheritDoc}
      */
     public void processSpace(Properties properties) {
+        // If the counts were summed out of memory, merge them to disk and
+        // compute the final space from the file
+        if (accumulator != null) {
+            processSpilledCounts();
+            return;
+        }
+
         // Ensure that the bottom right corner of the matrix has a valid value
         // so that we always create a 2 * n set of dimensions in the default
         // case.
@@ -444,6 +500,37 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
             retainOnly(retainColumns);
     }
 
+    /**
+     * Merges the spilled co-occurrence counts into an {@code
+     * SVDLIBC_SPARSE_BINARY} matrix file and then streams the file to compute
+     * the column entropies, if needed, and to build {@link #reduced} from the
+     * retained columns.  The in-memory {@link
+     * #cooccurrenceMatrix} is not used.
+     */
+    private void processSpilledCounts() {
+        int words = termToIndex.numDimensions();
+        LOGGER.info("Merging " + accumulator.numRuns() +
+                    " spilled co-occurrence runs");
+        SvdlibcSparseBinaryMatrixBuilder builder =
+            new SvdlibcSparseBinaryMatrixBuilder();
+        accumulator.writeTo(builder, words, words);
+        builder.finish();
+        accumulator.close();
+        cooccurrenceMatrix = null;
+
+        MatrixFile counts = builder.getMatrixFile();
+        Set<Integer> indicesToKeep = null;
+        if (columnThreshold > -1d || retainColumns > 0) {
+            EntropyStats stats = MatrixEntropy.entropy(counts, words, words);
+            indicesToKeep = (columnThreshold > -1d)
+                ? columnsAboveThreshold(stats, columnThreshold)
+                : highestEntropyColumns(stats, retainColumns);
+        }
+
+        reduced = retainColumns(counts, indicesToKeep);
+        counts.getFile().delete();
+    }
+
     /**
      * Drops all but the specified number of columns, retaining those that have
      * the highest information theoretic entropy.
@@ -451,6 +538,23 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
      * @param columns the number of columns to keep
      */
     private void retainOnly(int columns) {
+        // Compute the entropy of each row and column.
+        EntropyStats stats = MatrixEntropy.entropy(cooccurrenceMatrix);
+        Set<Integer> indicesToKeep = highestEntropyColumns(stats, columns);
+
+        LOGGER.info("Reducing to " + columns + " highest entropy columns.");
+        
+        reduced = retainColumns(indicesToKeep);
+        cooccurrenceMatrix = null;
+    }
+
+    /**
+     * Returns the indices of the specified number of columns with the highest
+     * entropy in the concatenated space, where the rows of the co-occurrence
+     * matrix are the columns after the first {@code words}.
+     */
+    private Set<Integer> highestEntropyColumns(EntropyStats stats,
+                                               int columns) {
         LOGGER.info("Sorting the columns by entropy and computing the top " + 
                     columns + " columns to retain");
 
@@ -459,9 +563,6 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
             new BoundedSortedMultiMap<Double,Integer>(
                     columns, false, true, true);
 
-        // Compute the entropy of each row and column.
-        EntropyStats stats = MatrixEntropy.entropy(cooccurrenceMatrix);
-
         // Add the entropy values for each column.  Since the rows will be
         // concatenated as columns, they represent currently non-existing
         // columns beyond the number of words.
@@ -470,13 +571,7 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
         for (int row = 0; row < words; ++row)
             entropyToIndex.put(stats.rowEntropy[row], row+words);
 
-        Set<Integer> indicesToKeep =
-            new HashSet<Integer>(entropyToIndex.values());
-
-        LOGGER.info("Reducing to " + columns + " highest entropy columns.");
-        
-        reduced = retainColumns(indicesToKeep);
-        cooccurrenceMatrix = null;
+        return new HashSet<Integer>(entropyToIndex.values());
     }
 
     /**
@@ -487,15 +582,24 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
      * @param threshold
      */
     private void thresholdColumns(double threshold) {
+        // Compute the entropy of each row and column.
+        EntropyStats stats = MatrixEntropy.entropy(cooccurrenceMatrix);
+        reduced = retainColumns(columnsAboveThreshold(stats, threshold));
+        cooccurrenceMatrix = null;
+    }
+
+    /**
+     * Returns the indices of the columns in the concatenated space whose
+     * entropy is equal to or above the threshold.
+     */
+    private Set<Integer> columnsAboveThreshold(EntropyStats stats,
+                                               double threshold) {
         LOGGER.info("Computing the columns which are equal to or above the " +
                     "specified threshold");
 
         int words = termToIndex.numDimensions();
         Set<Integer> colsToRetain = new HashSet<Integer>();
 
-        // Compute the entropy of each row and column.
-        EntropyStats stats = MatrixEntropy.entropy(cooccurrenceMatrix);
-
         // Compare the entropy of each column to the threshold and save and
         // indices that pass the threshold. Since the rows will be concatenated
         // as columns, they represent currently non-existing columns beyond the
@@ -510,9 +614,7 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
 
         LOGGER.info("Retaining " + colsToRetain.size() + "/" + (words*2) +
                     " columns, which passed the threshold of " + threshold);
-
-        reduced = retainColumns(colsToRetain);
-        cooccurrenceMatrix = null;
+        return colsToRetain;
     }
 
     /**
@@ -521,13 +623,7 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
      */
     private SparseMatrix retainColumns(Set<Integer> indicesToKeep) {
         int words = termToIndex.numDimensions();
-        int cols = indicesToKeep.size();
-
-        // Create a mapping from old indices to their new index value.
-        Map<Integer, Integer> indexMap = new HashMap<Integer, Integer>();
-        int newIndex = 0;
-        for (Integer index : indicesToKeep)
-            indexMap.put(index, newIndex++);
+        int[] indexMap = getIndexMap(indicesToKeep);
 
         // Create a reduced matrix that will have only the selected columns in
         // the final space.
@@ -537,27 +633,73 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
         // Iterate over the sparse values in the matrix for added efficiency.
         for (int row = 0; row < words; ++ row) {
             SparseDoubleVector sv = cooccurrenceMatrix.getRowVector(row);
-            for (int col : sv.getNonZeroIndices()) {
-                double v = cooccurrenceMatrix.get(row, col);
-
-                // If the original column was retained, get it's new index
-                // value and add it to the reduced matrix.
-                Integer newColIndex = indexMap.get(col);
-                if (newColIndex != null)
-                    reduced.set(row, newColIndex, v);
-
-                // If the transposed row column was retained, get it's new index
-                // value and add it to the reduced matrix.  This turns the col
-                // value into the row and the new index as the column.
-                newColIndex = indexMap.get(row + words);
-                if (newColIndex != null)
-                    reduced.set(col, newColIndex, v);
-            }
+            for (int col : sv.getNonZeroIndices())
+                retain(reduced, indexMap, row, col, sv.get(col));
         }
 
         return reduced;
     }
 
+    /**
+     * Returns a reduced and concatenated version of the co-occurrence matrix
+     * stored in {@code counts}, which is read as a stream of entries, that has
+     * only the columns specified in {@code indicesToKeep}, or all of the
+     * columns if {@code indicesToKeep} is {@code null}.
+     */
+    private SparseMatrix retainColumns(MatrixFile counts,
+                                       Set<Integer> indicesToKeep) {
+        int words = termToIndex.numDimensions();
+        int[] indexMap = getIndexMap(indicesToKeep);
+        int cols = (indicesToKeep == null) ? words * 2 : indicesToKeep.size();
+        SparseMatrix reduced = new YaleSparseMatrix(words, cols);
+        for (MatrixEntry e : counts)
+            retain(reduced, indexMap, e.row(), e.column(), e.value());
+        return reduced;
+    }
+
+    /**
+     * Returns a mapping from each column in the concatenated space to its
+     * column in the reduced space, or {@code -1} if the column is dropped.  If
+     * {@code indicesToKeep} is {@code null}, all columns are kept in their
+     * original order.
+     */
+    private int[] getIndexMap(Set<Integer> indicesToKeep) {
+        int[] indexMap = new int[termToIndex.numDimensions() * 2];
+        if (indicesToKeep == null) {
+            for (int i = 0; i < indexMap.length; ++i)
+                indexMap[i] = i;
+            return indexMap;
+        }
+        Arrays.fill(indexMap, -1);
+        int newIndex = 0;
+        for (Integer index : indicesToKeep)
+            indexMap[index] = newIndex++;
+        return indexMap;
+    }
+
+    /**
+     * Adds the co-occurrence count at {@code row} and {@code col} to the
+     * retained columns of {@code reduced}.  The count is part of the vector of
+     * the word for {@code row} through its column, and part of the vector of
+     * the word for {@code col} through its row, which is concatenated after
+     * the columns.
+     */
+    private void retain(SparseMatrix reduced, int[] indexMap,
+                        int row, int col, double v) {
+        // If the original column was retained, get it's new index value and
+        // add it to the reduced matrix.
+        int newColIndex = indexMap[col];
+        if (newColIndex >= 0)
+            reduced.set(row, newColIndex, v);
+
+        // If the transposed row column was retained, get it's new index value
+        // and add it to the reduced matrix.  This turns the col value into the
+        // row and the new index as the column.
+        newColIndex = indexMap[row + termToIndex.numDimensions()];
+        if (newColIndex >= 0)
+            reduced.set(col, newColIndex, v);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.index;
+
+import edu.ucla.sspace.vector.Vector;
+
+import java.io.Serializable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * A base class for {@link MappedPermutationFunction} implementations that
+ * caches the mapping for each number of permutations.  Subclasses only provide
+ * the mapping of a single permutation step, through {@link
+ * #getStep(int,int,boolean)}, from which the mapping for any number of
+ * permutations is composed once and then reused.
+ *
+ * @see MappedPermutationFunction
+ */
+public abstract class AbstractMappedPermutationFunction<T extends Vector>
+        implements MappedPermutationFunction<T>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A mapping from a number of permutations to the composition of each of
+     * the steps applied for that number, which allows a vector to be permuted
+     * in a single pass.  The mappings are derived from the steps and so are
+     * recomputed as needed after deserialization.
+     */
+    private transient volatile ConcurrentMap<Integer,int[]> permutationToMapping;
+
+    /**
+     * Returns the mapping from each dimension to its new dimension for the
+     * specified step of a permutation, or of its inverse.  This method is only
+     * called while holding the lock on {@code this}, so subclasses may create
+     * and store steps without further synchronization with this class.
+     *
+     * @param step the step of the permutation, which is always at least 1
+     * @param dimensions the number of dimensions in the vectors being permuted
+     * @param isInverse {@code true} if the step of the inverse permutation
+     *        should be returned
+     */
+    protected abstract int[] getStep(int step, int dimensions,
+                                     boolean isInverse);
+
+    /**
+     * {@inheritDoc}
+     */
+    public int[] getMapping(int numPermutations, int dimensions) {
+        ConcurrentMap<Integer,int[]> mappings = permutationToMapping;
+        if (mappings == null) {
+            synchronized (this) {
+                if (permutationToMapping == null)
+                    permutationToMapping = 
+                        new ConcurrentHashMap<Integer,int[]>();
+                mappings = permutationToMapping;
+            }
+        }
+        int[] mapping = mappings.get(numPermutations);
+        if (mapping != null && mapping.length == dimensions)
+            return mapping;
+
+        // Compose the steps that would be applied for each permutation into a
+        // single mapping.  Holding the lock ensures that the steps are only
+        // accessed by one thread while they are being created.
+        synchronized (this) {
+            mapping = mappings.get(numPermutations);
+            if (mapping != null && mapping.length == dimensions)
+                return mapping;
+            boolean isInverse = numPermutations < 0;
+            int totalPermutations = Math.abs(numPermutations);
+            mapping = new int[dimensions];
+            for (int i = 0; i < dimensions; ++i)
+                mapping[i] = i;
+            for (int step = 1; step <= totalPermutations; ++step) {
+                int[] reordering = getStep(step, dimensions, isInverse);
+                for (int i = 0; i < dimensions; ++i)
+                    mapping[i] = reordering[mapping[i]];
+            }
+            mappings.put(numPermutations, mapping);
+        }
+        return mapping;
+    }
+}
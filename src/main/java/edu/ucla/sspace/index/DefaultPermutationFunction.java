@@ -47,7 +47,7 @@ import gnu.trove.map.hash.TIntObjectHashMap;
  * @author David Jurgens
  */
 public class DefaultPermutationFunction
-        implements PermutationFunction<Vector>, Serializable {
+        extends AbstractMappedPermutationFunction<Vector> {
 
     private static final long serialVersionUID = 1L;
 
@@ -121,10 +121,6 @@ public class DefaultPermutationFunction
                         forwardMapping[i] = objFunc[i].intValue();
                         backwardMapping[objFunc[i].intValue()] = i;
                     }            
-                    System.out.printf("Forward: %s%nBackward: %s%n", 
-                                      Arrays.toString(forwardMapping),
-                                      Arrays.toString(backwardMapping));
-
                     function = new Function(forwardMapping, backwardMapping);
                     // store it in the function map for later usee
                     permutationToReordering.put(exponent, function);
@@ -143,50 +139,25 @@ public class DefaultPermutationFunction
             return permute((TernaryVector) v, numPermutations, v.length());
 
         Vector result = Vectors.instanceOf(v);
-        int[] dimensions = null;
-        int[] oldDims = null;
+        int[] mapping = getMapping(numPermutations, v.length());
         if (v instanceof SparseVector) {
-            oldDims = ((SparseVector) v).getNonZeroIndices();
-            dimensions = Arrays.copyOf(oldDims, oldDims.length);
+            for (int d : ((SparseVector) v).getNonZeroIndices())
+                result.set(mapping[d], v.getValue(d));
         } else {
-            dimensions = new int[v.length()];
-            for (int i = 0; i < v.length(); ++i)
-                dimensions[i] = i;
+            for (int d = 0; d < v.length(); ++d)
+                result.set(mapping[d], v.getValue(d));
         }
-
-        System.out.printf("input: %s%ninitial result: %s%n", v, result);
-
-        boolean isInverse = numPermutations < 0;
-        
-        // NB: because we use the signum and !=, this loop will work for both
-        // positive and negative numbers of permutations
-        int totalPermutations = Math.abs(numPermutations);
-
-        // Loop through the number of permutation that we have to do and keep
-        // updating which indices are being assigned to which
-        for (int count = 1; count <= totalPermutations; ++count) {            
-            // load the reordering funcion for this iteration of the permutation
-            Function function = getFunction(count, v.length());
-
-            // based on whether this is an inverse permutation, select whether
-            // to use the forward or backwards mapping.
-            int[] reordering = (isInverse) 
-                ? function.backward : function.forward;
-
-            oldDims = Arrays.copyOf(dimensions, dimensions.length);
-            
-            for (int i = 0; i < oldDims.length; ++i) {
-                dimensions[i] = reordering[oldDims[i]];
-            }
-        }
-
-        for (int d : dimensions)
-            result.set(dimensions[d], v.getValue(d));
-
-        System.out.printf("input: %s%nfinal permuted result: %s%n", v, result);
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected int[] getStep(int step, int dimensions, boolean isInverse) {
+        Function function = getFunction(step, dimensions);
+        return (isInverse) ? function.backward : function.forward;
+    }
+
     /**
      * An optimized instance of permute for TernaryVectors.  In this case, only
      * the positive and negative values are permuted, and a {@code
@@ -195,50 +166,18 @@ public class DefaultPermutationFunction
     private Vector permute(TernaryVector v, int numPermutations, int length) {
         int[] oldPos = v.positiveDimensions();
         int[] oldNeg = v.negativeDimensions();
-
-        // create new arrays to hold the permuted locations of the vectors's
-        // positive and negative values.
-        //
-        // NB: we use a copy here to ensure that the function works for the 0
-        // permutation (i.e. effectively a no-op);
-        int[] positive = Arrays.copyOf(oldPos, oldPos.length);
-        int[] negative = Arrays.copyOf(oldNeg, oldNeg.length);
-
-        boolean isInverse = numPermutations < 0;
-        
-        // NB: because we use the signum and !=, this loop will work for both
-        // positive and negative numbers of permutations
-        int totalPermutations = Math.abs(numPermutations);
-
-        for (int count = 1; count <= totalPermutations; ++count) {            
-
-            // load the reordering funcion for this iteration of the permutation
-            Function function = getFunction(count, length);
-
-            // based on whether this is an inverse permutation, select whether
-            // to use the forward or backwards mapping.
-            int[] reordering = (isInverse) 
-                ? function.backward : function.forward;
-            
-            // create a copy of the previous permuted values for positive and
-            // negative.  We need this array because the permutation cannot be
-            // done in place
-            oldPos = Arrays.copyOf(positive, positive.length);
-            oldNeg = Arrays.copyOf(negative, negative.length);
-            
-            // The reordering array specifies for index i the positive of i in
-            // the permuted array.  Since the positive and negative indices are
-            // the only non-zero indicies, we can simply create new arrays for
-            // them of the same length and then set their new positions based on
-            // the values in the reordering array.
-            for (int i = 0; i < oldPos.length; ++i) {
-                positive[i] = reordering[oldPos[i]];
-            }
-
-            for (int i = 0; i < oldNeg.length; ++i) {
-                negative[i] = reordering[oldNeg[i]];
-            }
-        }
+        int[] mapping = getMapping(numPermutations, length);
+
+        // The mapping specifies for index i the position of i in the permuted
+        // vector.  Since the positive and negative indices are the only
+        // non-zero indicies, we can simply create new arrays for them of the
+        // same length and then set their new positions based on the mapping.
+        int[] positive = new int[oldPos.length];
+        int[] negative = new int[oldNeg.length];
+        for (int i = 0; i < oldPos.length; ++i)
+            positive[i] = mapping[oldPos[i]];
+        for (int i = 0; i < oldNeg.length; ++i)
+            negative[i] = mapping[oldNeg[i]];
 
         return new TernaryVector(length, positive, negative);
     }
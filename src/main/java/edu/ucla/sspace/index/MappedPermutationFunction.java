@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.index;
+
+import edu.ucla.sspace.vector.Vector;
+
+
+/**
+ * A {@link PermutationFunction} that can expose the permutation it applies as
+ * a mapping between dimensions.  Callers that only need to add the permuted
+ * values of a vector to another vector may use the mapping directly rather
+ * than creating a new permuted vector for each call to {@link
+ * #permute(Vector,int) permute}.  For example, the permuted values of an index
+ * vector {@code v} may be added to a semantic vector {@code s} using:
+ *
+ * <pre>
+ *   int[] mapping = func.getMapping(numPermutations, v.length());
+ *   for (int i = 0; i &lt; v.length(); ++i)
+ *       s.add(mapping[i], v.get(i));
+ * </pre>
+ *
+ * @see PermutationFunction
+ */
+public interface MappedPermutationFunction<T extends Vector>
+        extends PermutationFunction<T> {
+
+    /**
+     * Returns the mapping from each dimension to the dimension in which its
+     * value is placed when a vector is permuted the specified number of times.
+     * Implementations are expected to cache the mappings, so the returned
+     * array must not be modified.
+     *
+     * @param numPermutations the number of times the permutation function
+     *        would be applied
+     * @param dimensions the number of dimensions in the vectors being
+     *        permuted
+     *
+     * @return an array where the value at index {@code i} is the new position
+     *         of dimension {@code i}
+     */
+    int[] getMapping(int numPermutations, int dimensions);
+}
@@ -44,7 +44,7 @@ import java.util.Random;
  * @author David Jurgens
  */
 public class TernaryPermutationFunction 
-        implements PermutationFunction<TernaryVector>, Serializable {
+        extends AbstractMappedPermutationFunction<TernaryVector> {
 
     private static final long serialVersionUID = 1L;
 
@@ -128,6 +128,14 @@ public class TernaryPermutationFunction
         return function;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected int[] getStep(int step, int dimensions, boolean isInverse) {
+        Function function = getFunction(step, dimensions);
+        return (isInverse) ? function.backward : function.forward;
+    }
+
     /**
      * An optimized instance of permute for TernaryVectors.  In this case, only
      * the positive and negative values are permuted, and a {@code
@@ -137,50 +145,18 @@ public class TernaryPermutationFunction
                                  int numPermutations) {
         int[] oldPos = v.positiveDimensions();
         int[] oldNeg = v.negativeDimensions();
-
-        // create new arrays to hold the permuted locations of the vectors's
-        // positive and negative values.
-        //
-        // NB: we use a copy here to ensure that the function works for the 0
-        // permutation (i.e. effectively a no-op);
-        int[] positive = Arrays.copyOf(oldPos, oldPos.length);
-        int[] negative = Arrays.copyOf(oldNeg, oldNeg.length);
-
-        boolean isInverse = numPermutations < 0;
-        
-        // NB: because we use the signum and !=, this loop will work for both
-        // positive and negative numbers of permutations
-        int totalPermutations = Math.abs(numPermutations);
-
-        for (int count = 1; count <= totalPermutations; ++count) {            
-
-            // load the reordering funcion for this iteration of the permutation
-            Function function = getFunction(count, v.length());
-
-            // based on whether this is an inverse permutation, select whether
-            // to use the forward or backwards mapping.
-            int[] reordering = (isInverse) 
-                ? function.backward : function.forward;
-            
-            // create a copy of the previous permuted values for positive and
-            // negative.  We need this array because the permutation cannot be
-            // done in place
-            oldPos = Arrays.copyOf(positive, positive.length);
-            oldNeg = Arrays.copyOf(negative, negative.length);
-            
-            // The reordering array specifies for index i the positive of i in
-            // the permuted array.  Since the positive and negative indices are
-            // the only non-zero indicies, we can simply create new arrays for
-            // them of the same length and then set their new positions based on
-            // the values in the reordering array.
-            for (int i = 0; i < oldPos.length; ++i) {
-                positive[i] = reordering[oldPos[i]];
-            }
-
-            for (int i = 0; i < oldNeg.length; ++i) {
-                negative[i] = reordering[oldNeg[i]];
-            }
-        }
+        int[] mapping = getMapping(numPermutations, v.length());
+
+        // The mapping specifies for index i the position of i in the permuted
+        // vector.  Since the positive and negative indices are the only
+        // non-zero indicies, we can simply create new arrays for them of the
+        // same length and then set their new positions based on the mapping.
+        int[] positive = new int[oldPos.length];
+        int[] negative = new int[oldNeg.length];
+        for (int i = 0; i < oldPos.length; ++i)
+            positive[i] = mapping[oldPos[i]];
+        for (int i = 0; i < oldNeg.length; ++i)
+            negative[i] = mapping[oldNeg[i]];
 
         return new TernaryVector(v.length(), positive, negative);
     }
@@ -21,6 +21,12 @@
 
 package edu.ucla.sspace.isa;
 
+import gnu.trove.list.array.TIntArrayList;
+
+import gnu.trove.map.TIntIntMap;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
 import edu.ucla.sspace.common.SemanticSpace;
 
 import edu.ucla.sspace.index.IntegerVectorGenerator;
@@ -30,9 +36,12 @@ import edu.ucla.sspace.index.TernaryPermutationFunction;
 
 import edu.ucla.sspace.text.IteratorFactory;
 
+import edu.ucla.sspace.util.ConcurrentIndexer;
 import edu.ucla.sspace.util.GeneratorMap;
 import edu.ucla.sspace.util.SparseDoubleArray;
 
+import edu.ucla.sspace.util.primitive.IntIterator;
+
 import edu.ucla.sspace.vector.CompactSparseVector;
 import edu.ucla.sspace.vector.DenseVector;
 import edu.ucla.sspace.vector.DoubleVector;
@@ -49,13 +58,10 @@ import java.io.Serializable;
 
 import java.lang.reflect.Constructor;
 
-import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Queue;
 import java.util.Set;
 
 import java.util.logging.Logger;
@@ -319,11 +325,17 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
     private final Map<String,SemanticVector> wordToMeaning;
 
     /**
-     * A mapping from each word to the number of times it has occurred in the
-     * corpus at the time of processing.  This mapping is incrementally updated
-     * as documents are processed.
+     * Assigns each token an identifier, by which its occurrences are counted
+     * in {@code wordToOccurrences}.
      */
-    private final Map<String,Integer> wordToOccurrences;
+    private final ConcurrentIndexer<String> tokenIndexer;
+
+    /**
+     * A mapping from the identifier of each word to the number of times it has
+     * occurred in the corpus at the time of processing.  This mapping is
+     * incrementally updated as documents are processed.
+     */
+    private final TIntIntMap wordToOccurrences;
 
     /**
      * Creates a new {@code IncrementalSemanticAnalysis} instance using the
@@ -388,7 +400,8 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
         wordToIndexVector = 
             new GeneratorMap<TernaryVector>(indexVectorGenerator);
         wordToMeaning = new HashMap<String,SemanticVector>();
-        wordToOccurrences = new HashMap<String,Integer>();
+        tokenIndexer = new ConcurrentIndexer<String>();
+        wordToOccurrences = new TIntIntHashMap();
     }
 
 
@@ -494,93 +507,92 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
      * {@inheritDoc}  Note that this method is <i>not</i> thread safe.
      */
     public void processDocument(BufferedReader document) throws IOException {
-        Queue<String> prevWords = new ArrayDeque<String>(windowSize);
-        Queue<String> nextWords = new ArrayDeque<String>(windowSize);
-
-        Iterator<String> documentTokens = 
-            IteratorFactory.tokenizeOrdered(document);
+        TIntArrayList prevWords = new TIntArrayList(windowSize + 1);
+        TIntArrayList nextWords = new TIntArrayList(windowSize + 1);
 
-        String focusWord = null;
+        IntIterator documentTokens = 
+            IteratorFactory.tokenizeOrderedIds(document, tokenIndexer);
 
         // Prefetch the first windowSize words.  As soon as a word enters the
         // nextWords buffer increase its occurrence count.
         for (int i = 0; i < windowSize && documentTokens.hasNext(); ++i) 
-            nextWords.offer(documentTokens.next());        
+            nextWords.add(documentTokens.nextInt());        
         
         while (!nextWords.isEmpty()) {
             
-            focusWord = nextWords.remove();
+            int focusId = nextWords.removeAt(0);
 
             // shift over the window to the next word
-            if (documentTokens.hasNext()) {
-                String windowEdge = documentTokens.next(); 
-                nextWords.offer(windowEdge);
-            }    
+            if (documentTokens.hasNext())
+                nextWords.add(documentTokens.nextInt());
                 
             // Don't bother calculating the semantics for empty tokens
             // (i.e. words that were filtered out)
-            if (!focusWord.equals(IteratorFactory.EMPTY_TOKEN)) {
-                SemanticVector focusMeaning = getSemanticVector(focusWord);
+            if (focusId != IteratorFactory.EMPTY_TOKEN_ID) {
+                SemanticVector focusMeaning =
+                    getSemanticVector(tokenIndexer.lookup(focusId));
 
                 // Sum up the index vector for all the surrounding words.  If
                 // permutations are enabled, permute the index vector based on
                 // its relative position to the focus word.
                 int permutations = -(prevWords.size());        
-                for (String word : prevWords) {
+                for (int i = 0; i < prevWords.size(); ++i) {
+                    int wordId = prevWords.getQuick(i);
                     // Skip the addition of any words that are excluded from the
                     // filter set.  Note that by doing the exclusion here, we
                     // ensure that the token stream maintains its existing
                     // ordering, which is necessary when permutations are taken
                     // into account.
-                    if (word.equals(IteratorFactory.EMPTY_TOKEN)) {
+                    if (wordId == IteratorFactory.EMPTY_TOKEN_ID) {
                         ++permutations;
                         continue;
                     }
                     
+                    String word = tokenIndexer.lookup(wordId);
                     TernaryVector iv = wordToIndexVector.get(word);
                     if (usePermutations) {
                         iv = permutationFunc.permute(iv, permutations);
                         ++permutations;
                     }
                             
-                    updateSemantics(focusMeaning, word, iv);
+                    updateSemantics(focusMeaning, word, wordId, iv);
                 }
                 
                 // Repeat for the words in the forward window.
                 permutations = 1;
-                for (String word : nextWords) {
+                for (int i = 0; i < nextWords.size(); ++i) {
+                    int wordId = nextWords.getQuick(i);
                     // Skip the addition of any words that are excluded from the
                     // filter set.  Note that by doing the exclusion here, we
                     // ensure that the token stream maintains its existing
                     // ordering, which is necessary when permutations are taken
                     // into account.
-                    if (word.equals(IteratorFactory.EMPTY_TOKEN)) {
+                    if (wordId == IteratorFactory.EMPTY_TOKEN_ID) {
                         ++permutations;
                         continue;
                     }
                     
+                    String word = tokenIndexer.lookup(wordId);
                     TernaryVector iv = wordToIndexVector.get(word);
                     if (usePermutations) {
                         iv = permutationFunc.permute(iv, permutations);
                         ++permutations;
                     }
                     
-                    updateSemantics(focusMeaning, word, iv);
+                    updateSemantics(focusMeaning, word, wordId, iv);
                 }
+
+                // Increment the frequency count for the word now that it has
+                // been seen and processed.
+                wordToOccurrences.adjustOrPutValue(focusId, 1, 1);
             }
 
             // Last put this focus word in the prev words and shift off the
             // front of the previous word window if it now contains more words
             // than the maximum window size
-            prevWords.offer(focusWord);
-
-            // Increment the frequency count for the word now that it has been
-            // seen and processed.
-            Integer count = wordToOccurrences.get(focusWord);
-            wordToOccurrences.put(focusWord, (count == null) ? 1 : count + 1);
-
+            prevWords.add(focusId);
             if (prevWords.size() > windowSize) {
-                prevWords.remove();
+                prevWords.removeAt(0);
             }
         }    
 
@@ -616,18 +628,19 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
      *
      * @param toUpdate the semantics to be updated
      * @param cooccurringWord the word that is co-occurring 
+     * @param cooccurringId the identifier of the co-occurring word
      * @param iv the index vector for the co-occurring word, which has be
      *        permuted as necessary
      */    
     @SuppressWarnings("unchecked")
     private void updateSemantics(SemanticVector toUpdate,
                                  String cooccurringWord,
+                                 int cooccurringId,
                                  TernaryVector iv) {
         SemanticVector prevWordSemantics = getSemanticVector(cooccurringWord);
         
-        Integer occurrences = wordToOccurrences.get(cooccurringWord);
-        if (occurrences == null)
-            occurrences = 0;
+        // The map returns 0 for words that have not yet been a focus word.
+        int occurrences = wordToOccurrences.get(cooccurringId);
         double semanticWeight = 
             1d / (Math.exp(occurrences / historyDecayRate));
                     
@@ -31,6 +31,7 @@ import edu.ucla.sspace.text.Document;
 import edu.ucla.sspace.text.FileListDocumentIterator;
 import edu.ucla.sspace.text.IteratorFactory;
 import edu.ucla.sspace.text.OneLinePerDocumentIterator;
+import edu.ucla.sspace.text.PrefetchingDocumentIterator;
 
 import edu.ucla.sspace.util.CombinedIterator;
 import edu.ucla.sspace.util.LimitedIterator;
@@ -93,6 +94,14 @@ import java.util.logging.Logger;
  *
  *   <li> {@code -t}, {@code --threads=INT} how many threads to use when
  *        processing the documents.  The default is one per core.
+ *
+ *   <li> {@code -X}, {@code --readerThreads=INT} how many threads to use when
+ *        reading the documents ahead of the processing threads.  The default
+ *        is one.
+ *
+ *   <li> {@code -Q}, {@code --prefetchQueue=INT} the maximum number of
+ *        documents that may be read ahead of the processing threads.  The
+ *        default is four per processing thread.
  * 
  *   <li> {@code -w}, {@code --overwrite=BOOL} specifies whether to overwrite
  *        the existing output files.  The default is {@code true}.  If set to
@@ -133,6 +142,18 @@ public abstract class GenericMain {
      */
     protected final boolean isMultiThreaded;
 
+    /**
+     * The number of threads that read documents ahead of the processing
+     * threads.
+     */
+    protected int readerThreads;
+
+    /**
+     * The maximum number of documents that may be read ahead of the processing
+     * threads, or 0 to use a multiple of the number of processing threads.
+     */
+    protected int prefetchQueueSize;
+
     public GenericMain() {
         this(true);
     }
@@ -141,6 +162,8 @@ public abstract class GenericMain {
         this.isMultiThreaded = isMultiThreaded;
         argOptions = setupOptions();
         verbose = false;
+        readerThreads = 1;
+        prefetchQueueSize = 0;
     }
 
     /**
@@ -260,6 +283,12 @@ public abstract class GenericMain {
             options.addOption('t', "threads", "the number of threads to use",
                               true, "INT", "Program Options");
         }
+        options.addOption('X', "readerThreads", "the number of threads used " +
+                          "to read documents ahead of processing (default: 1)",
+                          true, "INT", "Program Options");
+        options.addOption('Q', "prefetchQueue", "the maximum number of " +
+                          "documents read ahead of processing (default: four " +
+                          "per thread)", true, "INT", "Program Options");
         options.addOption('w', "overwrite", "specifies whether to " +
                           "overwrite the existing output", true, "BOOL",
                           "Program Options");
@@ -395,6 +424,11 @@ public abstract class GenericMain {
         // limitedto the number of processes specified by the command line. 
         WorkQueue.getWorkQueue(numThreads);
 
+        if (argOptions.hasOption("readerThreads"))
+            readerThreads = argOptions.getIntOption("readerThreads");
+        if (argOptions.hasOption("prefetchQueue"))
+            prefetchQueueSize = argOptions.getIntOption("prefetchQueue");
+
         boolean overwrite = true;
         if (argOptions.hasOption("overwrite")) {
             overwrite = argOptions.getBooleanOption("overwrite");
@@ -531,10 +565,11 @@ public abstract class GenericMain {
 
         long processStart = System.currentTimeMillis();
         int count = 0;
+        PrefetchingDocumentIterator docs = prefetch(docIter, 1);
 
-        while (docIter.hasNext()) {
+        while (docs.hasNext()) {
             long startTime = System.currentTimeMillis();
-            Document doc = docIter.next();
+            Document doc = docs.next();
             int docNumber = ++count;
             int terms = 0;
             sspace.processDocument(doc.reader());
@@ -546,6 +581,7 @@ public abstract class GenericMain {
         verbose("Processed all %d documents in %.3f total seconds",
                 count,
                 ((System.currentTimeMillis() - processStart) / 1000d));            
+        logPrefetchMetrics(docs);
     }
 
     /**
@@ -559,40 +595,43 @@ public abstract class GenericMain {
      * @param numThreads the number of threads to use
      */
     protected void parseDocumentsMultiThreaded(final SemanticSpace sspace,
-                                               final Iterator<Document> docIter,
+                                               Iterator<Document> docIter,
                                                int numThreads)        
         throws IOException, InterruptedException {
 
-        Collection<Thread> threads = new LinkedList<Thread>();
-
         final AtomicInteger count = new AtomicInteger(0);
+        final PrefetchingDocumentIterator docs = prefetch(docIter, numThreads);
         
         WorkQueue queue = WorkQueue.getWorkQueue(numThreads);
         Object key = queue.registerTaskGroup(numThreads);
 
         long processStart = System.currentTimeMillis();
-        verbose("Beginning processing using %d threads", numThreads);
+        verbose("Beginning processing using %d threads and %d reader threads",
+                numThreads, readerThreads);
         for (int i = 0; i < numThreads; ++i) {
             queue.add(key, new Runnable() {
                 public void run() {
                     // repeatedly try to process documents while some still
-                    // remain
-                    while (docIter.hasNext()) {
+                    // remain.  The prefetching iterator reserves the next
+                    // document for this thread on hasNext(), so the two
+                    // calls do not race with the other threads.
+                    while (docs.hasNext()) {
                         long startTime = System.currentTimeMillis();
-                        Document doc = docIter.next();
+                        Document doc = docs.next();
                         int docNumber = count.incrementAndGet();
-                        int terms = 0;
                         try {
                             sspace.processDocument(doc.reader());
                         } catch (Throwable t) {
                             t.printStackTrace();
                         }
                         long endTime = System.currentTimeMillis();
-                        verbose("parsed document #%d in %.3f seconds",
-                                docNumber, ((endTime - startTime) / 1000d));
+                        verbose("parsed document #%d in %.3f seconds " +
+                                "(%d documents queued)", docNumber,
+                                ((endTime - startTime) / 1000d),
+                                docs.queueSize());
                     }
                 }
-            });;
+            });
         }
 
         queue.await(key);
@@ -600,6 +639,35 @@ public abstract class GenericMain {
         verbose("Processed all %d documents in %.3f total seconds",
                 count.get(),
                 ((System.currentTimeMillis() - processStart) / 1000d));            
+        logPrefetchMetrics(docs);
+    }
+
+    /**
+     * Returns an iterator that reads the documents ahead of the {@code
+     * numThreads} processing threads using {@link #readerThreads} threads.
+     */
+    protected PrefetchingDocumentIterator prefetch(Iterator<Document> docIter,
+                                                   int numThreads) {
+        if (docIter instanceof PrefetchingDocumentIterator)
+            return (PrefetchingDocumentIterator)docIter;
+        int capacity = (prefetchQueueSize > 0)
+            ? prefetchQueueSize
+            : 4 * numThreads;
+        return new PrefetchingDocumentIterator(
+            docIter, Math.max(1, readerThreads), capacity);
+    }
+
+    /**
+     * Reports the throughput of the reading and processing stages, as well as
+     * the time each stage spent waiting on the other.
+     */
+    protected void logPrefetchMetrics(PrefetchingDocumentIterator docs) {
+        verbose("Read %d documents at %.1f documents/second; processed at " +
+                "%.1f documents/second", docs.documentsRead(),
+                docs.readThroughput(), docs.consumeThroughput());
+        verbose("Readers waited %.3f seconds for queue space; processing " +
+                "threads waited %.3f seconds for documents",
+                docs.readerWaitSeconds(), docs.consumerWaitSeconds());
     }
 
     /**
@@ -31,8 +31,12 @@ import edu.ucla.sspace.hal.HyperspaceAnalogueToLanguage;
 import edu.ucla.sspace.hal.LinearWeighting;
 import edu.ucla.sspace.hal.WeightingFunction;
 
+import edu.ucla.sspace.matrix.SpillingMatrixAccumulator;
+
 import edu.ucla.sspace.util.ReflectionUtil;
 
+import java.io.File;
+
 
 /**
  * An executable class for running {@link HyperspaceAnalogueToLanguage} (HAL)
@@ -74,6 +78,15 @@ import edu.ucla.sspace.util.ReflectionUtil;
  *        weighting co-occurrences.  HAL traditionally uses a linear weighting
  *        where the closest neighboring words receive the highest weight.
  *
+ *  <li> {@code -M}, {@code --spillDir=DIR} sums the co-occurrence counts in
+ *        bounded buffers that are spilled to files in the specified directory,
+ *        rather than in memory, which allows processing corpora whose counts do
+ *        not fit in memory.
+ *
+ *  <li> {@code -J}, {@code --spillBufferSize=INT} the number of distinct
+ *        co-occurrences each thread buffers before spilling them to disk
+ *        (default: 1048576).  This option is only used with {@code --spillDir}.
+ *
  *   <li> {@code -F}, {@code --tokenFilter=FILE[include|exclude][,FILE...]}
  *        specifies a list of one or more files to use for {@link
  *        edu.ucla.sspace.text.TokenFilter filtering} the documents.  An option
@@ -148,6 +161,13 @@ public class HALMain extends GenericMain {
         options.addOption('W', "weighting", "WeightingFunction class name"
                           + "(default: LinearWeighting)", true,
                           "CLASSNAME", "Algorithm Options");
+        options.addOption('M', "spillDir", "sums co-occurrence counts on " +
+                          "disk in the specified directory (default: " +
+                          "in memory)", true, "DIR", "Algorithm Options");
+        options.addOption('J', "spillBufferSize", "the number of " +
+                          "co-occurrences each thread buffers before " +
+                          "spilling to disk (default: 1048576)", true,
+                          "INT", "Algorithm Options");
     }
 
     public static void main(String[] args) throws Exception {
@@ -175,9 +195,16 @@ public class HALMain extends GenericMain {
         double threshold = argOptions.getDoubleOption('h', -1d);
         int retain = argOptions.getIntOption('r', -1);
 
+        SpillingMatrixAccumulator accumulator = null;
+        if (argOptions.hasOption('M'))
+            accumulator = new SpillingMatrixAccumulator(
+                argOptions.getIntOption(
+                    'J', SpillingMatrixAccumulator.DEFAULT_BUFFER_SIZE),
+                new File(argOptions.getStringOption('M')), true);
+
         return new HyperspaceAnalogueToLanguage(
                 new StringBasisMapping(), windowSize, weighting,
-                threshold, retain);
+                threshold, retain, accumulator);
     }
 
     /**
@@ -107,7 +107,11 @@ public final class OptionDescriptions {
         "Text formats\n" +
         "are human readable but may take up more space.  Binary formats " +
         "offer\n" +
-        "significantly better I/O performance.";
+        "significantly better I/O performance.  The mapped format is a " +
+        "binary format\n" +
+        "that can be memory-mapped for fast random access to the vectors of " +
+        "very large\n" +
+        "semantic spaces without loading them into memory.";
 
     /**
      * A description of who to contact for bugs
@@ -96,6 +96,11 @@ import java.util.logging.Logger;
  *        to use for permuting {@code TernaryVector}s, if permutation is
  *        enabled.
  *
+ *   <li> {@code -b}, {@code --bufferedAccumulation=BOOL} whether each thread
+ *        should buffer its co-occurrences and merge them into the semantic
+ *        vectors in batches, which reduces lock contention when using many
+ *        threads.
+ *
  *   </ul>
  *
  * <li><u>Program Options</u>:
@@ -161,6 +166,9 @@ public class RandomIndexingMain extends GenericMain {
                           "permutation function to use.  This should be " +
                           "genric for TernaryVectors",
                           true, "CLASSNAME", "Advanced Algorithm Options");
+        options.addOption('b', "bufferedAccumulation", "whether to buffer " +
+                          "co-occurrences per thread and merge them in " +
+                          "batches", true, "BOOL", "Advanced Algorithm Options");
         options.addOption('p', "usePermutations", "whether to permute " +
                         "index vectors based on word order", true,
                         "BOOL", "Algorithm Options");
@@ -221,6 +229,12 @@ public class RandomIndexingMain extends GenericMain {
                               argOptions.getStringOption("useSparseSemantics"));
         }
 
+        if (argOptions.hasOption("bufferedAccumulation")) {
+            props.setProperty(
+                    RandomIndexing.USE_BUFFERED_ACCUMULATION_PROPERTY,
+                    argOptions.getStringOption("bufferedAccumulation"));
+        }
+
         return props;
     }
 
@@ -0,0 +1,646 @@
+/*
+ * Copyright 2012 David Jurgens 
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.Vectors;
+
+import java.util.Arrays;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A concurrent, thread-safe, growable {@code SparseMatrix} class that stores
+ * its non-zero values in primitive open-addressed hash tables.  This class is
+ * intended as a low-memory alternative to {@link
+ * AtomicGrowingSparseHashMatrix} for workloads consisting primarily of {@code
+ * get}, {@code addAndGet}, {@code getAndAdd} and {@code set}, such as building
+ * a large co-occurrence matrix from many threads.<p>
+ *
+ * Each non-zero entry is stored as a {@code long} key, formed from its row and
+ * column, and a {@code double} value in parallel arrays, so no objects are
+ * allocated per entry or per update.  The entries are divided among a fixed
+ * number of lock stripes by the hash of their key.  Each stripe is a separate
+ * linear-probing table that is guarded by its own lock, so threads updating
+ * different entries rarely contend with each other.  Each slot takes 16
+ * bytes and the tables are kept between 3/8 and 3/4 full, so a non-zero value
+ * uses between 21 and 43 bytes (about 24 to 33 bytes in practice).  {@link
+ * AtomicGrowingSparseHashMatrix} needs an entry object, a boxed value and a
+ * map node per non-zero, which takes about 88 to 100 bytes, so this class uses
+ * roughly a third to a quarter of the memory per non-zero value and has no
+ * separate table of locked entries.<p>
+ *
+ * As with {@code AtomicGrowingSparseHashMatrix}, the full row- and
+ * column-related operations are expensive.  Each time these operations are
+ * used after the set of non-zero entries has changed, an {@code O(k)} scan of
+ * all {@code k} non-zero values is needed to determine the structure of the
+ * matrix.  Subsequent calls until the next structural modification operate in
+ * time proportional to the number of non-zero entries in the row or column.
+ * The row and column operations lock each stripe only long enough to read an
+ * entry, so they do not offer a consistent view of a row or column that is
+ * being concurrently modified.<p>
+ *
+ * @author David Jurgens
+ *
+ * @see AtomicGrowingSparseHashMatrix
+ */
+public class AtomicGrowingOpenHashMatrix 
+        implements AtomicMatrix, SparseMatrix, java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The key value used to mark an empty slot in a stripe.  Since rows and
+     * columns are non-negative, no valid key is negative.
+     */
+    private static final long EMPTY = -1L;
+
+    /**
+     * The number of bits used to select a stripe from the hash of a key.
+     */
+    private final int stripeBits;
+
+    /**
+     * The independently-locked hash tables that hold the matrix entries.
+     */
+    private final Stripe[] stripes;
+
+    /**
+     * The number of rows represented in this matrix.
+     */
+    private final AtomicInteger rows;
+
+    /**
+     * The number of columns represented in this matrix.
+     */
+    private final AtomicInteger cols;
+
+    /**
+     * The sum of the stripes' modification counts when {@link
+     * #updateVectorCache()} was last called.
+     */
+    private long lastVectorCacheUpdate;
+
+    /**
+     * A mapping from row to the sorted columns that contain non-zero values.
+     * This mapping is only valid when the vector-cache is valid.
+     */
+    private int[][] rowToColsCache;
+
+    /**
+     * A mapping from column to the sorted rows that contain non-zero values.
+     * This mapping is only valid when the vector-cache is valid.
+     */
+    private int[][] colToRowsCache;
+
+    /**
+     * Create an {@code AtomicGrowingOpenHashMatrix} with 0 rows and 0 columns.
+     */
+    public AtomicGrowingOpenHashMatrix() {
+        // Base the number of stripes on the number of avaible processors,
+        // which assumes that all use cases use this value as a hint for
+        // concurrency
+        int threads = Runtime.getRuntime().availableProcessors();
+        int bits = 4;
+        while ((1 << bits) < threads * 16 && bits < 12)
+            bits++;
+        stripeBits = bits;
+        stripes = new Stripe[1 << bits];
+        for (int i = 0; i < stripes.length; ++i)
+            stripes[i] = new Stripe();
+        rows = new AtomicInteger(0);
+        cols = new AtomicInteger(0);
+        lastVectorCacheUpdate = -1;
+        rowToColsCache = null;
+        colToRowsCache = null;
+    }
+
+    /**
+     * Returns the key for the entry at the row and column.
+     */
+    private static long key(int row, int col) {
+        return ((long)row << 32) | col;
+    }
+
+    /**
+     * Returns a well-mixed hash of the key, based on the finalizer of
+     * MurmurHash3.
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Returns the stripe responsible for the key with the provided hash.
+     */
+    private Stripe stripeFor(long hash) {
+        return stripes[(int)(hash >>> (64 - stripeBits))];
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public double addAndGet(int row, int col, double delta) {
+        checkIndices(row, col, true);
+        long k = key(row, col);
+        long h = hash(k);
+        return stripeFor(h).add(k, (int)h, delta) + delta;
+    }
+
+    /**
+     * Verify that the given row and column value is non-negative, and
+     * optionally expand the size of the matrix if the row or column are outside
+     * the current bounds.
+     *
+     * @param row the row index to check.
+     * @param the the column index to check.
+     * @param expand {@code true} if the current dimensions of the matrix should
+     *        be updated if either parameter exceeds the current values
+     */    
+    private void checkIndices(int row, int col, boolean expand) {
+         if (row < 0 || col < 0) {
+             throw new ArrayIndexOutOfBoundsException();
+         }
+         if (expand) {
+             int r = row + 1;
+             int cur = 0;
+             while (r > (cur = rows.get()) && !rows.compareAndSet(cur, r))
+                 ;
+             int c = col + 1;
+             cur = 0;
+             while (c > (cur = cols.get()) && !cols.compareAndSet(cur, c))
+                 ;
+         }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int columns() {
+        return cols.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int row, int col) {
+        checkIndices(row, col, false);
+        long k = key(row, col);
+        long h = hash(k);
+        return stripeFor(h).get(k, (int)h);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getAndAdd(int row, int col, double delta) {
+        checkIndices(row, col, true);
+        long k = key(row, col);
+        long h = hash(k);
+        return stripeFor(h).add(k, (int)h, delta);
+    }
+
+    /**
+     * {@inheritDoc} The length of the returned column reflects the size of
+     * matrix at the time of the call, which may be different from earlier calls
+     * to {@link #rows()}
+     */
+    public double[] getColumn(int column) {
+        return getColumnVector(column).toArray();
+    }
+
+    /**
+     * {@inheritDoc} The length of the returned column vector reflects the size
+     * of matrix at the time of the call, which may be different from earlier
+     * calls to {@link #rows()}
+     */
+    public SparseDoubleVector getColumnVector(int column) {
+        int r = rows.get();
+        int[] rowArr = getVectorCache(false, column);
+        double[] values = new double[rowArr.length];
+        for (int i = 0; i < rowArr.length; ++i)
+            values[i] = get(rowArr[i], column);
+        return compact(rowArr, values, r);
+    }
+
+    /**
+     * Provides access to the data at the specified column.  This method is
+     * provided for compatibility with {@link AtomicGrowingSparseHashMatrix}
+     * and is equivalent to {@link #getColumnVector(int)}.
+     */
+    public SparseDoubleVector getColumnVectorUnsafe(int column) {
+        return getColumnVector(column);
+    }
+
+    /**
+     * {@inheritDoc} The length of the returned row reflects the size of matrix
+     * at the time of the call, which may be different from earlier calls to
+     * {@link #columns()}.
+     */
+    public double[] getRow(int row) {
+        return getRowVector(row).toArray();
+    }
+
+    /**
+     * {@inheritDoc} The length of the returned row vector reflects the size of
+     * matrix at the time of the call, which may be different from earlier calls
+     * to {@link #columns()}.
+     */
+    public SparseDoubleVector getRowVector(int row) {
+        int c = cols.get();
+        int[] colArr = getVectorCache(true, row);
+        double[] values = new double[colArr.length];
+        for (int i = 0; i < colArr.length; ++i)
+            values[i] = get(row, colArr[i]);
+        return compact(colArr, values, c);
+    }
+
+    /**
+     * Provides access to the data at the specified row.  This method is
+     * provided for compatibility with {@link AtomicGrowingSparseHashMatrix}
+     * and is equivalent to {@link #getRowVector(int)}.
+     */
+    public SparseDoubleVector getRowVectorUnsafe(int row) {
+        return getRowVector(row);
+    }
+
+    /**
+     * Returns a {@link CompactSparseVector} with the provided sorted indices
+     * and values, removing any entries that became zero after the vector cache
+     * was computed.
+     */
+    private static SparseDoubleVector compact(int[] indices, double[] values,
+                                              int length) {
+        int nonZero = 0;
+        for (double v : values)
+            if (v != 0)
+                nonZero++;
+        if (nonZero != values.length) {
+            int[] nzIndices = new int[nonZero];
+            double[] nzValues = new double[nonZero];
+            for (int i = 0, j = 0; i < values.length; ++i) {
+                if (values[i] != 0) {
+                    nzIndices[j] = indices[i];
+                    nzValues[j++] = values[i];
+                }
+            }
+            indices = nzIndices;
+            values = nzValues;
+        }
+        return new CompactSparseVector(indices, values, length);
+    }
+
+    /**
+     * Returns the sorted indices of the non-zero values in the row, if {@code
+     * isRow} is {@code true}, or the column otherwise, recomputing the cache if
+     * the structure of the matrix has changed.
+     */
+    private synchronized int[] getVectorCache(boolean isRow, int index) {
+        // NOTE: this method is synchronized to prevent having mulitple threads
+        // potentially recomputing the cache at the same time.
+        long mods = modifications();
+        if (mods != lastVectorCacheUpdate) 
+            updateVectorCache(mods);
+        int[][] cache = (isRow) ? rowToColsCache : colToRowsCache;
+        return (index < cache.length) ? cache[index] : new int[0];
+    }
+
+    /**
+     * Returns the total number of structural modifications to this matrix.
+     */
+    private long modifications() {
+        long mods = 0;
+        for (Stripe s : stripes)
+            mods += s.modifications;
+        return mods;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int rows() {
+        return rows.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void set(int row, int col, double val) {
+        checkIndices(row, col, true);
+        long k = key(row, col);
+        long h = hash(k);
+        stripeFor(h).set(k, (int)h, val);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setColumn(int column, double[] values) {
+        setColumn(column, Vectors.asVector(values));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setColumn(int column, DoubleVector rowValues) {
+        checkIndices(rowValues.length(), column, true);
+        int r = rows.get();
+        for (int row = 0; row < r; ++row) 
+            set(row, column, rowValues.get(row));
+    }
+  
+    /**
+     * {@inheritDoc}
+     */
+    public void setRow(int row, double[] columns) {
+        setRow(row, Vectors.asVector(columns));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRow(int row, DoubleVector colValues) {
+        checkIndices(row, colValues.length(), true);
+        int c = cols.get();
+        for (int col = 0; col < c; ++col) 
+            set(row, col, colValues.get(col));
+    }
+  
+    /**
+     * {@inheritDoc}
+     */
+    public double[][] toDenseArray() {
+        int r = rows.get();
+        int c = cols.get();
+        double[][] m = new double[r][c];
+        for (Stripe s : stripes) {
+            synchronized(s) {
+                for (int i = 0; i < s.keys.length; ++i) {
+                    long k = s.keys[i];
+                    if (k == EMPTY)
+                        continue;
+                    int row = (int)(k >>> 32);
+                    int col = (int)k;
+                    if (row < r && col < c)
+                        m[row][col] = s.values[i];
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Updates the cache of the non-zero structure of the matrix so that any
+     * call to {@link #getRowVector(int)} or {@link #getColumnVector(int)} has
+     * an accurate mapping of that row or column's non-zero values.  The caller
+     * must hold the lock on this matrix.
+     */
+    private void updateVectorCache(long mods) {
+        int r = rows.get();
+        int c = cols.get();
+        // First count the number of values in each row and column so that the
+        // arrays may be allocated at their exact size
+        int[] rowCounts = new int[r];
+        int[] colCounts = new int[c];
+        for (Stripe s : stripes) {
+            synchronized(s) {
+                for (long k : s.keys) {
+                    if (k == EMPTY)
+                        continue;
+                    int row = (int)(k >>> 32);
+                    int col = (int)k;
+                    if (row < r && col < c) {
+                        rowCounts[row]++;
+                        colCounts[col]++;
+                    }
+                }
+            }
+        }
+
+        int[][] rowToCols = new int[r][];
+        for (int i = 0; i < r; ++i)
+            rowToCols[i] = new int[rowCounts[i]];
+        int[][] colToRows = new int[c][];
+        for (int i = 0; i < c; ++i)
+            colToRows[i] = new int[colCounts[i]];
+
+        // Reuse the counts as the next free position in each array.  Entries
+        // may be added by other threads during the second pass, so any that
+        // would not fit are ignored and picked up on the next update.
+        Arrays.fill(rowCounts, 0);
+        Arrays.fill(colCounts, 0);
+        for (Stripe s : stripes) {
+            synchronized(s) {
+                for (long k : s.keys) {
+                    if (k == EMPTY)
+                        continue;
+                    int row = (int)(k >>> 32);
+                    int col = (int)k;
+                    if (row < r && col < c
+                            && rowCounts[row] < rowToCols[row].length
+                            && colCounts[col] < colToRows[col].length) {
+                        rowToCols[row][rowCounts[row]++] = col;
+                        colToRows[col][colCounts[col]++] = row;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < r; ++i) {
+            if (rowCounts[i] != rowToCols[i].length)
+                rowToCols[i] = Arrays.copyOf(rowToCols[i], rowCounts[i]);
+            Arrays.sort(rowToCols[i]);
+        }
+        for (int i = 0; i < c; ++i) {
+            if (colCounts[i] != colToRows[i].length)
+                colToRows[i] = Arrays.copyOf(colToRows[i], colCounts[i]);
+            Arrays.sort(colToRows[i]);
+        }
+
+        rowToColsCache = rowToCols;
+        colToRowsCache = colToRows;
+        lastVectorCacheUpdate = mods;
+    }
+
+    /**
+     * A linear-probing hash table from entry key to value that is guarded by
+     * its own lock.
+     */
+    private static class Stripe implements java.io.Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The keys of the entries, or {@link #EMPTY} for unused slots.
+         */
+        long[] keys;
+
+        /**
+         * The values of the entries.
+         */
+        double[] values;
+
+        /**
+         * The number of entries in this table.
+         */
+        int size;
+
+        /**
+         * The number of times an entry has been added or removed.  This is
+         * read without locking to detect structural changes.
+         */
+        volatile int modifications;
+
+        public Stripe() {
+            keys = new long[16];
+            values = new double[16];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            modifications = 0;
+        }
+
+        /**
+         * Returns the slot that contains the key, or the empty slot where it
+         * should be inserted.
+         */
+        private int slot(long key, int hash) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            long k;
+            while ((k = keys[i]) != EMPTY && k != key)
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        /**
+         * Returns the value for the key, or {@code 0} if it is not present.
+         */
+        synchronized double get(long key, int hash) {
+            int i = slot(key, hash);
+            return (keys[i] == EMPTY) ? 0 : values[i];
+        }
+
+        /**
+         * Adds {@code delta} to the value for the key, returning the value
+         * prior to the addition.
+         */
+        synchronized double add(long key, int hash, double delta) {
+            int i = slot(key, hash);
+            if (keys[i] == EMPTY) {
+                if (delta != 0)
+                    insert(i, key, hash, delta);
+                return 0;
+            }
+            double old = values[i];
+            double newVal = old + delta;
+            if (newVal == 0)
+                remove(i);
+            else
+                values[i] = newVal;
+            return old;
+        }
+
+        /**
+         * Sets the value for the key, removing the entry if the value is zero.
+         */
+        synchronized void set(long key, int hash, double val) {
+            int i = slot(key, hash);
+            if (keys[i] == EMPTY) {
+                if (val != 0)
+                    insert(i, key, hash, val);
+            }
+            else if (val == 0)
+                remove(i);
+            else
+                values[i] = val;
+        }
+
+        /**
+         * Inserts the key and value into the empty slot, growing the table if
+         * it has become too full.
+         */
+        private void insert(int slot, long key, int hash, double val) {
+            keys[slot] = key;
+            values[slot] = val;
+            size++;
+            modifications++;
+            // Keep the load factor at or below 3/4
+            if (size * 4 > keys.length * 3)
+                rehash(keys.length * 2);
+        }
+
+        /**
+         * Removes the entry at the slot, shifting back any subsequent entries
+         * in the same probe sequence so that no tombstones are needed.
+         */
+        private void remove(int slot) {
+            int mask = keys.length - 1;
+            int i = slot;
+            int j = slot;
+            while (true) {
+                j = (j + 1) & mask;
+                long k = keys[j];
+                if (k == EMPTY)
+                    break;
+                int home = (int)hash(k) & mask;
+                // Move the entry at j into the hole at i if its home slot is
+                // not cyclically within (i, j]
+                if ((i <= j) ? (home <= i || home > j) : (home <= i && home > j)) {
+                    keys[i] = k;
+                    values[i] = values[j];
+                    i = j;
+                }
+            }
+            keys[i] = EMPTY;
+            values[i] = 0;
+            size--;
+            modifications++;
+        }
+
+        /**
+         * Copies all of the entries into new tables of the provided capacity.
+         */
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = new long[capacity];
+            values = new double[capacity];
+            Arrays.fill(keys, EMPTY);
+            for (int i = 0; i < oldKeys.length; ++i) {
+                long k = oldKeys[i];
+                if (k == EMPTY)
+                    continue;
+                int s = slot(k, (int)hash(k));
+                keys[s] = k;
+                values[s] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * An in-memory accumulator for the sums of a large number of concurrent
+ * additions to a sparse matrix, which stores the summed rows as compact sorted
+ * arrays.  This class is intended for building matrices, such as word
+ * co-occurrence matrices, where many threads frequently update the same rows.
+ * <p>
+ *
+ * Each thread that calls {@link #add(int, int, double) add} sums its updates
+ * into its own open-addressed buffer of primitive {@code long} keys and {@code
+ * double} values, so threads never contend for the frequently updated rows.
+ * When a buffer reaches its capacity, its entries are sorted and merged into
+ * the shared rows, and the buffer is cleared.  Each row stores its non-zero
+ * columns and their values as sorted arrays, and a row is merged with all of a
+ * buffer's entries for it in a single linear pass, which produces new arrays
+ * that are exactly the size of the row.  This avoids the repeated shifting of
+ * values that occurs when columns are inserted one at a time into a sorted
+ * array, such as that of {@link CompactSparseVector}.<p>
+ *
+ * All updates must have completed before {@link #getRowVector(int, int)
+ * getRowVector} or {@link #toSparseMatrix(int, int) toSparseMatrix} are called,
+ * which merge any remaining buffered updates.  The returned vectors are backed
+ * by the accumulator's arrays and are not copied.  Additional updates may be
+ * made afterwards, which will not be reflected in previously returned vectors.
+ *
+ * @see SpillingMatrixAccumulator
+ */
+public class CompactingMatrixAccumulator {
+
+    private static final Logger LOGGER =
+        Logger.getLogger(CompactingMatrixAccumulator.class.getName());
+
+    /**
+     * The default number of distinct entries each thread may buffer before
+     * they are merged into the rows.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 18;
+
+    /**
+     * The maximum number of distinct entries a thread buffers before merging.
+     */
+    private final int bufferSize;
+
+    /**
+     * The buffer for each thread that has added an entry.
+     */
+    private final ThreadLocal<Buffer> threadBuffer;
+
+    /**
+     * All buffers that have been created, which are merged before the rows are
+     * accessed.
+     */
+    private final List<Buffer> buffers;
+
+    /**
+     * The merged rows, where a {@code null} row has no entries.  The array is
+     * replaced when it grows, so it is only accessed while holding the lock on
+     * {@code buffers}.
+     */
+    private Row[] storedRows;
+
+    /**
+     * The number of rows that have had an entry added.
+     */
+    private int numRows;
+
+    /**
+     * Creates an accumulator that uses the default buffer size.
+     */
+    public CompactingMatrixAccumulator() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an accumulator.
+     *
+     * @param bufferSize the number of distinct entries each thread may sum in
+     *        its buffer before merging them into the rows
+     *
+     * @throws IllegalArgumentException if {@code bufferSize} is not positive
+     */
+    public CompactingMatrixAccumulator(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException(
+                "Buffer size must be positive: " + bufferSize);
+        this.bufferSize = bufferSize;
+        buffers = new ArrayList<Buffer>();
+        storedRows = new Row[16];
+        numRows = 0;
+        threadBuffer = new ThreadLocal<Buffer>() {
+            protected Buffer initialValue() {
+                Buffer b = new Buffer();
+                synchronized (buffers) {
+                    buffers.add(b);
+                }
+                return b;
+            }
+        };
+    }
+
+    /**
+     * Adds the value to the entry at the specified row and column.  This
+     * method is thread-safe.
+     *
+     * @throws IllegalArgumentException if either index is negative
+     */
+    public void add(int row, int column, double value) {
+        if (row < 0 || column < 0)
+            throw new IllegalArgumentException(
+                "Indices must be non-negative: " + row + ", " + column);
+        threadBuffer.get().add(((long)row << 32) | column, value);
+    }
+
+    /**
+     * Merges the entries buffered by every thread into the rows.  This method
+     * should not be called while entries are being added.
+     */
+    public void flush() {
+        List<Buffer> toMerge = null;
+        synchronized (buffers) {
+            toMerge = new ArrayList<Buffer>(buffers);
+        }
+        for (Buffer b : toMerge)
+            b.merge();
+    }
+
+    /**
+     * Returns the number of rows, which is one more than the highest row to
+     * which an entry has been added.  This method should not be called while
+     * entries are being added.
+     */
+    public int rows() {
+        flush();
+        synchronized (buffers) {
+            return numRows;
+        }
+    }
+
+    /**
+     * Returns the summed entries of the row as a vector of the specified
+     * length, which is backed by the row's arrays.  This method should not be
+     * called while entries are being added.
+     *
+     * @throws IllegalArgumentException if the row has an entry whose column is
+     *         not less than {@code length}
+     */
+    public SparseDoubleVector getRowVector(int row, int length) {
+        flush();
+        return toVector(getRow(row, false), length);
+    }
+
+    /**
+     * Returns a {@link SparseMatrix} of the summed entries with the specified
+     * dimensions, whose rows are backed by the accumulator's arrays.  This
+     * method should not be called while entries are being added.
+     *
+     * @throws IllegalArgumentException if an entry lies outside of the
+     *         specified matrix dimensions
+     */
+    public SparseMatrix toSparseMatrix(int rows, int columns) {
+        flush();
+        if (rows < rows())
+            throw new IllegalArgumentException(
+                "Entries exist beyond row " + rows);
+        List<SparseDoubleVector> vectors =
+            new ArrayList<SparseDoubleVector>(rows);
+        for (int r = 0; r < rows; ++r)
+            vectors.add(toVector(getRow(r, false), columns));
+        return Matrices.asSparseMatrix(vectors, columns);
+    }
+
+    /**
+     * Returns a vector of the specified length that is backed by the row's
+     * arrays, or an empty vector if the row is {@code null}.
+     */
+    private static SparseDoubleVector toVector(Row row, int length) {
+        if (row == null)
+            return new CompactSparseVector(length);
+        synchronized (row) {
+            if (row.size > 0 && row.columns[row.size - 1] >= length)
+                throw new IllegalArgumentException(
+                    "Column " + row.columns[row.size - 1] + " is outside of " +
+                    "a vector of length " + length);
+            return new CompactSparseVector(row.columns, row.values, length);
+        }
+    }
+
+    /**
+     * Returns the row with the specified index, creating it if {@code create}
+     * is {@code true}, or otherwise returning {@code null} if it has no entries.
+     */
+    private Row getRow(int row, boolean create) {
+        synchronized (buffers) {
+            if (row >= storedRows.length) {
+                if (!create)
+                    return null;
+                storedRows = Arrays.copyOf(
+                    storedRows, Math.max(row + 1, storedRows.length * 2));
+            }
+            Row r = storedRows[row];
+            if (r == null && create) {
+                r = new Row();
+                storedRows[row] = r;
+                numRows = Math.max(numRows, row + 1);
+            }
+            return r;
+        }
+    }
+
+    /**
+     * The summed non-zero entries of a row, whose columns are stored in sorted
+     * order.  The arrays are replaced, rather than modified, when new entries
+     * are merged, so that previously returned vectors are unaffected.
+     */
+    private static class Row {
+
+        /**
+         * The sorted columns of the non-zero entries.
+         */
+        int[] columns;
+
+        /**
+         * The values of the entries.
+         */
+        double[] values;
+
+        /**
+         * The number of entries, which is always the length of both arrays.
+         */
+        int size;
+
+        public Row() {
+            columns = new int[0];
+            values = new double[0];
+            size = 0;
+        }
+
+        /**
+         * Adds the values of the sorted columns in the keys from {@code start}
+         * to {@code end} to this row, where each key's low 32 bits are its
+         * column.
+         */
+        public synchronized void merge(long[] keys, double[] sums,
+                                       int start, int end) {
+            int[] mergedColumns = new int[size + (end - start)];
+            double[] mergedValues = new double[mergedColumns.length];
+            int i = 0, j = start, k = 0;
+            while (i < size || j < end) {
+                int col;
+                double value;
+                if (j == end || (i < size && columns[i] < (int)keys[j])) {
+                    col = columns[i];
+                    value = values[i++];
+                }
+                else if (i == size || columns[i] > (int)keys[j]) {
+                    col = (int)keys[j];
+                    value = sums[j++];
+                }
+                else {
+                    col = columns[i];
+                    value = values[i++] + sums[j++];
+                }
+                // Drop any entries whose sum is zero
+                if (value != 0) {
+                    mergedColumns[k] = col;
+                    mergedValues[k++] = value;
+                }
+            }
+            // Compact the arrays to the number of distinct columns
+            if (k < mergedColumns.length) {
+                mergedColumns = Arrays.copyOf(mergedColumns, k);
+                mergedValues = Arrays.copyOf(mergedValues, k);
+            }
+            columns = mergedColumns;
+            values = mergedValues;
+            size = k;
+        }
+    }
+
+    /**
+     * A thread's buffer of partial sums.
+     */
+    private class Buffer {
+
+        /**
+         * The partial sum for each key.
+         */
+        private final TLongDoubleHashMap sums;
+
+        public Buffer() {
+            sums = new TLongDoubleHashMap();
+        }
+
+        /**
+         * Adds the value to the key's sum, merging the buffer if it is full.
+         * This is synchronized only so the final {@link #merge()} from a
+         * different thread sees all the updates; the lock is uncontended
+         * during normal use.
+         */
+        public synchronized void add(long key, double value) {
+            sums.adjustOrPutValue(key, value, value);
+            if (sums.size() >= bufferSize)
+                merge();
+        }
+
+        /**
+         * Merges the buffered sums into the rows in sorted order and clears
+         * the buffer.
+         */
+        public synchronized void merge() {
+            if (sums.isEmpty())
+                return;
+            long[] keys = sums.keys();
+            Arrays.sort(keys);
+            double[] values = new double[keys.length];
+            for (int i = 0; i < keys.length; ++i)
+                values[i] = sums.get(keys[i]);
+            sums.clear();
+
+            // Merge the keys of each row, which are contiguous once sorted
+            for (int start = 0; start < keys.length; ) {
+                int row = (int)(keys[start] >>> 32);
+                int end = start + 1;
+                while (end < keys.length && (int)(keys[end] >>> 32) == row)
+                    end++;
+                getRow(row, true).merge(keys, values, start, end);
+                start = end;
+            }
+            if (LOGGER.isLoggable(Level.FINE))
+                LOGGER.fine("merged " + keys.length + " buffered entries");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.FloatArrayAsVector;
+
+import java.io.Serializable;
+
+
+/**
+ * A dense {@code Matrix} that stores its values at single precision in a
+ * row-striped {@code float} array, which uses half of the memory of an {@link
+ * ArrayMatrix}.  Values are rounded to the nearest {@code float} when set.
+ *
+ * <p> The row vectors of this matrix are unmodifiable {@link
+ * FloatArrayAsVector} views of the backing array, so changes to the matrix are
+ * reflected in the vectors.
+ *
+ * @author David Jurgens
+ */
+public class FloatMatrix extends AbstractMatrix implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of rows in this matrix
+     */
+    private final int rows;
+
+    /**
+     * The number of columns in this matrix
+     */
+    private final int cols;
+
+    /**
+     * The values of this matrix, stored one row after another
+     */
+    private final float[] matrix;
+
+    /**
+     * Creates a {@code FloatMatrix} of size {@code rows} by {@code cols}.
+     *
+     * @throws IllegalArgumentException if either dimension is negative or if
+     *         the matrix has more values than can be stored in an array
+     */
+    public FloatMatrix(int rows, int cols) {
+        if (rows < 0 || cols < 0)
+            throw new IllegalArgumentException("invalid matrix dimensions");
+        if ((long)rows * cols > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                "Matrix is too large: " + rows + " x " + cols);
+        this.rows = rows;
+        this.cols = cols;
+        matrix = new float[rows * cols];
+    }
+
+    /**
+     * Check that the indices of a requested cell are within bounds.
+     *
+     * @throws ArrayIndexOutOfBoundsException if either index is out of bounds
+     */
+    private void checkIndices(int row, int col) {
+        if (row < 0 || row >= rows)
+            throw new ArrayIndexOutOfBoundsException("row: " + row);
+        else if (col < 0 || col >= cols)
+            throw new ArrayIndexOutOfBoundsException("column: " + col);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int columns() {
+        return cols;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int row, int col) {
+        checkIndices(row, col);
+        return matrix[row * cols + col];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] getRow(int row) {
+        checkIndices(row, 0);
+        double[] rowArr = new double[cols];
+        for (int i = 0, index = row * cols; i < cols; ++i)
+            rowArr[i] = matrix[index++];
+        return rowArr;
+    }
+
+    /**
+     * Returns an unmodifiable view of the row.
+     */
+    public DoubleVector getRowVector(int row) {
+        if (row < 0 || row >= rows)
+            throw new ArrayIndexOutOfBoundsException("row: " + row);
+        return new FloatArrayAsVector(matrix, row * cols, cols);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void set(int row, int col, double val) {
+        checkIndices(row, col);
+        matrix[row * cols + col] = (float)val;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRow(int row, double[] columns) {
+        if (columns.length != cols)
+            throw new IllegalArgumentException(
+                "Number of values is not equal the number of columns");
+        checkIndices(row, 0);
+        for (int i = 0, index = row * cols; i < cols; ++i)
+            matrix[index++] = (float)columns[i];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRow(int row, DoubleVector values) {
+        if (values.length() != cols)
+            throw new IllegalArgumentException(
+                "Number of values is not equal the number of columns");
+        checkIndices(row, 0);
+        for (int i = 0, index = row * cols; i < cols; ++i)
+            matrix[index++] = (float)values.get(i);
+    }
+}
@@ -85,6 +85,37 @@ public class MatrixEntropy {
         return new EntropyStats(entropy, colEntropy, rowEntropy);
     }
 
+    /**
+     * Returns a {@link EntropyStats} covering the entropies of all joint events,
+     * rows, and columns in the matrix stored in {@code m}, which has the
+     * specified dimensions.  The file is read twice, so only the row and
+     * column sums are kept in memory.
+     */
+    public static EntropyStats entropy(MatrixFile m, int rows, int columns) {
+        double sum = 0;
+        double[] colSums = new double[columns];
+        double[] rowSums = new double[rows];
+        for (MatrixEntry e : m) {
+            double v = e.value();
+            sum += v;
+            colSums[e.column()] += v;
+            rowSums[e.row()] += v;
+        }
+
+        double entropy = 0;
+        double[] colEntropy = new double[columns];
+        double[] rowEntropy = new double[rows];
+        for (MatrixEntry e : m) {
+            double v = e.value();
+            if (v != 0d) {
+                entropy -= entropy(v, sum);
+                colEntropy[e.column()] -= entropy(v, colSums[e.column()]);
+                rowEntropy[e.row()] -= entropy(v, rowSums[e.row()]);
+            }
+        }
+        return new EntropyStats(entropy, colEntropy, rowEntropy);
+    }
+
     /**
      * Computes the entropy of a raw count given a particular summation using
      * the natural log.
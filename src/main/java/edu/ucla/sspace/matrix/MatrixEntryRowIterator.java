@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+
+import gnu.trove.list.array.TDoubleArrayList;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * An iterator that groups the {@link MatrixEntry} instances of a dense matrix
+ * file into its rows.  The backing iterator must return every entry of the
+ * matrix, including zeros, in row-major order, which is the case for all of
+ * the dense {@link MatrixIO.Format} iterators.  Only a single row is held in
+ * memory at a time.
+ *
+ * @author David Jurgens
+ */
+class MatrixEntryRowIterator implements Iterator<DoubleVector> {
+
+    /**
+     * The entries of the matrix in row-major order.
+     */
+    private final Iterator<MatrixEntry> entries;
+
+    /**
+     * The first entry of the next row, or {@code null} if all of the rows have
+     * been returned.
+     */
+    private MatrixEntry nextEntry;
+
+    /**
+     * The values of the row currently being read.
+     */
+    private final TDoubleArrayList values;
+
+    /**
+     * Creates an iterator over the rows of the entries returned by {@code
+     * entries}.
+     */
+    public MatrixEntryRowIterator(Iterator<MatrixEntry> entries) {
+        this.entries = entries;
+        values = new TDoubleArrayList();
+        nextEntry = (entries.hasNext()) ? entries.next() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasNext() {
+        return nextEntry != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DoubleVector next() {
+        if (nextEntry == null)
+            throw new NoSuchElementException("No further rows");
+
+        int row = nextEntry.row();
+        values.resetQuick();
+        values.add(nextEntry.value());
+        nextEntry = null;
+        while (entries.hasNext()) {
+            MatrixEntry e = entries.next();
+            if (e.row() != row) {
+                nextEntry = e;
+                break;
+            }
+            values.add(e.value());
+        }
+        return new DenseVector(values.toArray());
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException} if called.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException("Cannot remove from file");
+    }
+}
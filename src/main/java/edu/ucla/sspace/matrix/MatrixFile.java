@@ -21,6 +21,8 @@
 
 package edu.ucla.sspace.matrix;
 
+import edu.ucla.sspace.vector.DoubleVector;
+
 import java.io.File;
 import java.io.IOError;
 import java.io.IOException;
@@ -99,6 +101,20 @@ public class MatrixFile implements Iterable<MatrixEntry>, java.io.Serializable {
         }
     }
 
+    /**
+     * Returns the rows of the matrix, which are read from disk in order each
+     * time the returned {@code Iterable} is iterated over.
+     *
+     * @see MatrixIO#getMatrixFileRows(File, MatrixIO.Format)
+     */
+    public Iterable<DoubleVector> rows() {
+        try {
+            return MatrixIO.getMatrixFileRows(matrixFile, format);
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
     /**
      * Loads the matrix from disk and returns a copy of its data.  Note that a
      * new {@code Matrix} is created each time this is called.
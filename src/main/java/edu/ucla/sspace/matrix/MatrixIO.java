@@ -324,6 +324,108 @@ public class MatrixIO {
                         "inclusion and it will be quickly added");
     }
 
+    /**
+     * Returns the rows of the matrix in the data file, in row order.  The
+     * returned {@code Iterable} may be iterated over multiple times, with each
+     * iteration reading the rows from disk and holding only the current row in
+     * memory.  Dense formats are read directly from {@code matrixFile}.  Sparse
+     * formats do not store their rows contiguously, so they are first
+     * converted to a temporary transposed {@link Format#SVDLIBC_SPARSE_BINARY
+     * SVDLIBC_SPARSE_BINARY} file whose columns are memory mapped; this
+     * conversion is done once, when this method is called.  The conversion
+     * sorts the entries by row using a {@link SpillingMatrixAccumulator}, so
+     * the matrix is never loaded into memory.
+     *
+     * @param matrixFile the file containing matrix data in the specified format
+     * @param fileFormat the format of the matrix file
+     *
+     * @return the rows of the matrix
+     */
+    public static Iterable<DoubleVector> getMatrixFileRows(
+            final File matrixFile, final Format fileFormat) throws IOException {
+        switch (fileFormat) {
+        case DENSE_TEXT:
+        case SVDLIBC_DENSE_TEXT:
+        case SVDLIBC_DENSE_BINARY:
+        case CLUTO_DENSE:
+            return new Iterable<DoubleVector>() {
+                public Iterator<DoubleVector> iterator() {
+                    try {
+                        return new MatrixEntryRowIterator(
+                            getMatrixFileIterator(matrixFile, fileFormat));
+                    } catch (IOException ioe) {
+                        throw new IOError(ioe);
+                    }
+                }
+            };
+        default: {
+            final File transposed = transposeBySpilling(matrixFile, fileFormat);
+            return new Iterable<DoubleVector>() {
+                @SuppressWarnings("unchecked")
+                public Iterator<DoubleVector> iterator() {
+                    try {
+                        // The columns of the transposed file are the rows of
+                        // the original matrix.
+                        Iterator<? extends DoubleVector> it =
+                            new SvdlibcSparseBinaryFileRowIterator(transposed);
+                        return (Iterator<DoubleVector>)it;
+                    } catch (IOException ioe) {
+                        throw new IOError(ioe);
+                    }
+                }
+            };
+        }
+        }
+    }
+
+    /**
+     * Writes the transpose of the sparse matrix in {@code matrixFile} to a
+     * temporary {@link Format#SVDLIBC_SPARSE_BINARY SVDLIBC_SPARSE_BINARY}
+     * file, whose columns are then the rows of the original matrix.  The
+     * entries are sorted by row in bounded memory, spilling them to disk as
+     * needed.
+     */
+    private static File transposeBySpilling(File matrixFile, Format format)
+            throws IOException {
+        // Adding each entry with its row and column swapped orders the merged
+        // entries by their original row and then column.
+        SpillingMatrixAccumulator accumulator = new SpillingMatrixAccumulator(
+            SpillingMatrixAccumulator.DEFAULT_BUFFER_SIZE, null, true);
+        int rows = 0;
+        int cols = 0;
+        Iterator<MatrixEntry> it = getMatrixFileIterator(matrixFile, format);
+        while (it.hasNext()) {
+            MatrixEntry e = it.next();
+            accumulator.add(e.column(), e.row(), e.value());
+            rows = Math.max(rows, e.row() + 1);
+            cols = Math.max(cols, e.column() + 1);
+        }
+
+        // The SVDLIBC formats record their dimensions, which include any empty
+        // rows or columns at the end of the matrix
+        if (format == Format.SVDLIBC_SPARSE_BINARY) {
+            DataInputStream dis = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(matrixFile)));
+            rows = dis.readInt();
+            cols = dis.readInt();
+            dis.close();
+        }
+        else if (format == Format.SVDLIBC_SPARSE_TEXT) {
+            BufferedReader br = new BufferedReader(new FileReader(matrixFile));
+            String[] header = br.readLine().trim().split("\\s+");
+            rows = Integer.parseInt(header[0]);
+            cols = Integer.parseInt(header[1]);
+            br.close();
+        }
+
+        SvdlibcSparseBinaryMatrixBuilder builder =
+            new SvdlibcSparseBinaryMatrixBuilder();
+        accumulator.writeTo(builder, cols, rows);
+        builder.finish();
+        accumulator.close();
+        return builder.getFile();
+    }
+
     /**
      * Returns a {@link FileTransformer} for an {@link Matrix} file encodeded in
      * the provided {@link Format}.
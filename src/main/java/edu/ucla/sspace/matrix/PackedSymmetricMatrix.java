@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+
+/**
+ * A square symmetric matrix that stores only the upper triangular, including
+ * the diagonal, as packed {@code float} values.  The values may be held either
+ * on the heap or in memory-mapped temporary files, which allows matrices with
+ * more than {@code Integer.MAX_VALUE} values, such as the pair-wise similarities
+ * of a large number of data points.  Setting the value at (row, col) also sets
+ * the value at (col, row).
+ *
+ * <p> Concurrent calls to {@link #set(int,int,double) set} for different cells
+ * are safe, which allows the matrix to be filled in parallel.  Values are
+ * rounded to {@code float} precision.
+ *
+ * @see SymmetricMatrix
+ *
+ * @author David Jurgens
+ */
+public class PackedSymmetricMatrix extends AbstractMatrix {
+
+    /**
+     * The number of bits used to index a value within a region.
+     */
+    private static final int REGION_BITS = 28;
+
+    /**
+     * The number of values in each region, which keeps the number of bytes in
+     * each mapped region below {@code Integer.MAX_VALUE}.
+     */
+    private static final int REGION_SIZE = 1 << REGION_BITS;
+
+    /**
+     * The mask for the index of a value within its region.
+     */
+    private static final long REGION_MASK = REGION_SIZE - 1;
+
+    /**
+     * The number of bytes in a float.
+     */
+    private static final int BYTES_PER_FLOAT = 4;
+
+    /**
+     * The regions that store the packed upper triangular values in row order.
+     */
+    private final FloatBuffer[] regions;
+
+    /**
+     * The number of rows and columns in the matrix.
+     */
+    private final int size;
+
+    /**
+     * Creates a new {@code PackedSymmetricMatrix} with {@code size} rows and
+     * columns whose values are stored on the heap.
+     */
+    public PackedSymmetricMatrix(int size) {
+        this(size, false);
+    }
+
+    /**
+     * Creates a new {@code PackedSymmetricMatrix} with {@code size} rows and
+     * columns whose values are stored in memory-mapped temporary files if
+     * {@code onDisk} is {@code true}, or on the heap otherwise.
+     *
+     * @throws IOError if the backing files for the matrix cannot be created
+     */
+    public PackedSymmetricMatrix(int size, boolean onDisk) {
+        if (size < 0)
+            throw new IllegalArgumentException("size must be non-negative");
+        this.size = size;
+        long values = numValues(size);
+        int numRegions = (int)((values + REGION_SIZE - 1) >>> REGION_BITS);
+        regions = new FloatBuffer[numRegions];
+        for (int r = 0; r < numRegions; ++r) {
+            int regionSize = (int)Math.min(
+                REGION_SIZE, values - ((long)r << REGION_BITS));
+            regions[r] = (onDisk)
+                ? createMappedRegion(regionSize)
+                : FloatBuffer.allocate(regionSize);
+        }
+    }
+
+    /**
+     * Returns the number of values needed to store the upper triangular of a
+     * matrix with {@code size} rows.
+     */
+    public static long numValues(int size) {
+        return (long)size * (size + 1) / 2;
+    }
+
+    /**
+     * Returns a zero-filled buffer of {@code size} values backed by a
+     * temporary file.
+     */
+    private static FloatBuffer createMappedRegion(int size) {
+        try {
+            File f = File.createTempFile("PackedSymmetricMatrix", ".matrix");
+            // Make sure the temp file goes away since it can get fairly large
+            // for big matrices
+            f.deleteOnExit();
+            RandomAccessFile raf = new RandomAccessFile(f, "rw");
+            FileChannel fc = raf.getChannel();
+            FloatBuffer buffer = fc.map(MapMode.READ_WRITE, 0, 
+                                        (long)size * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            fc.close();
+            raf.close();
+            return buffer;
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Returns the index of the value at ({@code row}, {@code col}) in the
+     * packed upper triangular.
+     */
+    private long index(int row, int col) {
+        if (row < 0 || row >= size)
+            throw new ArrayIndexOutOfBoundsException("row: " + row);
+        if (col < 0 || col >= size)
+            throw new ArrayIndexOutOfBoundsException("column: " + col);
+        // Swap the ordering so only the upper triangular is accessed
+        if (row > col) {
+            int tmp = row;
+            row = col;
+            col = tmp;
+        }
+        return (long)row * (2L * size - row + 1) / 2 + (col - row);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int columns() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public double get(int row, int col) {
+        return getFloat(row, col);
+    }
+
+    /**
+     * Returns the value at ({@code row}, {@code col}) without widening it to a
+     * {@code double}.
+     */
+    public float getFloat(int row, int col) {
+        long i = index(row, col);
+        return regions[(int)(i >>> REGION_BITS)].get((int)(i & REGION_MASK));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public double[] getRow(int row) {
+        double[] values = new double[size];
+        for (int c = 0; c < size; ++c)
+            values[c] = getFloat(row, c);
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DoubleVector getRowVector(int row) {
+        return new DenseVector(getRow(row));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public double[] getColumn(int column) {
+        return getRow(column);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public DoubleVector getColumnVector(int column) {
+        return getRowVector(column);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int rows() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}  The value is also set at ({@code col}, {@code row}).
+     */
+    @Override public void set(int row, int col, double val) {
+        setFloat(row, col, (float)val);
+    }
+
+    /**
+     * Sets the value at ({@code row}, {@code col}) and ({@code col}, {@code
+     * row}).
+     */
+    public void setFloat(int row, int col, float val) {
+        long i = index(row, col);
+        regions[(int)(i >>> REGION_BITS)].put((int)(i & REGION_MASK), val);
+    }
+}
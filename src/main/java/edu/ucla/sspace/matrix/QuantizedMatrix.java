@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.QuantizedVector;
+import edu.ucla.sspace.vector.Vectors;
+
+import java.io.Serializable;
+
+
+/**
+ * A dense {@code Matrix} that stores each row as scalar-quantized {@code byte}
+ * values with a per-row scale, which uses roughly an eighth of the memory of
+ * an {@link ArrayMatrix}.  Each row is quantized with {@link
+ * QuantizedVector#quantize(DoubleVector,byte[],int) QuantizedVector.quantize},
+ * so a value differs from the one that was set by at most half of its row's
+ * scale.  This matrix is intended for data that is written once, a row at a
+ * time, and then read.  Setting a single value requantizes its entire row.
+ *
+ * <p> The row vectors of this matrix are unmodifiable {@link QuantizedVector}
+ * views of the backing array.  A view keeps the scale of its row at the time
+ * it was created, so it should not be used after its row has been changed.
+ *
+ * @author David Jurgens
+ */
+public class QuantizedMatrix extends AbstractMatrix implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of rows in this matrix
+     */
+    private final int rows;
+
+    /**
+     * The number of columns in this matrix
+     */
+    private final int cols;
+
+    /**
+     * The quantized values of this matrix, stored one row after another
+     */
+    private final byte[] matrix;
+
+    /**
+     * The scale of each row's quantized values
+     */
+    private final float[] scales;
+
+    /**
+     * Creates a {@code QuantizedMatrix} of size {@code rows} by {@code cols}
+     * whose values are all zero.
+     *
+     * @throws IllegalArgumentException if either dimension is negative or if
+     *         the matrix has more values than can be stored in an array
+     */
+    public QuantizedMatrix(int rows, int cols) {
+        this(rows, cols, allocate(rows, cols), new float[rows]);
+    }
+
+    /**
+     * Creates a {@code QuantizedMatrix} of size {@code rows} by {@code cols}
+     * that takes ownership of the provided quantized values and row scales.
+     *
+     * @param values the quantized values of the matrix, stored one row after
+     *        another
+     * @param scales the scale of each row's quantized values
+     *
+     * @throws IllegalArgumentException if the arrays are not of the sizes
+     *         required by the dimensions
+     */
+    public QuantizedMatrix(int rows, int cols, byte[] values, float[] scales) {
+        if (rows < 0 || cols < 0)
+            throw new IllegalArgumentException("invalid matrix dimensions");
+        if (values.length != (long)rows * cols || scales.length != rows)
+            throw new IllegalArgumentException("provided matrix is wrong size");
+        this.rows = rows;
+        this.cols = cols;
+        this.matrix = values;
+        this.scales = scales;
+    }
+
+    /**
+     * Returns an array large enough to hold the values of the matrix.
+     */
+    private static byte[] allocate(int rows, int cols) {
+        if (rows < 0 || cols < 0)
+            throw new IllegalArgumentException("invalid matrix dimensions");
+        if ((long)rows * cols > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                "Matrix is too large: " + rows + " x " + cols);
+        return new byte[rows * cols];
+    }
+
+    /**
+     * Check that the indices of a requested cell are within bounds.
+     *
+     * @throws ArrayIndexOutOfBoundsException if either index is out of bounds
+     */
+    private void checkIndices(int row, int col) {
+        if (row < 0 || row >= rows)
+            throw new ArrayIndexOutOfBoundsException("row: " + row);
+        else if (col < 0 || col >= cols)
+            throw new ArrayIndexOutOfBoundsException("column: " + col);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int columns() {
+        return cols;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int row, int col) {
+        checkIndices(row, col);
+        return matrix[row * cols + col] * (double)scales[row];
+    }
+
+    /**
+     * Returns an unmodifiable view of the row.
+     */
+    public DoubleVector getRowVector(int row) {
+        if (row < 0 || row >= rows)
+            throw new ArrayIndexOutOfBoundsException("row: " + row);
+        return new QuantizedVector(matrix, row * cols, cols, scales[row]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Sets the value and then requantizes the value's row, which may change
+     * the other values of the row by up to half of the row's new scale.
+     */
+    public void set(int row, int col, double val) {
+        checkIndices(row, col);
+        double[] values = getRow(row);
+        values[col] = val;
+        setRow(row, values);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRow(int row, double[] columns) {
+        setRow(row, Vectors.asVector(columns));
+    }
+
+    /**
+     * Quantizes and stores the values of the row.
+     */
+    public void setRow(int row, DoubleVector values) {
+        if (values.length() != cols)
+            throw new IllegalArgumentException(
+                "Number of values is not equal the number of columns");
+        if (row < 0 || row >= rows)
+            throw new ArrayIndexOutOfBoundsException("row: " + row);
+        scales[row] = QuantizedVector.quantize(values, matrix, row * cols);
+    }
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * An accumulator for the sums of a very large number of additions to a sparse
+ * matrix, which uses a bounded amount of memory by spilling partial sums to
+ * disk.  This class is intended for building matrices, such as word
+ * co-occurrence matrices, from a stream of updates that is too large to sum in
+ * memory.<p>
+ *
+ * Each thread that calls {@link #add(int, int, double) add} sums its updates
+ * into its own buffer of primitive {@code long} keys and {@code double}
+ * values, so threads never contend and no objects are allocated per update.  When a buffer
+ * reaches its capacity, its entries are sorted and written to a compressed run
+ * file on disk, and the buffer is cleared.  Calling {@link #iterator()} spills
+ * any remaining buffers and then performs a k-way merge of all the run files,
+ * returning the summed value of every non-zero entry in sorted order.  The
+ * entries may also be written {@link #writeTo(MatrixBuilder, int, int)
+ * directly} to a {@link MatrixBuilder}, which allows the complete matrix to be
+ * built without ever being held in memory.<p>
+ *
+ * Entries are merged in row-major order by default, or in column-major order
+ * if specified at construction, which is the order required by the column-wise
+ * {@link MatrixBuilder} interface.  All updates must have completed before
+ * {@code iterator} or {@code writeTo} are called.  Additional updates may be
+ * made afterwards, in which case the next merge will include them.<p>
+ *
+ * The run files are deleted when {@link #close()} is called, or otherwise
+ * when the JVM exits.
+ *
+ * @see SvdlibcSparseBinaryMatrixBuilder
+ */
+public class SpillingMatrixAccumulator implements Iterable<MatrixEntry> {
+
+    private static final Logger LOGGER =
+        Logger.getLogger(SpillingMatrixAccumulator.class.getName());
+
+    /**
+     * The default number of distinct entries each thread may buffer before
+     * they are spilled to disk.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The maximum number of run files that are merged at once.  If more runs
+     * exist, groups of runs are first merged into larger intermediate runs,
+     * which bounds the number of open files and merge buffers.
+     */
+    static final int MAX_FAN_IN = 64;
+
+    /**
+     * The maximum number of distinct entries a thread buffers before spilling.
+     */
+    private final int bufferSize;
+
+    /**
+     * The directory in which the run files are created, or {@code null} to
+     * use the default temporary directory.
+     */
+    private final File tempDir;
+
+    /**
+     * Whether entries are ordered by column first.
+     */
+    private final boolean columnMajor;
+
+    /**
+     * The buffer for each thread that has added an entry.
+     */
+    private final ThreadLocal<Buffer> threadBuffer;
+
+    /**
+     * All buffers that have been created, which are spilled before merging.
+     */
+    private final List<Buffer> buffers;
+
+    /**
+     * The run files that have been written.
+     */
+    private final List<File> runs;
+
+    /**
+     * Creates an accumulator that orders entries by row and uses the default
+     * buffer size and temporary directory.
+     */
+    public SpillingMatrixAccumulator() {
+        this(DEFAULT_BUFFER_SIZE, null, false);
+    }
+
+    /**
+     * Creates an accumulator.
+     *
+     * @param bufferSize the number of distinct entries each thread may sum in
+     *        memory before spilling them to disk
+     * @param tempDir the directory in which to create the run files, or {@code
+     *        null} to use the default temporary directory
+     * @param columnMajor {@code true} if the entries should be merged in
+     *        column-major order, or {@code false} for row-major order
+     *
+     * @throws IllegalArgumentException if {@code bufferSize} is not positive
+     */
+    public SpillingMatrixAccumulator(int bufferSize, File tempDir,
+                                     boolean columnMajor) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException(
+                "Buffer size must be positive: " + bufferSize);
+        this.bufferSize = bufferSize;
+        this.tempDir = tempDir;
+        this.columnMajor = columnMajor;
+        buffers = new ArrayList<Buffer>();
+        runs = new ArrayList<File>();
+        threadBuffer = new ThreadLocal<Buffer>() {
+            protected Buffer initialValue() {
+                Buffer b = new Buffer();
+                synchronized (buffers) {
+                    buffers.add(b);
+                }
+                return b;
+            }
+        };
+    }
+
+    /**
+     * Adds the value to the entry at the specified row and column.  This
+     * method is thread-safe.
+     *
+     * @throws IllegalArgumentException if either index is negative
+     * @throws IOError if an error occurs while spilling entries to disk
+     */
+    public void add(int row, int column, double value) {
+        if (row < 0 || column < 0)
+            throw new IllegalArgumentException(
+                "Indices must be non-negative: " + row + ", " + column);
+        long key = (columnMajor)
+            ? ((long)column << 32) | row
+            : ((long)row << 32) | column;
+        threadBuffer.get().add(key, value);
+    }
+
+    /**
+     * Returns {@code true} if the entries are merged in column-major order.
+     */
+    public boolean isColumnMajor() {
+        return columnMajor;
+    }
+
+    /**
+     * Returns the number of run files that have been written to disk.
+     */
+    public int numRuns() {
+        synchronized (runs) {
+            return runs.size();
+        }
+    }
+
+    /**
+     * Writes any buffered entries to disk.
+     */
+    private void spillAll() {
+        List<Buffer> toSpill = null;
+        synchronized (buffers) {
+            toSpill = new ArrayList<Buffer>(buffers);
+        }
+        for (Buffer b : toSpill)
+            b.spill();
+    }
+
+    /**
+     * Returns the summed non-zero entries of the matrix, in row-major or
+     * column-major order as specified at construction.  Each entry appears
+     * once.  This method should not be called while entries are being added.
+     *
+     * @throws IOError if an error occurs while reading or writing the run files
+     */
+    public Iterator<MatrixEntry> iterator() {
+        spillAll();
+        try {
+            List<File> toMerge = null;
+            synchronized (runs) {
+                // Merge the oldest runs into a single run until few enough
+                // remain that they may all be merged at once
+                while (runs.size() > MAX_FAN_IN) {
+                    List<File> group = runs.subList(0, MAX_FAN_IN);
+                    File merged = mergeRuns(group);
+                    for (File f : group)
+                        f.delete();
+                    group.clear();
+                    runs.add(merged);
+                }
+                toMerge = new ArrayList<File>(runs);
+            }
+            return new MergingIterator(toMerge);
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Merges the runs into a single new run file, which is returned.
+     */
+    private File mergeRuns(List<File> runFiles) throws IOException {
+        RunMerger merger = new RunMerger(runFiles);
+        File run = File.createTempFile("matrix-run", ".dat", tempDir);
+        run.deleteOnExit();
+        DataOutputStream out = openRun(run);
+        long prev = 0;
+        while (merger.advance()) {
+            writeVarLong(out, merger.key - prev);
+            out.writeDouble(merger.sum);
+            prev = merger.key;
+        }
+        out.close();
+        if (LOGGER.isLoggable(Level.FINE))
+            LOGGER.fine("merged " + runFiles.size() + " runs into " + run);
+        return run;
+    }
+
+    /**
+     * Writes the summed matrix to the builder, one column at a time.  Columns
+     * with no entries are added as empty columns, so that the builder's matrix
+     * has exactly {@code columns} columns.  The builder is not finished by this
+     * method.
+     *
+     * @param builder the builder to which the columns should be added
+     * @param rows the number of rows in the matrix
+     * @param columns the number of columns in the matrix
+     *
+     * @throws IllegalStateException if this accumulator does not order its
+     *         entries by column
+     * @throws IllegalArgumentException if an entry lies outside of the
+     *         specified matrix dimensions
+     * @throws IOError if an error occurs while reading or writing the run files
+     */
+    public void writeTo(MatrixBuilder builder, int rows, int columns) {
+        if (!columnMajor)
+            throw new IllegalStateException(
+                "Entries must be column-major to write to a MatrixBuilder");
+        int added = 0;
+        int current = -1;
+        CompactSparseVector column = null;
+        for (MatrixEntry e : this) {
+            if (e.row() >= rows || e.column() >= columns)
+                throw new IllegalArgumentException(
+                    "Entry (" + e.row() + ", " + e.column() + ") is outside " +
+                    "of a " + rows + " x " + columns + " matrix");
+            if (e.column() != current) {
+                if (column != null) {
+                    builder.addColumn(column);
+                    added++;
+                }
+                // Add any columns that had no entries
+                for (; added < e.column(); ++added)
+                    builder.addColumn(new CompactSparseVector(rows));
+                current = e.column();
+                column = new CompactSparseVector(rows);
+            }
+            column.set(e.row(), e.value());
+        }
+        if (column != null) {
+            builder.addColumn(column);
+            added++;
+        }
+        for (; added < columns; ++added)
+            builder.addColumn(new CompactSparseVector(rows));
+    }
+
+    /**
+     * Deletes the run files.  Any entries that are still buffered in memory
+     * are retained.
+     */
+    public void close() {
+        synchronized (runs) {
+            for (File f : runs)
+                f.delete();
+            runs.clear();
+        }
+    }
+
+    /**
+     * A thread's buffer of partial sums.
+     */
+    private class Buffer {
+
+        /**
+         * The partial sum for each key.
+         */
+        private final TLongDoubleHashMap sums;
+
+        public Buffer() {
+            sums = new TLongDoubleHashMap();
+        }
+
+        /**
+         * Adds the value to the key's sum, spilling the buffer if it is full.
+         * This is synchronized only so the final {@link #spill()} from a
+         * different thread sees all the updates; the lock is uncontended
+         * during normal use.
+         */
+        public synchronized void add(long key, double value) {
+            sums.adjustOrPutValue(key, value, value);
+            if (sums.size() >= bufferSize)
+                spill();
+        }
+
+        /**
+         * Writes the buffered sums to a new run file in sorted order and clears
+         * the buffer.
+         */
+        public synchronized void spill() {
+            if (sums.isEmpty())
+                return;
+            long[] keys = sums.keys();
+            Arrays.sort(keys);
+            try {
+                File run = File.createTempFile("matrix-run", ".dat", tempDir);
+                run.deleteOnExit();
+                DataOutputStream out = openRun(run);
+                // Keys are delta-encoded, which keeps the sorted keys small
+                // and therefore compressible
+                long prev = 0;
+                for (long key : keys) {
+                    writeVarLong(out, key - prev);
+                    out.writeDouble(sums.get(key));
+                    prev = key;
+                }
+                out.close();
+                synchronized (runs) {
+                    runs.add(run);
+                }
+                if (LOGGER.isLoggable(Level.FINE))
+                    LOGGER.fine("spilled " + keys.length + " entries to " + run);
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+            sums.clear();
+        }
+    }
+
+    /**
+     * Opens a compressed stream for writing entries to the run file.
+     */
+    private static DataOutputStream openRun(File run) throws IOException {
+        return new DataOutputStream(
+            new BufferedOutputStream(new DeflaterOutputStream(
+                new FileOutputStream(run),
+                new Deflater(Deflater.BEST_SPEED), 1 << 16)));
+    }
+
+    /**
+     * Writes the non-negative value using a variable-length encoding of seven
+     * bits per byte.
+     */
+    private static void writeVarLong(DataOutputStream out, long v)
+            throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int)v);
+    }
+
+    /**
+     * A reader over the sorted entries of one run file.
+     */
+    private static class RunReader implements Comparable<RunReader> {
+
+        private final DataInputStream in;
+
+        /**
+         * The key of the current entry.
+         */
+        long key;
+
+        /**
+         * The value of the current entry.
+         */
+        double value;
+
+        public RunReader(File run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(run)), 1 << 16));
+            key = 0;
+        }
+
+        /**
+         * Advances to the next entry, returning {@code false} and closing the
+         * file if no entries remain.
+         */
+        public boolean advance() throws IOException {
+            long delta = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.read();
+                if (b < 0) {
+                    if (shift != 0)
+                        throw new EOFException("Truncated run file");
+                    in.close();
+                    return false;
+                }
+                delta |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            key += delta;
+            value = in.readDouble();
+            return true;
+        }
+
+        public int compareTo(RunReader r) {
+            return (key < r.key) ? -1 : (key == r.key) ? 0 : 1;
+        }
+    }
+
+    /**
+     * A k-way merge of sorted runs, which sums the values of any keys that
+     * appear in multiple runs.
+     */
+    private static class RunMerger {
+
+        private final PriorityQueue<RunReader> readers;
+
+        /**
+         * The current key.
+         */
+        long key;
+
+        /**
+         * The summed value of the current key.
+         */
+        double sum;
+
+        public RunMerger(List<File> runFiles) throws IOException {
+            readers = new PriorityQueue<RunReader>(
+                Math.max(1, runFiles.size()));
+            for (File f : runFiles) {
+                RunReader r = new RunReader(f);
+                if (r.advance())
+                    readers.add(r);
+            }
+        }
+
+        /**
+         * Advances to the next key with a non-zero sum, returning {@code
+         * false} if all the runs have been merged.
+         */
+        public boolean advance() throws IOException {
+            while (!readers.isEmpty()) {
+                RunReader r = readers.poll();
+                key = r.key;
+                sum = r.value;
+                if (r.advance())
+                    readers.add(r);
+                while (!readers.isEmpty() && readers.peek().key == key) {
+                    r = readers.poll();
+                    sum += r.value;
+                    if (r.advance())
+                        readers.add(r);
+                }
+                if (sum != 0)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An iterator over the merged entries of the runs.
+     */
+    private class MergingIterator implements Iterator<MatrixEntry> {
+
+        private final RunMerger merger;
+
+        private MatrixEntry next;
+
+        public MergingIterator(List<File> runFiles) throws IOException {
+            merger = new RunMerger(runFiles);
+            next = advance();
+        }
+
+        /**
+         * Returns the next entry, or {@code null} if all the runs have been
+         * merged.
+         */
+        private MatrixEntry advance() throws IOException {
+            if (!merger.advance())
+                return null;
+            int major = (int)(merger.key >>> 32);
+            int minor = (int)merger.key;
+            return (columnMajor)
+                ? new SimpleEntry(minor, major, merger.sum)
+                : new SimpleEntry(major, minor, merger.sum);
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public MatrixEntry next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            MatrixEntry e = next;
+            try {
+                next = advance();
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+            return e;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -112,7 +112,9 @@ class SvdlibcSparseBinaryFileRowIterator
      * Sets {@code next} to be the next row in the data matrix.
      */
     private void advance() throws IOException {        
-        if (entry >= nzEntriesInMatrix) {
+        // Check the column count rather than the number of entries read, so
+        // that any trailing empty columns are still returned
+        if (curCol >= cols) {
             next = null;
         }
         else {
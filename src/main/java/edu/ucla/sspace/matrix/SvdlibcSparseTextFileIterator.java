@@ -89,8 +89,8 @@ class SvdlibcSparseTextFileIterator implements Iterator<MatrixEntry> {
             return null;
 
         // Check that there are still non zero values to read for the current
-        // row.  If not, advance to the next row.
-        if (curNonZeros == 0) {
+        // row.  If not, advance to the next row, skipping any that are empty.
+        while (curNonZeros == 0) {
             curCol++;
 
             // If the last row has been read, return null.
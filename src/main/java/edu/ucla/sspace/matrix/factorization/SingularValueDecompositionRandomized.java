@@ -0,0 +1,699 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix.factorization;
+
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.MatrixBuilder;
+import edu.ucla.sspace.matrix.MatrixEntry;
+import edu.ucla.sspace.matrix.MatrixFile;
+import edu.ucla.sspace.matrix.SparseMatrix;
+import edu.ucla.sspace.matrix.SvdlibcSparseBinaryMatrixBuilder;
+
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.SparseDoubleVector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import java.util.logging.Logger;
+
+import static edu.ucla.sspace.util.LoggerUtil.verbose;
+
+
+/**
+ * A pure Java implementation of the truncated Singular Value Decomposition
+ * using randomized projections.  See the following paper for details of the
+ * algorithm:
+ *
+ * <ul> <li style="font-family:Garamond, Georgia, serif"> N. Halko, P. G.
+ *   Martinsson, and J. A. Tropp. Finding structure with randomness:
+ *   Probabilistic algorithms for constructing approximate matrix
+ *   decompositions.  <i>SIAM Review</i>, 53(2):217-288, 2011.</li> </ul>
+ *
+ * <p> The decomposition first finds an orthonormal basis {@code Q} whose span
+ * approximates the range of the matrix {@code A} by multiplying {@code A} by a
+ * small number of random Gaussian vectors.  The accuracy of the basis is
+ * improved with a number of power iterations, each of which alternately
+ * multiplies the basis by {@code A}<sup>T</sup> and {@code A}.  The SVD is
+ * then computed exactly for the small matrix {@code Q}<sup>T</sup>{@code A}.
+ *
+ * <p> The input matrix is only ever accessed through products with thin dense
+ * matrices, so it is never converted to a dense representation.  A {@link
+ * SparseMatrix} is multiplied in parallel using its rows, while a {@link
+ * MatrixFile} is streamed from disk once per product, with batches of its
+ * entries multiplied in parallel.  The memory required is therefore
+ * proportional to {@code (rows + columns) * (k + oversampling)}, plus the
+ * input matrix itself if it is provided as a {@code SparseMatrix}.
+ *
+ * <p> Two parameters trade off accuracy and speed.  The oversampling is the
+ * number of random vectors used beyond the requested number of dimensions, and
+ * the number of power iterations controls how many extra passes over the
+ * matrix are made.  Matrices whose singular values decay slowly, such as most
+ * term-document matrices, benefit from more power iterations.
+ *
+ * <p> This class does not require any external programs or libraries and is
+ * therefore always available.
+ *
+ * @see SVD.Algorithm#RANDOMIZED
+ */
+public class SingularValueDecompositionRandomized extends AbstractSvd
+        implements SingularValueDecomposition, java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG =
+        Logger.getLogger(SingularValueDecompositionRandomized.class.getName());
+
+    /**
+     * The default number of random vectors used beyond the number of requested
+     * dimensions.
+     */
+    public static final int DEFAULT_OVERSAMPLING = 10;
+
+    /**
+     * The default number of power iterations.
+     */
+    public static final int DEFAULT_POWER_ITERATIONS = 2;
+
+    /**
+     * The number of entries from a {@link MatrixFile} that are multiplied as a
+     * single task.
+     */
+    private static final int ENTRY_BATCH_SIZE = 1 << 16;
+
+    /**
+     * Eigenvalues smaller than this fraction of the largest eigenvalue are
+     * treated as zero when orthonormalizing a basis.
+     */
+    private static final double RANK_TOLERANCE = 1e-12;
+
+    /**
+     * The number of random vectors used beyond the number of requested
+     * dimensions.
+     */
+    private final int oversampling;
+
+    /**
+     * The number of power iterations.
+     */
+    private final int powerIterations;
+
+    /**
+     * The seed used to generate the random vectors.
+     */
+    private final long seed;
+
+    /**
+     * The work queue used to parallelize the matrix multiplications.
+     */
+    private transient WorkQueue workQueue;
+
+    /**
+     * Creates a new {@code SingularValueDecompositionRandomized} with the
+     * default oversampling and number of power iterations.
+     */
+    public SingularValueDecompositionRandomized() {
+        this(DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS);
+    }
+
+    /**
+     * Creates a new {@code SingularValueDecompositionRandomized} with the
+     * specified oversampling and number of power iterations.
+     *
+     * @param oversampling the number of random vectors to use beyond the
+     *        number of requested dimensions
+     * @param powerIterations the number of power iterations to use in refining
+     *        the approximate range of the matrix
+     */
+    public SingularValueDecompositionRandomized(int oversampling,
+                                                int powerIterations) {
+        this(oversampling, powerIterations, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a new {@code SingularValueDecompositionRandomized} with the
+     * specified oversampling and number of power iterations, using the seed to
+     * generate the random projections.
+     *
+     * @param oversampling the number of random vectors to use beyond the
+     *        number of requested dimensions
+     * @param powerIterations the number of power iterations to use in refining
+     *        the approximate range of the matrix
+     * @param seed the seed for the random projections
+     */
+    public SingularValueDecompositionRandomized(int oversampling,
+                                                int powerIterations,
+                                                long seed) {
+        if (oversampling < 0)
+            throw new IllegalArgumentException(
+                "oversampling must be non-negative: " + oversampling);
+        if (powerIterations < 0)
+            throw new IllegalArgumentException(
+                "power iterations must be non-negative: " + powerIterations);
+        this.oversampling = oversampling;
+        this.powerIterations = powerIterations;
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void factorize(SparseMatrix matrix, int dimensions) {
+        factorize(new SparseMatrixOperator(matrix), dimensions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void factorize(MatrixFile mFile, int dimensions) {
+        try {
+            factorize(new MatrixFileOperator(mFile), dimensions);
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public MatrixBuilder getBuilder() {
+        return new SvdlibcSparseBinaryMatrixBuilder();
+    }
+
+    /**
+     * Computes the truncated SVD of the matrix represented by the operator.
+     */
+    private void factorize(Operator a, int dimensions) {
+        if (dimensions < 1)
+            throw new IllegalArgumentException(
+                "Must compute at least one dimension: " + dimensions);
+        if (workQueue == null)
+            workQueue = WorkQueue.getWorkQueue();
+        int rows = a.rows();
+        int cols = a.columns();
+        int samples = Math.min(dimensions + oversampling,
+                               Math.min(rows, cols));
+        verbose(LOG, "Computing randomized SVD of %d x %d matrix using %d " +
+                "random vectors and %d power iterations", rows, cols, samples,
+                powerIterations);
+
+        // Project the matrix onto random Gaussian vectors to sample its range
+        Random random = new Random(seed);
+        double[][] omega = new double[cols][samples];
+        for (double[] row : omega)
+            for (int j = 0; j < samples; ++j)
+                row[j] = random.nextGaussian();
+        double[][] y = new double[rows][samples];
+        a.multiply(omega, y);
+        omega = null;
+
+        // Refine the basis using power iterations, orthonormalizing between
+        // each multiplication to avoid losing the smaller singular vectors to
+        // round-off error
+        for (int i = 0; i < powerIterations; ++i) {
+            verbose(LOG, "Power iteration %d/%d", i + 1, powerIterations);
+            double[][] q = orthonormalize(y);
+            double[][] z = new double[cols][q[0].length];
+            a.transposeMultiply(q, z);
+            z = orthonormalize(z);
+            y = new double[rows][z[0].length];
+            a.multiply(z, y);
+        }
+        double[][] q = orthonormalize(y);
+        y = null;
+        int basisSize = q[0].length;
+
+        // Compute B^T = A^T * Q, where B = Q^T * A is the small matrix whose
+        // SVD is computed exactly.  The eigenvectors of B * B^T are the left
+        // singular vectors of B, and the square roots of its eigenvalues are
+        // the singular values.
+        double[][] bt = new double[cols][basisSize];
+        a.transposeMultiply(q, bt);
+        double[][] gram = gram(bt);
+        double[] eigenvalues = new double[basisSize];
+        double[][] eigenvectors = symmetricEigen(gram, eigenvalues);
+
+        // U = Q * W and V = B^T * W * S^-1, truncated to the requested number
+        // of dimensions
+        int k = Math.min(dimensions, basisSize);
+        singularValues = new double[dimensions];
+        double[][] w = new double[basisSize][k];
+        double[][] wScaled = new double[basisSize][k];
+        for (int j = 0; j < k; ++j) {
+            double sigma = Math.sqrt(Math.max(eigenvalues[j], 0));
+            singularValues[j] = sigma;
+            for (int i = 0; i < basisSize; ++i) {
+                w[i][j] = eigenvectors[i][j];
+                wScaled[i][j] = (sigma == 0) ? 0 : eigenvectors[i][j] / sigma;
+            }
+        }
+        double[][] u = multiply(q, w);
+        double[][] v = multiply(bt, wScaled);
+
+        // Any dimensions beyond the rank of the matrix are left as zero
+        Matrix left = new ArrayMatrix(rows, dimensions);
+        for (int r = 0; r < rows; ++r)
+            for (int j = 0; j < k; ++j)
+                left.set(r, j, u[r][j]);
+        Matrix right = new ArrayMatrix(dimensions, cols);
+        for (int c = 0; c < cols; ++c)
+            for (int j = 0; j < k; ++j)
+                right.set(j, c, v[c][j]);
+        U = left;
+        V = right;
+        scaledDataClasses = false;
+        scaledClassFeatures = false;
+    }
+
+    /**
+     * Returns an orthonormal basis for the column space of {@code x}.  The
+     * basis is computed as {@code x * W * L}<sup>-1/2</sup>, where {@code W}
+     * and {@code L} are the eigenvectors and eigenvalues of {@code x}<sup>T
+     * </sup>{@code x}.  This is repeated once more on the result to recover the
+     * orthogonality lost to round-off error.  Columns corresponding to
+     * numerically zero eigenvalues are dropped, so the returned basis may have
+     * fewer columns than {@code x}.
+     */
+    private double[][] orthonormalize(double[][] x) {
+        return orthonormalizeOnce(orthonormalizeOnce(x));
+    }
+
+    /**
+     * Performs a single round of orthonormalization.
+     */
+    private double[][] orthonormalizeOnce(double[][] x) {
+        int cols = x[0].length;
+        double[] eigenvalues = new double[cols];
+        double[][] eigenvectors = symmetricEigen(gram(x), eigenvalues);
+        int rank = 0;
+        while (rank < cols && eigenvalues[rank] > 0
+                   && eigenvalues[rank] > eigenvalues[0] * RANK_TOLERANCE)
+            rank++;
+        // Guard against an all-zero matrix, which still needs a basis vector
+        if (rank == 0)
+            rank = 1;
+        double[][] t = new double[cols][rank];
+        for (int j = 0; j < rank; ++j) {
+            double scale = (eigenvalues[j] > 0)
+                ? 1 / Math.sqrt(eigenvalues[j]) : 0;
+            for (int i = 0; i < cols; ++i)
+                t[i][j] = eigenvectors[i][j] * scale;
+        }
+        return multiply(x, t);
+    }
+
+    /**
+     * Returns {@code x}<sup>T</sup>{@code x}, computed in parallel over blocks
+     * of the rows of {@code x}.
+     */
+    private double[][] gram(final double[][] x) {
+        final int n = x[0].length;
+        final double[][] g = new double[n][n];
+        parallelFor(x.length, new RangeTask() {
+                public void run(int start, int end) {
+                    double[][] partial = new double[n][n];
+                    for (int r = start; r < end; ++r) {
+                        double[] row = x[r];
+                        for (int i = 0; i < n; ++i) {
+                            double ri = row[i];
+                            if (ri == 0)
+                                continue;
+                            double[] p = partial[i];
+                            for (int j = i; j < n; ++j)
+                                p[j] += ri * row[j];
+                        }
+                    }
+                    synchronized (g) {
+                        for (int i = 0; i < n; ++i)
+                            for (int j = i; j < n; ++j)
+                                g[i][j] += partial[i][j];
+                    }
+                }
+            });
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < i; ++j)
+                g[i][j] = g[j][i];
+        return g;
+    }
+
+    /**
+     * Returns {@code x * t}, computed in parallel over blocks of the rows of
+     * {@code x}.
+     */
+    private double[][] multiply(final double[][] x, final double[][] t) {
+        final int inner = t.length;
+        final int cols = t[0].length;
+        final double[][] out = new double[x.length][cols];
+        parallelFor(x.length, new RangeTask() {
+                public void run(int start, int end) {
+                    for (int r = start; r < end; ++r) {
+                        double[] row = x[r];
+                        double[] o = out[r];
+                        for (int i = 0; i < inner; ++i) {
+                            double ri = row[i];
+                            if (ri == 0)
+                                continue;
+                            double[] ti = t[i];
+                            for (int j = 0; j < cols; ++j)
+                                o[j] += ri * ti[j];
+                        }
+                    }
+                }
+            });
+        return out;
+    }
+
+    /**
+     * Computes the eigendecomposition of the symmetric matrix using the cyclic
+     * Jacobi method, storing the eigenvalues in descending order in {@code
+     * eigenvalues} and returning the corresponding eigenvectors as the columns
+     * of the returned matrix.  The input matrix is overwritten.
+     */
+    static double[][] symmetricEigen(double[][] a, double[] eigenvalues) {
+        int n = a.length;
+        double[][] v = new double[n][n];
+        for (int i = 0; i < n; ++i)
+            v[i][i] = 1;
+
+        for (int sweep = 0; sweep < 100; ++sweep) {
+            double offDiagonal = 0;
+            double diagonal = 0;
+            for (int i = 0; i < n; ++i) {
+                diagonal += a[i][i] * a[i][i];
+                for (int j = i + 1; j < n; ++j)
+                    offDiagonal += a[i][j] * a[i][j];
+            }
+            if (offDiagonal <= 1e-30 * diagonal || offDiagonal == 0)
+                break;
+
+            for (int p = 0; p < n - 1; ++p) {
+                for (int q = p + 1; q < n; ++q) {
+                    double apq = a[p][q];
+                    if (apq == 0)
+                        continue;
+                    // Compute the rotation that zeros a[p][q]
+                    double theta = (a[q][q] - a[p][p]) / (2 * apq);
+                    double t = Math.signum(theta)
+                        / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    if (theta == 0)
+                        t = 1;
+                    double c = 1 / Math.sqrt(t * t + 1);
+                    double s = t * c;
+                    for (int k = 0; k < n; ++k) {
+                        double akp = a[k][p];
+                        double akq = a[k][q];
+                        a[k][p] = c * akp - s * akq;
+                        a[k][q] = s * akp + c * akq;
+                    }
+                    for (int k = 0; k < n; ++k) {
+                        double apk = a[p][k];
+                        double aqk = a[q][k];
+                        a[p][k] = c * apk - s * aqk;
+                        a[q][k] = s * apk + c * aqk;
+                    }
+                    for (int k = 0; k < n; ++k) {
+                        double vkp = v[k][p];
+                        double vkq = v[k][q];
+                        v[k][p] = c * vkp - s * vkq;
+                        v[k][q] = s * vkp + c * vkq;
+                    }
+                }
+            }
+        }
+
+        // Sort the eigenpairs by decreasing eigenvalue
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; ++i)
+            order[i] = i;
+        final double[][] diag = a;
+        Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer i, Integer j) {
+                    return Double.compare(diag[j][j], diag[i][i]);
+                }
+            });
+        double[][] sorted = new double[n][n];
+        for (int j = 0; j < n; ++j) {
+            eigenvalues[j] = a[order[j]][order[j]];
+            for (int i = 0; i < n; ++i)
+                sorted[i][j] = v[i][order[j]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Runs the task over the range {@code [0, n)} by splitting it into blocks
+     * that are processed in parallel, returning once all blocks are done.
+     */
+    private void parallelFor(int n, final RangeTask task) {
+        int numBlocks = Math.max(1, Math.min(n, 4 * workQueue.availableThreads()));
+        int blockSize = (n + numBlocks - 1) / numBlocks;
+        List<Runnable> tasks = new ArrayList<Runnable>(numBlocks);
+        for (int start = 0; start < n; start += blockSize) {
+            final int s = start;
+            final int e = Math.min(n, start + blockSize);
+            tasks.add(new Runnable() {
+                    public void run() {
+                        task.run(s, e);
+                    }
+                });
+        }
+        workQueue.run(tasks);
+    }
+
+    /**
+     * A task that processes a contiguous range of indices.
+     */
+    private interface RangeTask {
+        void run(int start, int end);
+    }
+
+    /**
+     * Adds {@code scale * x} to {@code out}, holding the lock on {@code out}
+     * since other threads may be updating the same row.
+     */
+    private static void addScaled(double[] out, double scale, double[] x) {
+        synchronized (out) {
+            for (int j = 0; j < out.length; ++j)
+                out[j] += scale * x[j];
+        }
+    }
+
+    /**
+     * The operations of a matrix that are needed by the decomposition.
+     */
+    private interface Operator {
+
+        int rows();
+
+        int columns();
+
+        /**
+         * Sets {@code out} to the product of the matrix and {@code x}.
+         */
+        void multiply(double[][] x, double[][] out);
+
+        /**
+         * Sets {@code out} to the product of the transpose of the matrix and
+         * {@code x}.
+         */
+        void transposeMultiply(double[][] x, double[][] out);
+    }
+
+    /**
+     * An {@link Operator} for a {@link SparseMatrix} that multiplies the rows
+     * of the matrix in parallel.
+     */
+    private class SparseMatrixOperator implements Operator {
+
+        private final SparseMatrix m;
+
+        public SparseMatrixOperator(SparseMatrix m) {
+            this.m = m;
+        }
+
+        public int rows() {
+            return m.rows();
+        }
+
+        public int columns() {
+            return m.columns();
+        }
+
+        public void multiply(final double[][] x, final double[][] out) {
+            final int width = x[0].length;
+            parallelFor(m.rows(), new RangeTask() {
+                    public void run(int start, int end) {
+                        for (int r = start; r < end; ++r) {
+                            SparseDoubleVector row = m.getRowVector(r);
+                            double[] o = out[r];
+                            for (int c : row.getNonZeroIndices()) {
+                                double value = row.get(c);
+                                double[] xc = x[c];
+                                for (int j = 0; j < width; ++j)
+                                    o[j] += value * xc[j];
+                            }
+                        }
+                    }
+                });
+        }
+
+        public void transposeMultiply(final double[][] x,
+                                      final double[][] out) {
+            parallelFor(m.rows(), new RangeTask() {
+                    public void run(int start, int end) {
+                        for (int r = start; r < end; ++r) {
+                            SparseDoubleVector row = m.getRowVector(r);
+                            for (int c : row.getNonZeroIndices())
+                                addScaled(out[c], row.get(c), x[r]);
+                        }
+                    }
+                });
+        }
+    }
+
+    /**
+     * An {@link Operator} for a {@link MatrixFile} that streams the entries of
+     * the file for each product, multiplying batches of entries in parallel.
+     */
+    private class MatrixFileOperator implements Operator {
+
+        private final MatrixFile mFile;
+
+        private final int rows;
+
+        private final int columns;
+
+        public MatrixFileOperator(MatrixFile mFile) throws IOException {
+            this.mFile = mFile;
+            int[] dims = readDimensions(mFile);
+            rows = dims[0];
+            columns = dims[1];
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        public int columns() {
+            return columns;
+        }
+
+        public void multiply(double[][] x, double[][] out) {
+            stream(x, out, false);
+        }
+
+        public void transposeMultiply(double[][] x, double[][] out) {
+            stream(x, out, true);
+        }
+
+        /**
+         * Reads the entries of the file in batches and adds each entry's
+         * contribution to the product, processing as many batches at once as
+         * there are threads.
+         */
+        private void stream(final double[][] x, final double[][] out,
+                            final boolean transpose) {
+            int numThreads = workQueue.availableThreads();
+            Iterator<MatrixEntry> it = mFile.iterator();
+            while (it.hasNext()) {
+                List<Runnable> tasks = new ArrayList<Runnable>(numThreads);
+                for (int t = 0; t < numThreads && it.hasNext(); ++t) {
+                    final int[] entryRows = new int[ENTRY_BATCH_SIZE];
+                    final int[] entryCols = new int[ENTRY_BATCH_SIZE];
+                    final double[] values = new double[ENTRY_BATCH_SIZE];
+                    int n = 0;
+                    for (; n < ENTRY_BATCH_SIZE && it.hasNext(); ++n) {
+                        MatrixEntry e = it.next();
+                        entryRows[n] = e.row();
+                        entryCols[n] = e.column();
+                        values[n] = e.value();
+                    }
+                    final int size = n;
+                    tasks.add(new Runnable() {
+                            public void run() {
+                                for (int i = 0; i < size; ++i) {
+                                    if (transpose)
+                                        addScaled(out[entryCols[i]], values[i],
+                                                  x[entryRows[i]]);
+                                    else
+                                        addScaled(out[entryRows[i]], values[i],
+                                                  x[entryCols[i]]);
+                                }
+                            }
+                        });
+                }
+                workQueue.run(tasks);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows and columns in the matrix file.  The SVDLIBC
+     * formats record the dimensions in their header, while for all other
+     * formats the dimensions are determined by the largest row and column
+     * indices that have entries.
+     */
+    private static int[] readDimensions(MatrixFile mFile) throws IOException {
+        switch (mFile.getFormat()) {
+        case SVDLIBC_SPARSE_BINARY:
+        case SVDLIBC_DENSE_BINARY: {
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(mFile.getFile())));
+            int[] dims = new int[] { dis.readInt(), dis.readInt() };
+            dis.close();
+            return dims;
+        }
+        case SVDLIBC_SPARSE_TEXT:
+        case SVDLIBC_DENSE_TEXT: {
+            BufferedReader br =
+                new BufferedReader(new FileReader(mFile.getFile()));
+            String[] header = br.readLine().trim().split("\\s+");
+            br.close();
+            return new int[] { Integer.parseInt(header[0]),
+                               Integer.parseInt(header[1]) };
+        }
+        default: {
+            int rows = 0;
+            int cols = 0;
+            for (MatrixEntry e : mFile) {
+                rows = Math.max(rows, e.row() + 1);
+                cols = Math.max(cols, e.column() + 1);
+            }
+            return new int[] { rows, cols };
+        }
+        }
+    }
+}
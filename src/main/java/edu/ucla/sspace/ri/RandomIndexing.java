@@ -25,6 +25,7 @@ import edu.ucla.sspace.common.Filterable;
 import edu.ucla.sspace.common.SemanticSpace;
 
 import edu.ucla.sspace.index.IntegerVectorGenerator;
+import edu.ucla.sspace.index.MappedPermutationFunction;
 import edu.ucla.sspace.index.PermutationFunction;
 import edu.ucla.sspace.index.RandomIndexVectorGenerator;
 import edu.ucla.sspace.index.TernaryPermutationFunction;
@@ -40,15 +41,24 @@ import edu.ucla.sspace.vector.TernaryVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.Vectors;
 
+import edu.ucla.sspace.util.ConcurrentIndexer;
+import edu.ucla.sspace.util.IndexedCache;
+
+import edu.ucla.sspace.util.primitive.IntIterator;
+
+import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 
 import java.lang.reflect.Constructor;
 
-import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Queue;
@@ -56,6 +66,7 @@ import java.util.Random;
 import java.util.Set;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static edu.ucla.sspace.util.Properties.getBoolean;
 import static edu.ucla.sspace.util.Properties.getInt;
@@ -166,6 +177,23 @@ import static edu.ucla.sspace.util.Properties.getLong;
  *       in a large saving in memory, while requiring more time to process each
  *       document.<p>
  *
+ * <dt> <i>Property:</i> <code><b>{@value #USE_BUFFERED_ACCUMULATION_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code false} 
+ *
+ * <dd style="padding-top: .5em">This property specifies whether each thread
+ *       should sum the index vectors for the words it sees into a private
+ *       buffer and merge the buffered counts into the shared semantic vectors
+ *       in batches, rather than locking a word's semantic vector for every
+ *       co-occurrence.  The resulting semantics are identical in both cases,
+ *       but enabling this option greatly reduces the contention on frequent
+ *       words when many threads are processing documents concurrently.  Note
+ *       that with this option enabled, the changes made by a document are only
+ *       visible through {@link #getVector(String) getVector} once its thread's
+ *       buffer has been merged, which happens when the buffer fills and for
+ *       all remaining co-occurrences when {@link #processSpace(Properties)
+ *       processSpace} is called.<p>
+ *
  * </dl> <p>
  *
  * This class implements {@link Filterable}, which allows for fine-grained
@@ -183,8 +211,9 @@ import static edu.ucla.sspace.util.Properties.getLong;
  * incremental changes to the semantics as the corpus is processed.  <p>
  *
  * The {@link #processSpace(Properties) processSpace} method does nothing for
- * this class and calls to it will not affect the results of {@code
- * getVectorFor}.
+ * this class unless buffered accumulation is enabled, in which case it merges
+ * the co-occurrences still buffered by each thread into the semantic
+ * vectors.
  *
  * @see PermutationFunction
  * @see IndexVectorGenerator
@@ -245,6 +274,14 @@ public class RandomIndexing implements SemanticSpace, Filterable {
     public static final String RANDOM_SEED_PROPERTY = 
         PROPERTY_PREFIX + ".randomSeed";
 
+    /**
+     * Specifies whether each thread should accumulate co-occurrences in a
+     * private buffer that is merged into the shared semantic vectors in
+     * batches, rather than locking the semantic vector for every co-occurrence.
+     */
+    public static final String USE_BUFFERED_ACCUMULATION_PROPERTY = 
+        PROPERTY_PREFIX + ".bufferedAccumulation";
+
     /**
      * The default number of words to view before and after each word in focus.
      */
@@ -255,7 +292,16 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      * vectors.
      */
     public static final int DEFAULT_VECTOR_LENGTH = 4000;
-    
+
+    /**
+     * The maximum number of distinct focus words whose co-occurrences are
+     * buffered by a single thread before being merged into the shared semantic
+     * vectors, when buffered accumulation is enabled.  The buffer is kept
+     * across documents, so a thread only merges when it reaches this limit or
+     * when {@link #processSpace(Properties) processSpace} is called.
+     */
+    private static final int MAX_BUFFERED_WORDS = 4096;
+
     /**
      * A private source of randomization used for creating the index vectors.
      */
@@ -271,6 +317,19 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      */
     private final Map<String,TernaryVector> wordToIndexVector;
 
+    /**
+     * The identifiers of the tokens seen so far, which key {@code
+     * indexVectorCache} and are mapped back to words for {@code
+     * wordToMeaning}.
+     */
+    private final ConcurrentIndexer<String> tokenIndexer;
+
+    /**
+     * The index vector of each token identifier, which spares hashing the
+     * word each time it appears in a context window.
+     */
+    private final IndexedCache<TernaryVector> indexVectorCache;
+
     /**
      * A mapping from each word to the vector the represents its semantics
      */
@@ -298,6 +357,13 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      */
     private final PermutationFunction<TernaryVector> permutationFunc;
 
+    /**
+     * The permutation function if it can provide its permutations as
+     * mappings, which allows the permuted index vectors to be added to the
+     * semantics without creating a new vector, or {@code null} otherwise.
+     */
+    private final MappedPermutationFunction<?> mappedPermutationFunc;
+
     /**
      * A flag for whether this instance should use {@code SparseIntegerVector}
      * instances for representic a word's semantics, which saves space but
@@ -305,6 +371,35 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      */
     private final boolean useSparseSemantics;
 
+    /**
+     * A flag for whether co-occurrences should be summed in a per-thread buffer
+     * and merged into the semantic vectors in batches.
+     */
+    private final boolean useBufferedAccumulation;
+
+    /**
+     * Every buffer created by {@link #threadBuffer}, which allows {@link
+     * #processSpace(Properties) processSpace} to merge the co-occurrences left
+     * in the buffers of threads that have finished processing.
+     */
+    private final Queue<TIntObjectHashMap<TIntIntHashMap>> threadBuffers = 
+        new ConcurrentLinkedQueue<TIntObjectHashMap<TIntIntHashMap>>();
+
+    /**
+     * The buffer of co-occurrences for each thread that processes documents,
+     * mapping a focus word's token identifier to the summed index vectors of
+     * its context, when buffered accumulation is enabled.
+     */
+    private final ThreadLocal<TIntObjectHashMap<TIntIntHashMap>> threadBuffer =
+        new ThreadLocal<TIntObjectHashMap<TIntIntHashMap>>() {
+            protected TIntObjectHashMap<TIntIntHashMap> initialValue() {
+                TIntObjectHashMap<TIntIntHashMap> buffer = 
+                    new TIntObjectHashMap<TIntIntHashMap>();
+                threadBuffers.add(buffer);
+                return buffer;
+            }
+        };
+
     /**
      * An optional set of words that restricts the set of semantic vectors that
      * this instance will retain.
@@ -346,6 +441,7 @@ public class RandomIndexing implements SemanticSpace, Filterable {
         permutationFunc = (permutationFuncProp != null)
             ? loadPermutationFunction(permutationFuncProp)
             : new TernaryPermutationFunction();
+        mappedPermutationFunc = asMapped(permutationFunc);
 
         RandomIndexVectorGenerator indexVectorGenerator = 
             new RandomIndexVectorGenerator(vectorLength, properties);
@@ -355,6 +451,9 @@ public class RandomIndexing implements SemanticSpace, Filterable {
         useSparseSemantics = (useSparseProp != null)
             ? Boolean.parseBoolean(useSparseProp)
             : true;
+
+        useBufferedAccumulation = 
+            getBoolean(properties, USE_BUFFERED_ACCUMULATION_PROPERTY, false);
         
         long randomSeed =
             (properties.getProperty(RANDOM_SEED_PROPERTY) != null)
@@ -365,6 +464,8 @@ public class RandomIndexing implements SemanticSpace, Filterable {
         wordToIndexVector = new GeneratorMap<TernaryVector>(
                 indexVectorGenerator);
         wordToMeaning = new ConcurrentHashMap<String,IntegerVector>();
+        tokenIndexer = new ConcurrentIndexer<String>();
+        indexVectorCache = new IndexedCache<TernaryVector>();
         semanticFilter = new HashSet<String>();
     }
 
@@ -381,13 +482,15 @@ public class RandomIndexing implements SemanticSpace, Filterable {
              getBoolean(properties, USE_SPARSE_SEMANTICS_PROPERTY, true),
              getLong(properties, RANDOM_SEED_PROPERTY,
                     System.currentTimeMillis()),
+             getBoolean(properties, USE_BUFFERED_ACCUMULATION_PROPERTY, false),
              properties);
     }
 
     /**
      * Creates a new {@code RandomIndexing} instance using the provided
      * parameters for configuration, passing on the additiona {@link Properties}
-     * to any components.
+     * to any components.  Co-occurrences are added directly to the shared
+     * semantic vectors.
      *
      * @param vectorLength The number of dimensions for the semantic and index
      *        vectors.
@@ -410,6 +513,41 @@ public class RandomIndexing implements SemanticSpace, Filterable {
                           PermutationFunction permutationFunc,
                           boolean useSparseSemantics,
                           long randomSeed, Properties otherProps) {
+        this(vectorLength, windowSize, usePermutations, permutationFunc,
+             useSparseSemantics, randomSeed, false, otherProps);
+    }
+
+    /**
+     * Creates a new {@code RandomIndexing} instance using the provided
+     * parameters for configuration, passing on the additiona {@link Properties}
+     * to any components.
+     *
+     * @param vectorLength The number of dimensions for the semantic and index
+     *        vectors.
+     * @param windowSize The number of words to view before and after each focus
+     *        word in a window.
+     * @param usePermutations Whether the index vectors for co-occurrent words
+     *        should be permuted based on their relative position.
+     * @param permutationFunc If permutations are enabled, the permutation
+     *        function to use on the index vectors.
+     * @param useSparseSemantics whether this instance should use {@code
+     *        SparseIntegerVector} instances for representic a word's semantics,
+     *        which saves space but requires more computation.
+     * @param randomSeed the random value used to seed the source of randomness
+     *        for this class and all randomized methods in its dependencies.
+     * @param useBufferedAccumulation whether each thread should sum the
+     *        co-occurrences into a private buffer that is merged into the
+     *        semantic vectors in batches
+     * @param otherProps additional properties that will be provided to any
+     *        configurable members of this class.
+     */
+    public RandomIndexing(int vectorLength, int windowSize,
+                          boolean usePermutations,
+                          PermutationFunction permutationFunc,
+                          boolean useSparseSemantics,
+                          long randomSeed,
+                          boolean useBufferedAccumulation,
+                          Properties otherProps) {
         if (permutationFunc == null) {
             throw new NullPointerException("permutationFunc cannot be null");
         }
@@ -417,7 +555,9 @@ public class RandomIndexing implements SemanticSpace, Filterable {
         this.windowSize = windowSize;
         this.usePermutations = usePermutations;
         this.permutationFunc = permutationFunc;        
+        this.mappedPermutationFunc = asMapped(permutationFunc);
         this.useSparseSemantics = useSparseSemantics;
+        this.useBufferedAccumulation = useBufferedAccumulation;
         RANDOM.setSeed(randomSeed);
 
         RandomIndexVectorGenerator indexVectorGenerator = 
@@ -425,9 +565,22 @@ public class RandomIndexing implements SemanticSpace, Filterable {
         wordToIndexVector = new GeneratorMap<TernaryVector>(
                 indexVectorGenerator);
         wordToMeaning = new ConcurrentHashMap<String,IntegerVector>();
+        tokenIndexer = new ConcurrentIndexer<String>();
+        indexVectorCache = new IndexedCache<TernaryVector>();
         semanticFilter = new HashSet<String>();       
     }
 
+    /**
+     * Returns the function as a {@link MappedPermutationFunction} if it
+     * supports mappings, or {@code null} otherwise.
+     */
+    private static MappedPermutationFunction<?> asMapped(
+            PermutationFunction<?> permutationFunc) {
+        return (permutationFunc instanceof MappedPermutationFunction)
+            ? (MappedPermutationFunction<?>)permutationFunc
+            : null;
+    }
+
     /**
      * Returns an instance of the the provided class name, that implements
      * {@code PermutationFunction} or an instance of {@link
@@ -543,26 +696,33 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      * @param document {@inheritDoc}
      */
     public void processDocument(BufferedReader document) throws IOException {
-        Queue<String> prevWords = new ArrayDeque<String>(windowSize);
-        Queue<String> nextWords = new ArrayDeque<String>(windowSize);
-
-        Iterator<String> documentTokens = 
-            IteratorFactory.tokenizeOrdered(document);
-
-        String focusWord = null;
+        // The windows hold the identifiers of the tokens so that the index
+        // vectors of the context words may be found without rehashing the
+        // token strings for every position in the window.
+        TIntArrayList prevWords = new TIntArrayList(windowSize + 1);
+        TIntArrayList nextWords = new TIntArrayList(windowSize + 1);
+
+        IntIterator documentTokens = 
+            IteratorFactory.tokenizeOrderedIds(document, tokenIndexer);
+
+        // If buffering is enabled, the co-occurrences for each focus word are
+        // summed in this thread's buffer and only merged into the shared
+        // semantic vectors when the buffer fills or the space is processed.
+        TIntObjectHashMap<TIntIntHashMap> buffer = (useBufferedAccumulation)
+            ? threadBuffer.get()
+            : null;
 
         // prefetch the first windowSize words 
         for (int i = 0; i < windowSize && documentTokens.hasNext(); ++i)
-            nextWords.offer(documentTokens.next());
+            nextWords.add(documentTokens.nextInt());
         
         while (!nextWords.isEmpty()) {
-            focusWord = nextWords.remove();
+            int focusId = nextWords.removeAt(0);
+            String focusWord = getToken(focusId);
 
             // shift over the window to the next word
-            if (documentTokens.hasNext()) {
-                String windowEdge = documentTokens.next(); 
-                nextWords.offer(windowEdge);
-            }    
+            if (documentTokens.hasNext())
+                nextWords.add(documentTokens.nextInt());
 
             // If we are filtering the semantic vectors, check whether this word
             // should have its semantics calculated.  In addition, if there is a
@@ -570,76 +730,134 @@ public class RandomIndexing implements SemanticSpace, Filterable {
             // semantics around
             boolean calculateSemantics =
                 semanticFilter.isEmpty() || semanticFilter.contains(focusWord)
-                && !focusWord.equals(IteratorFactory.EMPTY_TOKEN);
+                && focusId != IteratorFactory.EMPTY_TOKEN_ID;
             
             if (calculateSemantics) {
-                IntegerVector focusMeaning = getSemanticVector(focusWord);
+                IntegerVector focusMeaning = null;
+                TIntIntHashMap focusBuffer = null;
+                if (buffer != null) {
+                    focusBuffer = buffer.get(focusId);
+                    if (focusBuffer == null) {
+                        if (buffer.size() >= MAX_BUFFERED_WORDS)
+                            mergeBuffer(buffer);
+                        focusBuffer = new TIntIntHashMap();
+                        buffer.put(focusId, focusBuffer);
+                    }
+                }
+                else
+                    focusMeaning = getSemanticVector(focusWord);
 
                 // Sum up the index vector for all the surrounding words.  If
                 // permutations are enabled, permute the index vector based on
                 // its relative position to the focus word.
                 int permutations = -(prevWords.size());        
-                for (String word : prevWords) {
+                for (int i = 0; i < prevWords.size(); ++i) {
+                    int wordId = prevWords.getQuick(i);
                     // Skip the addition of any words that are excluded from the
                     // filter set.  Note that by doing the exclusion here, we
                     // ensure that the token stream maintains its existing
                     // ordering, which is necessary when permutations are taken
                     // into account.
-                    if (word.equals(IteratorFactory.EMPTY_TOKEN)) {
+                    if (wordId == IteratorFactory.EMPTY_TOKEN_ID) {
                         ++permutations;
                         continue;
                     }
                     
-                    TernaryVector iv = wordToIndexVector.get(word);
+                    TernaryVector iv = getIndexVector(wordId);
+                    int[] mapping = null;
                     if (usePermutations) {
-                        iv = permutationFunc.permute(iv, permutations);
+                        if (mappedPermutationFunc != null)
+                            mapping = mappedPermutationFunc.getMapping(
+                                permutations, vectorLength);
+                        else
+                            iv = permutationFunc.permute(iv, permutations);
                         ++permutations;
                     }
                     
-                    add(focusMeaning, iv);
+                    if (focusBuffer != null)
+                        add(focusBuffer, iv, mapping);
+                    else
+                        add(focusMeaning, iv, mapping);
                 }
             
                 // Repeat for the words in the forward window.
                 permutations = 1;
-                for (String word : nextWords) {
+                for (int i = 0; i < nextWords.size(); ++i) {
+                    int wordId = nextWords.getQuick(i);
                     // Skip the addition of any words that are excluded from the
                     // filter set.  Note that by doing the exclusion here, we
                     // ensure that the token stream maintains its existing
                     // ordering, which is necessary when permutations are taken
                     // into account.
-                    if (word.equals(IteratorFactory.EMPTY_TOKEN)) {
+                    if (wordId == IteratorFactory.EMPTY_TOKEN_ID) {
                         ++permutations;
                         continue;
                     }
                 
-                    TernaryVector iv = wordToIndexVector.get(word);
+                    TernaryVector iv = getIndexVector(wordId);
+                    int[] mapping = null;
                     if (usePermutations) {
-                        iv = permutationFunc.permute(iv, permutations);
+                        if (mappedPermutationFunc != null)
+                            mapping = mappedPermutationFunc.getMapping(
+                                permutations, vectorLength);
+                        else
+                            iv = permutationFunc.permute(iv, permutations);
                         ++permutations;
                     }
 
-                    add(focusMeaning, iv);
+                    if (focusBuffer != null)
+                        add(focusBuffer, iv, mapping);
+                    else
+                        add(focusMeaning, iv, mapping);
                 }
             }
 
             // Last put this focus word in the prev words and shift off the
             // front of the previous word window if it now contains more words
             // than the maximum window size
-            prevWords.offer(focusWord);
-            if (prevWords.size() > windowSize) {
-                prevWords.remove();
-            }
+            prevWords.add(focusId);
+            if (prevWords.size() > windowSize)
+                prevWords.removeAt(0);
         }    
 
         document.close();
     }
+
+    /**
+     * Returns the token with the provided identifier, or {@link
+     * IteratorFactory#EMPTY_TOKEN} if the identifier denotes a filtered token.
+     */
+    private String getToken(int tokenId) {
+        return (tokenId == IteratorFactory.EMPTY_TOKEN_ID)
+            ? IteratorFactory.EMPTY_TOKEN
+            : tokenIndexer.lookup(tokenId);
+    }
+
+    /**
+     * Returns the index vector for the token with the provided identifier,
+     * caching the vector by identifier so that later requests do not need to
+     * hash the token.
+     */
+    private TernaryVector getIndexVector(int tokenId) {
+        TernaryVector iv = indexVectorCache.get(tokenId);
+        if (iv == null) {
+            iv = wordToIndexVector.get(getToken(tokenId));
+            indexVectorCache.put(tokenId, iv);
+        }
+        return iv;
+    }
     
     /**
-     * Does nothing.
+     * Merges the co-occurrences still buffered by each thread into the semantic
+     * vectors if buffered accumulation is enabled, and otherwise does nothing.
+     * This method should only be called once all documents have been
+     * processed.
      *
      * @param properties {@inheritDoc}
      */
     public void processSpace(Properties properties) {
+        for (TIntObjectHashMap<TIntIntHashMap> buffer : threadBuffers)
+            mergeBuffer(buffer);
     }
 
     /**
@@ -654,6 +872,7 @@ public class RandomIndexing implements SemanticSpace, Filterable {
     public void setWordToIndexVector(Map<String,TernaryVector> m) {
         wordToIndexVector.clear();
         wordToIndexVector.putAll(m);
+        indexVectorCache.clear();
     }
 
     /**
@@ -671,17 +890,72 @@ public class RandomIndexing implements SemanticSpace, Filterable {
     /**
      * Atomically adds the values of the index vector to the semantic vector.
      * This is a special case addition operation that only iterates over the
-     * non-zero values of the index vector.
+     * non-zero values of the index vector.  If {@code mapping} is non-{@code
+     * null}, each value is added to the dimension it specifies, which permutes
+     * the index vector without creating a new vector.
      */
-    private static void add(IntegerVector semantics, TernaryVector index) {
+    private static void add(IntegerVector semantics, TernaryVector index,
+                            int[] mapping) {
         // Lock on the semantic vector to avoid a race condition with another
         // thread updating its semantics.  Use the vector to avoid a class-level
         // lock, which would limit the concurrency.
         synchronized(semantics) {
+            if (mapping == null) {
+                for (int p : index.positiveDimensions())
+                    semantics.add(p, 1);
+                for (int n : index.negativeDimensions())
+                    semantics.add(n, -1);
+            }
+            else {
+                for (int p : index.positiveDimensions())
+                    semantics.add(mapping[p], 1);
+                for (int n : index.negativeDimensions())
+                    semantics.add(mapping[n], -1);
+            }
+        }
+    }
+
+    /**
+     * Adds the values of the index vector to the thread-local buffer of
+     * co-occurrences, permuting them with {@code mapping} if it is non-{@code
+     * null}.  No locking is needed since the buffer is only ever accessed by
+     * its thread while documents are being processed.
+     */
+    private static void add(TIntIntHashMap buffer, TernaryVector index,
+                            int[] mapping) {
+        if (mapping == null) {
+            for (int p : index.positiveDimensions())
+                buffer.adjustOrPutValue(p, 1, 1);
+            for (int n : index.negativeDimensions())
+                buffer.adjustOrPutValue(n, -1, -1);
+        }
+        else {
             for (int p : index.positiveDimensions())
-                semantics.add(p, 1);
+                buffer.adjustOrPutValue(mapping[p], 1, 1);
             for (int n : index.negativeDimensions())
-                semantics.add(n, -1);
+                buffer.adjustOrPutValue(mapping[n], -1, -1);
+        }
+    }
+
+    /**
+     * Merges all of the buffered co-occurrences into the shared semantic
+     * vectors and then clears the buffer.  Each semantic vector is locked only
+     * once per merge, rather than once per co-occurrence.
+     */
+    private void mergeBuffer(TIntObjectHashMap<TIntIntHashMap> buffer) {
+        TIntObjectIterator<TIntIntHashMap> iter = buffer.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            IntegerVector semantics = getSemanticVector(getToken(iter.key()));
+            TIntIntIterator it = iter.value().iterator();
+            synchronized(semantics) {
+                while (it.hasNext()) {
+                    it.advance();
+                    if (it.value() != 0)
+                        semantics.add(it.key(), it.value());
+                }
+            }
         }
+        buffer.clear();
     }
 }
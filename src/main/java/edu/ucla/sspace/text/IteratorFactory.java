@@ -21,11 +21,16 @@
 
 package edu.ucla.sspace.text;
 
+import edu.ucla.sspace.basis.BasisMapping;
+
 import edu.ucla.sspace.util.FileResourceFinder;
+import edu.ucla.sspace.util.Indexer;
 import edu.ucla.sspace.util.LimitedIterator;
 import edu.ucla.sspace.util.ReflectionUtil;
 import edu.ucla.sspace.util.ResourceFinder;
 
+import edu.ucla.sspace.util.primitive.IntIterator;
+
 import java.io.BufferedReader;
 import java.io.IOError;
 import java.io.IOException;
@@ -127,6 +132,13 @@ public class IteratorFactory {
      */
     public static final String EMPTY_TOKEN = "";
 
+    /**
+     * The identifier that stands in place of a token that has been removed
+     * from an iterator's token stream, for iterators returned by {@link
+     * #tokenizeOrderedIds(BufferedReader, Indexer) tokenizeOrderedIds}.
+     */
+    public static final int EMPTY_TOKEN_ID = -1;
+
     /** 
      * The prefix for naming publically accessible properties
      */
@@ -388,6 +400,48 @@ public class IteratorFactory {
         return tokenizeOrdered(new BufferedReader(new StringReader(str)));
     }
 
+    /**
+     * Tokenizes the contents of the reader according to the system
+     * configuration and returns an iterator over the identifiers that {@code
+     * vocabulary} assigns to each token, where any removed tokens have been
+     * replaced with the {@code IteratorFactory.EMPTY_TOKEN_ID} value.  Tokens
+     * not yet in the vocabulary are added to it.  This allows callers to keep
+     * windows of primitive identifiers instead of repeatedly hashing token
+     * strings.  If multiple threads are tokenizing with the same vocabulary,
+     * it should be thread-safe, such as a {@link
+     * edu.ucla.sspace.util.ConcurrentIndexer ConcurrentIndexer}.
+     *
+     * @param reader a reader whose contents are to be tokenized
+     * @param vocabulary the mapping from tokens to their identifiers
+     *
+     * @return an iterator over the identifiers of all of the tokens in the
+     *         reader where any tokens removed due to filtering have been
+     *         replaced with the {@code IteratorFactory.EMPTY_TOKEN_ID} value
+     */
+    public static IntIterator tokenizeOrderedIds(BufferedReader reader,
+                                                 Indexer<String> vocabulary) {
+        return new TokenIdIterator(getBaseIterator(reader, true), vocabulary);
+    }
+
+    /**
+     * Tokenizes the contents of the reader according to the system
+     * configuration and returns an iterator over the dimensions that {@code
+     * basis} assigns to each token, where any removed tokens have been
+     * replaced with the {@code IteratorFactory.EMPTY_TOKEN_ID} value.  Tokens
+     * that are not represented by the basis are returned as negative values.
+     *
+     * @param reader a reader whose contents are to be tokenized
+     * @param basis the mapping from tokens to their dimensions
+     *
+     * @return an iterator over the dimensions of all of the tokens in the
+     *         reader where any tokens removed due to filtering or not mapped
+     *         by the basis have been replaced with a negative value
+     */
+    public static IntIterator tokenizeOrderedIds(BufferedReader reader,
+                                                 BasisMapping<String,?> basis) {
+        return new TokenIdIterator(getBaseIterator(reader, true), basis);
+    }
+
     /**
      * Wraps an iterator returned by {@link #tokenizeOrdered(String)
      * tokenizeOrdered} to also include term replacement of tokens.  Terms will
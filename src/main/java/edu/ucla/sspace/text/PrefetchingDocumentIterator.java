@@ -0,0 +1,379 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import java.io.BufferedReader;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * An iterator that reads documents ahead of its consumers using a set of
+ * dedicated reader threads.  Documents are read into a bounded queue, which
+ * provides backpressure: once the queue is full the readers block until a
+ * consumer takes a document.  This allows the cost of file access and
+ * decompression to overlap with document processing, rather than being paid
+ * by the processing threads while holding the lock on a shared iterator.
+ *
+ * <p> Documents whose contents are still on disk, i.e. {@link FileDocument}
+ * instances, are read fully into memory by the reader threads.  All other
+ * documents are passed through unchanged, which preserves their type.
+ *
+ * <p> This iterator is safe for use by multiple consumer threads.  A call to
+ * {@link #hasNext()} reserves the next document for the calling thread, which
+ * is returned by that thread's following call to {@link #next()}.  Therefore,
+ * the usual {@code while (it.hasNext()) it.next();} loop may be run
+ * concurrently by several threads without any external synchronization.
+ *
+ * <p> The iterator exposes several metrics on the state of the pipeline, such
+ * as the {@link #queueSize() queue depth} and the throughput of the reader
+ * and consumer stages.  A queue that is frequently empty indicates that the
+ * readers are the bottleneck, while a full queue indicates that the consumers
+ * are.
+ *
+ * @see edu.ucla.sspace.mains.GenericMain
+ */
+public class PrefetchingDocumentIterator implements Iterator<Document> {
+
+    /**
+     * A marker placed in the queue once all of the documents have been read.
+     */
+    private static final Document END_OF_DOCUMENTS = new StringDocument("");
+
+    /**
+     * The documents that are being read.
+     */
+    private final Iterator<? extends Document> source;
+
+    /**
+     * The documents that have been read but not yet returned.
+     */
+    private final BlockingQueue<Document> queue;
+
+    /**
+     * The maximum number of documents held in the queue.
+     */
+    private final int capacity;
+
+    /**
+     * The document reserved by each consumer thread's call to {@code hasNext}.
+     */
+    private final ThreadLocal<Document> reserved;
+
+    /**
+     * The number of reader threads that have not yet finished.
+     */
+    private final AtomicInteger activeReaders;
+
+    /**
+     * The number of documents read from the source.
+     */
+    private final AtomicLong documentsRead;
+
+    /**
+     * The number of documents returned to consumers.
+     */
+    private final AtomicLong documentsConsumed;
+
+    /**
+     * The total time in nanoseconds that readers have spent waiting for space
+     * in the queue.
+     */
+    private final AtomicLong readerWaitNanos;
+
+    /**
+     * The total time in nanoseconds that consumers have spent waiting for a
+     * document to become available.
+     */
+    private final AtomicLong consumerWaitNanos;
+
+    /**
+     * The time at which the readers were started.
+     */
+    private final long startTime;
+
+    /**
+     * The first error encountered by a reader, or {@code null} if no error
+     * has occurred.
+     */
+    private volatile Throwable error;
+
+    /**
+     * Creates a new iterator that uses a single reader thread to read ahead up
+     * to {@code capacity} documents.
+     */
+    public PrefetchingDocumentIterator(Iterator<? extends Document> source,
+                                       int capacity) {
+        this(source, 1, capacity);
+    }
+
+    /**
+     * Creates a new iterator that uses the specified number of reader threads
+     * to read ahead up to {@code capacity} documents.
+     *
+     * @param source the documents to read
+     * @param numReaders the number of threads that read documents
+     * @param capacity the maximum number of documents that may be read ahead
+     *        of the consumers
+     *
+     * @throws IllegalArgumentException if either {@code numReaders} or {@code
+     *         capacity} is not positive
+     */
+    public PrefetchingDocumentIterator(Iterator<? extends Document> source,
+                                       int numReaders, int capacity) {
+        if (numReaders < 1)
+            throw new IllegalArgumentException(
+                "Must have at least one reader: " + numReaders);
+        if (capacity < 1)
+            throw new IllegalArgumentException(
+                "Capacity must be positive: " + capacity);
+        this.source = source;
+        this.capacity = capacity;
+        queue = new ArrayBlockingQueue<Document>(capacity);
+        reserved = new ThreadLocal<Document>();
+        activeReaders = new AtomicInteger(numReaders);
+        documentsRead = new AtomicLong();
+        documentsConsumed = new AtomicLong();
+        readerWaitNanos = new AtomicLong();
+        consumerWaitNanos = new AtomicLong();
+        startTime = System.nanoTime();
+        for (int i = 0; i < numReaders; ++i) {
+            Thread t = new Thread(new Reader(), "DocumentReader-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Returns {@code true} if there is another document, blocking until one
+     * has been read or all of the documents have been returned.  If this
+     * method returns {@code true}, the document is reserved for the calling
+     * thread.
+     *
+     * @throws IOError if a reader thread failed while reading the documents
+     */
+    public boolean hasNext() {
+        if (reserved.get() != null)
+            return true;
+        Document doc = take();
+        if (doc == null)
+            return false;
+        reserved.set(doc);
+        return true;
+    }
+
+    /**
+     * Returns the next document, or the document reserved by this thread's
+     * prior call to {@link #hasNext()}.
+     *
+     * @throws NoSuchElementException if no further documents remain
+     * @throws IOError if a reader thread failed while reading the documents
+     */
+    public Document next() {
+        Document doc = reserved.get();
+        if (doc != null) {
+            reserved.remove();
+            return doc;
+        }
+        doc = take();
+        if (doc == null)
+            throw new NoSuchElementException();
+        return doc;
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException} if called.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the next document from the queue, or {@code null} if all the
+     * documents have been returned.
+     */
+    private Document take() {
+        long waitStart = System.nanoTime();
+        Document doc = null;
+        try {
+            doc = queue.take();
+        } catch (InterruptedException ie) {
+            throw new IllegalStateException(
+                "Interrupted while waiting for a document", ie);
+        }
+        consumerWaitNanos.addAndGet(System.nanoTime() - waitStart);
+        if (doc == END_OF_DOCUMENTS) {
+            // Replace the marker so that any other consumers also see it.
+            // This never blocks, as no readers remain to fill the queue.
+            queue.offer(END_OF_DOCUMENTS);
+            checkError();
+            return null;
+        }
+        documentsConsumed.incrementAndGet();
+        return doc;
+    }
+
+    /**
+     * Throws the error encountered by a reader thread, if any.
+     */
+    private void checkError() {
+        Throwable t = error;
+        if (t == null)
+            return;
+        if (t instanceof RuntimeException)
+            throw (RuntimeException)t;
+        if (t instanceof Error)
+            throw (Error)t;
+        throw new IOError(t);
+    }
+
+    /**
+     * Returns the maximum number of documents that may be read ahead.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of documents that have been read but not yet
+     * returned to a consumer.
+     */
+    public int queueSize() {
+        int size = queue.size();
+        // Do not count the end marker as a document
+        return (activeReaders.get() == 0 && size > 0) ? size - 1 : size;
+    }
+
+    /**
+     * Returns the number of documents that have been read from the source.
+     */
+    public long documentsRead() {
+        return documentsRead.get();
+    }
+
+    /**
+     * Returns the number of documents that have been returned to consumers.
+     */
+    public long documentsConsumed() {
+        return documentsConsumed.get();
+    }
+
+    /**
+     * Returns the average number of documents read per second since the
+     * readers were started.
+     */
+    public double readThroughput() {
+        return documentsRead.get() / elapsedSeconds();
+    }
+
+    /**
+     * Returns the average number of documents returned to consumers per second
+     * since the readers were started.
+     */
+    public double consumeThroughput() {
+        return documentsConsumed.get() / elapsedSeconds();
+    }
+
+    /**
+     * Returns the total number of seconds the reader threads have spent
+     * blocked waiting for space in the queue.
+     */
+    public double readerWaitSeconds() {
+        return readerWaitNanos.get() / 1e9;
+    }
+
+    /**
+     * Returns the total number of seconds the consumer threads have spent
+     * blocked waiting for a document to be read.
+     */
+    public double consumerWaitSeconds() {
+        return consumerWaitNanos.get() / 1e9;
+    }
+
+    /**
+     * Returns the number of seconds since the readers were started.
+     */
+    private double elapsedSeconds() {
+        return Math.max(System.nanoTime() - startTime, 1) / 1e9;
+    }
+
+    /**
+     * Returns a version of the document whose contents are held in memory.
+     */
+    private static Document load(Document doc) throws IOException {
+        if (!(doc instanceof FileDocument))
+            return doc;
+        StringBuilder sb = new StringBuilder();
+        BufferedReader br = doc.reader();
+        char[] buf = new char[8192];
+        for (int n; (n = br.read(buf)) != -1; )
+            sb.append(buf, 0, n);
+        br.close();
+        return new StringDocument(sb.toString());
+    }
+
+    /**
+     * A task that repeatedly reads a document from the source and places it in
+     * the queue until the source is exhausted.
+     */
+    private class Reader implements Runnable {
+
+        public void run() {
+            try {
+                while (error == null) {
+                    Document doc = null;
+                    synchronized (source) {
+                        if (!source.hasNext())
+                            break;
+                        doc = source.next();
+                    }
+                    doc = load(doc);
+                    documentsRead.incrementAndGet();
+                    long waitStart = System.nanoTime();
+                    queue.put(doc);
+                    readerWaitNanos.addAndGet(System.nanoTime() - waitStart);
+                }
+            } catch (Throwable t) {
+                if (error == null)
+                    error = t;
+            } finally {
+                // The last reader to finish marks the end of the documents
+                if (activeReaders.decrementAndGet() == 0) {
+                    try {
+                        queue.put(END_OF_DOCUMENTS);
+                    } catch (InterruptedException ie) {
+                        // The daemon thread is being torn down
+                    }
+                }
+            }
+        }
+    }
+}
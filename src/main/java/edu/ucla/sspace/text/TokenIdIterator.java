@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import edu.ucla.sspace.basis.BasisMapping;
+
+import edu.ucla.sspace.util.Indexer;
+
+import edu.ucla.sspace.util.primitive.IntIterator;
+
+import java.util.Iterator;
+
+
+/**
+ * An iterator that converts a stream of tokens into a stream of primitive
+ * {@code int} token identifiers.  Each token is hashed exactly once, when it
+ * is read, which allows callers that keep a window of tokens to compare and
+ * look up tokens using their identifiers rather than repeatedly hashing the
+ * token strings.
+ *
+ * <p> Tokens that are equal to {@link IteratorFactory#EMPTY_TOKEN} are
+ * returned as {@link IteratorFactory#EMPTY_TOKEN_ID}, which preserves the
+ * positions of any filtered tokens.  If the identifiers come from a {@link
+ * BasisMapping}, tokens that the mapping does not represent are also returned
+ * as a negative value.  Callers should therefore treat all negative
+ * identifiers as tokens to be skipped.
+ *
+ * @see IteratorFactory#tokenizeOrderedIds(java.io.BufferedReader, Indexer)
+ */
+public class TokenIdIterator implements IntIterator {
+
+    /**
+     * The tokens to be converted to identifiers.
+     */
+    private final Iterator<String> tokens;
+
+    /**
+     * The vocabulary that assigns identifiers, or {@code null} if a basis
+     * mapping is used.
+     */
+    private final Indexer<String> vocabulary;
+
+    /**
+     * The basis mapping that assigns identifiers, or {@code null} if a
+     * vocabulary is used.
+     */
+    private final BasisMapping<String,?> basis;
+
+    /**
+     * Creates an iterator that returns the index assigned to each token by the
+     * provided vocabulary, adding any tokens not yet in the vocabulary.
+     */
+    public TokenIdIterator(Iterator<String> tokens,
+                           Indexer<String> vocabulary) {
+        if (vocabulary == null)
+            throw new NullPointerException("vocabulary cannot be null");
+        this.tokens = tokens;
+        this.vocabulary = vocabulary;
+        this.basis = null;
+    }
+
+    /**
+     * Creates an iterator that returns the dimension assigned to each token by
+     * the provided basis mapping.
+     */
+    public TokenIdIterator(Iterator<String> tokens,
+                           BasisMapping<String,?> basis) {
+        if (basis == null)
+            throw new NullPointerException("basis cannot be null");
+        this.tokens = tokens;
+        this.vocabulary = null;
+        this.basis = basis;
+    }
+
+    /**
+     * Returns {@code true} if there is another token to return.
+     */
+    public boolean hasNext() {
+        return tokens.hasNext();
+    }
+
+    /**
+     * Returns the identifier of the next token as a boxed {@code Integer}.
+     * Callers should prefer {@link #nextInt()}.
+     */
+    public Integer next() {
+        return nextInt();
+    }
+
+    /**
+     * Returns the identifier of the next token, or a negative value if the
+     * token should be skipped.
+     */
+    public int nextInt() {
+        String token = tokens.next();
+        if (token.equals(IteratorFactory.EMPTY_TOKEN))
+            return IteratorFactory.EMPTY_TOKEN_ID;
+        return (vocabulary != null)
+            ? vocabulary.index(token)
+            : basis.getDimension(token);
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException} if called.
+     */ 
+    public void remove() {
+        throw new UnsupportedOperationException("remove is not supported");
+    }
+}
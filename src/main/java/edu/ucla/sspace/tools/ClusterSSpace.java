@@ -7,9 +7,12 @@ import edu.ucla.sspace.common.StaticSemanticSpace;
 import edu.ucla.sspace.clustering.Assignment;
 import edu.ucla.sspace.clustering.Assignments;
 import edu.ucla.sspace.clustering.Clustering;
+import edu.ucla.sspace.clustering.MiniBatchKMeans;
 
 import edu.ucla.sspace.matrix.Matrices;
 import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.MatrixFile;
+import edu.ucla.sspace.matrix.MatrixIO;
 import edu.ucla.sspace.matrix.SparseMatrix;
 
 import edu.ucla.sspace.util.ReflectionUtil;
@@ -19,6 +22,8 @@ import edu.ucla.sspace.vector.SparseDoubleVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.Vectors;
 
+import java.io.File;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -33,17 +38,25 @@ public class ClusterSSpace {
         ArgOptions options = new ArgOptions();
         options.addOption('s', "sspace",
                           "The semantic space to be clustered",
-                          true, "FILE", "Required");
+                          true, "FILE", "Optional");
         options.addOption('a', "clusteringAlgorithm",
                           "The clustering algorithm to use",
                           true, "CLASSNAME", "Required");
         options.addOption('c', "numClusters",
                           "The number of clusters to use",
                           true, "INT", "Optional");
+        options.addOption('m', "matrixFile",
+                          "A matrix whose rows are to be clustered instead " +
+                          "of a semantic space",
+                          true, "FILE", "Optional");
+        options.addOption('f', "matrixFormat",
+                          "The format of the matrix file (default: " +
+                          "SVDLIBC_SPARSE_BINARY)",
+                          true, "FORMAT", "Optional");
         options.parseOptions(args);
 
         if (!options.hasOption('a') ||
-            !options.hasOption('s')) {
+            !(options.hasOption('s') || options.hasOption('m'))) {
             System.out.println("Usage: ClusterSSpace\n" +
                                options.prettyPrint());
             System.exit(1);
@@ -51,9 +64,37 @@ public class ClusterSSpace {
 
         Clustering clustering = ReflectionUtil.getObjectInstance(
                 options.getStringOption('a'));
+        int numClusters = options.getIntOption('c', 0);
+        Properties props = System.getProperties();
+
+        if (options.hasOption('m')) {
+            MatrixFile matrixFile = new MatrixFile(
+                new File(options.getStringOption('m')),
+                MatrixIO.Format.valueOf(options.getStringOption(
+                    'f', "SVDLIBC_SPARSE_BINARY")));
+            // Mini-batch k-means can stream the rows from disk, while all
+            // other algorithms need the matrix in memory
+            Assignments assignments = null;
+            if (clustering instanceof MiniBatchKMeans && numClusters > 0)
+                assignments = ((MiniBatchKMeans)clustering).cluster(
+                    matrixFile, numClusters, props);
+            else {
+                Matrix matrix = matrixFile.load();
+                assignments = (numClusters > 0) 
+                    ? clustering.cluster(matrix, numClusters, props)
+                    : clustering.cluster(matrix, props);
+            }
+            for (int row = 0; row < assignments.size(); ++row) {
+                System.out.printf("%d ", row);
+                for (int i : assignments.get(row).assignments())
+                    System.out.printf("%d ", i);
+                System.out.println();
+            }
+            return;
+        }
+
         SemanticSpace sspace = new StaticSemanticSpace(
                 options.getStringOption('s'));
-        int numClusters = options.getIntOption('c', 0);
 
         Set<String> words = sspace.getWords();
         List<DoubleVector> vectors = new ArrayList<DoubleVector>();
@@ -67,7 +108,6 @@ public class ClusterSSpace {
                 vectors.add(Vectors.asDouble(sspace.getVector(word)));
         }
 
-        Properties props = System.getProperties();
         Assignments assignments = null;
         if (sparseVectors.size() > 0) {
             SparseMatrix matrix = Matrices.asSparseMatrix(sparseVectors);
@@ -25,6 +25,9 @@ import edu.ucla.sspace.common.ArgOptions;
 import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.SemanticSpaceIO;
 
+import edu.ucla.sspace.similarity.CosineSimilarity;
+
+import edu.ucla.sspace.util.HnswNearestNeighborFinder;
 import edu.ucla.sspace.util.LoggerUtil;
 import edu.ucla.sspace.util.MultiMap;
 import edu.ucla.sspace.util.NearestNeighborFinder;
@@ -70,6 +73,21 @@ public class NearestNeighborFinderTool {
         options.addOption('p', "principleVectors", "Specifies the number " +
                           "of principle vectors to create",
                           true, "INT", "Creation Options");
+        options.addOption('G', "graphFinder", "Creates a graph-based (HNSW) " +
+                          "finder instead of a partitioning finder",
+                          false, null, "Creation Options");
+        options.addOption('m', "maxNeighbors", "The maximum number of " +
+                          "neighbors per graph node (default: " +
+                          HnswNearestNeighborFinder.DEFAULT_MAX_NEIGHBORS + ")",
+                          true, "INT", "Creation Options");
+        options.addOption('e', "efConstruction", "The size of the candidate " +
+                          "list used when building the graph (default: " +
+                          HnswNearestNeighborFinder.DEFAULT_EF_CONSTRUCTION +
+                          ")", true, "INT", "Creation Options");
+        options.addOption('E', "efSearch", "The size of the candidate list " +
+                          "used when searching the graph (default: " +
+                          HnswNearestNeighborFinder.DEFAULT_EF_SEARCH + ")",
+                          true, "INT", "Search Options");
 
         options.parseOptions(args);
 
@@ -92,31 +110,44 @@ public class NearestNeighborFinderTool {
             try {
                 SemanticSpace sspace = 
                     SemanticSpaceIO.load(options.getStringOption('C'));
-                int numWords = sspace.getWords().size();
-                // See how many principle vectors to create
-                int numPrincipleVectors = -1;
-                if  (options.hasOption('p')) {
-                    numPrincipleVectors = options.getIntOption('p');
-                    if (numPrincipleVectors > numWords) {
-                        throw new IllegalArgumentException(
-                            "Cannot have more principle vectors than " +
-                            "word vectors: " + numPrincipleVectors);
-                    }
-                    else if (numPrincipleVectors < 1) {
-                        throw new IllegalArgumentException(
-                            "Must have at least one principle vector");
-                    }
-
+                if (options.hasOption('G')) {
+                    int maxNeighbors = (options.hasOption('m'))
+                        ? options.getIntOption('m')
+                        : HnswNearestNeighborFinder.DEFAULT_MAX_NEIGHBORS;
+                    int efConstruction = (options.hasOption('e'))
+                        ? options.getIntOption('e')
+                        : HnswNearestNeighborFinder.DEFAULT_EF_CONSTRUCTION;
+                    nnf = new HnswNearestNeighborFinder(
+                        sspace, new CosineSimilarity(), maxNeighbors,
+                        efConstruction);
                 }
                 else {
-                    numPrincipleVectors = 
-                        Math.min((int)(Math.ceil(Math.log(numWords))), 1000);
-                    System.err.printf("Choosing a heuristically selected %d " +
-                                      "principle vectors%n", 
-                                      numPrincipleVectors);
+                    int numWords = sspace.getWords().size();
+                    // See how many principle vectors to create
+                    int numPrincipleVectors = -1;
+                    if  (options.hasOption('p')) {
+                        numPrincipleVectors = options.getIntOption('p');
+                        if (numPrincipleVectors > numWords) {
+                            throw new IllegalArgumentException(
+                                "Cannot have more principle vectors than " +
+                                "word vectors: " + numPrincipleVectors);
+                        }
+                        else if (numPrincipleVectors < 1) {
+                            throw new IllegalArgumentException(
+                                "Must have at least one principle vector");
+                        }
+
+                    }
+                    else {
+                        numPrincipleVectors = Math.min(
+                            (int)(Math.ceil(Math.log(numWords))), 1000);
+                        System.err.printf("Choosing a heuristically " +
+                                          "selected %d principle vectors%n",
+                                          numPrincipleVectors);
+                    }
+                    nnf = new PartitioningNearestNeighborFinder(
+                        sspace, numPrincipleVectors);
                 }
-                nnf = new PartitioningNearestNeighborFinder(
-                    sspace, numPrincipleVectors);
             } catch (IOException ioe) {
                 throw new IOError(ioe);
             }
@@ -130,6 +161,14 @@ public class NearestNeighborFinderTool {
                 "Must either create or load a NearestNeighborFinder");
         }
 
+        if (options.hasOption('E')) {
+            if (!(nnf instanceof HnswNearestNeighborFinder))
+                throw new IllegalArgumentException(
+                    "--efSearch may only be used with a graph-based finder");
+            ((HnswNearestNeighborFinder)nnf).setEfSearch(
+                options.getIntOption('E'));
+        }
+
         if (options.hasOption('S')) {
             SerializableUtil.save(nnf, new File(options.getStringOption('S')));
         }
@@ -173,6 +212,12 @@ public class NearestNeighborFinderTool {
             "java -jar nnf.jar --createFinder my.sspace " +
             "--saveFinder my.nnf.ser --principleVectors 1000\n" +
             "\n" +
+            "or, to build an approximate graph-based finder with faster " +
+            "searches:\n" +
+            "\n" +
+            "java -jar nnf.jar --createFinder my.sspace " +
+            "--saveFinder my.nnf.ser --graphFinder\n" +
+            "\n" +
             "However, it may also be used with an existing " + 
             "serialized NearestNeighborFinder\n" +
             "instance to search for the nearest neighbors words, " +
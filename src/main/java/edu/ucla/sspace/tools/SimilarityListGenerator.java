@@ -27,11 +27,12 @@ import edu.ucla.sspace.common.Similarity.SimType;
 import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.SemanticSpaceIO;
 
+import edu.ucla.sspace.util.AllPairsNearestNeighbors;
+import edu.ucla.sspace.util.AllPairsNearestNeighbors.NeighborHandler;
 import edu.ucla.sspace.util.BoundedSortedMap;
-import edu.ucla.sspace.util.NearestNeighborFinder;
-import edu.ucla.sspace.util.PartitioningNearestNeighborFinder;
 import edu.ucla.sspace.util.Pair;
 import edu.ucla.sspace.util.SortedMultiMap;
+import edu.ucla.sspace.util.WorkQueue;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -85,6 +86,10 @@ public class SimilarityListGenerator {
         argOptions.addOption('n', "numSimilar", "the number of similar words " +
                              "to print (default: 10)", true, "String", 
                              "Program Options");
+        argOptions.addOption('b', "blockSize", "the number of words " +
+                             "compared at once (default: " +
+                             AllPairsNearestNeighbors.DEFAULT_BLOCK_SIZE + ")",
+                             true, "int", "Program Options");
         argOptions.addOption('t', "threads", "the number of threads to use" +
                              " (default: #procesors)", true, "int", 
                              "Program Options");
@@ -182,35 +187,35 @@ public class SimilarityListGenerator {
         }
 
         final PrintWriter outputWriter = new PrintWriter(output);
-            
-        final Set<String> words = sspace.getWords();
-        NearestNeighborFinder nnf = 
-            new PartitioningNearestNeighborFinder(sspace);
-
-
-        for (String word : words) {            
-            // compute the k most-similar words to this word
-            SortedMultiMap<Double,String> mostSimilar =
-                nnf.getMostSimilar(word, numSimilar);
-            
-            // once processing has finished write the k most-similar words to
-            // the output file.
-            StringBuilder sb = new StringBuilder(256);
-            sb.append(word).append("|");
-            for (Map.Entry<Double,String> e : 
-                     mostSimilar.entrySet()) {
-                String s = e.getValue();
-                Double d = e.getKey();
-
-                sb.append(s);
-                if (printSimilarity) {
-                    sb.append(" ").append(d);
+
+        int blockSize = (argOptions.hasOption('b'))
+            ? argOptions.getIntOption('b')
+            : AllPairsNearestNeighbors.DEFAULT_BLOCK_SIZE;
+
+        // Compute the most similar words for all the words at once, rather
+        // than querying for each word separately, and write each word's list
+        // as it becomes available.
+        AllPairsNearestNeighbors allPairs = new AllPairsNearestNeighbors(
+            sspace, blockSize, WorkQueue.getWorkQueue(numThreads));
+        allPairs.findAll(numSimilar, new NeighborHandler() {
+                public void handle(String word,
+                                   SortedMultiMap<Double,String> mostSimilar) {
+                    StringBuilder sb = new StringBuilder(256);
+                    sb.append(word).append("|");
+                    for (Map.Entry<Double,String> e :
+                             mostSimilar.entrySet()) {
+                        String s = e.getValue();
+                        Double d = e.getKey();
+
+                        sb.append(s);
+                        if (printSimilarity) {
+                            sb.append(" ").append(d);
+                        }
+                        sb.append("|");
+                    }
+                    outputWriter.println(sb.toString());
                 }
-                sb.append("|");
-                
-            }
-            outputWriter.println(sb.toString());
-            outputWriter.flush();
-        }
+            });
+        outputWriter.close();
     }
 }
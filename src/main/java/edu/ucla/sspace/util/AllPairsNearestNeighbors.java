@@ -0,0 +1,553 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import edu.ucla.sspace.common.SemanticSpace;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.Vectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.logging.Logger;
+
+import static edu.ucla.sspace.util.LoggerUtil.verbose;
+
+
+/**
+ * A utility for finding the most similar words for <i>every</i> word in a
+ * {@link SemanticSpace}, using the cosine similarity.  Rather than issuing a
+ * separate nearest-neighbor query for each word, which rescans the whole space
+ * once per word, this class computes the all-pairs similarities in blocks.
+ * The words are divided into blocks of a fixed number of rows.  For each block
+ * of query words, the similarities with every block of candidate words are
+ * computed as the product of the two blocks of normalized vectors, so that
+ * the candidate block stays in the processor's cache while it is compared
+ * against each query word.  Each query word keeps a bounded heap of its most
+ * similar words, which holds only primitive values.<p>
+ *
+ * If every vector in the space is dense, the vectors are compared with an
+ * unrolled dot product over their normalized values.  Otherwise, only the
+ * non-zero values of each vector are kept and each candidate block is stored
+ * as an inverted index from dimension to the words with a non-zero value for
+ * it.  The similarities of a query word with the whole block are then
+ * accumulated from the query's non-zero dimensions, which is a sparse matrix
+ * multiplication.  This avoids allocating a full row for each sparse vector
+ * in a space that mixes sparse and dense vectors.<p>
+ *
+ * Blocks of query words are processed in parallel using a {@link WorkQueue},
+ * and their results are passed to a {@link NeighborHandler} in order as each
+ * group of blocks finishes.  The results for a word therefore never need to
+ * be held in memory for the entire space.
+ *
+ * @see SimpleNearestNeighborFinder
+ */
+public class AllPairsNearestNeighbors {
+
+    private static final Logger LOGGER =
+        Logger.getLogger(AllPairsNearestNeighbors.class.getName());
+
+    /**
+     * The default number of words in each block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    /**
+     * An interface for receiving the most similar words of each word as they
+     * are computed.
+     */
+    public interface NeighborHandler {
+
+        /**
+         * Processes the most similar words for {@code word}.  This method is
+         * only called from the thread that called {@link
+         * AllPairsNearestNeighbors#findAll(int, NeighborHandler) findAll}.
+         *
+         * @param word a word in the semantic space
+         * @param mostSimilar the most similar words to {@code word}, excluding
+         *        the word itself
+         */
+        void handle(String word, SortedMultiMap<Double,String> mostSimilar);
+    }
+
+    /**
+     * The words in the space, in the order their rows are stored.
+     */
+    private final String[] words;
+
+    /**
+     * The number of dimensions of the vectors.
+     */
+    private final int dimensions;
+
+    /**
+     * The normalized dense vector for each word, or {@code null} if the
+     * vectors are stored sparsely.
+     */
+    private final double[][] denseRows;
+
+    /**
+     * The sorted non-zero dimensions of each word's vector, if the vectors are
+     * stored sparsely.
+     */
+    private final int[][] sparseIndices;
+
+    /**
+     * The normalized non-zero values of each word's vector, if the vectors are
+     * stored sparsely.
+     */
+    private final double[][] sparseValues;
+
+    /**
+     * The number of words in each block.
+     */
+    private final int blockSize;
+
+    /**
+     * The queue in which the blocks are processed.
+     */
+    private final WorkQueue workQueue;
+
+    /**
+     * The inverted index of each block of words, if the vectors are stored
+     * sparsely.  These are created on the first call to {@link #findAll(int,
+     * NeighborHandler) findAll}.
+     */
+    private InvertedBlock[] invertedBlocks;
+
+    /**
+     * Creates an instance for the words in the semantic space, using the
+     * default block size and work queue.
+     */
+    public AllPairsNearestNeighbors(SemanticSpace sspace) {
+        this(sspace, DEFAULT_BLOCK_SIZE, WorkQueue.getWorkQueue());
+    }
+
+    /**
+     * Creates an instance for the words in the semantic space.
+     *
+     * @param sspace the semantic space whose words are to be compared
+     * @param blockSize the number of words in each block
+     * @param workQueue the queue in which the blocks are processed
+     *
+     * @throws IllegalArgumentException if {@code blockSize} is not positive
+     */
+    public AllPairsNearestNeighbors(SemanticSpace sspace, int blockSize,
+                                    WorkQueue workQueue) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException(
+                "Block size must be positive: " + blockSize);
+        this.blockSize = blockSize;
+        this.workQueue = workQueue;
+        this.dimensions = sspace.getVectorLength();
+
+        Set<String> wordSet = sspace.getWords();
+        words = wordSet.toArray(new String[wordSet.size()]);
+        DoubleVector[] vectors = new DoubleVector[words.length];
+        boolean allDense = true;
+        for (int i = 0; i < words.length; ++i) {
+            vectors[i] = Vectors.asDouble(sspace.getVector(words[i]));
+            allDense = allDense && !(vectors[i] instanceof SparseDoubleVector);
+        }
+
+        if (!allDense) {
+            denseRows = null;
+            sparseIndices = new int[words.length][];
+            sparseValues = new double[words.length][];
+            for (int i = 0; i < words.length; ++i) {
+                DoubleVector v = vectors[i];
+                int[] nz = getNonZeroIndices(v);
+                double[] values = new double[nz.length];
+                double norm = v.magnitude();
+                for (int j = 0; j < nz.length; ++j)
+                    values[j] = (norm == 0) ? 0 : v.get(nz[j]) / norm;
+                sparseIndices[i] = nz;
+                sparseValues[i] = values;
+                vectors[i] = null;
+            }
+        }
+        else {
+            sparseIndices = null;
+            sparseValues = null;
+            denseRows = new double[words.length][];
+            for (int i = 0; i < words.length; ++i) {
+                DoubleVector v = vectors[i];
+                double[] row = new double[dimensions];
+                double norm = v.magnitude();
+                if (norm != 0) {
+                    for (int j = 0; j < Math.min(dimensions, v.length()); ++j)
+                        row[j] = v.get(j) / norm;
+                }
+                denseRows[i] = row;
+                vectors[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the sorted dimensions of the vector with a non-zero value.
+     */
+    private static int[] getNonZeroIndices(DoubleVector v) {
+        if (v instanceof SparseDoubleVector) {
+            int[] nz = ((SparseDoubleVector)v).getNonZeroIndices();
+            if (!(v instanceof CompactSparseVector)) {
+                nz = Arrays.copyOf(nz, nz.length);
+                Arrays.sort(nz);
+            }
+            return nz;
+        }
+        int nonZero = 0;
+        for (int j = 0; j < v.length(); ++j)
+            if (v.get(j) != 0)
+                nonZero++;
+        int[] nz = new int[nonZero];
+        for (int j = 0, k = 0; j < v.length(); ++j)
+            if (v.get(j) != 0)
+                nz[k++] = j;
+        return nz;
+    }
+
+    /**
+     * Returns the number of words that are compared.
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * Returns the {@code k} most similar words for every word in the space.
+     * The returned map holds the results for all the words, so {@link
+     * #findAll(int, NeighborHandler)} should be preferred for large spaces.
+     */
+    public Map<String,SortedMultiMap<Double,String>> findAll(int k) {
+        final Map<String,SortedMultiMap<Double,String>> neighbors =
+            new LinkedHashMap<String,SortedMultiMap<Double,String>>();
+        findAll(k, new NeighborHandler() {
+                public void handle(String word,
+                                   SortedMultiMap<Double,String> mostSimilar) {
+                    neighbors.put(word, mostSimilar);
+                }
+            });
+        return neighbors;
+    }
+
+    /**
+     * Finds the {@code k} most similar words for every word in the space,
+     * passing the results for each word to the handler.
+     *
+     * @param k the number of most similar words to find for each word
+     * @param handler the handler to receive the results
+     *
+     * @throws IllegalArgumentException if {@code k} is not positive
+     */
+    public void findAll(int k, NeighborHandler handler) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be positive: " + k);
+        int numBlocks = (words.length + blockSize - 1) / blockSize;
+        if (denseRows == null && invertedBlocks == null)
+            invertedBlocks = createInvertedBlocks(numBlocks);
+
+        // Process enough blocks at once to keep every thread busy, and then
+        // hand their results over before starting the next group, which bounds
+        // the number of results held in memory
+        int blocksPerGroup = Math.max(1, 2 * workQueue.availableThreads());
+        for (int first = 0; first < numBlocks; first += blocksPerGroup) {
+            int last = Math.min(numBlocks, first + blocksPerGroup);
+            final TopK[][] results = new TopK[last - first][];
+            Collection<Runnable> tasks = new ArrayList<Runnable>();
+            for (int b = first; b < last; ++b) {
+                final int block = b;
+                final int slot = b - first;
+                final int kk = k;
+                tasks.add(new Runnable() {
+                        public void run() {
+                            results[slot] = processBlock(block, kk);
+                        }
+                    });
+            }
+            workQueue.run(tasks);
+
+            for (int b = first; b < last; ++b) {
+                TopK[] blockResults = results[b - first];
+                for (int i = 0; i < blockResults.length; ++i) {
+                    int row = b * blockSize + i;
+                    handler.handle(words[row], blockResults[i].toMap(words));
+                }
+            }
+            verbose(LOGGER, "Found neighbors for %d/%d words",
+                    Math.min(words.length, last * blockSize), words.length);
+        }
+    }
+
+    /**
+     * Returns the most similar words for each word in the block.
+     */
+    private TopK[] processBlock(int block, int k) {
+        int rowStart = block * blockSize;
+        int rowEnd = Math.min(words.length, rowStart + blockSize);
+        TopK[] topK = new TopK[rowEnd - rowStart];
+        for (int i = 0; i < topK.length; ++i)
+            topK[i] = new TopK(Math.min(k, words.length - 1));
+
+        if (denseRows != null) {
+            for (int colStart = 0; colStart < words.length;
+                     colStart += blockSize) {
+                int colEnd = Math.min(words.length, colStart + blockSize);
+                for (int row = rowStart; row < rowEnd; ++row) {
+                    double[] r = denseRows[row];
+                    TopK heap = topK[row - rowStart];
+                    for (int col = colStart; col < colEnd; ++col) {
+                        if (col != row)
+                            heap.offer(col, dotProduct(r, denseRows[col]));
+                    }
+                }
+            }
+        }
+        else {
+            double[] sims = new double[blockSize];
+            for (InvertedBlock inv : invertedBlocks) {
+                for (int row = rowStart; row < rowEnd; ++row) {
+                    Arrays.fill(sims, 0);
+                    inv.multiply(sparseIndices[row], sparseValues[row], sims);
+                    TopK heap = topK[row - rowStart];
+                    int n = inv.colEnd - inv.colStart;
+                    for (int c = 0; c < n; ++c) {
+                        int col = inv.colStart + c;
+                        if (col != row)
+                            heap.offer(col, sims[c]);
+                    }
+                }
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * Returns the dot product of the two arrays, which have the same length.
+     */
+    private static double dotProduct(double[] a, double[] b) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int end = a.length - 3; i < end; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i+1] * b[i+1];
+            s2 += a[i+2] * b[i+2];
+            s3 += a[i+3] * b[i+3];
+        }
+        for (; i < a.length; ++i)
+            s0 += a[i] * b[i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Creates the inverted index for each block of sparse vectors.
+     */
+    private InvertedBlock[] createInvertedBlocks(final int numBlocks) {
+        final InvertedBlock[] blocks = new InvertedBlock[numBlocks];
+        Collection<Runnable> tasks = new ArrayList<Runnable>();
+        for (int b = 0; b < numBlocks; ++b) {
+            final int block = b;
+            tasks.add(new Runnable() {
+                    public void run() {
+                        int start = block * blockSize;
+                        int end = Math.min(words.length, start + blockSize);
+                        blocks[block] = new InvertedBlock(
+                            start, end, sparseIndices, sparseValues);
+                    }
+                });
+        }
+        workQueue.run(tasks);
+        return blocks;
+    }
+
+    /**
+     * An inverted index from each dimension to the words in a block that have
+     * a non-zero value for it.
+     */
+    private static class InvertedBlock {
+
+        /**
+         * The first word in the block.
+         */
+        final int colStart;
+
+        /**
+         * One past the last word in the block.
+         */
+        final int colEnd;
+
+        /**
+         * The sorted dimensions that have a non-zero value for any word in the
+         * block.
+         */
+        final int[] dims;
+
+        /**
+         * The offset into {@link #cols} and {@link #values} at which the
+         * postings for each dimension start, with an extra final offset.
+         */
+        final int[] offsets;
+
+        /**
+         * The word, relative to the start of the block, of each posting.
+         */
+        final int[] cols;
+
+        /**
+         * The value of each posting.
+         */
+        final double[] values;
+
+        public InvertedBlock(int colStart, int colEnd,
+                             int[][] indices, double[][] rowValues) {
+            this.colStart = colStart;
+            this.colEnd = colEnd;
+
+            // Count the postings for each dimension
+            int total = 0;
+            for (int c = colStart; c < colEnd; ++c)
+                total += indices[c].length;
+            int[] allDims = new int[total];
+            for (int c = colStart, p = 0; c < colEnd; ++c)
+                for (int d : indices[c])
+                    allDims[p++] = d;
+            Arrays.sort(allDims);
+            int unique = 0;
+            for (int i = 0; i < total; ++i)
+                if (i == 0 || allDims[i] != allDims[i-1])
+                    allDims[unique++] = allDims[i];
+            dims = Arrays.copyOf(allDims, unique);
+
+            offsets = new int[unique + 1];
+            for (int c = colStart; c < colEnd; ++c)
+                for (int d : indices[c])
+                    offsets[Arrays.binarySearch(dims, d) + 1]++;
+            for (int i = 0; i < unique; ++i)
+                offsets[i + 1] += offsets[i];
+
+            // Fill in the postings, using a cursor for each dimension
+            cols = new int[total];
+            values = new double[total];
+            int[] next = Arrays.copyOf(offsets, unique);
+            for (int c = colStart; c < colEnd; ++c) {
+                int[] nz = indices[c];
+                double[] v = rowValues[c];
+                for (int j = 0; j < nz.length; ++j) {
+                    int p = next[Arrays.binarySearch(dims, nz[j])]++;
+                    cols[p] = c - colStart;
+                    values[p] = v[j];
+                }
+            }
+        }
+
+        /**
+         * Adds the dot product of the sparse vector with each word in the block
+         * to {@code sims}.
+         */
+        public void multiply(int[] indices, double[] rowValues,
+                             double[] sims) {
+            for (int j = 0; j < indices.length; ++j) {
+                int pos = Arrays.binarySearch(dims, indices[j]);
+                if (pos < 0)
+                    continue;
+                double v = rowValues[j];
+                for (int p = offsets[pos]; p < offsets[pos + 1]; ++p)
+                    sims[cols[p]] += v * values[p];
+            }
+        }
+    }
+
+    /**
+     * A bounded min-heap of the most similar words seen for a word.
+     */
+    private static class TopK {
+
+        private final int[] ids;
+
+        private final double[] sims;
+
+        private int size;
+
+        public TopK(int k) {
+            ids = new int[k];
+            sims = new double[k];
+            size = 0;
+        }
+
+        /**
+         * Adds the word to the heap if it is among the most similar seen so
+         * far.
+         */
+        public void offer(int id, double sim) {
+            if (size < ids.length) {
+                // Sift the new entry up from the bottom of the heap
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (sims[parent] <= sim)
+                        break;
+                    ids[i] = ids[parent];
+                    sims[i] = sims[parent];
+                    i = parent;
+                }
+                ids[i] = id;
+                sims[i] = sim;
+            }
+            else if (size > 0 && sim > sims[0]) {
+                // Replace the least similar entry and sift it down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size)
+                        break;
+                    if (child + 1 < size && sims[child + 1] < sims[child])
+                        child++;
+                    if (sims[child] >= sim)
+                        break;
+                    ids[i] = ids[child];
+                    sims[i] = sims[child];
+                    i = child;
+                }
+                ids[i] = id;
+                sims[i] = sim;
+            }
+        }
+
+        /**
+         * Returns the words in this heap mapped by their similarity.
+         */
+        public SortedMultiMap<Double,String> toMap(String[] words) {
+            SortedMultiMap<Double,String> map =
+                new TreeMultiMap<Double,String>();
+            for (int i = 0; i < size; ++i)
+                map.put(sims[i], words[ids[i]]);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A thread-safe {@link Indexer} that is designed for many threads concurrently
+ * indexing new items, such as when multiple threads are tokenizing a corpus
+ * with a shared vocabulary.  The indices returned by this class will always
+ * begin at {@code 0} and are contiguous.
+ *
+ * <p> Unlike {@link ObjectIndexer} and {@link HashIndexer}, this class never
+ * takes a global lock.  Calls to {@link #index(Object) index} for an item that
+ * has already been seen only read from a concurrent map.  New items are
+ * assigned an index while holding one of a fixed number of lock stripes, which
+ * is selected by the item's hash code, so that threads indexing different new
+ * items rarely block each other.  The reverse mapping is kept in an
+ * append-only array of fixed-size blocks, which makes {@link #lookup(int)} a
+ * constant time operation that never needs to be rebuilt as the mapping grows.
+ *
+ * <p> All methods except {@link #clear()} are safe to call concurrently.
+ *
+ * @see ObjectIndexer
+ * @see HashIndexer
+ */
+public class ConcurrentIndexer<T> implements Indexer<T>, java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of bits used to index into a single block of the reverse
+     * mapping.
+     */
+    private static final int BLOCK_BITS = 12;
+
+    /**
+     * The number of items stored in each block of the reverse mapping.
+     */
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    /**
+     * The number of lock stripes used to serialize the assignment of indices
+     * to new items.
+     */
+    private static final int NUM_STRIPES = 64;
+
+    /**
+     * A mapping from each item to its index.
+     */
+    private final ConcurrentMap<T,Integer> indices;
+
+    /**
+     * The next index to be assigned.
+     */
+    private final AtomicInteger nextIndex;
+
+    /**
+     * The blocks of the reverse mapping from index to item.  This array is
+     * only ever replaced by a larger copy of itself while holding the lock on
+     * {@code this}.
+     */
+    private volatile AtomicReferenceArray<Object[]> blocks;
+
+    /**
+     * The locks that serialize the assignment of indices to new items with the
+     * same stripe.
+     */
+    private transient Object[] stripes;
+
+    /**
+     * Creates an empty {@code ConcurrentIndexer} with no mappings.
+     */
+    public ConcurrentIndexer() {
+        indices = new ConcurrentHashMap<T,Integer>();
+        nextIndex = new AtomicInteger();
+        blocks = new AtomicReferenceArray<Object[]>(16);
+        stripes = createStripes();
+    }
+
+    /**
+     * Creates a {@code ConcurrentIndexer} with indices for all of the provided
+     * items.
+     */
+    public ConcurrentIndexer(Collection<? extends T> items) {
+        this();
+        for (T item : items)
+            index(item);
+    }
+
+    /**
+     * Returns the locks used to assign indices to new items.
+     */
+    private static Object[] createStripes() {
+        Object[] stripes = new Object[NUM_STRIPES];
+        for (int i = 0; i < stripes.length; ++i)
+            stripes[i] = new Object();
+        return stripes;
+    }
+
+    /**
+     * {@inheritDoc}  This method is not safe to call while other threads are
+     * indexing items.
+     */
+    public synchronized void clear() {
+        indices.clear();
+        nextIndex.set(0);
+        blocks = new AtomicReferenceArray<Object[]>(16);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(T item) {
+        return indices.containsKey(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<T> items() {
+        return Collections.unmodifiableSet(indices.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int find(T item) {
+        Integer i = indices.get(item);
+        return (i == null) ? -1 : i;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int highestIndex() {
+        return nextIndex.get() - 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int index(T item) {
+        Integer i = indices.get(item);
+        if (i != null)
+            return i;
+        Object stripe = stripes[(item.hashCode() & 0x7fffffff) % NUM_STRIPES];
+        synchronized(stripe) {
+            // Double check that the item we are currently trying to index
+            // wasn't added by another thread using the same stripe while we
+            // were blocking
+            i = indices.get(item);
+            if (i != null)
+                return i;
+            int index = nextIndex.getAndIncrement();
+            // Record the reverse mapping before publishing the index so that
+            // any thread that can see the index is also able to look it up.
+            setItem(index, item);
+            indices.put(item, index);
+            return index;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean indexAll(Collection<T> items) {
+        int before = nextIndex.get();
+        for (T item : items)
+            index(item);
+        return nextIndex.get() != before;
+    }
+
+    /**
+     * {@inheritDoc} The returned iterator does not support {@code remove}.
+     */
+    public Iterator<Map.Entry<T,Integer>> iterator() {
+        return Collections.unmodifiableSet(indices.entrySet()).iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public T lookup(int index) {
+        if (index < 0 || index >= nextIndex.get())
+            return null;
+        AtomicReferenceArray<Object[]> b = blocks;
+        int blockIndex = index >>> BLOCK_BITS;
+        if (blockIndex >= b.length())
+            return null;
+        Object[] block = b.get(blockIndex);
+        if (block == null)
+            return null;
+        // The block's contents are published by the volatile write in the map
+        // when the index is handed out, so an index obtained through this
+        // instance will always be visible here.
+        return (T)(block[index & (BLOCK_SIZE - 1)]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<Integer,T> mapping() {
+        return new AbstractMap<Integer,T>() {
+            public Set<Map.Entry<Integer,T>> entrySet() {
+                Map<Integer,T> m = new java.util.HashMap<Integer,T>();
+                for (Map.Entry<T,Integer> e : indices.entrySet())
+                    m.put(e.getValue(), e.getKey());
+                return Collections.unmodifiableSet(m.entrySet());
+            }
+
+            public T get(Object key) {
+                return (key instanceof Integer)
+                    ? lookup((Integer)key) : null;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        return indices.size();
+    }
+
+    /**
+     * Stores {@code item} as the value for {@code index} in the reverse
+     * mapping, allocating any needed blocks.
+     */
+    private void setItem(int index, T item) {
+        int blockIndex = index >>> BLOCK_BITS;
+        AtomicReferenceArray<Object[]> b = blocks;
+        if (blockIndex >= b.length() || b.get(blockIndex) == null) {
+            synchronized(this) {
+                b = blocks;
+                if (blockIndex >= b.length()) {
+                    int newLength = b.length();
+                    while (newLength <= blockIndex)
+                        newLength *= 2;
+                    AtomicReferenceArray<Object[]> grown =
+                        new AtomicReferenceArray<Object[]>(newLength);
+                    for (int i = 0; i < b.length(); ++i)
+                        grown.set(i, b.get(i));
+                    blocks = b = grown;
+                }
+                if (b.get(blockIndex) == null)
+                    b.set(blockIndex, new Object[BLOCK_SIZE]);
+            }
+        }
+        b.get(blockIndex)[index & (BLOCK_SIZE - 1)] = item;
+    }
+
+    /**
+     * Recreates the lock stripes after deserialization.
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        stripes = createStripes();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return indices.toString();
+    }
+}
@@ -0,0 +1,868 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import edu.ucla.sspace.common.SemanticSpace;
+
+import edu.ucla.sspace.similarity.CosineSimilarity;
+import edu.ucla.sspace.similarity.SimilarityFunction;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.Vector;
+import edu.ucla.sspace.vector.VectorMath;
+import edu.ucla.sspace.vector.Vectors;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.logging.Logger;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+import static edu.ucla.sspace.util.LoggerUtil.info;
+import static edu.ucla.sspace.util.LoggerUtil.verbose;
+
+
+/**
+ * A {@link NearestNeighborFinder} that finds the approximate <i>k</i>-nearest
+ * neighbors of a word using a Hierarchical Navigable Small World (HNSW) graph.
+ * See the following paper for full details of the algorithm:
+ *
+ * <ul> <li style="font-family:Garamond, Georgia, serif"> Y. A. Malkov and D. A.
+ *   Yashunin. Efficient and robust approximate nearest neighbor search using
+ *   Hierarchical Navigable Small World graphs.  <i>IEEE Transactions on Pattern
+ *   Analysis and Machine Intelligence</i>, 2018.</li> </ul>
+ *
+ * <p> Each word's vector is a node in a layered proximity graph.  The bottom
+ * layer contains every word, while each higher layer contains an exponentially
+ * smaller random subset of the words in the layer below it.  A search greedily
+ * descends through the sparse upper layers to find a good starting point and
+ * then performs a best-first search of the bottom layer.  This makes the cost
+ * of a search roughly logarithmic in the number of words, rather than linear
+ * as with the {@link SimpleNearestNeighborFinder}.
+ *
+ * <p> The trade-off between speed and recall is controlled by three
+ * parameters.  The maximum number of neighbors of each node, {@code M},
+ * determines the size of the graph; larger values improve recall for high
+ * dimensional spaces at the cost of memory and build time.  The size of the
+ * candidate list used when inserting words, {@code efConstruction}, determines
+ * the quality of the graph.  The size of the candidate list used when
+ * searching, {@code efSearch}, may be changed at any time using {@link
+ * #setEfSearch(int)}; larger values improve recall but make searches slower.
+ *
+ * <p> The graph is built in parallel using a {@link WorkQueue}, and new words
+ * may be added after the graph is built using {@link #add(String,Vector)}.
+ * The vectors of the words are retained by this class, so the backing {@link
+ * SemanticSpace} is not needed after the finder is constructed.
+ *
+ * <p> Instances of this class are serializable, which allows a graph to be
+ * saved, e.g. using {@link SerializableUtil}, and later reloaded without
+ * rebuilding it.  The similarity function is stored by its class name and
+ * therefore must have a no-argument constructor.
+ *
+ * <p> All instances of this class are thread-safe.  Searches never block, and
+ * may run concurrently with calls to {@code add}.
+ *
+ * @see SimpleNearestNeighborFinder
+ * @see PartitioningNearestNeighborFinder
+ */
+public class HnswNearestNeighborFinder
+        implements NearestNeighborFinder, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The logger to which status updates will be written.
+     */
+    private static final Logger LOGGER =
+        Logger.getLogger(HnswNearestNeighborFinder.class.getName());
+
+    /**
+     * The default maximum number of neighbors for each node in the upper
+     * layers of the graph.
+     */
+    public static final int DEFAULT_MAX_NEIGHBORS = 16;
+
+    /**
+     * The default size of the candidate list used when inserting words.
+     */
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+
+    /**
+     * The default size of the candidate list used when searching.
+     */
+    public static final int DEFAULT_EF_SEARCH = 50;
+
+    /**
+     * The initial capacity of the node array when no words are known.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Orders candidates from the most similar to the least similar.
+     */
+    private static final Comparator<Candidate> MOST_SIMILAR_FIRST =
+        new Comparator<Candidate>() {
+            public int compare(Candidate c1, Candidate c2) {
+                return Double.compare(c2.sim, c1.sim);
+            }
+        };
+
+    /**
+     * Orders candidates from the least similar to the most similar.
+     */
+    private static final Comparator<Candidate> LEAST_SIMILAR_FIRST =
+        Collections.reverseOrder(MOST_SIMILAR_FIRST);
+
+    /**
+     * The maximum number of neighbors of a node in any layer above the bottom
+     * layer.
+     */
+    private final int maxNeighbors;
+
+    /**
+     * The maximum number of neighbors of a node in the bottom layer.
+     */
+    private final int maxBottomNeighbors;
+
+    /**
+     * The size of the candidate list used when inserting words.
+     */
+    private final int efConstruction;
+
+    /**
+     * The size of the candidate list used when searching.
+     */
+    private volatile int efSearch;
+
+    /**
+     * The normalization factor used when selecting the highest layer of a new
+     * node.
+     */
+    private final double levelMultiplier;
+
+    /**
+     * The similarity function used to compare words.
+     */
+    private transient SimilarityFunction simFunc;
+
+    /**
+     * The nodes in the graph, indexed by their identifier.  This array is only
+     * replaced by a larger copy while holding the lock on {@code this}.
+     */
+    private transient volatile Node[] nodes;
+
+    /**
+     * The number of nodes in the graph.
+     */
+    private transient AtomicInteger size;
+
+    /**
+     * A mapping from each word to the identifier of its node.
+     */
+    private transient ConcurrentMap<String,Integer> wordToNode;
+
+    /**
+     * The node from which all searches start, which is the only node on the
+     * highest layer of the graph.
+     */
+    private transient volatile EntryPoint entryPoint;
+
+    /**
+     * The source of randomness for selecting the layers of new nodes.
+     */
+    private transient Random random;
+
+    /**
+     * The work queue where the insertions are run in parallel while building
+     * the graph.
+     */
+    private transient WorkQueue workQueue;
+
+    /**
+     * Creates a new {@code HnswNearestNeighborFinder} for the words in the
+     * {@link SemanticSpace} using the cosine similarity and the default
+     * parameters.
+     *
+     * @param sspace a semantic space to search
+     */
+    public HnswNearestNeighborFinder(SemanticSpace sspace) {
+        this(sspace, new CosineSimilarity(), DEFAULT_MAX_NEIGHBORS,
+             DEFAULT_EF_CONSTRUCTION);
+    }
+
+    /**
+     * Creates a new {@code HnswNearestNeighborFinder} for the words in the
+     * {@link SemanticSpace} using the provided similarity function and graph
+     * parameters.
+     *
+     * @param sspace a semantic space to search
+     * @param similarity the similarity function used to compare words
+     * @param maxNeighbors the maximum number of neighbors of each node in the
+     *        upper layers of the graph.  Nodes in the bottom layer may have
+     *        twice as many neighbors.
+     * @param efConstruction the size of the candidate list used when inserting
+     *        words into the graph
+     */
+    public HnswNearestNeighborFinder(SemanticSpace sspace,
+                                     SimilarityFunction similarity,
+                                     int maxNeighbors, int efConstruction) {
+        this(similarity, maxNeighbors, efConstruction);
+        addAll(sspace);
+    }
+
+    /**
+     * Creates an empty {@code HnswNearestNeighborFinder} using the provided
+     * similarity function and graph parameters, to which words may be added
+     * using {@link #add(String,Vector)}.
+     *
+     * @param similarity the similarity function used to compare words
+     * @param maxNeighbors the maximum number of neighbors of each node in the
+     *        upper layers of the graph.  Nodes in the bottom layer may have
+     *        twice as many neighbors.
+     * @param efConstruction the size of the candidate list used when inserting
+     *        words into the graph
+     */
+    public HnswNearestNeighborFinder(SimilarityFunction similarity,
+                                     int maxNeighbors, int efConstruction) {
+        if (similarity == null)
+            throw new NullPointerException("similarity function cannot be null");
+        if (maxNeighbors < 2)
+            throw new IllegalArgumentException(
+                "Must have at least two neighbors per node: " + maxNeighbors);
+        if (efConstruction < 1)
+            throw new IllegalArgumentException(
+                "efConstruction must be positive: " + efConstruction);
+        this.simFunc = similarity;
+        this.maxNeighbors = maxNeighbors;
+        this.maxBottomNeighbors = 2 * maxNeighbors;
+        this.efConstruction = Math.max(efConstruction, maxNeighbors);
+        this.efSearch = DEFAULT_EF_SEARCH;
+        this.levelMultiplier = 1 / Math.log(maxNeighbors);
+        init(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Initializes the empty graph state.
+     */
+    private void init(int capacity) {
+        nodes = new Node[Math.max(capacity, 1)];
+        size = new AtomicInteger();
+        wordToNode = new ConcurrentHashMap<String,Integer>();
+        entryPoint = null;
+        random = new Random();
+        workQueue = WorkQueue.getWorkQueue();
+    }
+
+    /**
+     * Adds the word and its vector to the graph.
+     *
+     * @throws IllegalArgumentException if the word is already in the graph or
+     *         if the vector's length differs from those already in the graph
+     */
+    public void add(String word, Vector vector) {
+        if (word == null || vector == null)
+            throw new NullPointerException();
+        insert(createNode(word, Vectors.asDouble(vector)));
+    }
+
+    /**
+     * Adds all the words in the semantic space that are not already in the
+     * graph, inserting the words in parallel.
+     */
+    public void addAll(final SemanticSpace sspace) {
+        final List<Node> added = new ArrayList<Node>();
+        for (String word : sspace.getWords()) {
+            if (!wordToNode.containsKey(word))
+                added.add(createNode(word,
+                                     Vectors.asDouble(sspace.getVector(word))));
+        }
+        if (added.isEmpty())
+            return;
+        verbose(LOGGER, "Inserting %d words into the graph", added.size());
+
+        // Insert the first node directly so that the graph has an entry point
+        // before the parallel insertions begin
+        insert(added.get(0));
+        final int numThreads = workQueue.availableThreads();
+        final AtomicInteger inserted = new AtomicInteger(1);
+        Object taskId = workQueue.registerTaskGroup(numThreads);
+        for (int t = 0; t < numThreads; ++t) {
+            final int offset = t;
+            workQueue.add(taskId, new Runnable() {
+                    public void run() {
+                        for (int i = 1 + offset; i < added.size();
+                                 i += numThreads) {
+                            insert(added.get(i));
+                            int n = inserted.incrementAndGet();
+                            if (n % 10000 == 0)
+                                verbose(LOGGER, "Inserted %d/%d words",
+                                        n, added.size());
+                        }
+                    }
+                });
+        }
+        workQueue.await(taskId);
+    }
+
+    /**
+     * Returns {@code true} if the word has been added to the graph.
+     */
+    public boolean contains(String word) {
+        return wordToNode.containsKey(word);
+    }
+
+    /**
+     * Returns the number of words in the graph.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the size of the candidate list used when searching.
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Sets the size of the candidate list used when searching.  Larger values
+     * find the true nearest neighbors more often, while smaller values make
+     * searches faster.  Searches always use a list at least as large as the
+     * number of neighbors requested.
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch < 1)
+            throw new IllegalArgumentException(
+                "efSearch must be positive: " + efSearch);
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Creates a node for the word with a randomly selected highest layer and
+     * assigns it the next identifier.  The node is not connected to the graph
+     * until it is {@link #insert(Node) inserted}.
+     */
+    private Node createNode(String word, DoubleVector vector) {
+        Node first = nodes[0];
+        if (first != null && first.vector.length() != vector.length())
+            throw new IllegalArgumentException(
+                "Vector for " + word + " has length " + vector.length() +
+                " but the graph contains vectors of length " +
+                first.vector.length());
+        int level = (int)(-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        synchronized (this) {
+            if (wordToNode.containsKey(word))
+                throw new IllegalArgumentException(
+                    word + " is already in the graph");
+            int id = size.get();
+            if (id == nodes.length) {
+                Node[] grown = new Node[nodes.length * 2];
+                System.arraycopy(nodes, 0, grown, 0, nodes.length);
+                nodes = grown;
+            }
+            Node node = new Node(id, word, vector, level);
+            nodes[id] = node;
+            size.set(id + 1);
+            wordToNode.put(word, id);
+            return node;
+        }
+    }
+
+    /**
+     * Connects the node to its nearest neighbors in every layer on which it
+     * appears.
+     */
+    private void insert(Node node) {
+        EntryPoint ep = entryPoint;
+        if (ep == null) {
+            synchronized (this) {
+                ep = entryPoint;
+                if (ep == null) {
+                    entryPoint = new EntryPoint(node.id, node.level);
+                    return;
+                }
+            }
+        }
+
+        DoubleVector q = node.vector;
+        Node cur = nodes[ep.node];
+        Candidate nearest = new Candidate(cur.id, simFunc.sim(q, cur.vector));
+        // Greedily descend through the layers above the node's highest layer
+        for (int level = ep.level; level > node.level; --level)
+            nearest = greedySearch(q, nearest, level);
+
+        List<Candidate> entries = new ArrayList<Candidate>();
+        entries.add(nearest);
+        for (int level = Math.min(node.level, ep.level); level >= 0; --level) {
+            PriorityQueue<Candidate> found =
+                searchLayer(q, entries, efConstruction, level);
+            entries = toSortedList(found);
+            int max = (level == 0) ? maxBottomNeighbors : maxNeighbors;
+            int[] neighbors = selectNeighbors(q, entries, maxNeighbors);
+            // Nodes inserted concurrently may have already linked to this
+            // node, so merge the selected neighbors with those links rather
+            // than replacing them
+            addLinks(node, neighbors, level, max);
+            // Add the reverse links from each neighbor, shrinking its list of
+            // neighbors if it has too many
+            for (int n : neighbors)
+                addLinks(nodes[n], new int[] { node.id }, level, max);
+        }
+
+        // If the new node is on a higher layer than the rest of the graph,
+        // make it the new entry point
+        if (node.level > ep.level) {
+            synchronized (this) {
+                if (node.level > entryPoint.level)
+                    entryPoint = new EntryPoint(node.id, node.level);
+            }
+        }
+    }
+
+    /**
+     * Adds links from the node to the new neighbors at the specified layer,
+     * ignoring any to which it is already linked and selecting which neighbors
+     * to keep if the node would have more than the maximum number of
+     * neighbors.
+     */
+    private void addLinks(Node node, int[] added, int level, int max) {
+        synchronized (node) {
+            int[] current = node.getNeighbors(level);
+            TIntHashSet linked = new TIntHashSet(current);
+            int[] updated = new int[current.length + added.length];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            int size = current.length;
+            for (int n : added) {
+                if (linked.add(n))
+                    updated[size++] = n;
+            }
+            if (size == current.length)
+                return;
+            if (size < updated.length) {
+                int[] trimmed = new int[size];
+                System.arraycopy(updated, 0, trimmed, 0, size);
+                updated = trimmed;
+            }
+            if (updated.length > max) {
+                List<Candidate> candidates =
+                    new ArrayList<Candidate>(updated.length);
+                for (int n : updated)
+                    candidates.add(new Candidate(
+                        n, simFunc.sim(node.vector, nodes[n].vector)));
+                Collections.sort(candidates, MOST_SIMILAR_FIRST);
+                updated = selectNeighbors(node.vector, candidates, max);
+            }
+            node.setNeighbors(level, updated);
+        }
+    }
+
+    /**
+     * Selects up to {@code max} neighbors from the candidates, which are
+     * ordered from most to least similar to {@code q}.  A candidate is
+     * preferred if it is more similar to {@code q} than to any neighbor
+     * already selected, which keeps links to distinct regions of the space.
+     * Any remaining slots are then filled with the most similar of the
+     * candidates that were passed over.
+     */
+    private int[] selectNeighbors(DoubleVector q, List<Candidate> candidates,
+                                  int max) {
+        if (candidates.size() <= max) {
+            int[] selected = new int[candidates.size()];
+            for (int i = 0; i < selected.length; ++i)
+                selected[i] = candidates.get(i).node;
+            return selected;
+        }
+        List<Candidate> selected = new ArrayList<Candidate>(max);
+        List<Candidate> discarded = new ArrayList<Candidate>();
+        for (Candidate c : candidates) {
+            if (selected.size() >= max)
+                break;
+            DoubleVector v = nodes[c.node].vector;
+            boolean isDiverse = true;
+            for (Candidate s : selected) {
+                if (simFunc.sim(v, nodes[s.node].vector) > c.sim) {
+                    isDiverse = false;
+                    break;
+                }
+            }
+            if (isDiverse)
+                selected.add(c);
+            else
+                discarded.add(c);
+        }
+        for (int i = 0; selected.size() < max && i < discarded.size(); ++i)
+            selected.add(discarded.get(i));
+        int[] neighbors = new int[selected.size()];
+        for (int i = 0; i < neighbors.length; ++i)
+            neighbors[i] = selected.get(i).node;
+        return neighbors;
+    }
+
+    /**
+     * Returns the node on the specified layer that is most similar to {@code
+     * q} that can be found by repeatedly moving from {@code start} to its most
+     * similar neighbor.
+     */
+    private Candidate greedySearch(DoubleVector q, Candidate start,
+                                   int level) {
+        Candidate best = start;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int n : nodes[best.node].getNeighbors(level)) {
+                double sim = simFunc.sim(q, nodes[n].vector);
+                if (sim > best.sim) {
+                    best = new Candidate(n, sim);
+                    changed = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Performs a best-first search of the specified layer starting from the
+     * entry points and returns up to {@code ef} of the most similar nodes that
+     * were found, ordered so that the least similar node is at the head of the
+     * queue.
+     */
+    private PriorityQueue<Candidate> searchLayer(DoubleVector q,
+                                                 List<Candidate> entries,
+                                                 int ef, int level) {
+        TIntHashSet visited = new TIntHashSet();
+        PriorityQueue<Candidate> toVisit =
+            new PriorityQueue<Candidate>(ef, MOST_SIMILAR_FIRST);
+        PriorityQueue<Candidate> found =
+            new PriorityQueue<Candidate>(ef + 1, LEAST_SIMILAR_FIRST);
+        for (Candidate c : entries) {
+            visited.add(c.node);
+            toVisit.add(c);
+            found.add(c);
+        }
+        while (found.size() > ef)
+            found.poll();
+
+        while (!toVisit.isEmpty()) {
+            Candidate c = toVisit.poll();
+            // Stop once the closest unvisited candidate is less similar than
+            // all of the nodes found so far
+            if (found.size() >= ef && c.sim < found.peek().sim)
+                break;
+            for (int n : nodes[c.node].getNeighbors(level)) {
+                if (!visited.add(n))
+                    continue;
+                double sim = simFunc.sim(q, nodes[n].vector);
+                if (found.size() < ef || sim > found.peek().sim) {
+                    Candidate next = new Candidate(n, sim);
+                    toVisit.add(next);
+                    found.add(next);
+                    if (found.size() > ef)
+                        found.poll();
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Empties the queue into a list ordered from the most to the least similar
+     * candidate.
+     */
+    private static List<Candidate> toSortedList(PriorityQueue<Candidate> q) {
+        List<Candidate> sorted = new ArrayList<Candidate>(q.size());
+        while (!q.isEmpty())
+            sorted.add(q.poll());
+        Collections.reverse(sorted);
+        return sorted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMultiMap<Double,String> getMostSimilar(
+            String word, int numberOfSimilarWords) {
+        Integer id = wordToNode.get(word);
+        // if the graph does not have the word, then return null
+        if (id == null)
+            return null;
+        // Find the most similar words vectors to this word's vector, which will
+        // end up including the word itself.  Therefore, increase the count by
+        // one and remove the word's vector after it finished.
+        SortedMultiMap<Double,String> mostSim =
+            getMostSimilar(nodes[id].vector, numberOfSimilarWords + 1);
+        Iterator<Map.Entry<Double,String>> iter = mostSim.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Double,String> e = iter.next();
+            if (word.equals(e.getValue())) {
+                iter.remove();
+                break;
+            }
+        }
+        while (mostSim.size() > numberOfSimilarWords)
+            mostSim.remove(mostSim.firstKey());
+        return mostSim;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMultiMap<Double,String> getMostSimilar(
+             Set<String> terms, int numberOfSimilarWords) {
+        if (terms.isEmpty() || size.get() == 0)
+            return null;
+        // Compute the mean vector for all the terms
+        DoubleVector mean = new DenseVector(nodes[0].vector.length());
+        int found = 0;
+        for (String term : terms) {
+            Integer id = wordToNode.get(term);
+            if (id == null)
+                info(LOGGER, "No vector for term " + term);
+            else {
+                VectorMath.add(mean, nodes[id].vector);
+                found++;
+            }
+        }
+        // If none of the provided vectors were in the space, then return null
+        if (found == 0)
+            return null;
+
+        // Find the most similar words vectors to the mean vector, removing any
+        // of the terms themselves
+        SortedMultiMap<Double,String> mostSim =
+            getMostSimilar(mean, numberOfSimilarWords + terms.size());
+        Iterator<Map.Entry<Double,String>> iter = mostSim.entrySet().iterator();
+        while (iter.hasNext()) {
+            if (terms.contains(iter.next().getValue()))
+                iter.remove();
+        }
+        while (mostSim.size() > numberOfSimilarWords)
+            mostSim.remove(mostSim.firstKey());
+        return mostSim;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMultiMap<Double,String> getMostSimilar(
+            Vector v, int numberOfSimilarWords) {
+        if (v == null)
+            return null;
+        SortedMultiMap<Double,String> mostSim =
+            new BoundedSortedMultiMap<Double,String>(
+                numberOfSimilarWords, false);
+        EntryPoint ep = entryPoint;
+        if (ep == null || numberOfSimilarWords < 1)
+            return mostSim;
+
+        DoubleVector q = Vectors.asDouble(v);
+        Node start = nodes[ep.node];
+        Candidate nearest = new Candidate(start.id, simFunc.sim(q, start.vector));
+        for (int level = ep.level; level > 0; --level)
+            nearest = greedySearch(q, nearest, level);
+        PriorityQueue<Candidate> found = searchLayer(
+            q, Collections.singletonList(nearest),
+            Math.max(efSearch, numberOfSimilarWords), 0);
+        for (Candidate c : found)
+            mostSim.put(c.sim, nodes[c.node].word);
+        return mostSim;
+    }
+
+    /**
+     * Writes the graph, including the words and their vectors, to the stream.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeUTF(simFunc.getClass().getName());
+        EntryPoint ep;
+        Node[] snapshot;
+        int n;
+        // Prevent any new nodes from being created while the graph is written
+        synchronized (this) {
+            ep = entryPoint;
+            snapshot = nodes;
+            n = size.get();
+        }
+        out.writeInt(n);
+        out.writeInt((ep == null) ? -1 : ep.node);
+        for (int i = 0; i < n; ++i) {
+            Node node = snapshot[i];
+            out.writeObject(node.word);
+            // Write a copy of the vector in case the original is a view of
+            // some other, non-serializable data
+            DoubleVector v = node.vector;
+            out.writeObject((v instanceof SparseDoubleVector)
+                            ? new CompactSparseVector((SparseDoubleVector)v)
+                            : new DenseVector(v));
+            out.writeInt(node.level);
+            for (int level = 0; level <= node.level; ++level) {
+                int[] neighbors = node.getNeighbors(level);
+                out.writeInt(neighbors.length);
+                for (int neighbor : neighbors)
+                    out.writeInt(neighbor);
+            }
+        }
+    }
+
+    /**
+     * Reads the graph from the stream.
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        simFunc = ReflectionUtil.<SimilarityFunction>getObjectInstance(
+            in.readUTF());
+        int n = in.readInt();
+        int entry = in.readInt();
+        init(n);
+        for (int i = 0; i < n; ++i) {
+            String word = (String)(in.readObject());
+            DoubleVector vector = (DoubleVector)(in.readObject());
+            int level = in.readInt();
+            Node node = new Node(i, word, vector, level);
+            for (int l = 0; l <= level; ++l) {
+                int[] neighbors = new int[in.readInt()];
+                for (int j = 0; j < neighbors.length; ++j)
+                    neighbors[j] = in.readInt();
+                node.setNeighbors(l, neighbors);
+            }
+            nodes[i] = node;
+            wordToNode.put(word, i);
+        }
+        size.set(n);
+        if (entry >= 0)
+            entryPoint = new EntryPoint(entry, nodes[entry].level);
+    }
+
+    /**
+     * A node in the search graph.
+     */
+    private static class Node {
+
+        /**
+         * The identifier of this node
+         */
+        final int id;
+
+        /**
+         * The word represented by this node
+         */
+        final String word;
+
+        /**
+         * The vector for the word
+         */
+        final DoubleVector vector;
+
+        /**
+         * The highest layer on which this node appears
+         */
+        final int level;
+
+        /**
+         * The neighbors of this node on each layer.  Neither this array nor
+         * the neighbor arrays it contains are modified once published;
+         * updates replace the entire array while holding this node's lock,
+         * which allows searches to read the neighbors without locking.
+         */
+        private volatile int[][] neighbors;
+
+        public Node(int id, String word, DoubleVector vector, int level) {
+            this.id = id;
+            this.word = word;
+            this.vector = vector;
+            this.level = level;
+            int[][] empty = new int[level + 1][];
+            for (int i = 0; i <= level; ++i)
+                empty[i] = new int[0];
+            neighbors = empty;
+        }
+
+        /**
+         * Returns the neighbors of this node on the specified layer.  The
+         * returned array must not be modified.
+         */
+        public int[] getNeighbors(int level) {
+            return neighbors[level];
+        }
+
+        /**
+         * Replaces the neighbors of this node on the specified layer.
+         */
+        public synchronized void setNeighbors(int level, int[] updated) {
+            int[][] copy = neighbors.clone();
+            copy[level] = updated;
+            neighbors = copy;
+        }
+    }
+
+    /**
+     * A node that was compared to a search vector and its similarity.
+     */
+    private static class Candidate {
+
+        final int node;
+
+        final double sim;
+
+        public Candidate(int node, double sim) {
+            this.node = node;
+            this.sim = sim;
+        }
+    }
+
+    /**
+     * The node at which all searches start and the highest layer of the graph.
+     */
+    private static class EntryPoint {
+
+        final int node;
+
+        final int level;
+
+        public EntryPoint(int node, int level) {
+            this.node = node;
+            this.level = level;
+        }
+    }
+}
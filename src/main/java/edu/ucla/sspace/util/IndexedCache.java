@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A thread-safe cache of values keyed by small, non-negative integers, such as
+ * the contiguous indices assigned by a {@link ConcurrentIndexer}.  Values are
+ * stored in an array indexed by key, so {@link #get(int) get} never hashes or
+ * locks.  The array is replaced with a larger copy when a key beyond its end
+ * is {@link #put(int,Object) put}, which is the only operation that locks.
+ *
+ * <p> All methods except {@link #clear()} are safe to call concurrently.
+ *
+ * @see ConcurrentIndexer
+ */
+public class IndexedCache<T> {
+
+    /**
+     * The number of keys for which space is initially allocated if no size is
+     * specified.
+     */
+    private static final int DEFAULT_INITIAL_SIZE = 1024;
+
+    /**
+     * The number of keys for which space is allocated when the cache is
+     * created or cleared.
+     */
+    private final int initialSize;
+
+    /**
+     * The cached values, indexed by key.  This array is only ever replaced by
+     * a larger copy of itself while holding the lock on {@code this}, or by an
+     * empty array when the cache is cleared.
+     */
+    private volatile AtomicReferenceArray<T> values;
+
+    /**
+     * Creates an empty cache.
+     */
+    public IndexedCache() {
+        this(DEFAULT_INITIAL_SIZE);
+    }
+
+    /**
+     * Creates an empty cache with space for keys less than {@code
+     * initialSize}.
+     */
+    public IndexedCache(int initialSize) {
+        if (initialSize < 1)
+            throw new IllegalArgumentException(
+                "Initial size must be positive: " + initialSize);
+        this.initialSize = initialSize;
+        values = new AtomicReferenceArray<T>(initialSize);
+    }
+
+    /**
+     * Returns the value cached for the key, or {@code null} if no value has
+     * been cached.
+     */
+    public T get(int key) {
+        AtomicReferenceArray<T> v = values;
+        return (key < v.length()) ? v.get(key) : null;
+    }
+
+    /**
+     * Caches the value for the key, growing the cache if needed.
+     *
+     * @throws IndexOutOfBoundsException if {@code key} is negative
+     */
+    public void put(int key, T value) {
+        if (key < 0)
+            throw new IndexOutOfBoundsException("Negative key: " + key);
+        while (true) {
+            AtomicReferenceArray<T> v = values;
+            if (key >= v.length())
+                v = grow(key);
+            v.set(key, value);
+            // If another thread replaced the array while the value was being
+            // set, its copy may not include the value, so set it again in the
+            // replacement.
+            if (values == v)
+                return;
+        }
+    }
+
+    /**
+     * Replaces the array of values with a larger copy that has space for the
+     * key, unless another thread has already done so, and returns the current
+     * array.
+     */
+    private synchronized AtomicReferenceArray<T> grow(int key) {
+        AtomicReferenceArray<T> v = values;
+        if (key < v.length())
+            return v;
+        AtomicReferenceArray<T> grown = new AtomicReferenceArray<T>(
+            Math.max(key + 1, v.length() * 2));
+        for (int i = 0; i < v.length(); ++i)
+            grown.set(i, v.get(i));
+        values = grown;
+        // A value set in the old array after its slot was copied, but before
+        // the new array was published, is not seen by the thread that set it
+        // as needing to be set again, so copy any such values once more.
+        for (int i = 0; i < v.length(); ++i) {
+            T value = v.get(i);
+            if (value != null)
+                grown.compareAndSet(i, null, value);
+        }
+        return grown;
+    }
+
+    /**
+     * Removes all of the cached values.
+     */
+    public synchronized void clear() {
+        values = new AtomicReferenceArray<T>(initialSize);
+    }
+}
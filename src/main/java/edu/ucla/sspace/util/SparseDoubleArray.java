@@ -311,6 +311,17 @@ public class SparseDoubleArray
     public int[] getElementIndices() {
         return indices;
     }
+
+    /**
+     * Returns the non-{@code 0} values in the array, in the same order as
+     * their indices are returned by {@link #getElementIndices()}.  The
+     * returned array is the backing array and should not be modified.
+     *
+     * @return the non-{@code 0} values
+     */
+    public double[] getElementValues() {
+        return values;
+    }
     
     /**
      * Retrieves the value at specified index or 0 if no value had been
@@ -25,12 +25,15 @@ package edu.ucla.sspace.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -69,31 +72,88 @@ import java.util.concurrent.TimeUnit;
  * same identifier, which could result in either thread returning prematurely
  * before its tasks have finished.  However, a <i>shared</i> group identifier
  * can allow multiple threads to add tasks for a common goal, with each being
- * able await until all the tasks are finished.
+ * able await until all the tasks are finished.  A task group may be {@link
+ * #cancel(Object) cancelled}, in which case any of its tasks that have not yet
+ * started are skipped and waiting threads return once the running tasks
+ * finish.
+ *
+ * <p> By default, tasks are run by a pool of daemon {@link WorkerThread}
+ * instances that draw from a shared queue.  This queue may be bounded, in which
+ * case adding a task blocks until space is available, which keeps fast
+ * producers from buffering an unbounded amount of work.  Alternately, the tasks
+ * may be delegated to any {@link Executor}, such as a {@code ForkJoinPool} or
+ * an executor that runs each task in its own virtual thread, on platforms that
+ * support them.
+ *
+ * <p> Subsystems that run long jobs should use their own {@link
+ * #getWorkQueue(String) named} queue so that their tasks do not delay those of
+ * other subsystems.  Applications may configure the queue used by a subsystem
+ * using {@link #setWorkQueue(String, WorkQueue)} before the subsystem is first
+ * used.
  *
  * @author David Jurgens
  */
 public class WorkQueue {
 
     /**
-     * The list of all threads drawing work from the queue.
+     * The name of the queue returned by {@link #getWorkQueue()}.
+     */
+    public static final String DEFAULT_QUEUE = "default";
+
+    /**
+     * The name of the queue used by the clustering algorithms.
+     */
+    public static final String CLUSTERING_QUEUE = "clustering";
+
+    /**
+     * The name of the queue used by the word sense induction algorithms.
+     */
+    public static final String WORDSI_QUEUE = "wordsi";
+
+    /**
+     * The name of the queue used by the graph algorithms.
+     */
+    public static final String GRAPH_QUEUE = "graph";
+
+    /**
+     * The name of the queue used to read and write semantic spaces.
+     */
+    public static final String IO_QUEUE = "io";
+
+    /**
+     * The list of all threads drawing work from the queue, which is empty if
+     * tasks are being delegated to an external {@link Executor}.
      */
     private final List<Thread> threads;
 
     /**
-     * The queue from which worker threads draw jobs to execute
+     * The queue from which worker threads draw jobs to execute, or {@code null}
+     * if tasks are being delegated to an external {@link Executor}.
      */
     private final BlockingQueue<Runnable> workQueue;
 
     /**
-     * A mapping from a group identifier to the associated latch.
+     * The executor to which tasks are delegated, or {@code null} if this
+     * instance runs its tasks using its own threads.
      */
-    private final ConcurrentMap<Object,CountDownLatch> taskKeyToLatch;
+    private final Executor executor;
 
     /**
-     * The singleton {@code WorkQueue} instance supported by this class
+     * The number of tasks that the external executor can run concurrently.
      */
-    private static WorkQueue singleton;
+    private final int parallelism;
+
+    /**
+     * A mapping from a group identifier to the associated group state.
+     */
+    private final ConcurrentMap<Object,TaskGroup> taskKeyToGroup;
+
+    /**
+     * The mapping from subsystem name to the {@code WorkQueue} that subsystem
+     * should use.
+     */
+    private static final ConcurrentMap<String,WorkQueue> NAMED_QUEUES =
+        new ConcurrentHashMap<String,WorkQueue>();
     
     /**
      * Creates a new work queue with the number of threads executing tasks the
@@ -108,20 +168,73 @@ public class WorkQueue {
      * tasks.
      */
     WorkQueue(int numThreads) {
-        workQueue = new LinkedBlockingQueue<Runnable>();
+        this(numThreads, new LinkedBlockingQueue<Runnable>());
+    }
+
+    /**
+     * Creates a new work queue with the specified number of threads executing
+     * tasks, where at most {@code capacity} tasks may be waiting to execute.
+     * Once the capacity is reached, adding further tasks blocks until a thread
+     * has begun executing one of the waiting tasks.  Note that tasks run by
+     * this queue should not themselves add tasks to it, as all of the threads
+     * may then be blocked waiting for space.
+     *
+     * @param numThreads the number of threads executing tasks
+     * @param capacity the maximum number of tasks that may be waiting
+     *
+     * @throws IllegalArgumentException if either argument is not positive
+     */
+    public WorkQueue(int numThreads, int capacity) {
+        this(numThreads, new ArrayBlockingQueue<Runnable>(capacity));
+    }
+
+    /**
+     * Creates a new work queue where the threads execute tasks taken from the
+     * provided queue.
+     */
+    private WorkQueue(int numThreads, BlockingQueue<Runnable> workQueue) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException(
+                "Must have at least one thread: " + numThreads);
+        this.workQueue = workQueue;
+        executor = null;
+        parallelism = 0;
         threads = new ArrayList<Thread>();
-        taskKeyToLatch = new ConcurrentHashMap<Object,CountDownLatch>();
-        for (int i = 0; i < numThreads; ++i) {
-            Thread t = new WorkerThread(workQueue);
-            threads.add(t);
-            t.start();            
-        }
+        taskKeyToGroup = new ConcurrentHashMap<Object,TaskGroup>();
+        for (int i = 0; i < numThreads; ++i)
+            addThread();
+    }
+
+    /**
+     * Creates a new work queue that delegates the execution of its tasks to the
+     * provided executor.
+     *
+     * @param executor the executor that will run the tasks
+     * @param parallelism the number of tasks the executor can be expected to
+     *        run concurrently, which is reported by {@link
+     *        #availableThreads()}
+     *
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public WorkQueue(Executor executor, int parallelism) {
+        if (executor == null)
+            throw new NullPointerException("executor cannot be null");
+        if (parallelism < 1)
+            throw new IllegalArgumentException(
+                "Parallelism must be positive: " + parallelism);
+        this.executor = executor;
+        this.parallelism = parallelism;
+        workQueue = null;
+        threads = new ArrayList<Thread>();
+        taskKeyToGroup = new ConcurrentHashMap<Object,TaskGroup>();
     }
 
     /**
      * Adds the provided task to the work queue on behalf of the task group
      * identifier.  Note that unlike the {@link #run(Collection) run} method,
-     * this method returns immediately without waiting for the task to finish.
+     * this method returns immediately without waiting for the task to finish,
+     * unless this queue is bounded and currently full.  If the task group has
+     * been cancelled, the task is discarded.
      *
      * @param taskGroupId an identifier associated with a set of tasks.
      * @param task a task to run
@@ -130,24 +243,81 @@ public class WorkQueue {
      *         currently associated with any active taskGroup
      */
     public void add(Object taskGroupId, Runnable task) {
-        CountDownLatch latch = taskKeyToLatch.get(taskGroupId);
-        if (latch == null)
+        TaskGroup group = taskKeyToGroup.get(taskGroupId);
+        if (group == null)
             throw new IllegalArgumentException(
                 "Unknown task id: " + taskGroupId);
         if (task == null)
-            throw new NullPointerException("Cannot add null tasks");                                           
-        workQueue.offer(new CountingRunnable(task, latch));
+            throw new NullPointerException("Cannot add null tasks");
+        synchronized (group) {
+            if (group.cancelled)
+                return;
+            group.added++;
+        }
+        submit(new CountingRunnable(task, group));
     }
     
     /**
-     * Increases the number of concurrently processing threads by one.
+     * Increases the number of concurrently processing threads by one.  This
+     * has no effect if the tasks are delegated to an external executor.
      */
-    private void addThread() {
+    private synchronized void addThread() {
+        if (workQueue == null)
+            return;
         Thread t = new WorkerThread(workQueue);
         threads.add(t);
         t.start();            
     }
 
+    /**
+     * Cancels the task group, causing any of its tasks that have not yet
+     * started to be skipped.  Tasks that are already running are allowed to
+     * finish, and may check {@link #isCancelled(Object)} to stop early.  Any
+     * threads waiting on the group return once the running tasks have
+     * finished.  The group identifier remains registered until it has been
+     * waited upon.
+     *
+     * @param taskGroupId the key associated with a task group
+     *
+     * @return {@code true} if the group was active and has been cancelled by
+     *         this call
+     */
+    public boolean cancel(Object taskGroupId) {
+        TaskGroup group = taskKeyToGroup.get(taskGroupId);
+        if (group == null)
+            return false;
+        synchronized (group) {
+            if (group.cancelled)
+                return false;
+            group.cancelled = true;
+            // Release the latch for the tasks that will now never be added
+            for (long i = group.added; i < group.numTasks; ++i)
+                group.latch.countDown();
+        }
+        // Remove any of the group's tasks that are still waiting in the queue
+        // so they do not occupy space in a bounded queue
+        if (workQueue != null) {
+            Iterator<Runnable> it = workQueue.iterator();
+            while (it.hasNext()) {
+                Runnable r = it.next();
+                if (r instanceof CountingRunnable
+                        && ((CountingRunnable)r).group == group
+                        && workQueue.remove(r))
+                    group.latch.countDown();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the task group associated with the key has been
+     * cancelled and not yet waited upon.
+     */
+    public boolean isCancelled(Object taskGroupId) {
+        TaskGroup group = taskKeyToGroup.get(taskGroupId);
+        return group != null && group.cancelled;
+    }
+
     /**
      * Waits until all the tasks associated with the group identifier have
      * finished.  Once a task group has been successfully waited upon, the group
@@ -158,16 +328,16 @@ public class WorkQueue {
      *         currently associated with any active taskGroup
      */
     public void await(Object taskGroupId) {
-        CountDownLatch latch = taskKeyToLatch.get(taskGroupId);
-        if (latch == null)
+        TaskGroup group = taskKeyToGroup.get(taskGroupId);
+        if (group == null)
             throw new IllegalArgumentException(
                 "Unknown task group: " + taskGroupId);
         try {
-            while(!latch.await(5, TimeUnit.SECONDS))
+            while(!group.latch.await(5, TimeUnit.SECONDS))
                 ;
             // Once finished, remove the key so it can be associated with a new
             // task
-            taskKeyToLatch.remove(taskGroupId);
+            taskKeyToGroup.remove(taskGroupId);
         }
         catch (InterruptedException ie) {
             throw new IllegalStateException("Not all tasks finished", ie);
@@ -184,15 +354,15 @@ public class WorkQueue {
      *         currently associated with any active taskGroup
      */
     public boolean await(Object taskGroupId, long timeout, TimeUnit unit) {
-        CountDownLatch latch = taskKeyToLatch.get(taskGroupId);
-        if (latch == null)
+        TaskGroup group = taskKeyToGroup.get(taskGroupId);
+        if (group == null)
             throw new IllegalArgumentException(
                 "Unknown task group: " + taskGroupId);
         try {
-            if (latch.await(timeout, unit)) {
+            if (group.latch.await(timeout, unit)) {
                 // Once finished, remove the key so it can be associated with a
                 // new task
-                taskKeyToLatch.remove(taskGroupId);
+                taskKeyToGroup.remove(taskGroupId);
                 return true;
             }
             return false;
@@ -214,10 +384,10 @@ public class WorkQueue {
      *         that task key
      */
     public long getRemainingTasks(Object taskGroupId) {
-        CountDownLatch latch = taskKeyToLatch.get(taskGroupId);
-        return (latch == null)
+        TaskGroup group = taskKeyToGroup.get(taskGroupId);
+        return (group == null)
             ? 0
-            : latch.getCount();
+            : group.latch.getCount();
     }
 
     /**
@@ -225,14 +395,7 @@ public class WorkQueue {
      * running concurrent tasks.
      */
     public static WorkQueue getWorkQueue() {
-        if (singleton == null) {
-            synchronized (WorkQueue.class) {
-                if (singleton == null)
-                    // REMINDER: default number of threads?
-                    singleton = new WorkQueue(); 
-            }
-        }
-        return singleton;
+        return getWorkQueue(DEFAULT_QUEUE);
     }
 
     /**
@@ -241,17 +404,70 @@ public class WorkQueue {
      * number of threads are available.
      */
     public static WorkQueue getWorkQueue(int numThreads) {
-        if (singleton == null) {
+        return getWorkQueue(DEFAULT_QUEUE, numThreads);
+    }
+
+    /**
+     * Returns the {@link WorkQueue} to be used by the named subsystem, creating
+     * a new queue with as many threads as there are processors if the name has
+     * no queue yet.
+     *
+     * @param name the name of the subsystem
+     */
+    public static WorkQueue getWorkQueue(String name) {
+        WorkQueue q = NAMED_QUEUES.get(name);
+        if (q == null) {
             synchronized (WorkQueue.class) {
-                if (singleton == null)
-                    singleton = new WorkQueue(numThreads); 
+                q = NAMED_QUEUES.get(name);
+                if (q == null) {
+                    q = new WorkQueue();
+                    NAMED_QUEUES.put(name, q);
+                }
             }
         }
+        return q;
+    }
 
-        while (singleton.availableThreads() < numThreads) {
-            singleton.addThread();
+    /**
+     * Returns the {@link WorkQueue} to be used by the named subsystem, ensuring
+     * that <i>at least</i> the specified number of threads are available.  If
+     * the subsystem's queue delegates to an external executor, its parallelism
+     * is left unchanged.
+     *
+     * @param name the name of the subsystem
+     * @param numThreads the minimum number of threads
+     */
+    public static WorkQueue getWorkQueue(String name, int numThreads) {
+        WorkQueue q = NAMED_QUEUES.get(name);
+        if (q == null) {
+            synchronized (WorkQueue.class) {
+                q = NAMED_QUEUES.get(name);
+                if (q == null) {
+                    q = new WorkQueue(numThreads);
+                    NAMED_QUEUES.put(name, q);
+                }
+            }
+        }
+        synchronized (q) {
+            while (q.workQueue != null && q.availableThreads() < numThreads)
+                q.addThread();
         }
-        return singleton;
+        return q;
+    }
+
+    /**
+     * Sets the {@link WorkQueue} to be used by the named subsystem.  This
+     * should be called before the subsystem first requests its queue, as
+     * existing users of the prior queue will continue to use it.
+     *
+     * @param name the name of the subsystem, or {@link #DEFAULT_QUEUE} to
+     *        replace the queue returned by {@link #getWorkQueue()}
+     * @param queue the queue to use
+     */
+    public static void setWorkQueue(String name, WorkQueue queue) {
+        if (name == null || queue == null)
+            throw new NullPointerException("name and queue must be non-null");
+        NAMED_QUEUES.put(name, queue);
     }
 
     /**
@@ -265,7 +481,7 @@ public class WorkQueue {
      */
     public Object registerTaskGroup(int numTasks) {
         Object key = new Object();
-        taskKeyToLatch.putIfAbsent(key, new CountDownLatch(numTasks));
+        taskKeyToGroup.putIfAbsent(key, new TaskGroup(numTasks));
         return key;
     }
 
@@ -284,8 +500,8 @@ public class WorkQueue {
      *          registered.
      */
     public boolean registerTaskGroup(Object taskGroupId, int numTasks) {
-        return taskKeyToLatch.
-            putIfAbsent(taskGroupId, new CountDownLatch(numTasks)) == null;
+        return taskKeyToGroup.
+            putIfAbsent(taskGroupId, new TaskGroup(numTasks)) == null;
     }
 
     /**
@@ -307,29 +523,76 @@ public class WorkQueue {
      *         to finish
      */
     public void run(Collection<Runnable> tasks) {
-        // Create a semphore that the wrapped runnables will execute
-        int numTasks = tasks.size();
-        CountDownLatch latch = new CountDownLatch(numTasks);
+        // Create a group that the wrapped runnables will count down
+        TaskGroup group = new TaskGroup(tasks.size());
         for (Runnable r : tasks) {
             if (r == null)
                 throw new NullPointerException("Cannot run null tasks");
-            workQueue.offer(new CountingRunnable(r, latch));
+            submit(new CountingRunnable(r, group));
         }
         try {
             // Wait until all the tasks have finished
-            latch.await();
+            group.latch.await();
         }
         catch (InterruptedException ie) {
             throw new IllegalStateException("Not all tasks finished", ie);
         }
     }
 
+    /**
+     * Hands the task to the threads of this queue or to the external executor,
+     * blocking if the queue is bounded and full.
+     */
+    private void submit(Runnable task) {
+        if (executor != null) {
+            executor.execute(task);
+            return;
+        }
+        try {
+            workQueue.put(task);
+        }
+        catch (InterruptedException ie) {
+            throw new IllegalStateException("Interrupted adding task", ie);
+        }
+    }
+
     /**
      * Returns the number of threads that are available to this {@code
      * WorkQueue} for processing the enqueued tasks.
      */
     public int availableThreads() {
-        return threads.size();
+        return (executor != null) ? parallelism : threads.size();
+    }
+
+    /**
+     * The state of a group of tasks.
+     */
+    private static class TaskGroup {
+
+        /**
+         * The latch that is counted down as each task finishes or is skipped.
+         */
+        final CountDownLatch latch;
+
+        /**
+         * The number of tasks the group was registered with.
+         */
+        final long numTasks;
+
+        /**
+         * The number of tasks that have been added to the group.
+         */
+        long added;
+
+        /**
+         * Whether the group has been cancelled.
+         */
+        volatile boolean cancelled;
+
+        public TaskGroup(int numTasks) {
+            this.numTasks = numTasks;
+            latch = new CountDownLatch(numTasks);
+        }
     }
     
     /**
@@ -344,24 +607,26 @@ public class WorkQueue {
         private final Runnable task;
 
         /**
-         * The latch to update once the task has finished
+         * The group whose latch should be updated once the task has finished
          */
-        private final CountDownLatch latch;
+        private final TaskGroup group;
 
-        public CountingRunnable(Runnable task, CountDownLatch latch) {
+        public CountingRunnable(Runnable task, TaskGroup group) {
             this.task = task;
-            this.latch = latch;
+            this.group = group;
         }
         
         /**
-         * Executes the task and count down once finished.
+         * Executes the task, unless its group has been cancelled, and count
+         * down once finished.
          */
         public void run() {
             try {
-                task.run();
+                if (!group.cancelled)
+                    task.run();
             }
             finally {
-                latch.countDown();
+                group.latch.countDown();
             }
         }
     }
@@ -152,6 +152,16 @@ public class CompactSparseVector extends AbstractDoubleVector
         return vector.getElementIndices();
     }
 
+    /**
+     * Returns the non-zero values of this vector, in the same order as their
+     * indices are returned by {@link #getNonZeroIndices()}, which are always
+     * sorted.  The returned array is the backing array of this vector and
+     * should not be modified.
+     */
+    public double[] getNonZeroValues() {
+        return vector.getElementValues();
+    }
+
 
     /**
      * {@inheritDoc}
@@ -167,8 +177,8 @@ public class CompactSparseVector extends AbstractDoubleVector
         // Check whether the current magnitude is valid and if not, recompute it
         if (magnitude < 0) {
             double m = 0;
-            for (DoubleEntry e : this)
-                m += e.value() * e.value();
+            for (double v : vector.getElementValues())
+                m += v * v;
             magnitude = Math.sqrt(m);
         }
         return magnitude;
@@ -134,6 +134,13 @@ public class DenseVector extends AbstractDoubleVector
         vector[index] = value;
     }
 
+    /**
+     * Returns the array that backs this vector.
+     */
+    double[] array() {
+        return vector;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -97,6 +97,13 @@ class DoubleArrayAsVector implements DoubleVector, Serializable {
         return Math.sqrt(m);
     }
 
+    /**
+     * Returns the array that backs this vector.
+     */
+    double[] array() {
+        return array;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.ucla.sspace.vector;
+
+import java.io.Serializable;
+
+
+/**
+ * An unmodifiable {@code DoubleVector} view of a contiguous range of a {@code
+ * float} array.  This class allows a matrix to store its values at single
+ * precision, which halves the memory of {@code double} storage, while still
+ * exposing its rows as {@link DoubleVector} instances.  Changes to the backing
+ * array are reflected in the vector.
+ *
+ * <p> The static {@link #dotProduct(FloatArrayAsVector,FloatArrayAsVector)
+ * dotProduct} and {@link
+ * #squaredDistance(FloatArrayAsVector,FloatArrayAsVector) squaredDistance}
+ * methods operate directly on the backing arrays and are used by {@link
+ * edu.ucla.sspace.common.Similarity} when comparing two such vectors.
+ *
+ * @author David Jurgens
+ */
+public class FloatArrayAsVector extends AbstractDoubleVector 
+        implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The array whose values back this vector
+     */
+    private final float[] array;
+
+    /**
+     * The index in {@link #array} of the first value of this vector
+     */
+    private final int offset;
+
+    /**
+     * The number of values in this vector
+     */
+    private final int length;
+
+    /**
+     * Creates a new vector backed by the entire array.
+     */
+    public FloatArrayAsVector(float[] array) {
+        this(array, 0, array.length);
+    }
+
+    /**
+     * Creates a new vector backed by the {@code length} values of the array
+     * starting at {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if the range is not contained in the
+     *         array
+     */
+    public FloatArrayAsVector(float[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > array.length)
+            throw new IndexOutOfBoundsException(
+                "Invalid range [" + offset + ", " + (offset + length) + ")" +
+                " for an array of length " + array.length);
+        this.array = array;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Returns the dot product of the two vectors.
+     *
+     * @throws IllegalArgumentException if the vectors have different lengths
+     */
+    public static double dotProduct(FloatArrayAsVector a, 
+                                    FloatArrayAsVector b) {
+        checkLengths(a, b);
+        float[] x = a.array;
+        float[] y = b.array;
+        int i = a.offset, j = b.offset, end = a.offset + a.length;
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int unrolledEnd = end - 3; i < unrolledEnd; i += 4, j += 4) {
+            s0 += (double)x[i] * y[j];
+            s1 += (double)x[i+1] * y[j+1];
+            s2 += (double)x[i+2] * y[j+2];
+            s3 += (double)x[i+3] * y[j+3];
+        }
+        for (; i < end; ++i, ++j)
+            s0 += (double)x[i] * y[j];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns the squared Euclidean distance between the two vectors.
+     *
+     * @throws IllegalArgumentException if the vectors have different lengths
+     */
+    public static double squaredDistance(FloatArrayAsVector a,
+                                         FloatArrayAsVector b) {
+        checkLengths(a, b);
+        float[] x = a.array;
+        float[] y = b.array;
+        double sum = 0;
+        for (int i = a.offset, j = b.offset, end = a.offset + a.length;
+                 i < end; ++i, ++j) {
+            double diff = (double)x[i] - y[j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static void checkLengths(DoubleVector a, DoubleVector b) {
+        if (a.length() != b.length())
+            throw new IllegalArgumentException(
+                "Vectors are of different lengths: " + a.length() + " and " +
+                b.length());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        return array[offset + index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double magnitude() {
+        double m = 0;
+        for (int i = offset, end = offset + length; i < end; ++i)
+            m += (double)array[i] * array[i];
+        return Math.sqrt(m);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] toArray() {
+        double[] arr = new double[length];
+        for (int i = 0; i < length; ++i)
+            arr[i] = array[offset + i];
+        return arr;
+    }
+}
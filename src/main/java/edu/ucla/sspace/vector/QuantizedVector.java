@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.ucla.sspace.vector;
+
+import java.io.Serializable;
+
+
+/**
+ * An unmodifiable {@code DoubleVector} view of a contiguous range of a {@code
+ * byte} array that holds scalar-quantized values.  Each value is stored as a
+ * signed byte in {@code [-127, 127]} and is multiplied by the vector's scale
+ * when read, which uses an eighth of the memory of {@code double} storage.
+ * Values are quantized with {@link #quantize(DoubleVector,byte[],int)
+ * quantize}, which chooses the scale so that the largest magnitude value maps
+ * to 127.  Each value therefore differs from the original by at most half of
+ * the scale.
+ *
+ * <p> The static {@link #dotProduct(QuantizedVector,QuantizedVector)
+ * dotProduct} and {@link #squaredDistance(QuantizedVector,QuantizedVector)
+ * squaredDistance} methods operate directly on the quantized values, using
+ * integer arithmetic where possible, and are used by {@link
+ * edu.ucla.sspace.common.Similarity} when comparing two such vectors.
+ *
+ * @author David Jurgens
+ */
+public class QuantizedVector extends AbstractDoubleVector 
+        implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The largest magnitude of a quantized value.
+     */
+    public static final int MAX_QUANTIZED_VALUE = 127;
+
+    /**
+     * The array whose quantized values back this vector
+     */
+    private final byte[] values;
+
+    /**
+     * The index in {@link #values} of the first value of this vector
+     */
+    private final int offset;
+
+    /**
+     * The number of values in this vector
+     */
+    private final int length;
+
+    /**
+     * The amount by which each quantized value is multiplied to recover its
+     * original value
+     */
+    private final double scale;
+
+    /**
+     * Creates a new vector backed by the {@code length} quantized values of
+     * the array starting at {@code offset}.
+     *
+     * @param scale the value by which each quantized value is multiplied
+     *
+     * @throws IndexOutOfBoundsException if the range is not contained in the
+     *         array
+     */
+    public QuantizedVector(byte[] values, int offset, int length, 
+                           double scale) {
+        if (offset < 0 || length < 0 || offset + length > values.length)
+            throw new IndexOutOfBoundsException(
+                "Invalid range [" + offset + ", " + (offset + length) + ")" +
+                " for an array of length " + values.length);
+        this.values = values;
+        this.offset = offset;
+        this.length = length;
+        this.scale = scale;
+    }
+
+    /**
+     * Quantizes the values of the vector into {@code dest}, starting at {@code
+     * offset}, and returns the scale by which the quantized values must be
+     * multiplied to approximate the original values.
+     *
+     * @throws IndexOutOfBoundsException if the vector's values do not fit in
+     *         {@code dest} at the offset
+     */
+    public static float quantize(DoubleVector vector, byte[] dest, 
+                                 int offset) {
+        int length = vector.length();
+        if (offset < 0 || offset + length > dest.length)
+            throw new IndexOutOfBoundsException(
+                "Cannot quantize " + length + " values at offset " + offset +
+                " of an array of length " + dest.length);
+        double maxAbs = 0;
+        for (int i = 0; i < length; ++i) {
+            double abs = Math.abs(vector.get(i));
+            if (abs > maxAbs)
+                maxAbs = abs;
+        }
+        float scale = (float)(maxAbs / MAX_QUANTIZED_VALUE);
+        if (scale == 0) {
+            for (int i = 0; i < length; ++i)
+                dest[offset + i] = 0;
+            return 0;
+        }
+        for (int i = 0; i < length; ++i) {
+            long q = Math.round(vector.get(i) / scale);
+            // Rounding the scale to a float may push the largest values just
+            // beyond the range
+            if (q > MAX_QUANTIZED_VALUE)
+                q = MAX_QUANTIZED_VALUE;
+            else if (q < -MAX_QUANTIZED_VALUE)
+                q = -MAX_QUANTIZED_VALUE;
+            dest[offset + i] = (byte)q;
+        }
+        return scale;
+    }
+
+    /**
+     * Returns the dot product of the two vectors, which is computed from the
+     * integer dot product of their quantized values.
+     *
+     * @throws IllegalArgumentException if the vectors have different lengths
+     */
+    public static double dotProduct(QuantizedVector a, QuantizedVector b) {
+        checkLengths(a, b);
+        byte[] x = a.values;
+        byte[] y = b.values;
+        // Each product is at most 127^2, so an int may accumulate up to 2^17
+        // products before overflowing.  Accumulate in blocks to keep the
+        // inner loop in int arithmetic.
+        long sum = 0;
+        int i = a.offset, j = b.offset, end = a.offset + a.length;
+        while (i < end) {
+            int blockEnd = Math.min(end, i + (1 << 17));
+            int s = 0;
+            for (; i < blockEnd; ++i, ++j)
+                s += x[i] * y[j];
+            sum += s;
+        }
+        return sum * a.scale * b.scale;
+    }
+
+    /**
+     * Returns the squared Euclidean distance between the two vectors.  If the
+     * vectors have the same scale, the distance is computed from the integer
+     * differences of their quantized values.
+     *
+     * @throws IllegalArgumentException if the vectors have different lengths
+     */
+    public static double squaredDistance(QuantizedVector a, 
+                                         QuantizedVector b) {
+        checkLengths(a, b);
+        byte[] x = a.values;
+        byte[] y = b.values;
+        int end = a.offset + a.length;
+        if (a.scale == b.scale) {
+            long sum = 0;
+            for (int i = a.offset, j = b.offset; i < end; ++i, ++j) {
+                int diff = x[i] - y[j];
+                sum += diff * diff;
+            }
+            return sum * a.scale * a.scale;
+        }
+        double sum = 0;
+        for (int i = a.offset, j = b.offset; i < end; ++i, ++j) {
+            double diff = x[i] * a.scale - y[j] * b.scale;
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static void checkLengths(DoubleVector a, DoubleVector b) {
+        if (a.length() != b.length())
+            throw new IllegalArgumentException(
+                "Vectors are of different lengths: " + a.length() + " and " +
+                b.length());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        return values[offset + index] * scale;
+    }
+
+    /**
+     * Returns the quantized value at the index, which is in {@code [-127,
+     * 127]}.
+     */
+    public byte getQuantized(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        return values[offset + index];
+    }
+
+    /**
+     * Returns the value by which each quantized value is multiplied.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double magnitude() {
+        long sum = 0;
+        for (int i = offset, end = offset + length; i < end; ++i)
+            sum += values[i] * values[i];
+        return Math.sqrt(sum) * scale;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] toArray() {
+        double[] arr = new double[length];
+        for (int i = 0; i < length; ++i)
+            arr[i] = values[offset + i] * scale;
+        return arr;
+    }
+}
@@ -109,6 +109,24 @@ public class Vectors {
         return new IntArrayAsVector(array);
     }
 
+    /**
+     * Returns the array that backs the vector if it is a dense, array-based
+     * vector, or {@code null} otherwise.  This method allows computations to
+     * access the values of dense vectors directly.  Changes to the array are
+     * reflected in the vector, so callers should not modify it.
+     *
+     * @param v a vector
+     *
+     * @return the vector's backing array, or {@code null} if it has none
+     */
+    public static double[] backingArray(DoubleVector v) {
+        if (v instanceof DenseVector)
+            return ((DenseVector)v).array();
+        if (v instanceof DoubleArrayAsVector)
+            return ((DoubleArrayAsVector)v).array();
+        return null;
+    }
+
     /**
      * Returns {@code true} if the two vectors are equal to one another.  Two
      * {@code Vector} insances are considered equal if they contain the same
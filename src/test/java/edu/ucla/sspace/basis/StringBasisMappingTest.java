@@ -23,8 +23,18 @@
 
 package edu.ucla.sspace.basis;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.util.HashSet;
 import java.util.Set;
 
+import java.util.concurrent.CountDownLatch;
+
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.*;
 
 import static org.junit.Assert.*;
@@ -35,6 +45,32 @@ import static org.junit.Assert.*;
  */
 public class StringBasisMappingTest {
 
+    /**
+     * A read only {@link StringBasisMapping} mapping "cat", "ca" and "dog" to
+     * dimensions 0, 1 and 2, serialized when {@link AbstractBasisMapping} was
+     * backed by a {@code HashMap}.
+     */
+    private static final String MAP_BACKED_MAPPING =
+        "aced0005737200286564752e75636c612e7373706163652e62617369732e5374" +
+        "72696e6742617369734d617070696e6700000000000000010200007872002a65" +
+        "64752e75636c612e7373706163652e62617369732e4162737472616374426173" +
+        "69734d617070696e6700000000000000010200025a0008726561644f6e6c794c" +
+        "00076d617070696e6774000f4c6a6176612f7574696c2f4d61703b7870017372" +
+        "00116a6176612e7574696c2e486173684d61700507dac1c31660d10300024600" +
+        "0a6c6f6164466163746f724900097468726573686f6c6478703f400000000000" +
+        "0c77080000001000000003740003636174737200116a6176612e6c616e672e49" +
+        "6e746567657212e2a0a4f781873802000149000576616c7565787200106a6176" +
+        "612e6c616e672e4e756d62657286ac951d0b94e08b0200007870000000007400" +
+        "03646f677371007e00070000000274000263617371007e00070000000178";
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        ObjectInputStream ois =
+            new ObjectInputStream(new ByteArrayInputStream(bytes));
+        Object o = ois.readObject();
+        ois.close();
+        return o;
+    }
+
     @Test public void testGetDimension() {
         StringBasisMapping basis = new StringBasisMapping();
         assertEquals(0, basis.getDimension("cat"));
@@ -93,4 +129,89 @@ public class StringBasisMappingTest {
         assertEquals("ca", basis.getDimensionDescription(1));
         assertEquals("dog", basis.getDimensionDescription(2));
     }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testGetDimensionDescriptionInvalid() {
+        StringBasisMapping basis = new StringBasisMapping();
+        basis.getDimension("cat");
+        basis.getDimensionDescription(1);
+    }
+
+    @Test public void testConcurrentGetDimension() throws Exception {
+        final StringBasisMapping basis = new StringBasisMapping();
+        final int threads = 8;
+        final int words = 5000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final AtomicReference<Throwable> error =
+            new AtomicReference<Throwable>();
+        for (int t = 0; t < threads; ++t) {
+            final int thread = t;
+            new Thread() {
+                public void run() {
+                    try {
+                        // Each thread requests the words in a different order
+                        for (int i = 0; i < words; ++i) {
+                            int w = (i + thread * 997) % words;
+                            int dim = basis.getDimension("w" + w);
+                            // Descriptions should be visible for any
+                            // dimension that has been assigned
+                            assertEquals("w" + w,
+                                         basis.getDimensionDescription(dim));
+                        }
+                    } catch (Throwable t) {
+                        error.set(t);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+        latch.await();
+        assertNull(error.get());
+
+        // Every thread should see the same, contiguous dimensions
+        assertEquals(words, basis.numDimensions());
+        Set<Integer> seen = new HashSet<Integer>();
+        for (int w = 0; w < words; ++w) {
+            int dim = basis.getDimension("w" + w);
+            assertTrue(seen.add(dim));
+            assertTrue(dim >= 0 && dim < words);
+            assertEquals("w" + w, basis.getDimensionDescription(dim));
+        }
+    }
+
+    @Test public void testSerialization() throws Exception {
+        StringBasisMapping basis = new StringBasisMapping();
+        basis.getDimension("cat");
+        basis.getDimension("ca");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(basis);
+        oos.close();
+
+        StringBasisMapping copy =
+            (StringBasisMapping)deserialize(bos.toByteArray());
+        assertEquals(2, copy.numDimensions());
+        assertEquals("ca", copy.getDimensionDescription(1));
+        assertEquals(2, copy.getDimension("dog"));
+    }
+
+    @Test public void testDeserializeMapBackedMapping() throws Exception {
+        byte[] bytes = new byte[MAP_BACKED_MAPPING.length() / 2];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = (byte)Integer.parseInt(
+                MAP_BACKED_MAPPING.substring(2 * i, 2 * i + 2), 16);
+        StringBasisMapping basis = (StringBasisMapping)deserialize(bytes);
+
+        assertTrue(basis.isReadOnly());
+        assertEquals(3, basis.numDimensions());
+        assertEquals(0, basis.getDimension("cat"));
+        assertEquals(1, basis.getDimension("ca"));
+        assertEquals(2, basis.getDimension("dog"));
+        assertEquals("dog", basis.getDimensionDescription(2));
+        assertEquals(-1, basis.getDimension("bird"));
+
+        basis.setReadOnly(false);
+        assertEquals(3, basis.getDimension("bird"));
+    }
 }
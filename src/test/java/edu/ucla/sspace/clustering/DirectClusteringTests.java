@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.clustering;
+
+import edu.ucla.sspace.clustering.criterion.CriterionFunction;
+import edu.ucla.sspace.clustering.criterion.I1Function;
+import edu.ucla.sspace.clustering.criterion.I2Function;
+
+import edu.ucla.sspace.clustering.seeding.KMeansSeed;
+
+import edu.ucla.sspace.common.Similarity;
+
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link DirectClustering} class.
+ */
+public class DirectClusteringTests {
+
+    /**
+     * Returns a matrix with {@code numClusters} well separated groups of
+     * {@code perCluster} rows, where row {@code i} belongs to group {@code i %
+     * numClusters}.
+     */
+    private static Matrix separatedData(int numClusters, int perCluster,
+                                        Random random) {
+        int dims = numClusters * 2;
+        Matrix m = new ArrayMatrix(numClusters * perCluster, dims);
+        for (int r = 0; r < m.rows(); ++r) {
+            int cluster = r % numClusters;
+            for (int c = 0; c < dims; ++c)
+                m.set(r, c, random.nextDouble() * .05);
+            m.set(r, cluster * 2, 1 + random.nextDouble());
+            m.set(r, cluster * 2 + 1, 1 + random.nextDouble());
+        }
+        return m;
+    }
+
+    private static void assertSeparated(Assignments assignments, 
+                                        int numClusters) {
+        for (Set<Integer> cluster : assignments.clusters()) {
+            if (cluster.isEmpty())
+                continue;
+            int group = cluster.iterator().next() % numClusters;
+            for (int row : cluster)
+                assertEquals(group, row % numClusters);
+        }
+    }
+
+    @Test public void testRecoversSeparatedClusters() {
+        Matrix m = separatedData(5, 20, new Random(1));
+        CriterionFunction[] criteria = { new I1Function(), new I2Function() };
+        for (CriterionFunction criterion : criteria) {
+            Assignments a = DirectClustering.cluster(m, 5, 8, criterion);
+            assertEquals(m.rows(), a.size());
+            assertSeparated(a, 5);
+        }
+    }
+
+    @Test public void testCriterionHoldsBestRepetition() {
+        Matrix m = separatedData(4, 10, new Random(2));
+        I1Function criterion = new I1Function();
+        Assignments a = DirectClustering.cluster(m, 4, 6, criterion);
+        int[] assignments = criterion.assignments();
+        for (int i = 0; i < m.rows(); ++i) 
+            assertEquals(((HardAssignment)a.get(i)).assignments()[0],
+                         assignments[i]);
+        // Recomputing the score from the assignments gives the same score
+        I1Function check = new I1Function();
+        check.setup(m, assignments.clone(), 4);
+        assertEquals(check.score(), criterion.score(), 1e-9);
+    }
+
+    @Test public void testRandomSeedIsReproducible() {
+        Random random = new Random(5);
+        Matrix m = new ArrayMatrix(80, 6);
+        for (int r = 0; r < m.rows(); ++r)
+            for (int c = 0; c < m.columns(); ++c)
+                m.set(r, c, random.nextDouble());
+        // Choose the same seeds each time so that only the order in which the
+        // data points are visited is random
+        KMeansSeed seed = new KMeansSeed() {
+            public DoubleVector[] chooseSeeds(int k, Matrix dataPoints) {
+                DoubleVector[] centers = new DoubleVector[k];
+                for (int i = 0; i < k; ++i)
+                    centers[i] = dataPoints.getRowVector(i);
+                return centers;
+            }
+        };
+        Assignments a = DirectClustering.cluster(
+            m, 6, 4, seed, new I1Function(), new Random(6));
+        Assignments b = DirectClustering.cluster(
+            m, 6, 4, seed, new I1Function(), new Random(6));
+        for (int i = 0; i < m.rows(); ++i)
+            assertEquals(((HardAssignment)a.get(i)).assignments()[0],
+                         ((HardAssignment)b.get(i)).assignments()[0]);
+    }
+
+    @Test public void testBoundsMatchExhaustiveUpdates() {
+        Random random = new Random(3);
+        Matrix m = new ArrayMatrix(60, 8);
+        for (int r = 0; r < m.rows(); ++r)
+            for (int c = 0; c < m.columns(); ++c)
+                m.set(r, c, random.nextDouble());
+        int[] initial = new int[m.rows()];
+        for (int i = 0; i < initial.length; ++i)
+            initial[i] = random.nextInt(6);
+
+        I1Function pruned = new I1Function();
+        I1Function exhaustive = new I1Function() {
+            protected double getNewCentroidScoreBound(int c, double mag) {
+                return Double.NaN;
+            }
+        };
+        pruned.setup(m, initial.clone(), 6);
+        exhaustive.setup(m, initial.clone(), 6);
+        for (int round = 0; round < 5; ++round) {
+            for (int i = 0; i < m.rows(); ++i) {
+                int row = random.nextInt(m.rows());
+                assertEquals(exhaustive.update(row), pruned.update(row));
+            }
+        }
+        for (int i = 0; i < m.rows(); ++i)
+            assertEquals(exhaustive.assignments()[i], 
+                         pruned.assignments()[i]);
+        assertEquals(exhaustive.score(), pruned.score(), 1e-9);
+    }
+
+    @Test public void testInitialAssignmentsAreNearestCenters() {
+        final Random random = new Random(4);
+        final Matrix m = new ArrayMatrix(200, 5);
+        for (int r = 0; r < m.rows(); ++r)
+            for (int c = 0; c < m.columns(); ++c)
+                m.set(r, c, random.nextDouble() - .25);
+        final DoubleVector[] centers = new DoubleVector[12];
+        for (int i = 0; i < centers.length; ++i)
+            centers[i] = m.getRowVector(random.nextInt(m.rows()));
+
+        KMeansSeed seed = new KMeansSeed() {
+            public DoubleVector[] chooseSeeds(int k, Matrix dataPoints) {
+                return centers;
+            }
+        };
+        // A criterion that never moves a data point, which leaves the initial
+        // assignments as the result
+        I1Function criterion = new I1Function() {
+            public boolean update(int index) {
+                return false;
+            }
+        };
+        Assignments a = DirectClustering.cluster(
+            m, centers.length, 1, seed, criterion);
+
+        for (int r = 0; r < m.rows(); ++r) {
+            double best = 0;
+            int expected = 0;
+            for (int c = 0; c < centers.length; ++c) {
+                double sim = Similarity.cosineSimilarity(
+                    centers[c], m.getRowVector(r));
+                if (sim >= best) {
+                    best = sim;
+                    expected = c;
+                }
+            }
+            assertEquals(expected, 
+                         ((HardAssignment)a.get(r)).assignments()[0]);
+        }
+    }
+}
@@ -26,6 +26,9 @@ import edu.ucla.sspace.common.Similarity.SimType;
 import edu.ucla.sspace.clustering.HierarchicalAgglomerativeClustering.ClusterLinkage;
 
 import edu.ucla.sspace.matrix.*;
+import edu.ucla.sspace.util.BoundedSortedMultiMap;
+import edu.ucla.sspace.util.NearestNeighborFinder;
+import edu.ucla.sspace.util.SortedMultiMap;
 import edu.ucla.sspace.vector.*;
 
 import java.util.*;
@@ -126,6 +129,258 @@ public class HierarchicalAgglomerativeClusteringTests {
         assertEquals(2, mergeOrder.get(2).mergedCluster());
     }
 
+    /**
+     * Returns the merges made by the naive agglomerative algorithm, which
+     * compares the data points of every pair of clusters at each step.
+     */
+    private static List<Merge> naiveDendrogram(Matrix sims, 
+                                               ClusterLinkage linkage) {
+        int n = sims.rows();
+        List<List<Integer>> clusters = new ArrayList<List<Integer>>();
+        for (int i = 0; i < n; ++i) 
+            clusters.add(new ArrayList<Integer>(Collections.singleton(i)));
+        List<Merge> merges = new ArrayList<Merge>();
+        for (int step = 0; step < n - 1; ++step) {
+            int best1 = -1, best2 = -1;
+            double bestSim = Double.NEGATIVE_INFINITY;
+            for (int a = 0; a < n; ++a) {
+                if (clusters.get(a) == null)
+                    continue;
+                for (int b = a + 1; b < n; ++b) {
+                    if (clusters.get(b) == null)
+                        continue;
+                    double sim = linkageSimilarity(
+                        sims, clusters.get(a), clusters.get(b), linkage);
+                    if (sim > bestSim) {
+                        bestSim = sim;
+                        best1 = a;
+                        best2 = b;
+                    }
+                }
+            }
+            merges.add(new Merge(best1, best2, bestSim));
+            clusters.get(best1).addAll(clusters.get(best2));
+            clusters.set(best2, null);
+        }
+        return merges;
+    }
+
+    private static double linkageSimilarity(Matrix sims, List<Integer> a,
+                                            List<Integer> b,
+                                            ClusterLinkage linkage) {
+        double[] values = new double[a.size() * b.size()];
+        int k = 0;
+        for (int i : a)
+            for (int j : b)
+                values[k++] = sims.get(i, j);
+        Arrays.sort(values);
+        switch (linkage) {
+        case SINGLE_LINKAGE: 
+            return values[values.length - 1];
+        case COMPLETE_LINKAGE:
+            return values[0];
+        case MEAN_LINKAGE: {
+            double sum = 0;
+            for (double d : values)
+                sum += d;
+            return sum / values.length;
+        }
+        default:
+            return values[values.length / 2];
+        }
+    }
+
+    @Test public void testDendrogramMatchesNaive() {
+        Random random = new Random(1);
+        int n = 40;
+        Matrix sims = new ArrayMatrix(n, n);
+        for (int i = 0; i < n; ++i)
+            for (int j = i + 1; j < n; ++j) {
+                double s = (float)random.nextDouble();
+                sims.set(i, j, s);
+                sims.set(j, i, s);
+            }
+
+        HierarchicalAgglomerativeClustering hac =
+            new HierarchicalAgglomerativeClustering();
+        for (ClusterLinkage linkage : ClusterLinkage.values()) {
+            List<Merge> expected = naiveDendrogram(sims, linkage);
+            List<Merge> merges = hac.buildDendrogram(sims, linkage);
+            assertEquals(n - 1, merges.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                Merge e = expected.get(i);
+                Merge m = merges.get(i);
+                assertEquals(e.remainingCluster(), m.remainingCluster());
+                assertEquals(e.mergedCluster(), m.mergedCluster());
+                assertEquals(e.similarity(), m.similarity(), 1e-5);
+            }
+            // The input matrix is left untouched
+            assertEquals(sims.get(1, 0), sims.get(0, 1), 0);
+        }
+    }
+
+    @Test public void testPartitionRows() {
+        List<SparseDoubleVector> vectors = new ArrayList<SparseDoubleVector>();
+        vectors.add(newVec(new int[] { 1, 2 }, 100));
+        vectors.add(newVec(new int[] { 3, 4 }, 100));
+        vectors.add(newVec(new int[] { 1, 2, 3 }, 100));
+        vectors.add(newVec(new int[] { 3, 4, 5 }, 100));
+        vectors.add(newVec(new int[] { 50 }, 100));
+        SparseMatrix m = Matrices.asSparseMatrix(vectors);
+        for (ClusterLinkage linkage : ClusterLinkage.values()) {
+            int[] assignments = HierarchicalAgglomerativeClustering
+                .partitionRows(m, 3, linkage, SimType.COSINE);
+            assertEquals(0, assignments[0]);
+            assertEquals(1, assignments[1]);
+            assertEquals(0, assignments[2]);
+            assertEquals(1, assignments[3]);
+            assertEquals(2, assignments[4]);
+        }
+    }
+
+    @Test public void testClusterWithThreshold() {
+        List<SparseDoubleVector> vectors = new ArrayList<SparseDoubleVector>();
+        vectors.add(newVec(new int[] { 1, 2 }, 100));
+        vectors.add(newVec(new int[] { 3, 4 }, 100));
+        vectors.add(newVec(new int[] { 1, 2, 3 }, 100));
+        vectors.add(newVec(new int[] { 3, 4, 5 }, 100));
+        SparseMatrix m = Matrices.asSparseMatrix(vectors);
+        Properties props = new Properties();
+        props.setProperty(HierarchicalAgglomerativeClustering
+                          .MIN_CLUSTER_SIMILARITY_PROPERTY, ".5");
+        Assignments a = new HierarchicalAgglomerativeClustering()
+            .cluster(m, props);
+        assertEquals(2, a.numClusters());
+        assertEquals(a.get(0).assignments()[0], a.get(2).assignments()[0]);
+        assertEquals(a.get(1).assignments()[0], a.get(3).assignments()[0]);
+        assertTrue(a.get(0).assignments()[0] != a.get(1).assignments()[0]);
+    }
+
+    /**
+     * A {@link NearestNeighborFinder} for words named by the rows of a
+     * similarity matrix, which only returns neighbors with a positive
+     * similarity.
+     */
+    private static class MatrixNeighborFinder implements NearestNeighborFinder {
+
+        private final Matrix sims;
+
+        public MatrixNeighborFinder(Matrix sims) {
+            this.sims = sims;
+        }
+
+        public SortedMultiMap<Double,String> getMostSimilar(
+                String word, int numberOfSimilarWords) {
+            int i = Integer.parseInt(word);
+            SortedMultiMap<Double,String> mostSim = 
+                new BoundedSortedMultiMap<Double,String>(
+                    numberOfSimilarWords, false);
+            for (int j = 0; j < sims.rows(); ++j)
+                if (j != i && sims.get(i, j) > 0)
+                    mostSim.put(sims.get(i, j), String.valueOf(j));
+            return mostSim;
+        }
+
+        public SortedMultiMap<Double,String> getMostSimilar(
+                Set<String> terms, int numberOfSimilarWords) {
+            throw new UnsupportedOperationException();
+        }
+
+        public SortedMultiMap<Double,String> getMostSimilar(
+                edu.ucla.sspace.vector.Vector v, int numberOfSimilarWords) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static List<String> rowNames(int rows) {
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < rows; ++i)
+            names.add(String.valueOf(i));
+        return names;
+    }
+
+    @Test public void testCompleteGraphMatchesDendrogram() {
+        Random random = new Random(2);
+        int n = 40;
+        Matrix sims = new ArrayMatrix(n, n);
+        for (int i = 0; i < n; ++i)
+            for (int j = i + 1; j < n; ++j) {
+                double s = (float)random.nextDouble();
+                sims.set(i, j, s);
+                sims.set(j, i, s);
+            }
+
+        // When every data point is a neighbor of all others, merging along the
+        // graph is the same as merging with the full similarity matrix
+        HierarchicalAgglomerativeClustering hac =
+            new HierarchicalAgglomerativeClustering();
+        NearestNeighborFinder finder = new MatrixNeighborFinder(sims);
+        for (ClusterLinkage linkage : ClusterLinkage.values()) {
+            List<Merge> expected = hac.buildDendrogram(sims, linkage);
+            List<Merge> merges = 
+                hac.buildDendrogram(rowNames(n), finder, n - 1, linkage);
+            assertEquals(n - 1, merges.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                Merge e = expected.get(i);
+                Merge m = merges.get(i);
+                assertEquals(e.remainingCluster(), m.remainingCluster());
+                assertEquals(e.mergedCluster(), m.mergedCluster());
+                assertEquals(e.similarity(), m.similarity(), 1e-5);
+            }
+        }
+    }
+
+    @Test public void testDisconnectedGraph() {
+        // Two groups, {0, 2, 4} and {1, 3}, with no similarity between them
+        Matrix sims = new ArrayMatrix(5, 5);
+        double[][] links = { { 0, 2, .875 }, { 2, 4, .5 }, { 0, 4, .375 },
+                             { 1, 3, .75 } };
+        for (double[] link : links) {
+            sims.set((int)link[0], (int)link[1], link[2]);
+            sims.set((int)link[1], (int)link[0], link[2]);
+        }
+
+        List<Merge> merges = new HierarchicalAgglomerativeClustering()
+            .buildDendrogram(rowNames(5), new MatrixNeighborFinder(sims), 2,
+                             ClusterLinkage.COMPLETE_LINKAGE);
+        assertEquals(4, merges.size());
+        assertEquals(new Merge(0, 2, .875), merges.get(0));
+        assertEquals(new Merge(1, 3, .75), merges.get(1));
+        assertEquals(new Merge(0, 4, .375), merges.get(2));
+        assertEquals(new Merge(0, 1, Double.NEGATIVE_INFINITY), merges.get(3));
+    }
+
+    @Test public void testNeighborGraphPartition() {
+        List<SparseDoubleVector> vectors = new ArrayList<SparseDoubleVector>();
+        vectors.add(newVec(new int[] { 1, 2 }, 100));
+        vectors.add(newVec(new int[] { 3, 4 }, 100));
+        vectors.add(newVec(new int[] { 1, 2, 3 }, 100));
+        vectors.add(newVec(new int[] { 3, 4, 5 }, 100));
+        vectors.add(newVec(new int[] { 1, 2, 6 }, 100));
+        vectors.add(newVec(new int[] { 4, 5 }, 100));
+        SparseMatrix m = Matrices.asSparseMatrix(vectors);
+
+        HierarchicalAgglomerativeClustering hac =
+            new HierarchicalAgglomerativeClustering();
+        for (ClusterLinkage linkage : ClusterLinkage.values()) {
+            List<Merge> merges = 
+                hac.buildDendrogram(m, 2, linkage, SimType.COSINE);
+            assertEquals(5, merges.size());
+
+            Properties props = new Properties();
+            props.setProperty(HierarchicalAgglomerativeClustering
+                              .NUM_NEIGHBORS_PROPERTY, "2");
+            props.setProperty(HierarchicalAgglomerativeClustering
+                              .CLUSTER_LINKAGE_PROPERTY, linkage.toString());
+            Assignments a = hac.cluster(m, 2, props);
+            assertEquals(2, a.numClusters());
+            int[] expected = { 0, 1, 0, 1, 0, 1 };
+            for (int i = 0; i < expected.length; ++i)
+                assertEquals(expected[i], 
+                             ((HardAssignment)a.get(i)).assignments()[0]);
+        }
+    }
+
     private static SparseDoubleVector newVec(int[] dimsToSet, int dims) {
         SparseDoubleVector sv = new CompactSparseVector(dims); 
         for (int i : dimsToSet)
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.clustering;
+
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.MatrixFile;
+import edu.ucla.sspace.matrix.MatrixIO;
+import edu.ucla.sspace.matrix.YaleSparseMatrix;
+
+import java.io.File;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link MiniBatchKMeans} class.
+ */
+public class MiniBatchKMeansTests {
+
+    /**
+     * Fills {@code m} with {@code numClusters} well separated groups of rows,
+     * where row {@code i} belongs to group {@code i % numClusters}.
+     */
+    private static Matrix separatedData(Matrix m, int numClusters, 
+                                        Random random) {
+        for (int r = 0; r < m.rows(); ++r) {
+            int cluster = r % numClusters;
+            m.set(r, cluster * 2, 10 + random.nextDouble());
+            m.set(r, cluster * 2 + 1, 10 + random.nextDouble());
+        }
+        return m;
+    }
+
+    private static void assertSeparated(Assignments assignments, 
+                                        int numClusters) {
+        for (Set<Integer> cluster : assignments.clusters()) {
+            if (cluster.isEmpty())
+                continue;
+            int group = cluster.iterator().next() % numClusters;
+            for (int row : cluster)
+                assertEquals(group, row % numClusters);
+        }
+    }
+
+    private static Properties props(int batchSize) {
+        Properties props = new Properties();
+        props.setProperty(MiniBatchKMeans.BATCH_SIZE_PROPERTY, 
+                          String.valueOf(batchSize));
+        props.setProperty(MiniBatchKMeans.MAX_PASSES_PROPERTY, "20");
+        return props;
+    }
+
+    @Test public void testDenseMatrix() {
+        Matrix m = separatedData(new ArrayMatrix(300, 6), 3, new Random(1));
+        MiniBatchKMeans kmeans = new MiniBatchKMeans();
+        Assignments a = kmeans.cluster(m, 3, props(50));
+        assertEquals(300, a.size());
+        assertSeparated(a, 3);
+
+        MiniBatchKMeans.Convergence conv = kmeans.getConvergence();
+        assertTrue(conv.passes() > 0);
+        assertTrue(conv.converged());
+        assertTrue(conv.centroidShift(conv.passes() - 1) <= 1e-4);
+        // Once the clusters are found, each point is close to its centroid
+        assertTrue(conv.inertia(conv.passes() - 1) < 1);
+    }
+
+    @Test public void testSparseMatrix() {
+        Matrix m = separatedData(
+            new YaleSparseMatrix(200, 8), 4, new Random(2));
+        Assignments a = new MiniBatchKMeans().cluster(m, 4, props(64));
+        assertEquals(200, a.size());
+        assertSeparated(a, 4);
+    }
+
+    @Test public void testMatrixFile() throws Exception {
+        Matrix m = separatedData(new ArrayMatrix(150, 6), 3, new Random(3));
+        MatrixIO.Format[] formats = { 
+            MatrixIO.Format.DENSE_TEXT, MatrixIO.Format.SVDLIBC_SPARSE_BINARY 
+        };
+        for (MatrixIO.Format format : formats) {
+            File f = File.createTempFile("unit-test", ".dat");
+            f.deleteOnExit();
+            MatrixIO.writeMatrix(m, f, format);
+            Assignments a = new MiniBatchKMeans().cluster(
+                new MatrixFile(f, format), 3, props(40));
+            assertEquals(150, a.size());
+            assertSeparated(a, 3);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testTooFewPoints() {
+        Matrix m = separatedData(new ArrayMatrix(3, 10), 5, new Random(4));
+        new MiniBatchKMeans().cluster(m, 5, props(10));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testNoNumClusters() {
+        new MiniBatchKMeans().cluster(new ArrayMatrix(3, 3), new Properties());
+    }
+}
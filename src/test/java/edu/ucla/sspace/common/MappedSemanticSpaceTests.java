@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.common;
+
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import edu.ucla.sspace.vector.*;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link MappedSemanticSpace}
+ */
+public class MappedSemanticSpaceTests {
+
+    DummySemanticSpace test;
+
+    public MappedSemanticSpaceTests() {
+        test = new DummySemanticSpace();
+        test.setVector("cow", new DenseVector(new double[] {1, 0, 0, 0}));
+        test.setVector("dog", new DenseVector(new double[] {0, 1.5, 0, 0}));
+        test.setVector("ear", new DenseVector(new double[] {0, 0, 1, 0}));
+        test.setVector("fig", new DenseVector(new double[] {0, 0, 0, -1}));
+        test.setVector("git", new DenseVector(new double[] {1, 1, 0, 0}));
+        test.setVector("hat", new DenseVector(new double[] {1, 0, .25, 0}));
+        test.setVector("its", new DenseVector(new double[] {1, 0, 0, 1}));
+        test.setVector("jét", new DenseVector(new double[] {0, 0, 0, 0}));
+    }
+
+    private void assertSameSpace(SemanticSpace mapped) {
+        assertEquals(test.getWords().size(), mapped.getWords().size());
+        assertEquals(test.getVectorLength(), mapped.getVectorLength());
+        assertTrue(test.getWords().containsAll(mapped.getWords()));
+        for (String word : test.getWords()) {
+            assertTrue(mapped.getWords().contains(word));
+            DoubleVector expected = (DoubleVector)(test.getVector(word));
+            DoubleVector actual = (DoubleVector)(mapped.getVector(word));
+            assertEquals(expected.length(), actual.length());
+            for (int i = 0; i < expected.length(); ++i)
+                assertEquals(expected.get(i), actual.get(i), 0.0001);
+        }
+        assertNull(mapped.getVector("missing"));
+        assertFalse(mapped.getWords().contains("missing"));
+    }
+
+    @Test public void testDense() throws Exception {
+        File mappedFile = File.createTempFile("test-mapped",".sspace");
+        mappedFile.deleteOnExit();
+        SemanticSpaceIO.saveMapped(test, mappedFile, false, false);
+        SemanticSpace mapped = new MappedSemanticSpace(mappedFile);
+        assertSameSpace(mapped);
+        assertFalse(mapped.getVector("cow") instanceof SparseVector);
+    }
+
+    @Test public void testDenseFloats() throws Exception {
+        File mappedFile = File.createTempFile("test-mapped-float",".sspace");
+        mappedFile.deleteOnExit();
+        SemanticSpaceIO.saveMapped(test, mappedFile, false, true);
+        assertSameSpace(new MappedSemanticSpace(mappedFile));
+    }
+
+    @Test public void testSparse() throws Exception {
+        File mappedFile = File.createTempFile("test-mapped-sparse",".sspace");
+        mappedFile.deleteOnExit();
+        SemanticSpaceIO.saveMapped(test, mappedFile, true, false);
+        SemanticSpace mapped = new MappedSemanticSpace(mappedFile);
+        assertSameSpace(mapped);
+
+        SparseDoubleVector v = (SparseDoubleVector)(mapped.getVector("hat"));
+        int[] nz = v.getNonZeroIndices();
+        assertEquals(2, nz.length);
+        assertEquals(0, nz[0]);
+        assertEquals(2, nz[1]);
+        assertEquals(Math.sqrt(1.0625), v.magnitude(), 0.0001);
+        assertEquals(0, ((SparseDoubleVector)(mapped.getVector("jét")))
+                     .getNonZeroIndices().length);
+    }
+
+    @Test public void testSparseFloats() throws Exception {
+        File mappedFile =
+            File.createTempFile("test-mapped-sparse-float",".sspace");
+        mappedFile.deleteOnExit();
+        SemanticSpaceIO.saveMapped(test, mappedFile, true, true);
+        assertSameSpace(new MappedSemanticSpace(mappedFile));
+    }
+
+    @Test public void testLoad() throws Exception {
+        File mappedFile = File.createTempFile("test-mapped-load",".sspace");
+        mappedFile.deleteOnExit();
+        SemanticSpaceIO.save(test, mappedFile, SSpaceFormat.MAPPED);
+        SemanticSpace loaded = SemanticSpaceIO.load(mappedFile);
+        assertTrue(loaded instanceof MappedSemanticSpace);
+        assertSameSpace(loaded);
+    }
+
+    @Test public void testEmpty() throws Exception {
+        File mappedFile = File.createTempFile("test-mapped-empty",".sspace");
+        mappedFile.deleteOnExit();
+        SemanticSpaceIO.saveMapped(
+            new DummySemanticSpace(), mappedFile, true, false);
+        SemanticSpace mapped = new MappedSemanticSpace(mappedFile);
+        assertEquals(0, mapped.getWords().size());
+        assertNull(mapped.getVector("cow"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testWrongFormat() throws Exception {
+        File binaryFile = File.createTempFile("test-binary",".sspace");
+        binaryFile.deleteOnExit();
+        SemanticSpaceIO.save(test, binaryFile, SSpaceFormat.BINARY);
+        new MappedSemanticSpace(binaryFile);
+    }
+}
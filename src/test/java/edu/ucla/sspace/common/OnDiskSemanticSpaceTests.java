@@ -76,6 +76,25 @@ public class OnDiskSemanticSpaceTests {
         }        
     }
 
+    @Test public void testQuantized() throws Exception { 
+        File quantizedFile = File.createTempFile("test-quantized",".sspace");
+        quantizedFile.deleteOnExit();
+        SemanticSpaceIO.save(test, quantizedFile, SSpaceFormat.QUANTIZED);
+        SemanticSpace onDisk = new OnDiskSemanticSpace(quantizedFile);
+        
+        assertEquals(test.getWords().size(), onDisk.getWords().size());
+        assertTrue(test.getWords().containsAll(onDisk.getWords()));
+        for (String word : test.getWords()) {
+            Vector expected = test.getVector(word);
+            Vector actual = onDisk.getVector(word);
+            // Values are only recovered to the precision of a float scale
+            for (int i = 0; i < expected.length(); ++i)
+                assertEquals(expected.getValue(i).doubleValue(), 
+                             actual.getValue(i).doubleValue(), 1e-6);
+        }        
+        assertNull(onDisk.getVector("not-a-word"));
+    }
+
     private static String toSparseString(Vector v) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < v.length(); ++i)
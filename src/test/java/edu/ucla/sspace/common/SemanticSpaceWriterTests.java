@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.common;
+
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import edu.ucla.sspace.vector.*;
+
+import java.io.File;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import java.util.concurrent.CountDownLatch;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Unit tests for {@link SemanticSpaceWriter}
+ */
+public class SemanticSpaceWriterTests {
+
+    /**
+     * Returns a mapping from words to random vectors, enough to span several
+     * batches, where most values are zero.
+     */
+    private static Map<String,DoubleVector> randomVectors(boolean sparse) {
+        Random rand = new Random(1);
+        Map<String,DoubleVector> vectors = 
+            new LinkedHashMap<String,DoubleVector>();
+        for (int i = 0; i < 1000; ++i) {
+            DoubleVector v = (sparse) 
+                ? new CompactSparseVector(50)
+                : new DenseVector(50);
+            for (int j = 0; j < 5; ++j)
+                v.set(rand.nextInt(50), rand.nextInt(100) / 4d - 12);
+            vectors.put("word" + i, v);
+        }
+        return vectors;
+    }
+
+    private static File write(Map<String,DoubleVector> vectors,
+                              SemanticSpaceWriter writer) throws Exception {
+        for (Map.Entry<String,DoubleVector> e : vectors.entrySet())
+            writer.write(e.getKey(), e.getValue());
+        writer.close();
+        return writer.getFile();
+    }
+
+    private static void assertSameVectors(Map<String,DoubleVector> expected,
+                                          SemanticSpace actual) {
+        assertEquals(expected.size(), actual.getWords().size());
+        assertEquals(50, actual.getVectorLength());
+        for (Map.Entry<String,DoubleVector> e : expected.entrySet()) {
+            Vector v = actual.getVector(e.getKey());
+            assertNotNull(v);
+            assertEquals(50, v.length());
+            for (int i = 0; i < 50; ++i)
+                assertEquals(e.getValue().get(i), 
+                             v.getValue(i).doubleValue(), 0.0001);
+        }
+    }
+
+    private static void testFormat(SSpaceFormat format, boolean sparse)
+            throws Exception {
+        File f = File.createTempFile("test-writer", ".sspace");
+        f.deleteOnExit();
+        Map<String,DoubleVector> vectors = randomVectors(sparse);
+        write(vectors, new SemanticSpaceWriter(f, format, 4));
+        assertEquals(format, SemanticSpaceIO.getFormat(f));
+        assertSameVectors(vectors, SemanticSpaceIO.load(f));
+        assertSameVectors(vectors, new OnDiskSemanticSpace(f));
+    }
+
+    @Test public void testText() throws Exception {
+        testFormat(SSpaceFormat.TEXT, false);
+    }
+
+    @Test public void testSparseText() throws Exception {
+        testFormat(SSpaceFormat.SPARSE_TEXT, false);
+        testFormat(SSpaceFormat.SPARSE_TEXT, true);
+    }
+
+    @Test public void testBinary() throws Exception {
+        testFormat(SSpaceFormat.BINARY, false);
+    }
+
+    @Test public void testSparseBinary() throws Exception {
+        testFormat(SSpaceFormat.SPARSE_BINARY, false);
+        testFormat(SSpaceFormat.SPARSE_BINARY, true);
+    }
+
+    @Test public void testMapped() throws Exception {
+        for (boolean sparse : new boolean[] { false, true }) {
+            File f = File.createTempFile("test-writer-mapped", ".sspace");
+            f.deleteOnExit();
+            Map<String,DoubleVector> vectors = randomVectors(sparse);
+            write(vectors, new SemanticSpaceWriter(f, SSpaceFormat.MAPPED, 4));
+            SemanticSpace mapped = SemanticSpaceIO.load(f);
+            assertTrue(mapped instanceof MappedSemanticSpace);
+            assertSameVectors(vectors, mapped);
+            // The layout follows the type of the first vector
+            assertEquals(sparse, 
+                         mapped.getVector("word0") instanceof SparseVector);
+        }
+    }
+
+    @Test public void testMappedFloats() throws Exception {
+        File f = File.createTempFile("test-writer-mapped-float", ".sspace");
+        f.deleteOnExit();
+        Map<String,DoubleVector> vectors = randomVectors(false);
+        write(vectors, new SemanticSpaceWriter(f, true, true, 3));
+        assertSameVectors(vectors, new MappedSemanticSpace(f));
+    }
+
+    @Test public void testEmpty() throws Exception {
+        File f = File.createTempFile("test-writer-empty", ".sspace");
+        f.deleteOnExit();
+        new SemanticSpaceWriter(f, SSpaceFormat.MAPPED, 2).close();
+        assertEquals(0, SemanticSpaceIO.load(f).getWords().size());
+    }
+
+    @Test public void testConcurrentWrites() throws Exception {
+        File f = File.createTempFile("test-writer-concurrent", ".sspace");
+        f.deleteOnExit();
+        final Map<String,DoubleVector> vectors = randomVectors(true);
+        final SemanticSpaceWriter writer = 
+            new SemanticSpaceWriter(f, SSpaceFormat.SPARSE_BINARY, 2);
+        final String[] words = vectors.keySet().toArray(new String[0]);
+        final int numThreads = 4;
+        final CountDownLatch latch = new CountDownLatch(numThreads);
+        final AtomicReference<Throwable> error = 
+            new AtomicReference<Throwable>();
+        for (int t = 0; t < numThreads; ++t) {
+            final int offset = t;
+            new Thread() {
+                public void run() {
+                    try {
+                        for (int i = offset; i < words.length; i += numThreads)
+                            writer.write(words[i], vectors.get(words[i]));
+                    } catch (Throwable t) {
+                        error.set(t);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+        latch.await();
+        assertNull(error.get());
+        writer.close();
+        assertSameVectors(vectors, SemanticSpaceIO.load(f));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMappedMismatchedLength() throws Exception {
+        File f = File.createTempFile("test-writer-mismatch", ".sspace");
+        f.deleteOnExit();
+        SemanticSpaceWriter writer = 
+            new SemanticSpaceWriter(f, SSpaceFormat.MAPPED, 1);
+        writer.write("a", new DenseVector(4));
+        writer.write("b", new DenseVector(5));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testWriteAfterClose() throws Exception {
+        File f = File.createTempFile("test-writer-closed", ".sspace");
+        f.deleteOnExit();
+        SemanticSpaceWriter writer = 
+            new SemanticSpaceWriter(f, SSpaceFormat.BINARY, 1);
+        writer.close();
+        writer.write("a", new DenseVector(4));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSerialize() throws Exception {
+        File f = File.createTempFile("test-writer-serialize", ".sspace");
+        f.deleteOnExit();
+        new SemanticSpaceWriter(f, SSpaceFormat.SERIALIZE, 1);
+    }
+}
@@ -362,4 +362,133 @@ public class SimilarityTest {
         assertEquals(-0.547722557505, tau, 0.001);
     }
 
+    /**
+     * Returns a random array where roughly half the values are zero.
+     */
+    private static double[] randomSparseArray(java.util.Random random,
+                                              int length, boolean positive) {
+        double[] arr = new double[length];
+        for (int i = 0; i < length; ++i) {
+            if (random.nextBoolean())
+                arr[i] = (positive) ? random.nextDouble() + .01
+                                    : random.nextGaussian();
+        }
+        return arr;
+    }
+
+    /**
+     * Returns the array as a dense, compact sparse, array-backed and hash-based
+     * sparse vector, which covers each of the specialized kernels and the
+     * general case.
+     */
+    private static DoubleVector[] asVectors(double[] arr) {
+        return new DoubleVector[] {
+            new DenseVector(arr), new CompactSparseVector(arr),
+            Vectors.asVector(arr), new SparseHashDoubleVector(arr) };
+    }
+
+    @Test public void testKernelsMatchArrays() {
+        java.util.Random random = new java.util.Random(1);
+        for (int trial = 0; trial < 20; ++trial) {
+            int length = random.nextInt(20) + 1;
+            double[] x = randomSparseArray(random, length, false);
+            double[] y = randomSparseArray(random, length, false);
+            // Ensure neither array is constant so the correlation is defined
+            x[0] = 1;
+            y[length - 1] = -1;
+            double cosine = Similarity.cosineSimilarity(x, y);
+            double euclidean = Similarity.euclideanDistance(x, y);
+            double correlation = Similarity.correlation(x, y);
+            for (DoubleVector a : asVectors(x)) {
+                for (DoubleVector b : asVectors(y)) {
+                    assertEquals(cosine,
+                        Similarity.cosineSimilarity(a, b), 1e-9);
+                    assertEquals(euclidean,
+                        Similarity.euclideanDistance(a, b), 1e-9);
+                    if (length > 1)
+                        assertEquals(correlation,
+                            Similarity.correlation(a, b), 1e-9);
+                    assertEquals(Similarity.jaccardIndex(x, y),
+                        Similarity.jaccardIndex(a, b), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test public void testKLDivergenceKernels() {
+        java.util.Random random = new java.util.Random(2);
+        for (int trial = 0; trial < 20; ++trial) {
+            int length = random.nextInt(20) + 1;
+            double[] x = randomSparseArray(random, length, true);
+            double[] y = new double[length];
+            for (int i = 0; i < length; ++i)
+                y[i] = random.nextDouble() + .01;
+            double kl = Similarity.klDivergence(x, y);
+            for (DoubleVector a : asVectors(x)) {
+                for (DoubleVector b : asVectors(y)) {
+                    assertEquals(kl, Similarity.klDivergence(a, b), 1e-9);
+                    assertEquals(kl, Similarity.klDivergence(
+                        (Vector)a, (Vector)b), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test public void testKLDivergenceSparseIgnoresZeros() {
+        DoubleVector a = new CompactSparseVector(new double[] {0, .5, .5});
+        DoubleVector b = new CompactSparseVector(new double[] {.5, .5, 0});
+        assertEquals(0, Similarity.klDivergence(a, b), 1e-9);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testKLDivergenceDenseZero() {
+        Similarity.klDivergence(new DenseVector(new double[] {.5, .5}),
+                                new CompactSparseVector(new double[] {1, 0}));
+    }
+
+    @Test public void testCompactKernels() {
+        double[] x = new double[] {.5, -1.25, 3, 0, 2.75, -.5, 1};
+        double[] y = new double[] {-2, .75, 1.5, 4, 0, .25, -1};
+
+        float[] floats = new float[x.length + y.length];
+        for (int i = 0; i < x.length; ++i) {
+            floats[i] = (float)x[i];
+            floats[x.length + i] = (float)y[i];
+        }
+        DoubleVector fa = new FloatArrayAsVector(floats, 0, x.length);
+        DoubleVector fb = new FloatArrayAsVector(floats, x.length, y.length);
+        assertEquals(Similarity.cosineSimilarity(x, y),
+                     Similarity.cosineSimilarity(fa, fb), 1e-6);
+        assertEquals(Similarity.euclideanDistance(x, y),
+                     Similarity.euclideanDistance(fa, fb), 1e-6);
+
+        byte[] bytes = new byte[x.length + y.length];
+        float xScale = QuantizedVector.quantize(
+            new DenseVector(x), bytes, 0);
+        float yScale = QuantizedVector.quantize(
+            new DenseVector(y), bytes, x.length);
+        DoubleVector qa = new QuantizedVector(bytes, 0, x.length, xScale);
+        DoubleVector qb = new QuantizedVector(bytes, x.length, y.length, 
+                                              yScale);
+        // The compact kernels should agree with comparing the dequantized
+        // values
+        DoubleVector da = new DenseVector(qa.toArray());
+        DoubleVector db = new DenseVector(qb.toArray());
+        assertEquals(Similarity.cosineSimilarity(da, db),
+                     Similarity.cosineSimilarity(qa, qb), 1e-9);
+        assertEquals(Similarity.euclideanDistance(da, db),
+                     Similarity.euclideanDistance(qa, qb), 1e-9);
+        assertEquals(Similarity.euclideanDistance(da, da),
+                     Similarity.euclideanDistance(qa, qa), 1e-9);
+        // And approximate the original values
+        assertEquals(Similarity.cosineSimilarity(x, y),
+                     Similarity.cosineSimilarity(qa, qb), 1e-2);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testCompactKernelsDifferentLengths() {
+        float[] floats = new float[5];
+        Similarity.euclideanDistance(new FloatArrayAsVector(floats, 0, 2),
+                                     new FloatArrayAsVector(floats, 2, 3));
+    }
 }
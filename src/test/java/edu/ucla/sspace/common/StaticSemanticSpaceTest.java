@@ -22,6 +22,7 @@
 package edu.ucla.sspace.common;
 
 import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+import edu.ucla.sspace.common.SemanticSpaceIO.VectorPrecision;
 
 import edu.ucla.sspace.matrix.*;
 import edu.ucla.sspace.text.*; 
@@ -108,6 +109,102 @@ public class StaticSemanticSpaceTest {
         }        
     }
 
+    @Test public void testQuantized() throws Exception { 
+        File quantizedFile = File.createTempFile("test-quantized",".sspace");
+        quantizedFile.deleteOnExit();
+        SemanticSpaceIO.save(control, quantizedFile, SSpaceFormat.QUANTIZED);
+        SemanticSpace onDisk = new StaticSemanticSpace(quantizedFile);
+        
+        assertEquals(control.getWords().size(), onDisk.getWords().size());
+        assertTrue(control.getWords().containsAll(onDisk.getWords()));
+        for (String word : control.getWords()) {
+            assertTrue(onDisk.getVector(word) instanceof QuantizedVector);
+            assertApproxEquals(control.getVector(word), 
+                               onDisk.getVector(word));
+        }        
+    }
+
+    @Test public void testQuantizedError() throws Exception { 
+        DummySemanticSpace sspace = new DummySemanticSpace();
+        sspace.setVector("a", new DenseVector(new double[] {.3, -1.7, 2.2}));
+        sspace.setVector("b", new DenseVector(new double[] {1e-3, 0, -4e-4}));
+        File quantizedFile = File.createTempFile("test-quantized",".sspace");
+        quantizedFile.deleteOnExit();
+        SemanticSpaceIO.save(sspace, quantizedFile, SSpaceFormat.QUANTIZED);
+        
+        for (VectorPrecision p : VectorPrecision.values()) {
+            SemanticSpace loaded = new StaticSemanticSpace(quantizedFile, p);
+            for (String word : sspace.getWords()) {
+                DoubleVector expected = (DoubleVector)sspace.getVector(word);
+                DoubleVector actual = (DoubleVector)loaded.getVector(word);
+                double maxAbs = 0;
+                for (int i = 0; i < expected.length(); ++i)
+                    maxAbs = Math.max(maxAbs, Math.abs(expected.get(i)));
+                for (int i = 0; i < expected.length(); ++i)
+                    assertEquals(expected.get(i), actual.get(i), 
+                                 maxAbs / 254 + 1e-9);
+            }
+        }
+    }
+
+    @Test public void testBinaryAsFloat() throws Exception { 
+        File binaryFile = File.createTempFile("test-binary",".sspace");
+        binaryFile.deleteOnExit();
+        SemanticSpaceIO.save(control, binaryFile, SSpaceFormat.BINARY);
+        SemanticSpace loaded = 
+            SemanticSpaceIO.load(binaryFile, VectorPrecision.FLOAT);
+        
+        assertEquals(control.getWords().size(), loaded.getWords().size());
+        for (String word : control.getWords()) {
+            assertTrue(loaded.getVector(word) instanceof FloatArrayAsVector);
+            assertEquals(VectorIO.toString(control.getVector(word)),
+                         VectorIO.toString(loaded.getVector(word)));
+        }        
+    }
+
+    @Test public void testTextAsInt8() throws Exception { 
+        File textFile = File.createTempFile("test-text",".sspace");
+        textFile.deleteOnExit();
+        SemanticSpaceIO.save(control, textFile, SSpaceFormat.TEXT);
+        SemanticSpace loaded = 
+            new StaticSemanticSpace(textFile, VectorPrecision.INT8);
+        
+        assertEquals(control.getWords().size(), loaded.getWords().size());
+        for (String word : control.getWords()) {
+            assertTrue(loaded.getVector(word) instanceof QuantizedVector);
+            assertApproxEquals(control.getVector(word), 
+                               loaded.getVector(word));
+        }        
+        assertEquals(
+            Similarity.cosineSimilarity(control.getVector("git"), 
+                                        control.getVector("hat")),
+            Similarity.cosineSimilarity(loaded.getVector("git"), 
+                                        loaded.getVector("hat")), 1e-9);
+    }
+
+    @Test public void testSparseIgnoresPrecision() throws Exception { 
+        File sparseBinaryFile = 
+            File.createTempFile("test-sparse-binary",".sspace");
+        sparseBinaryFile.deleteOnExit();
+        SemanticSpaceIO.save(control, sparseBinaryFile, 
+                             SSpaceFormat.SPARSE_BINARY);
+        SemanticSpace loaded = 
+            new StaticSemanticSpace(sparseBinaryFile, VectorPrecision.INT8);
+        for (String word : control.getWords()) 
+            assertTrue(loaded.getVector(word) instanceof SparseVector);
+    }
+
+    /**
+     * Asserts that the vectors have the same length and that their values are
+     * within the precision of a {@code float} scale.
+     */
+    private static void assertApproxEquals(Vector expected, Vector actual) {
+        assertEquals(expected.length(), actual.length());
+        for (int i = 0; i < expected.length(); ++i)
+            assertEquals(expected.getValue(i).doubleValue(), 
+                         actual.getValue(i).doubleValue(), 1e-6);
+    }
+
     private static String toSparseString(Vector v) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < v.length(); ++i)
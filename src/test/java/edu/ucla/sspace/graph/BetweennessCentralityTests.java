@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Unit tests for {@link BetweennessCentrality}
+ */
+public class BetweennessCentralityTests { 
+
+    private static Graph<Edge> randomGraph(int order, int size, long seed) {
+        Random rand = new Random(seed);
+        Graph<Edge> g = new SparseUndirectedGraph();
+        for (int i = 0; i < order; ++i)
+            g.add(i);
+        while (g.size() < size) {
+            int i = rand.nextInt(order);
+            int j = rand.nextInt(order);
+            if (i != j)
+                g.add(new SimpleEdge(i, j));
+        }
+        return g;
+    }
+
+    private static void assertCentralities(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], actual[i], 1e-9);
+    }
+
+    @Test public void testPath() {
+        Graph<Edge> g = new SparseUndirectedGraph();
+        g.add(new SimpleEdge(0, 1));
+        g.add(new SimpleEdge(1, 2));
+        g.add(new SimpleEdge(2, 3));
+        double[] bc = new BetweennessCentrality(1).compute(g);
+        // Each unordered pair is counted in both directions
+        assertCentralities(new double[] { 0, 4, 4, 0 }, bc);
+    }
+
+    @Test public void testStar() {
+        Graph<Edge> g = new SparseUndirectedGraph();
+        for (int i = 1; i < 6; ++i)
+            g.add(new SimpleEdge(0, i));
+        double[] bc = new BetweennessCentrality(2).compute(g);
+        assertEquals(20, bc[0], 1e-9);
+        for (int i = 1; i < 6; ++i)
+            assertEquals(0, bc[i], 1e-9);
+    }
+
+    @Test public void testMultipleShortestPaths() {
+        // A square, where each pair of opposite vertices has two paths
+        Graph<Edge> g = new SparseUndirectedGraph();
+        g.add(new SimpleEdge(0, 1));
+        g.add(new SimpleEdge(1, 2));
+        g.add(new SimpleEdge(2, 3));
+        g.add(new SimpleEdge(3, 0));
+        double[] bc = new BetweennessCentrality(1).compute(g);
+        assertCentralities(new double[] { 1, 1, 1, 1 }, bc);
+    }
+
+    @Test public void testParallelMatchesSerial() {
+        Graph<Edge> g = randomGraph(100, 300, 1);
+        double[] serial = new BetweennessCentrality(1).compute(g);
+        double[] parallel = new BetweennessCentrality(4).compute(g);
+        assertCentralities(serial, parallel);
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testNonContiguous() {
+        Graph<Edge> g = new SparseUndirectedGraph();
+        g.add(new SimpleEdge(0, 5));
+        new BetweennessCentrality(1).compute(g);
+    }
+
+    @Test public void testWeighted() {
+        // The direct edge from 0 to 2 is longer than the path through 1
+        WeightedGraph<WeightedEdge> g = new SparseWeightedGraph();
+        g.add(new SimpleWeightedEdge(0, 1, 1));
+        g.add(new SimpleWeightedEdge(1, 2, 1));
+        g.add(new SimpleWeightedEdge(0, 2, 3));
+        double[] bc = new BetweennessCentrality(1).compute(g);
+        assertCentralities(new double[] { 0, 2, 0 }, bc);
+
+        // With equal lengths, the paths should be split
+        g.add(new SimpleWeightedEdge(0, 2, 2));
+        bc = new BetweennessCentrality(1).compute(g);
+        assertCentralities(new double[] { 0, 1, 0 }, bc);
+    }
+
+    @Test public void testWeightedUnitMatchesUnweighted() {
+        Graph<Edge> g = randomGraph(60, 200, 2);
+        WeightedGraph<WeightedEdge> wg = new SparseWeightedGraph();
+        for (int v : g.vertices())
+            wg.add(v);
+        for (Edge e : g.edges())
+            wg.add(new SimpleWeightedEdge(e.from(), e.to(), 1));
+        BetweennessCentrality bc = new BetweennessCentrality(3);
+        assertCentralities(bc.compute(g), bc.compute(wg));
+        assertCentralities(bc.compute(g), bc.compute(Graphs.freeze(wg)));
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testNegativeWeight() {
+        WeightedGraph<WeightedEdge> g = new SparseWeightedGraph();
+        g.add(new SimpleWeightedEdge(0, 1, -1));
+        new BetweennessCentrality(1).compute(g);
+    }
+
+    @Test public void testAllPivotsIsExact() {
+        Graph<Edge> g = randomGraph(40, 100, 3);
+        BetweennessCentrality bc = new BetweennessCentrality(2);
+        assertCentralities(bc.compute(g), bc.compute(g, 40));
+        assertCentralities(bc.compute(g), bc.compute(g, 1000));
+    }
+
+    @Test public void testSampledEstimate() {
+        Graph<Edge> g = randomGraph(200, 600, 4);
+        double[] exact = new BetweennessCentrality(2).compute(g);
+        double epsilon = 0.05;
+        BetweennessCentrality bc = 
+            new BetweennessCentrality(2, new Random(5));
+        double[] estimate = bc.compute(g, epsilon, 0.1);
+        double bound = epsilon * 200 * 198;
+        for (int i = 0; i < exact.length; ++i)
+            assertEquals(exact[i], estimate[i], bound);
+    }
+
+    @Test public void testPivotsFor() {
+        int k = BetweennessCentrality.pivotsFor(1000, 0.1, 0.1);
+        assertEquals((int)Math.ceil(Math.log(20000) / 0.02), k);
+        // Never more pivots than vertices
+        assertEquals(10, BetweennessCentrality.pivotsFor(10, 0.01, 0.01));
+    }
+}
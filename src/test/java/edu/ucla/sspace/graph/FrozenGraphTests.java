@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import java.util.*;
+
+import edu.ucla.sspace.util.MultiMap;
+
+import edu.ucla.sspace.util.primitive.IntSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Unit tests for {@link FrozenGraph} and {@link FrozenWeightedGraph}
+ */
+public class FrozenGraphTests { 
+
+    private static Graph<Edge> randomGraph(int order, int size, long seed) {
+        Random rand = new Random(seed);
+        Graph<Edge> g = new SparseUndirectedGraph();
+        for (int i = 0; i < order; ++i)
+            g.add(i);
+        while (g.size() < size) {
+            int i = rand.nextInt(order);
+            int j = rand.nextInt(order);
+            if (i != j)
+                g.add(new SimpleEdge(i, j));
+        }
+        return g;
+    }
+
+    @Test public void testEquals() {
+        Graph<Edge> g = randomGraph(50, 200, 1);
+        FrozenGraph f = Graphs.freeze(g);
+        assertEquals(g.order(), f.order());
+        assertEquals(g.size(), f.size());
+        assertEquals(g.vertices(), f.vertices());
+        assertEquals(g.edges(), f.edges());
+        assertEquals(g, f);
+        assertEquals(f, g);
+        assertEquals(g.hashCode(), f.hashCode());
+    }
+
+    @Test public void testFreezeFrozen() {
+        FrozenGraph f = Graphs.freeze(randomGraph(10, 20, 2));
+        assertSame(f, Graphs.freeze(f));
+    }
+
+    @Test public void testNeighbors() {
+        Graph<Edge> g = randomGraph(50, 200, 3);
+        FrozenGraph f = new FrozenGraph(g);
+        for (int v = 0; v < 50; ++v) {
+            IntSet neighbors = f.getNeighbors(v);
+            assertEquals(g.getNeighbors(v), neighbors);
+            assertEquals(g.degree(v), f.degree(v));
+            assertEquals(g.getAdjacencyList(v), f.getAdjacencyList(v));
+            int prev = Integer.MIN_VALUE;
+            for (int i = f.neighborStart(v); i < f.neighborEnd(v); ++i) {
+                int n = f.neighborAt(i);
+                assertTrue(n > prev);
+                assertTrue(g.contains(v, n));
+                prev = n;
+            }
+        }
+    }
+
+    @Test public void testContains() {
+        Graph<Edge> g = randomGraph(30, 100, 4);
+        FrozenGraph f = new FrozenGraph(g);
+        for (int i = 0; i < 30; ++i) {
+            assertTrue(f.contains(i));
+            for (int j = 0; j < 30; ++j) {
+                assertEquals(g.contains(i, j), f.contains(i, j));
+                assertEquals(g.contains(new SimpleEdge(i, j)), 
+                             f.contains(new SimpleEdge(i, j)));
+                assertEquals(g.getEdges(i, j), f.getEdges(i, j));
+            }
+        }
+        assertFalse(f.contains(30));
+        assertFalse(f.contains(-1));
+        assertEquals(0, f.degree(30));
+        assertTrue(f.getNeighbors(30).isEmpty());
+    }
+
+    @Test public void testNonContiguousVertices() {
+        Graph<Edge> g = new SparseUndirectedGraph();
+        g.add(new SimpleEdge(10, 20));
+        g.add(new SimpleEdge(20, 5));
+        g.add(new SimpleEdge(5, 5));
+        g.add(7);
+        FrozenGraph f = new FrozenGraph(g);
+        assertEquals(4, f.order());
+        assertEquals(3, f.size());
+        assertTrue(f.contains(5, 5));
+        assertTrue(f.contains(20, 10));
+        assertFalse(f.contains(7, 10));
+        assertEquals(0, f.degree(7));
+        assertEquals(g.edges(), f.edges());
+        assertTrue(f.hasCycles());
+    }
+
+    @Test public void testHasCycles() {
+        Graph<Edge> g = new SparseUndirectedGraph();
+        g.add(new SimpleEdge(0, 1));
+        g.add(new SimpleEdge(1, 2));
+        g.add(new SimpleEdge(3, 2));
+        assertFalse(new FrozenGraph(g).hasCycles());
+        g.add(new SimpleEdge(3, 0));
+        assertTrue(new FrozenGraph(g).hasCycles());
+    }
+
+    @Test public void testSubgraph() {
+        Graph<Edge> g = randomGraph(30, 100, 5);
+        FrozenGraph f = new FrozenGraph(g);
+        Set<Integer> vertices = new HashSet<Integer>();
+        for (int i = 0; i < 30; i += 2)
+            vertices.add(i);
+        assertEquals(g.subgraph(vertices), f.subgraph(vertices));
+        Graph<Edge> copy = f.copy(vertices);
+        assertEquals(g.copy(vertices), copy);
+        // The copy should be mutable
+        copy.add(new SimpleEdge(0, 2));
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testAddEdge() {
+        new FrozenGraph(randomGraph(10, 20, 6)).add(new SimpleEdge(0, 1));
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testRemoveVertex() {
+        new FrozenGraph(randomGraph(10, 20, 7)).remove(0);
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testNeighborsUnmodifiable() {
+        new FrozenGraph(randomGraph(10, 20, 8)).getNeighbors(0).add(9);
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testDirectedGraph() {
+        Graph<DirectedEdge> g = new SparseDirectedGraph();
+        g.add(new SimpleDirectedEdge(0, 1));
+        Graphs.freeze(g);
+    }
+
+    @Test public void testBetweennessCentrality() {
+        Graph<Edge> g = randomGraph(40, 120, 9);
+        BetweennessCentrality bc = new BetweennessCentrality();
+        double[] expected = bc.compute(g);
+        double[] actual = bc.compute(Graphs.freeze(g));
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], actual[i], 1e-9);
+    }
+
+    @Test public void testConnectionSimilarity() {
+        Graph<Edge> g = randomGraph(30, 120, 10);
+        FrozenGraph f = new FrozenGraph(g);
+        LinkClustering lc = new LinkClustering();
+        for (int k = 0; k < 30; ++k) {
+            int[] n = f.getNeighbors(k).toPrimitiveArray();
+            for (int i = 0; i < n.length; ++i) {
+                for (int j = i + 1; j < n.length; ++j) {
+                    assertEquals(
+                        lc.getConnectionSimilarity(g, k, n[i], n[j]),
+                        lc.getConnectionSimilarity(f, k, n[i], n[j]), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test public void testWeightedGraph() {
+        Random rand = new Random(11);
+        WeightedGraph<WeightedEdge> g = new SparseWeightedGraph();
+        for (int i = 0; i < 30; ++i)
+            g.add(i);
+        while (g.size() < 100) {
+            int i = rand.nextInt(30);
+            int j = rand.nextInt(30);
+            if (i != j)
+                g.add(new SimpleWeightedEdge(i, j, rand.nextDouble()));
+        }
+        FrozenWeightedGraph f = Graphs.freeze(g);
+        assertEquals(g, f);
+        assertEquals(g.edges(), f.edges());
+        for (int v = 0; v < 30; ++v) {
+            assertEquals(g.strength(v), f.strength(v), 1e-9);
+            assertEquals(g.getAdjacencyList(v), f.getAdjacencyList(v));
+            for (int i = f.neighborStart(v); i < f.neighborEnd(v); ++i) {
+                int n = f.neighborAt(i);
+                assertTrue(f.contains(
+                    new SimpleWeightedEdge(v, n, f.weightAt(i))));
+                assertFalse(f.contains(
+                    new SimpleWeightedEdge(v, n, f.weightAt(i) + 1)));
+            }
+        }
+        Set<Integer> vertices = new HashSet<Integer>(Arrays.asList(1, 3, 5, 7));
+        assertEquals(g.copy(vertices), f.subgraph(vertices));
+    }
+
+    @Test public void testChineseWhispers() {
+        // Two cliques joined by a single edge
+        Graph<Edge> g = new SparseUndirectedGraph();
+        for (int i = 0; i < 5; ++i) {
+            for (int j = i + 1; j < 5; ++j) {
+                g.add(new SimpleEdge(i, j));
+                g.add(new SimpleEdge(i + 5, j + 5));
+            }
+        }
+        g.add(new SimpleEdge(0, 5));
+        ChineseWhispersClustering cw = new ChineseWhispersClustering();
+        MultiMap<Integer,Integer> clusters = 
+            cw.cluster(Graphs.freeze(g), 100, 0);
+        for (Integer c : clusters.keySet()) {
+            Set<Integer> members = clusters.get(c);
+            assertTrue(members.size() <= 5);
+        }
+    }
+}
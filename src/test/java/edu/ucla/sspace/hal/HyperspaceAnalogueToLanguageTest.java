@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hal;
+
+import edu.ucla.sspace.basis.StringBasisMapping;
+
+import edu.ucla.sspace.matrix.SpillingMatrixAccumulator;
+
+import edu.ucla.sspace.text.IteratorFactory;
+
+import edu.ucla.sspace.vector.Vector;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link HyperspaceAnalogueToLanguage} class.
+ */
+public class HyperspaceAnalogueToLanguageTest {
+
+    static final String[] DOCUMENTS = {
+        "the quick brown fox jumps over the lazy dog",
+        "the lazy fox sleeps while the quick dog jumps over the fox",
+        "dog",
+    };
+
+    static final int WINDOW_SIZE = 3;
+
+    /**
+     * Computes the expected vector of each word by counting co-occurrences
+     * over the token strings, rather than their identifiers.
+     */
+    static Map<String,double[]> expectedVectors(StringBasisMapping basis) {
+        WeightingFunction weighting = new LinearWeighting();
+        int words = basis.numDimensions();
+        Map<String,double[]> expected = new HashMap<String,double[]>();
+        for (String word : basis.keySet())
+            expected.put(word, new double[words * 2]);
+
+        for (String doc : DOCUMENTS) {
+            List<String> tokens = new ArrayList<String>();
+            Iterator<String> it = IteratorFactory.tokenizeOrdered(doc);
+            while (it.hasNext())
+                tokens.add(it.next());
+
+            for (int i = 0; i < tokens.size(); ++i) {
+                String focus = tokens.get(i);
+                if (focus.equals(IteratorFactory.EMPTY_TOKEN))
+                    continue;
+                int focusDim = basis.getDimension(focus);
+                for (int j = Math.max(0, i - WINDOW_SIZE); j < i; ++j) {
+                    String prev = tokens.get(j);
+                    if (prev.equals(IteratorFactory.EMPTY_TOKEN))
+                        continue;
+                    double w = weighting.weight(j - i, WINDOW_SIZE);
+                    // The row of the previous word and the column of the focus
+                    // word record the co-occurrence.
+                    expected.get(prev)[focusDim] += w;
+                    expected.get(focus)[words + basis.getDimension(prev)] += w;
+                }
+            }
+        }
+        return expected;
+    }
+
+    static HyperspaceAnalogueToLanguage process(
+            HyperspaceAnalogueToLanguage hal) throws Exception {
+        for (String doc : DOCUMENTS)
+            hal.processDocument(new BufferedReader(new StringReader(doc)));
+        hal.processSpace(new Properties());
+        return hal;
+    }
+
+    @Test public void testIdPathMatchesStringPath() throws Exception {
+        StringBasisMapping basis = new StringBasisMapping();
+        HyperspaceAnalogueToLanguage hal = process(
+            new HyperspaceAnalogueToLanguage(
+                basis, WINDOW_SIZE, new LinearWeighting(), -1d, -1));
+
+        Map<String,double[]> expected = expectedVectors(basis);
+        assertEquals(10, hal.getWords().size());
+        for (String word : hal.getWords()) {
+            double[] exp = expected.get(word);
+            Vector v = hal.getVector(word);
+            assertEquals(exp.length, v.length());
+            for (int i = 0; i < exp.length; ++i)
+                assertEquals(word + " at " + i, exp[i],
+                             v.getValue(i).doubleValue(), 1e-9);
+        }
+    }
+
+    /**
+     * Checks that HAL produces the same vectors when its counts are spilled to
+     * disk as when they are summed in memory, with columns dropped by entropy.
+     */
+    static void assertSpillMatchesMemory(double threshold, int retain)
+            throws Exception {
+        StringBasisMapping memoryBasis = new StringBasisMapping();
+        HyperspaceAnalogueToLanguage inMemory = process(
+            new HyperspaceAnalogueToLanguage(
+                memoryBasis, WINDOW_SIZE, new LinearWeighting(),
+                threshold, retain));
+
+        // Use a small buffer so that the counts are spilled into several runs
+        SpillingMatrixAccumulator accumulator =
+            new SpillingMatrixAccumulator(4, null, true);
+        StringBasisMapping spillBasis = new StringBasisMapping();
+        HyperspaceAnalogueToLanguage spilled = process(
+            new HyperspaceAnalogueToLanguage(
+                spillBasis, WINDOW_SIZE, new LinearWeighting(),
+                threshold, retain, accumulator));
+
+        assertEquals(inMemory.getWords(), spilled.getWords());
+        assertEquals(inMemory.getVectorLength(), spilled.getVectorLength());
+        // Ensure that some columns were actually dropped
+        assertTrue(spilled.getVectorLength() < spillBasis.numDimensions() * 2);
+        for (String word : inMemory.getWords()) {
+            Vector expected = inMemory.getVector(word);
+            Vector actual = spilled.getVector(word);
+            assertEquals(expected.length(), actual.length());
+            for (int i = 0; i < expected.length(); ++i)
+                assertEquals(word + " at " + i,
+                             expected.getValue(i).doubleValue(),
+                             actual.getValue(i).doubleValue(), 1e-6);
+        }
+    }
+
+    @Test public void testSpilledCountsMatchInMemoryWithThreshold()
+            throws Exception {
+        assertSpillMatchesMemory(1d, -1);
+    }
+
+    @Test public void testSpilledCountsMatchInMemoryWithRetain()
+            throws Exception {
+        assertSpillMatchesMemory(-1d, 6);
+    }
+}
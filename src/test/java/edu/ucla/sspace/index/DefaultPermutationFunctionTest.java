@@ -90,6 +90,32 @@ public class DefaultPermutationFunctionTest {
             assertEquals(v.get(i), invPermuted.getValue(i).intValue());
     }
 
+    @Test public void testMappingMatchesPermute() {
+        IntegerVector v = new DenseIntVector(new int[] {1, 2, 3, 4, 5, 6});
+        DefaultPermutationFunction func = new DefaultPermutationFunction();
+        for (int k = -3; k <= 3; ++k) {
+            Vector permuted = func.permute(v, k);
+            int[] mapping = func.getMapping(k, v.length());
+            for (int i = 0; i < v.length(); ++i)
+                assertEquals(v.get(i), 
+                             permuted.getValue(mapping[i]).intValue());
+        }
+        // Mappings should be cached
+        assertSame(func.getMapping(2, 6), func.getMapping(2, 6));
+    }
+
+    @Test public void testSparsePermutation() {
+        SparseIntegerVector v = new CompactSparseIntegerVector(100);
+        v.set(3, 1);
+        v.set(50, 2);
+        DefaultPermutationFunction func = new DefaultPermutationFunction();
+        Vector permuted = func.permute(v, 2);
+        int[] mapping = func.getMapping(2, 100);
+        assertEquals(1, permuted.getValue(mapping[3]).intValue());
+        assertEquals(2, permuted.getValue(mapping[50]).intValue());
+        assertEquals(2, ((SparseVector)permuted).getNonZeroIndices().length);
+    }
+
     private void assertNotEquals(Object o1, Object o2) {
         assertFalse(o1.equals(o2));
     }
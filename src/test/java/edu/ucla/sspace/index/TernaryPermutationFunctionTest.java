@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.index;
+
+import edu.ucla.sspace.vector.TernaryVector;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link TernaryPermutationFunction}
+ */
+public class TernaryPermutationFunctionTest {
+
+    @Test public void testMappingIsBijection() {
+        TernaryPermutationFunction func = new TernaryPermutationFunction();
+        for (int k = -4; k <= 4; ++k) {
+            int[] mapping = func.getMapping(k, 50);
+            Set<Integer> seen = new HashSet<Integer>();
+            for (int d : mapping)
+                assertTrue(seen.add(d));
+            assertEquals(50, seen.size());
+        }
+    }
+
+    @Test public void testPermuteUsesMapping() {
+        TernaryPermutationFunction func = new TernaryPermutationFunction();
+        TernaryVector v = new TernaryVector(
+            50, new int[] {1, 10, 20}, new int[] {5, 40});
+        for (int k = -3; k <= 3; ++k) {
+            TernaryVector permuted = func.permute(v, k);
+            int[] mapping = func.getMapping(k, 50);
+            for (int p : v.positiveDimensions())
+                assertEquals(1, permuted.get(mapping[p]));
+            for (int n : v.negativeDimensions())
+                assertEquals(-1, permuted.get(mapping[n]));
+            assertEquals(3, permuted.positiveDimensions().length);
+            assertEquals(2, permuted.negativeDimensions().length);
+        }
+    }
+
+    @Test public void testZeroPermutationIsIdentity() {
+        TernaryPermutationFunction func = new TernaryPermutationFunction();
+        TernaryVector v = new TernaryVector(
+            50, new int[] {1, 10, 20}, new int[] {5, 40});
+        TernaryVector permuted = func.permute(v, 0);
+        assertNotSame(v.positiveDimensions(), permuted.positiveDimensions());
+        for (int i = 0; i < 50; ++i)
+            assertEquals(v.get(i), permuted.get(i));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.SparseDoubleVector;
+
+import java.util.Random;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link CompactingMatrixAccumulator}
+ */
+public class CompactingMatrixAccumulatorTest {
+
+    /**
+     * Adds random updates to both the accumulator and a dense matrix, returning
+     * the matrix.
+     */
+    private static double[][] addRandom(CompactingMatrixAccumulator acc,
+                                        int rows, int cols, int updates,
+                                        Random random) {
+        double[][] expected = new double[rows][cols];
+        for (int i = 0; i < updates; ++i) {
+            int r = random.nextInt(rows);
+            int c = random.nextInt(cols);
+            double v = random.nextInt(5) + 1;
+            expected[r][c] += v;
+            acc.add(r, c, v);
+        }
+        return expected;
+    }
+
+    private static void assertSameRows(double[][] expected,
+                                       CompactingMatrixAccumulator acc) {
+        int cols = expected[0].length;
+        for (int r = 0; r < expected.length; ++r) {
+            SparseDoubleVector row = acc.getRowVector(r, cols);
+            assertEquals(cols, row.length());
+            int nonZero = 0;
+            for (int c = 0; c < cols; ++c) {
+                assertEquals(expected[r][c], row.get(c), 0);
+                if (expected[r][c] != 0)
+                    nonZero++;
+            }
+            int[] nz = row.getNonZeroIndices();
+            assertEquals(nonZero, nz.length);
+            for (int i = 1; i < nz.length; ++i)
+                assertTrue(nz[i - 1] < nz[i]);
+        }
+    }
+
+    @Test public void testSingleBuffer() {
+        CompactingMatrixAccumulator acc = new CompactingMatrixAccumulator();
+        double[][] expected = addRandom(acc, 20, 30, 1000, new Random(1));
+        assertSameRows(expected, acc);
+        assertEquals(20, acc.rows());
+    }
+
+    @Test public void testManyMerges() {
+        CompactingMatrixAccumulator acc = new CompactingMatrixAccumulator(7);
+        double[][] expected = addRandom(acc, 50, 200, 5000, new Random(2));
+        assertSameRows(expected, acc);
+    }
+
+    @Test public void testMergeAfterAccess() {
+        CompactingMatrixAccumulator acc = new CompactingMatrixAccumulator(4);
+        acc.add(0, 3, 1);
+        acc.add(0, 1, 2);
+        SparseDoubleVector before = acc.getRowVector(0, 5);
+        acc.add(0, 2, 4);
+        acc.add(0, 3, 1);
+        SparseDoubleVector after = acc.getRowVector(0, 5);
+
+        // The earlier vector is not affected by the later merge
+        assertEquals(2, before.getNonZeroIndices().length);
+        assertEquals(1, before.get(3), 0);
+        assertEquals(3, after.getNonZeroIndices().length);
+        assertEquals(2, after.get(1), 0);
+        assertEquals(4, after.get(2), 0);
+        assertEquals(2, after.get(3), 0);
+    }
+
+    @Test public void testCancellingValues() {
+        CompactingMatrixAccumulator acc = new CompactingMatrixAccumulator(1);
+        acc.add(0, 0, 1);
+        acc.add(0, 0, -1);
+        acc.add(0, 2, 3);
+        SparseDoubleVector row = acc.getRowVector(0, 3);
+        assertEquals(1, row.getNonZeroIndices().length);
+        assertEquals(3, row.get(2), 0);
+    }
+
+    @Test public void testEmptyRows() {
+        CompactingMatrixAccumulator acc = new CompactingMatrixAccumulator();
+        acc.add(2, 1, 1);
+        assertEquals(3, acc.rows());
+        assertEquals(0, acc.getRowVector(0, 4).getNonZeroIndices().length);
+        assertEquals(0, acc.getRowVector(10, 4).getNonZeroIndices().length);
+    }
+
+    @Test public void testToSparseMatrix() {
+        CompactingMatrixAccumulator acc = new CompactingMatrixAccumulator(16);
+        double[][] expected = addRandom(acc, 15, 10, 300, new Random(3));
+        SparseMatrix m = acc.toSparseMatrix(17, 12);
+        assertEquals(17, m.rows());
+        assertEquals(12, m.columns());
+        for (int r = 0; r < 17; ++r)
+            for (int c = 0; c < 12; ++c)
+                assertEquals((r < 15 && c < 10) ? expected[r][c] : 0,
+                             m.get(r, c), 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testToSparseMatrixTooFewColumns() {
+        CompactingMatrixAccumulator acc = new CompactingMatrixAccumulator();
+        acc.add(0, 5, 1);
+        acc.toSparseMatrix(1, 5);
+    }
+
+    @Test public void testConcurrentAdds() throws Exception {
+        final CompactingMatrixAccumulator acc = 
+            new CompactingMatrixAccumulator(8);
+        final int threads = 4;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t) {
+            new Thread() {
+                public void run() {
+                    for (int i = 0; i < 1000; ++i)
+                        acc.add(i % 25, i % 7, 1);
+                    latch.countDown();
+                }
+            }.start();
+        }
+        latch.await();
+        double[][] expected = new double[25][7];
+        for (int i = 0; i < 1000; ++i)
+            expected[i % 25][i % 7] += threads;
+        assertSameRows(expected, acc);
+    }
+}
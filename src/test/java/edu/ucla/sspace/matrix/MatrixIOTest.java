@@ -24,6 +24,7 @@ package edu.ucla.sspace.matrix;
 import edu.ucla.sspace.matrix.*;
 import edu.ucla.sspace.text.*; 
 import edu.ucla.sspace.util.*;
+import edu.ucla.sspace.vector.DoubleVector;
 
 import java.io.*;
 import java.util.*;
@@ -617,4 +618,74 @@ public class MatrixIOTest {
                 mFile, MatrixIO.Format.SVDLIBC_SPARSE_TEXT);
         testMatrixIterator(matrixIter);
     }
+
+    private static void testMatrixRows(Iterable<DoubleVector> rows) {
+        // Iterate twice to check that the rows can be read more than once
+        for (int pass = 0; pass < 2; ++pass) {
+            int row = 0;
+            for (DoubleVector v : rows) {
+                assertEquals(testMatrix[0].length, v.length());
+                for (int col = 0; col < v.length(); ++col)
+                    assertEquals(testMatrix[row][col], v.get(col), .0001);
+                row++;
+            }
+            assertEquals(testMatrix.length, row);
+        }
+    }
+
+    @Test public void readDenseTextRows() throws Exception {
+        testMatrixRows(MatrixIO.getMatrixFileRows(
+            getDenseTextFile(), MatrixIO.Format.DENSE_TEXT));
+    }
+
+    @Test public void readSVDLIBCDenseBinaryRows() throws Exception {
+        testMatrixRows(MatrixIO.getMatrixFileRows(
+            getSVDLIBCDenseBinaryFile(), MatrixIO.Format.SVDLIBC_DENSE_BINARY));
+    }
+
+    @Test public void readSVDLIBCSparseBinaryRows() throws Exception {
+        testMatrixRows(MatrixIO.getMatrixFileRows(
+            getSparseBinarySVDLIBCFile(), 
+            MatrixIO.Format.SVDLIBC_SPARSE_BINARY));
+    }
+
+    @Test public void readMatlabRows() throws Exception {
+        testMatrixRows(MatrixIO.getMatrixFileRows(
+            getMatlabFile(), MatrixIO.Format.MATLAB_SPARSE));
+    }
+
+    @Test public void readSVDLIBCSparseTextRows() throws Exception {
+        testMatrixRows(MatrixIO.getMatrixFileRows(
+            getSparseSVDLIBCFile(), MatrixIO.Format.SVDLIBC_SPARSE_TEXT));
+    }
+
+    @Test public void readClutoSparseRows() throws Exception {
+        testMatrixRows(MatrixIO.getMatrixFileRows(
+            getClutoSparseFile(), MatrixIO.Format.CLUTO_SPARSE));
+    }
+
+    @Test public void readSVDLIBCSparseRowsWithEmptyRowsAndColumns()
+            throws Exception {
+        // The last row and column have no values, so the dimensions must come
+        // from the file's header
+        Matrix m = new YaleSparseMatrix(4, 5);
+        m.set(0, 1, 2.5);
+        m.set(2, 0, 1);
+        m.set(2, 3, -4);
+        MatrixIO.Format[] formats = { MatrixIO.Format.SVDLIBC_SPARSE_BINARY,
+                                      MatrixIO.Format.SVDLIBC_SPARSE_TEXT };
+        for (MatrixIO.Format format : formats) {
+            File f = File.createTempFile("test-rows", ".dat");
+            f.deleteOnExit();
+            MatrixIO.writeMatrix(m, f, format);
+            int row = 0;
+            for (DoubleVector v : MatrixIO.getMatrixFileRows(f, format)) {
+                assertEquals(m.columns(), v.length());
+                for (int col = 0; col < v.length(); ++col)
+                    assertEquals(m.get(row, col), v.get(col), .0001);
+                row++;
+            }
+            assertEquals(m.rows(), row);
+        }
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.DoubleVector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link PackedSymmetricMatrix} class.
+ */
+public class PackedSymmetricMatrixTests {
+
+    @Test public void testSet() {
+        for (boolean onDisk : new boolean[] { false, true }) {
+            PackedSymmetricMatrix m = new PackedSymmetricMatrix(10, onDisk);
+            assertEquals(10, m.rows());
+            assertEquals(10, m.columns());
+            m.set(5, 1, 2);
+            assertEquals(2, m.get(5, 1), .001);
+            assertEquals(2, m.get(1, 5), .001);
+
+            m.set(1, 5, 3);
+            assertEquals(3, m.get(5, 1), .001);
+            assertEquals(3, m.getFloat(1, 5), .001);
+
+            m.setFloat(7, 7, 4);
+            assertEquals(4, m.get(7, 7), .001);
+        }
+    }
+
+    @Test public void testAllCells() {
+        int size = 37;
+        PackedSymmetricMatrix m = new PackedSymmetricMatrix(size, true);
+        for (int r = 0; r < size; ++r)
+            for (int c = r; c < size; ++c)
+                m.set(r, c, r * size + c);
+        for (int r = 0; r < size; ++r) {
+            for (int c = 0; c < size; ++c) {
+                int expected = Math.min(r, c) * size + Math.max(r, c);
+                assertEquals(expected, m.get(r, c), 0);
+            }
+        }
+    }
+
+    @Test public void testRowVector() {
+        PackedSymmetricMatrix m = new PackedSymmetricMatrix(10);
+        m.set(5, 1, 2);
+        DoubleVector v = m.getRowVector(5);
+        assertEquals(2, v.get(1), .001);
+        v = m.getColumnVector(5);
+        assertEquals(2, v.get(1), .001);
+        v = m.getRowVector(1);
+        assertEquals(2, v.get(5), .001);
+    }
+
+    @Test(expected=ArrayIndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        new PackedSymmetricMatrix(4).get(4, 0);
+    }
+
+    @Test public void testNumValues() {
+        assertEquals(0L, PackedSymmetricMatrix.numValues(0));
+        assertEquals(1L, PackedSymmetricMatrix.numValues(1));
+        assertEquals(55L, PackedSymmetricMatrix.numValues(10));
+        assertEquals(5000050000L, PackedSymmetricMatrix.numValues(100000));
+    }
+}
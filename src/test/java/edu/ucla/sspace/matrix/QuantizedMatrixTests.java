@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.QuantizedVector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link QuantizedMatrix} and {@link FloatMatrix} classes.
+ */
+public class QuantizedMatrixTests {
+
+    private static final double[][] VALUES = {
+        { 0.5, -1.25, 3, 0, 2.75 },
+        { 0, 0, 0, 0, 0 },
+        { 1e-3, -7e-4, 2e-5, 9e-4, -1e-3 },
+        { -100, 50, 25, -12.5, 1 },
+    };
+
+    @Test public void testQuantizationError() {
+        QuantizedMatrix m = new QuantizedMatrix(VALUES.length, 5);
+        for (int r = 0; r < VALUES.length; ++r)
+            m.setRow(r, VALUES[r]);
+        for (int r = 0; r < VALUES.length; ++r) {
+            QuantizedVector v = (QuantizedVector)m.getRowVector(r);
+            double maxAbs = 0;
+            for (double d : VALUES[r])
+                maxAbs = Math.max(maxAbs, Math.abs(d));
+            assertEquals(maxAbs / 127, v.getScale(), 1e-6 * maxAbs);
+            for (int c = 0; c < 5; ++c) {
+                assertTrue(Math.abs(v.getQuantized(c)) <= 127);
+                assertEquals(VALUES[r][c], m.get(r, c), 
+                             v.getScale() / 2 + 1e-12);
+                assertEquals(m.get(r, c), v.get(c), 0);
+            }
+        }
+    }
+
+    @Test public void testMagnitude() {
+        QuantizedMatrix m = new QuantizedMatrix(1, 5);
+        m.setRow(0, VALUES[0]);
+        DoubleVector v = m.getRowVector(0);
+        DoubleVector dense = new DenseVector(v.toArray());
+        assertEquals(dense.magnitude(), v.magnitude(), 1e-9);
+    }
+
+    @Test public void testSetRequantizesRow() {
+        QuantizedMatrix m = new QuantizedMatrix(2, 5);
+        m.setRow(0, VALUES[0]);
+        m.setRow(1, VALUES[2]);
+        m.set(0, 3, 10);
+        assertEquals(10, m.get(0, 3), 10d / 254 + 1e-12);
+        for (int c = 0; c < 5; ++c) {
+            if (c != 3)
+                assertEquals(VALUES[0][c], m.get(0, c), 10d / 127);
+            // The other row is unaffected
+            assertEquals(VALUES[2][c], m.get(1, c), 1e-3 / 254 + 1e-12);
+        }
+    }
+
+    @Test public void testOwnedArrays() {
+        byte[] values = { 1, -2, 127, 0, 5, 6 };
+        float[] scales = { .5f, 2f };
+        QuantizedMatrix m = new QuantizedMatrix(2, 3, values, scales);
+        assertEquals(-1, m.get(0, 1), 0);
+        assertEquals(63.5, m.get(0, 2), 0);
+        assertEquals(12, m.get(1, 2), 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testWrongSizeArrays() {
+        new QuantizedMatrix(2, 3, new byte[5], new float[2]);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testRowVectorUnmodifiable() {
+        new QuantizedMatrix(2, 3).getRowVector(0).set(0, 1);
+    }
+
+    @Test public void testFloatMatrix() {
+        FloatMatrix m = new FloatMatrix(VALUES.length, 5);
+        for (int r = 0; r < VALUES.length; ++r)
+            m.setRow(r, VALUES[r]);
+        for (int r = 0; r < VALUES.length; ++r) {
+            DoubleVector v = m.getRowVector(r);
+            double[] row = m.getRow(r);
+            for (int c = 0; c < 5; ++c) {
+                assertEquals((float)VALUES[r][c], m.get(r, c), 0);
+                assertEquals(m.get(r, c), v.get(c), 0);
+                assertEquals(m.get(r, c), row[c], 0);
+            }
+        }
+        // Row views reflect changes to the matrix
+        DoubleVector v = m.getRowVector(1);
+        m.set(1, 2, 4);
+        assertEquals(4, v.get(2), 0);
+        assertEquals(4, v.magnitude(), 0);
+    }
+}
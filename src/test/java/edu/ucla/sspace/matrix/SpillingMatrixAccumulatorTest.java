@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.basis.StringBasisMapping;
+
+import edu.ucla.sspace.hal.HyperspaceAnalogueToLanguage;
+import edu.ucla.sspace.hal.LinearWeighting;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.Vectors;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link SpillingMatrixAccumulator}
+ */
+public class SpillingMatrixAccumulatorTest {
+
+    /**
+     * Adds random updates to both the accumulator and a dense matrix, returning
+     * the matrix.
+     */
+    private static double[][] addRandom(SpillingMatrixAccumulator acc,
+                                        int rows, int cols, int updates,
+                                        Random random) {
+        double[][] expected = new double[rows][cols];
+        for (int i = 0; i < updates; ++i) {
+            int r = random.nextInt(rows);
+            int c = random.nextInt(cols);
+            double v = random.nextInt(5) + 1;
+            expected[r][c] += v;
+            acc.add(r, c, v);
+        }
+        return expected;
+    }
+
+    private static void assertSameEntries(double[][] expected,
+                                          SpillingMatrixAccumulator acc,
+                                          boolean columnMajor) {
+        int nonZero = 0;
+        for (double[] row : expected)
+            for (double v : row)
+                if (v != 0)
+                    nonZero++;
+
+        int seen = 0;
+        long prev = -1;
+        for (MatrixEntry e : acc) {
+            long key = (columnMajor)
+                ? ((long)e.column() << 32) | e.row()
+                : ((long)e.row() << 32) | e.column();
+            assertTrue(key > prev);
+            prev = key;
+            assertEquals(expected[e.row()][e.column()], e.value(), 0);
+            seen++;
+        }
+        assertEquals(nonZero, seen);
+    }
+
+    @Test public void testInMemory() {
+        SpillingMatrixAccumulator acc = new SpillingMatrixAccumulator();
+        double[][] expected = addRandom(acc, 20, 30, 1000, new Random(1));
+        assertSameEntries(expected, acc, false);
+        assertEquals(1, acc.numRuns());
+        acc.close();
+        assertEquals(0, acc.numRuns());
+    }
+
+    @Test public void testManyRuns() {
+        SpillingMatrixAccumulator acc =
+            new SpillingMatrixAccumulator(10, null, false);
+        double[][] expected = addRandom(acc, 50, 50, 5000, new Random(2));
+        assertTrue(acc.numRuns() > SpillingMatrixAccumulator.MAX_FAN_IN);
+        assertSameEntries(expected, acc, false);
+        // Iterating should have merged the runs down to at most the fan-in
+        assertTrue(acc.numRuns() <= SpillingMatrixAccumulator.MAX_FAN_IN);
+        // A second pass should see the same entries
+        assertSameEntries(expected, acc, false);
+        acc.close();
+    }
+
+    @Test public void testColumnMajor() {
+        SpillingMatrixAccumulator acc =
+            new SpillingMatrixAccumulator(16, null, true);
+        double[][] expected = addRandom(acc, 40, 10, 2000, new Random(3));
+        assertSameEntries(expected, acc, true);
+        acc.close();
+    }
+
+    @Test public void testCancellingValues() {
+        SpillingMatrixAccumulator acc =
+            new SpillingMatrixAccumulator(1, null, false);
+        acc.add(0, 0, 1);
+        acc.add(0, 0, -1);
+        acc.add(1, 2, 3);
+        Iterator<MatrixEntry> it = acc.iterator();
+        assertTrue(it.hasNext());
+        MatrixEntry e = it.next();
+        assertEquals(1, e.row());
+        assertEquals(2, e.column());
+        assertEquals(3, e.value(), 0);
+        assertFalse(it.hasNext());
+        acc.close();
+    }
+
+    @Test public void testConcurrentAdds() throws Exception {
+        final SpillingMatrixAccumulator acc =
+            new SpillingMatrixAccumulator(8, null, false);
+        final int threads = 4;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t) {
+            new Thread() {
+                public void run() {
+                    for (int i = 0; i < 1000; ++i)
+                        acc.add(i % 25, i % 7, 1);
+                    latch.countDown();
+                }
+            }.start();
+        }
+        latch.await();
+        double[][] expected = new double[25][7];
+        for (int i = 0; i < 1000; ++i)
+            expected[i % 25][i % 7] += threads;
+        assertSameEntries(expected, acc, false);
+        acc.close();
+    }
+
+    @Test public void testWriteTo() throws Exception {
+        SpillingMatrixAccumulator acc =
+            new SpillingMatrixAccumulator(32, null, true);
+        // Leave the first and last columns empty
+        double[][] expected = new double[15][12];
+        Random random = new Random(4);
+        for (int i = 0; i < 500; ++i) {
+            int r = random.nextInt(15);
+            int c = random.nextInt(10) + 1;
+            expected[r][c] += 1;
+            acc.add(r, c, 1);
+        }
+        SvdlibcSparseBinaryMatrixBuilder builder =
+            new SvdlibcSparseBinaryMatrixBuilder();
+        acc.writeTo(builder, 15, 12);
+        builder.finish();
+        acc.close();
+
+        Matrix m = MatrixIO.readMatrix(builder.getFile(),
+                                       builder.getMatrixFormat());
+        assertEquals(15, m.rows());
+        assertEquals(12, m.columns());
+        for (int r = 0; r < 15; ++r)
+            for (int c = 0; c < 12; ++c)
+                assertEquals(expected[r][c], m.get(r, c), .0001);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testWriteToRowMajor() {
+        new SpillingMatrixAccumulator().writeTo(
+            new SvdlibcSparseBinaryMatrixBuilder(), 1, 1);
+    }
+
+    @Test public void testHalMatchesInMemory() throws Exception {
+        String[] docs = {
+            "the cat sat on the mat with the other cat",
+            "a dog and a cat sat on a mat",
+            "the dog ate the other dog food" };
+        HyperspaceAnalogueToLanguage inMemory =
+            new HyperspaceAnalogueToLanguage();
+        HyperspaceAnalogueToLanguage spilled =
+            new HyperspaceAnalogueToLanguage(
+                new StringBasisMapping(), 5, new LinearWeighting(), -1d, -1,
+                new SpillingMatrixAccumulator(4, null, true));
+        for (String doc : docs) {
+            inMemory.processDocument(
+                new BufferedReader(new StringReader(doc)));
+            spilled.processDocument(
+                new BufferedReader(new StringReader(doc)));
+        }
+        inMemory.processSpace(System.getProperties());
+        spilled.processSpace(System.getProperties());
+        assertEquals(inMemory.getWords(), spilled.getWords());
+        assertEquals(inMemory.getVectorLength(), spilled.getVectorLength());
+        for (String word : inMemory.getWords()) {
+            DoubleVector expected = Vectors.asDouble(inMemory.getVector(word));
+            DoubleVector actual = Vectors.asDouble(spilled.getVector(word));
+            for (int i = 0; i < expected.length(); ++i)
+                assertEquals(expected.get(i), actual.get(i), .0001);
+        }
+    }
+}
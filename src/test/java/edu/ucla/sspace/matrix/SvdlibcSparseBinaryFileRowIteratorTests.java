@@ -60,6 +60,27 @@ public class SvdlibcSparseBinaryFileRowIteratorTests {
         assertFalse(it.hasNext());
     }
 
+    @Test public void testTrailingEmptyColumns() throws Exception {
+        File f = File.createTempFile("unit-test",".dat");
+        DataOutputStream pw = new DataOutputStream(new FileOutputStream(f));
+        pw.writeInt(2);
+        pw.writeInt(3);
+        pw.writeInt(1);
+        pw.writeInt(1);
+        pw.writeInt(1);
+        pw.writeFloat(1.5f);
+        pw.writeInt(0);
+        pw.writeInt(0);
+        pw.close();
+
+        Iterator<SparseDoubleVector> it =
+            new SvdlibcSparseBinaryFileRowIterator(f);
+        assertEquals(1.5, it.next().get(1), .0001);
+        assertEquals(0, it.next().getNonZeroIndices().length);
+        assertEquals(0, it.next().getNonZeroIndices().length);
+        assertFalse(it.hasNext());
+    }
+
     public static File getSparseBinarySVDLIBCFile() throws Exception {
         File f = File.createTempFile("unit-test",".dat");
         DataOutputStream pw = new DataOutputStream(new FileOutputStream(f));
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2011, Lawrence Livermore National Security, LLC. Produced at
+ * the Lawrence Livermore National Laboratory. Written by Keith Stevens,
+ * kstevens@cs.ucla.edu OCEC-10-073 All rights reserved. 
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix.factorization;
+
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.MatrixIO.Format;
+import edu.ucla.sspace.matrix.SVD;
+import edu.ucla.sspace.matrix.SparseMatrix;
+import edu.ucla.sspace.matrix.YaleSparseMatrix;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link SingularValueDecompositionRandomized}
+ */
+public class SingularValueDecompositionRandomizedTest {
+
+    @Test public void testMatrixReduction() {
+        SingularValueDecompositionTestUtil.testReductionMatrix(
+            new SingularValueDecompositionRandomized(10, 2, 1));
+    }
+
+    @Test public void testSparseBinaryFileReduction() {
+        SingularValueDecompositionTestUtil.testReductionFile(
+            new SingularValueDecompositionRandomized(10, 2, 1),
+            Format.SVDLIBC_SPARSE_BINARY);
+    }
+
+    @Test public void testMatlabFileReduction() {
+        SingularValueDecompositionTestUtil.testReductionFile(
+            new SingularValueDecompositionRandomized(10, 2, 1),
+            Format.MATLAB_SPARSE);
+    }
+
+    @Test public void testLowRankReconstruction() {
+        // Build a 60 x 40 matrix of rank 3 and check that the three-dimensional
+        // factorization reconstructs it exactly
+        Random random = new Random(2);
+        double[][] left = new double[60][3];
+        double[][] right = new double[3][40];
+        for (double[] row : left)
+            for (int i = 0; i < row.length; ++i)
+                row[i] = random.nextGaussian();
+        for (double[] row : right)
+            for (int i = 0; i < row.length; ++i)
+                row[i] = random.nextGaussian();
+        double[][] values = new double[60][40];
+        for (int r = 0; r < 60; ++r)
+            for (int c = 0; c < 40; ++c)
+                for (int k = 0; k < 3; ++k)
+                    values[r][c] += left[r][k] * right[k][c];
+        SparseMatrix m = new YaleSparseMatrix(values);
+
+        SingularValueDecomposition svd =
+            new SingularValueDecompositionRandomized(5, 1, 3);
+        svd.factorize(m, 3);
+        Matrix u = svd.getLeftVectors();
+        Matrix s = svd.getSingularValues();
+        Matrix vt = svd.getRightVectors();
+        assertTrue(s.get(0, 0) >= s.get(1, 1));
+        assertTrue(s.get(1, 1) >= s.get(2, 2));
+        for (int r = 0; r < 60; ++r) {
+            for (int c = 0; c < 40; ++c) {
+                double v = 0;
+                for (int k = 0; k < 3; ++k)
+                    v += u.get(r, k) * s.get(k, k) * vt.get(k, c);
+                assertEquals(values[r][c], v, 1e-6);
+            }
+        }
+    }
+
+    @Test public void testMoreDimensionsThanRank() {
+        SingularValueDecompositionRandomized svd =
+            new SingularValueDecompositionRandomized(2, 1, 4);
+        svd.factorize(new YaleSparseMatrix(new double[][] {
+                    {1, 0, 0}, {0, 2, 0}}), 3);
+        assertEquals(2, svd.getLeftVectors().rows());
+        assertEquals(3, svd.getLeftVectors().columns());
+        assertEquals(3, svd.getRightVectors().rows());
+        assertEquals(2, svd.singularValues()[0], 1e-9);
+        assertEquals(1, svd.singularValues()[1], 1e-9);
+        assertEquals(0, svd.singularValues()[2], 1e-9);
+    }
+
+    @Test public void testFallbackAlgorithm() {
+        assertTrue(SVD.getFactorization(SVD.Algorithm.RANDOMIZED)
+                   instanceof SingularValueDecompositionRandomized);
+    }
+}
@@ -21,6 +21,12 @@
 
 package edu.ucla.sspace.ri;
 
+import edu.ucla.sspace.index.PermutationFunction;
+import edu.ucla.sspace.index.TernaryPermutationFunction;
+
+import edu.ucla.sspace.vector.TernaryVector;
+import edu.ucla.sspace.vector.Vector;
+
 import java.io.*;
 import java.util.*;
 
@@ -47,4 +53,51 @@ public class TestRandomIndexing {
 
         assertEquals(words, ri.getWords());
     }
+
+    @Test public void testBufferedAccumulation() throws Exception {
+        String text = "the quick brown fox jumps over the lazy dog " +
+            "and the quick red fox jumps over the sleeping cat";
+        for (boolean usePermutations : new boolean[] { false, true }) {
+            PermutationFunction<TernaryVector> permFunc =
+                new TernaryPermutationFunction();
+            RandomIndexing ri = new RandomIndexing(
+                512, 2, usePermutations, permFunc, true, SEED, false,
+                new Properties());
+            ri.processDocument(new BufferedReader(new StringReader(text)));
+            ri.processDocument(new BufferedReader(new StringReader(text)));
+            ri.processSpace(new Properties());
+
+            final RandomIndexing buffered = new RandomIndexing(
+                512, 2, usePermutations, permFunc, true, SEED, true,
+                new Properties());
+            buffered.setWordToIndexVector(ri.getWordToIndexVector());
+            buffered.processDocument(
+                new BufferedReader(new StringReader(text)));
+            // Process the second document in another thread so that the
+            // co-occurrences are split across two buffers
+            final String doc = text;
+            Thread t = new Thread() {
+                public void run() {
+                    try {
+                        buffered.processDocument(
+                            new BufferedReader(new StringReader(doc)));
+                    } catch (IOException ioe) {
+                        throw new Error(ioe);
+                    }
+                }
+            };
+            t.start();
+            t.join();
+            buffered.processSpace(new Properties());
+
+            assertEquals(ri.getWords(), buffered.getWords());
+            for (String word : ri.getWords()) {
+                Vector expected = ri.getVector(word);
+                Vector actual = buffered.getVector(word);
+                assertEquals(expected.length(), actual.length());
+                for (int i = 0; i < expected.length(); ++i)
+                    assertEquals(expected.getValue(i), actual.getValue(i));
+            }
+        }
+    }
 }
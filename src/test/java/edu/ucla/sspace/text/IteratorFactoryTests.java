@@ -21,6 +21,11 @@
 
 package edu.ucla.sspace.text;
 
+import edu.ucla.sspace.util.ConcurrentIndexer;
+import edu.ucla.sspace.util.Indexer;
+
+import edu.ucla.sspace.util.primitive.IntIterator;
+
 import java.io.*;
 import java.util.*;
 
@@ -87,6 +92,25 @@ public class IteratorFactoryTests {
 	assertFalse(it.hasNext());
     }
 
+    @Test public void testOrderedIdsWithFilter() throws IOException {
+	File validTokens = createFileWithText("this\nmy\nexample\nsentence");
+	String filterProp = "include=" + validTokens.getAbsolutePath();
+	Properties props = new Properties();
+	props.setProperty(IteratorFactory.TOKEN_FILTER_PROPERTY, filterProp);
+	IteratorFactory.setProperties(props);
+	Indexer<String> vocab = new ConcurrentIndexer<String>();
+	IntIterator it = IteratorFactory.tokenizeOrderedIds(getReader(), vocab);
+	assertEquals(0, it.nextInt());
+	assertEquals(IteratorFactory.EMPTY_TOKEN_ID, it.nextInt());
+	assertEquals(1, it.nextInt());
+	assertEquals(2, it.nextInt());
+	assertEquals(3, it.nextInt());
+	assertFalse(it.hasNext());
+	assertEquals("my", vocab.lookup(1));
+	assertEquals(4, vocab.size());
+	IteratorFactory.setProperties(new Properties());
+    }
+
     public static File createFileWithText(String text) throws IOException {
 	File tmp = File.createTempFile("test", ".txt");
 	PrintWriter pw = new PrintWriter(tmp);
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link PrefetchingDocumentIterator}
+ */
+public class PrefetchingDocumentIteratorTest {
+
+    private static List<Document> documents(int n) {
+        List<Document> docs = new ArrayList<Document>();
+        for (int i = 0; i < n; ++i)
+            docs.add(new StringDocument("doc" + i));
+        return docs;
+    }
+
+    @Test public void testSingleConsumer() throws Exception {
+        PrefetchingDocumentIterator it =
+            new PrefetchingDocumentIterator(documents(100).iterator(), 2, 5);
+        List<String> seen = new ArrayList<String>();
+        while (it.hasNext())
+            seen.add(it.next().reader().readLine());
+        assertEquals(100, seen.size());
+        Collections.sort(seen);
+        List<String> expected = new ArrayList<String>();
+        for (Document d : documents(100))
+            expected.add(d.toString());
+        Collections.sort(expected);
+        assertEquals(expected, seen);
+        assertEquals(100L, it.documentsRead());
+        assertEquals(100L, it.documentsConsumed());
+        assertEquals(0, it.queueSize());
+        assertFalse(it.hasNext());
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void testNextPastEnd() {
+        PrefetchingDocumentIterator it =
+            new PrefetchingDocumentIterator(documents(1).iterator(), 1);
+        it.next();
+        it.next();
+    }
+
+    @Test public void testMultipleConsumers() throws Exception {
+        final PrefetchingDocumentIterator it =
+            new PrefetchingDocumentIterator(documents(1000).iterator(), 3, 4);
+        final ConcurrentLinkedQueue<String> seen =
+            new ConcurrentLinkedQueue<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; ++i) {
+            Thread t = new Thread() {
+                    public void run() {
+                        while (it.hasNext())
+                            seen.add(it.next().toString());
+                    }
+                };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads)
+            t.join();
+        assertEquals(1000, seen.size());
+        assertEquals(1000, new java.util.HashSet<String>(seen).size());
+    }
+
+    @Test public void testFileDocumentsAreLoaded() throws Exception {
+        File f = File.createTempFile("prefetch-test", ".txt");
+        f.deleteOnExit();
+        PrintWriter pw = new PrintWriter(f);
+        pw.println("the quick brown fox");
+        pw.close();
+        List<Document> docs = new ArrayList<Document>();
+        docs.add(new FileDocument(f.getPath()));
+        PrefetchingDocumentIterator it =
+            new PrefetchingDocumentIterator(docs.iterator(), 1);
+        Document doc = it.next();
+        assertFalse(doc instanceof FileDocument);
+        assertEquals("the quick brown fox", doc.reader().readLine());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testReaderError() {
+        Iterator<Document> failing = new Iterator<Document>() {
+            int i = 0;
+            public boolean hasNext() { return true; }
+            public Document next() {
+                if (i++ == 3)
+                    throw new IllegalStateException("failed");
+                return new StringDocument("doc");
+            }
+            public void remove() { }
+        };
+        PrefetchingDocumentIterator it =
+            new PrefetchingDocumentIterator(failing, 1, 10);
+        while (it.hasNext())
+            it.next();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import edu.ucla.sspace.common.SemanticSpace;
+import edu.ucla.sspace.common.VectorMapSemanticSpace;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link AllPairsNearestNeighbors}
+ */
+public class AllPairsNearestNeighborsTest {
+
+    private static SemanticSpace randomSpace(int numWords, int dims,
+                                             boolean sparse, Random random) {
+        Map<String,DoubleVector> vectors = new HashMap<String,DoubleVector>();
+        for (int i = 0; i < numWords; ++i) {
+            double[] v = new double[dims];
+            for (int j = 0; j < dims; ++j) {
+                if (!sparse || random.nextInt(5) == 0)
+                    v[j] = random.nextGaussian();
+            }
+            vectors.put("word" + i, (sparse)
+                        ? new CompactSparseVector(v) : new DenseVector(v));
+        }
+        return new VectorMapSemanticSpace<DoubleVector>(
+            vectors, "random", dims);
+    }
+
+    /**
+     * Checks that the all-pairs neighbors match those found by querying each
+     * word separately.
+     */
+    private static void assertMatchesExact(SemanticSpace sspace,
+                                           AllPairsNearestNeighbors allPairs,
+                                           int k) {
+        NearestNeighborFinder exact = new SimpleNearestNeighborFinder(sspace);
+        Map<String,SortedMultiMap<Double,String>> all = allPairs.findAll(k);
+        assertEquals(sspace.getWords().size(), all.size());
+        for (String word : sspace.getWords()) {
+            SortedMultiMap<Double,String> expected =
+                exact.getMostSimilar(word, k);
+            SortedMultiMap<Double,String> actual = all.get(word);
+            assertEquals(expected.size(), actual.size());
+            List<Double> expectedSims = new ArrayList<Double>(expected.keySet());
+            List<Double> actualSims = new ArrayList<Double>(actual.keySet());
+            for (int i = 0; i < expectedSims.size(); ++i)
+                assertEquals(expectedSims.get(i), actualSims.get(i), 1e-9);
+            assertEquals(new ArrayList<String>(expected.values()),
+                         new ArrayList<String>(actual.values()));
+            assertFalse(actual.values().contains(word));
+        }
+    }
+
+    @Test public void testDense() {
+        SemanticSpace sspace = randomSpace(300, 20, false, new Random(1));
+        assertMatchesExact(sspace, new AllPairsNearestNeighbors(
+            sspace, 32, WorkQueue.getWorkQueue()), 10);
+    }
+
+    @Test public void testSparse() {
+        SemanticSpace sspace = randomSpace(300, 50, true, new Random(2));
+        assertMatchesExact(sspace, new AllPairsNearestNeighbors(
+            sspace, 17, WorkQueue.getWorkQueue()), 5);
+    }
+
+    @Test public void testMixedSparseAndDense() {
+        Random random = new Random(5);
+        Map<String,DoubleVector> vectors = new HashMap<String,DoubleVector>();
+        for (int i = 0; i < 200; ++i) {
+            double[] v = new double[40];
+            for (int j = 0; j < v.length; ++j) {
+                if (i % 2 == 0 || random.nextInt(5) == 0)
+                    v[j] = random.nextGaussian();
+            }
+            vectors.put("word" + i, (i % 2 == 0)
+                        ? new DenseVector(v) : new CompactSparseVector(v));
+        }
+        SemanticSpace sspace = new VectorMapSemanticSpace<DoubleVector>(
+            vectors, "mixed", 40);
+        assertMatchesExact(sspace, new AllPairsNearestNeighbors(
+            sspace, 23, WorkQueue.getWorkQueue()), 7);
+    }
+
+    @Test public void testStreamingOrder() {
+        SemanticSpace sspace = randomSpace(100, 10, false, new Random(3));
+        AllPairsNearestNeighbors allPairs = new AllPairsNearestNeighbors(
+            sspace, 7, WorkQueue.getWorkQueue());
+        final List<String> handled = new ArrayList<String>();
+        allPairs.findAll(3, new AllPairsNearestNeighbors.NeighborHandler() {
+                public void handle(String word,
+                                   SortedMultiMap<Double,String> mostSimilar) {
+                    assertEquals(3, mostSimilar.size());
+                    handled.add(word);
+                }
+            });
+        assertEquals(100, handled.size());
+        assertEquals(100, new java.util.HashSet<String>(handled).size());
+    }
+
+    @Test public void testMoreNeighborsThanWords() {
+        SemanticSpace sspace = randomSpace(5, 4, false, new Random(4));
+        Map<String,SortedMultiMap<Double,String>> all =
+            new AllPairsNearestNeighbors(sspace).findAll(10);
+        for (SortedMultiMap<Double,String> neighbors : all.values())
+            assertEquals(4, neighbors.size());
+    }
+}
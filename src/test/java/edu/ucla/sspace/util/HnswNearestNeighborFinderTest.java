@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import edu.ucla.sspace.common.SemanticSpace;
+import edu.ucla.sspace.common.VectorMapSemanticSpace;
+
+import edu.ucla.sspace.similarity.CosineSimilarity;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link HnswNearestNeighborFinder}
+ */
+public class HnswNearestNeighborFinderTest {
+
+    private static SemanticSpace randomSpace(int numWords, int dims,
+                                             Random random) {
+        Map<String,DoubleVector> vectors = new HashMap<String,DoubleVector>();
+        for (int i = 0; i < numWords; ++i) {
+            double[] v = new double[dims];
+            for (int j = 0; j < dims; ++j)
+                v[j] = random.nextGaussian();
+            vectors.put("word" + i, new DenseVector(v));
+        }
+        return new VectorMapSemanticSpace<DoubleVector>(
+            vectors, "random", dims);
+    }
+
+    /**
+     * Returns the fraction of the exact nearest neighbors for the words that
+     * were also found by the approximate finder.
+     */
+    private static double recall(SemanticSpace sspace,
+                                 NearestNeighborFinder approximate,
+                                 int numQueries, int k) {
+        NearestNeighborFinder exact = new SimpleNearestNeighborFinder(sspace);
+        int found = 0;
+        int total = 0;
+        for (int i = 0; i < numQueries; ++i) {
+            String word = "word" + i;
+            Set<String> expected =
+                new HashSet<String>(exact.getMostSimilar(word, k).values());
+            for (String w : approximate.getMostSimilar(word, k).values())
+                if (expected.contains(w))
+                    found++;
+            total += expected.size();
+        }
+        return found / (double)total;
+    }
+
+    @Test public void testRecall() {
+        SemanticSpace sspace = randomSpace(2000, 10, new Random(1));
+        HnswNearestNeighborFinder nnf = new HnswNearestNeighborFinder(sspace);
+        assertEquals(2000, nnf.size());
+        assertTrue(recall(sspace, nnf, 100, 10) > .9);
+    }
+
+    @Test public void testResultSize() {
+        SemanticSpace sspace = randomSpace(200, 5, new Random(2));
+        HnswNearestNeighborFinder nnf = new HnswNearestNeighborFinder(sspace);
+        SortedMultiMap<Double,String> neighbors = nnf.getMostSimilar("word0", 10);
+        assertEquals(10, neighbors.size());
+        assertFalse(neighbors.values().contains("word0"));
+        assertNull(nnf.getMostSimilar("missing", 10));
+    }
+
+    @Test public void testIncrementalAdd() {
+        Random random = new Random(3);
+        SemanticSpace sspace = randomSpace(1000, 10, random);
+        HnswNearestNeighborFinder nnf = new HnswNearestNeighborFinder(
+            new CosineSimilarity(), 8, 100);
+        for (String word : sspace.getWords())
+            nnf.add(word, sspace.getVector(word));
+        assertEquals(1000, nnf.size());
+        assertTrue(nnf.contains("word10"));
+        assertTrue(recall(sspace, nnf, 100, 10) > .9);
+
+        // Adding an exact copy of a word's vector should make it that word's
+        // nearest neighbor
+        nnf.add("copy", sspace.getVector("word5"));
+        SortedMultiMap<Double,String> neighbors = nnf.getMostSimilar("word5", 1);
+        assertEquals("copy", neighbors.values().iterator().next());
+    }
+
+    @Test public void testParallelInsertFindsWords() {
+        // Few neighbors per node makes lost links more likely to strand words
+        SemanticSpace sspace = randomSpace(1000, 10, new Random(5));
+        HnswNearestNeighborFinder nnf = new HnswNearestNeighborFinder(
+            new CosineSimilarity(), 4, 50);
+        nnf.addAll(sspace);
+        int found = 0;
+        for (String word : sspace.getWords()) {
+            SortedMultiMap<Double,String> nearest =
+                nnf.getMostSimilar(sspace.getVector(word), 1);
+            if (nearest.values().contains(word))
+                found++;
+        }
+        assertTrue(found >= 980);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testAddDuplicate() {
+        HnswNearestNeighborFinder nnf = new HnswNearestNeighborFinder(
+            new CosineSimilarity(), 8, 100);
+        nnf.add("a", new DenseVector(new double[] {1, 0}));
+        nnf.add("a", new DenseVector(new double[] {0, 1}));
+    }
+
+    @Test public void testSerialization() {
+        SemanticSpace sspace = randomSpace(500, 10, new Random(4));
+        HnswNearestNeighborFinder nnf = new HnswNearestNeighborFinder(sspace);
+        HnswNearestNeighborFinder copy =
+            SerializableUtil.load(new java.io.ByteArrayInputStream(
+                SerializableUtil.save(nnf)));
+        assertEquals(nnf.size(), copy.size());
+        for (int i = 0; i < 20; ++i) {
+            String word = "word" + i;
+            assertEquals(nnf.getMostSimilar(word, 10).toString(),
+                         copy.getMostSimilar(word, 10).toString());
+        }
+        // The loaded graph should still support new words
+        copy.add("new", new DenseVector(new double[10]));
+        assertTrue(copy.contains("new"));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link IndexedCache} 
+ */
+public class IndexedCacheTest {
+
+    @Test public void testPutAndGet() {
+        IndexedCache<String> cache = new IndexedCache<String>(4);
+        assertNull(cache.get(0));
+        assertNull(cache.get(100));
+        cache.put(1, "one");
+        assertEquals("one", cache.get(1));
+        assertNull(cache.get(0));
+        // Keys beyond the initial size grow the cache
+        cache.put(100, "hundred");
+        assertEquals("hundred", cache.get(100));
+        assertEquals("one", cache.get(1));
+    }
+
+    @Test public void testClear() {
+        IndexedCache<String> cache = new IndexedCache<String>(4);
+        cache.put(2, "two");
+        cache.put(50, "fifty");
+        cache.clear();
+        assertNull(cache.get(2));
+        assertNull(cache.get(50));
+        cache.put(2, "two");
+        assertEquals("two", cache.get(2));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testNegativeKey() {
+        new IndexedCache<String>().put(-1, "negative");
+    }
+
+    @Test public void testConcurrentPut() throws Exception {
+        // Start small so that the cache is grown many times while threads are
+        // putting values
+        final IndexedCache<Integer> cache = new IndexedCache<Integer>(1);
+        final int threads = 8;
+        final int keys = 20000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t) {
+            final int offset = t;
+            new Thread() {
+                public void run() {
+                    for (int i = offset; i < keys; i += threads)
+                        cache.put(i, i);
+                    latch.countDown();
+                }
+            }.start();
+        }
+        latch.await();
+        // No value should be lost when the cache is grown
+        for (int i = 0; i < keys; ++i)
+            assertEquals(Integer.valueOf(i), cache.get(i));
+    }
+}
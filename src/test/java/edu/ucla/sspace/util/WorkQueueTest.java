@@ -100,4 +100,83 @@ public class WorkQueueTest {
         assertEquals(100, j.get());
     }
 
+    @Test public void testBoundedQueue() {
+        WorkQueue w = new WorkQueue(2, 3);
+        final AtomicInteger j = new AtomicInteger();
+        Collection<Runnable> c = new ArrayList<Runnable>();
+        for (int i = 0; i < 100; ++i)
+            c.add(new Runnable() {
+                public void run() {
+                    j.incrementAndGet();
+                }
+            });
+        w.run(c);
+        assertEquals(100, j.get());
+    }
+
+    @Test public void testExecutor() {
+        ExecutorService exec = Executors.newFixedThreadPool(3);
+        WorkQueue w = new WorkQueue(exec, 3);
+        assertEquals(3, w.availableThreads());
+        final AtomicInteger j = new AtomicInteger();
+        Object key = w.registerTaskGroup(50);
+        for (int i = 0; i < 50; ++i)
+            w.add(key, new Runnable() {
+                public void run() {
+                    j.incrementAndGet();
+                }
+            });
+        w.await(key);
+        assertEquals(50, j.get());
+        exec.shutdown();
+    }
+
+    @Test public void testCancel() throws Exception {
+        WorkQueue w = new WorkQueue(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger j = new AtomicInteger();
+        Object key = w.registerTaskGroup(20);
+        w.add(key, new Runnable() {
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ie) { }
+                    j.incrementAndGet();
+                }
+            });
+        started.await();
+        // These tasks are queued behind the blocked task
+        for (int i = 0; i < 9; ++i)
+            w.add(key, new Runnable() {
+                public void run() {
+                    j.incrementAndGet();
+                }
+            });
+        assertTrue(w.cancel(key));
+        assertTrue(w.isCancelled(key));
+        assertFalse(w.cancel(key));
+        // Tasks added after cancellation are discarded
+        w.add(key, new Runnable() {
+                public void run() {
+                    j.incrementAndGet();
+                }
+            });
+        release.countDown();
+        assertTrue(w.await(key, 5, TimeUnit.SECONDS));
+        assertEquals(1, j.get());
+        assertFalse(w.isCancelled(key));
+    }
+
+    @Test public void testNamedQueues() {
+        WorkQueue a = WorkQueue.getWorkQueue("test-a");
+        assertSame(a, WorkQueue.getWorkQueue("test-a"));
+        assertNotSame(a, WorkQueue.getWorkQueue("test-b"));
+        assertTrue(WorkQueue.getWorkQueue("test-a", a.availableThreads() + 1)
+                   .availableThreads() > 1);
+        WorkQueue custom = new WorkQueue(2, 10);
+        WorkQueue.setWorkQueue("test-c", custom);
+        assertSame(custom, WorkQueue.getWorkQueue("test-c"));
+    }
 }